@@ -0,0 +1,63 @@
+#!/bin/bash
+# AppCDS archive from a training run + startup benchmark
+# AppCDS アーカイブ作成 (トレーニング実行で使用クラスを収集し、起動時間を比較)
+#
+# Usage: ./appcds.sh [--skip-build] [--runs N]
+# Output: target/appcds/app-cds.jsa
+#
+# The archive only matches the JVM build and the jar path it was dumped with. For deployment,
+# run this script with the same JDK as the function (e.g. inside public.ecr.aws/lambda/java:11,
+# with the jar at its deployed path), ship the archive in a layer and set the
+# AppCdsArchivePath parameter of template.yaml, which adds
+# JAVA_TOOL_OPTIONS=-Xshare:auto -XX:SharedArchiveFile=<path>.
+# With -Xshare:auto a mismatched archive is ignored, so the function still starts normally.
+
+set -e
+cd "$(dirname "$0")"
+
+BUILD=1
+RUNS=5
+while [ $# -gt 0 ]; do
+    case "$1" in
+        --skip-build) BUILD=0 ;;
+        --runs) shift; RUNS="$1" ;;
+    esac
+    shift
+done
+
+JAR="$(pwd)/target/amplify-auth-lambda.jar"
+OUT="$(pwd)/target/appcds"
+ARCHIVE="$OUT/app-cds.jsa"
+CLASS_LIST="$OUT/classes.lst"
+
+if [ "$BUILD" = "1" ]; then
+    echo "Packaging..."
+    mvn -q -DskipTests package
+fi
+rm -rf "$OUT"
+mkdir -p "$OUT"
+
+# Training run against stand-ins only (see CdsTraining): mock auth, closed DB port, local S3
+TRAINING_ENV=(AUTH_MODE=MOCK DB_URL=jdbc:postgresql://127.0.0.1:1/cds_training AWS_REGION=ap-northeast-1)
+
+JAVA_MAJOR=$(java -XshowSettings:properties -version 2>&1 | awk -F'= ' '/java.specification.version/ {print $2}')
+if [ "${JAVA_MAJOR%%.*}" -ge 13 ]; then
+    echo "Training run (JDK $JAVA_MAJOR, dynamic archive)..."
+    env "${TRAINING_ENV[@]}" java -XX:ArchiveClassesAtExit="$ARCHIVE" -cp "$JAR" com.nais.lifecycle.CdsTraining > "$OUT/training.log" 2>&1
+else
+    # JDK 11 (java11 runtime): static archive from the class list of the training run
+    echo "Training run (JDK $JAVA_MAJOR, class list + static dump)..."
+    env "${TRAINING_ENV[@]}" java -Xshare:off -XX:DumpLoadedClassList="$CLASS_LIST" -cp "$JAR" com.nais.lifecycle.CdsTraining > "$OUT/training.log" 2>&1
+    java -Xshare:dump -XX:SharedClassListFile="$CLASS_LIST" -XX:SharedArchiveFile="$ARCHIVE" -cp "$JAR" > "$OUT/dump.log" 2>&1
+fi
+grep "CDS training" "$OUT/training.log" || true
+echo "Archive: $ARCHIVE ($(du -h "$ARCHIVE" | cut -f1))"
+
+echo ""
+echo "== Default CDS (JDK classes only) =="
+AUTH_MODE=MOCK java -Dbench.runs="$RUNS" -Dbench.jvmArgs="-Xshare:auto" \
+    -cp "$JAR" com.nais.lifecycle.StartupBenchmark 2>/dev/null
+echo ""
+echo "== AppCDS ($ARCHIVE) =="
+AUTH_MODE=MOCK java -Dbench.runs="$RUNS" -Dbench.jvmArgs="-Xshare:auto -XX:SharedArchiveFile=$ARCHIVE" \
+    -cp "$JAR" com.nais.lifecycle.StartupBenchmark 2>/dev/null
@@ -0,0 +1,31 @@
+-- Master Data Change Feed Indexes and Reload Markers
+-- メール宛先マスター管理システム (NAIS) - マスタデータ差分取得
+--
+-- GET /changes (ChangeFeedHandler) reads each table with a keyset scan
+--   WHERE updated_at < :upper AND (updated_at, pk...) > (:cursor...)
+--   ORDER BY updated_at, pk... LIMIT :n
+-- so every table gets a btree on (updated_at, primary key). customer_mst and
+-- mail_destination_child_mst INCLUDE their remaining columns and are served by
+-- index-only scans; mail_destination_parent_mst is too wide to cover, and the LIMIT
+-- bounds its heap fetches to one page.
+--
+-- reloaded_version / reloaded_at are set by CustomerMasterReplacementHandler after a
+-- full replacement, and the feed returns one full_reload marker instead of every row.
+
+ALTER TABLE master_data_version ADD COLUMN IF NOT EXISTS reloaded_version BIGINT;
+ALTER TABLE master_data_version ADD COLUMN IF NOT EXISTS reloaded_at TIMESTAMP;
+
+CREATE INDEX IF NOT EXISTS customer_mst_changes_idx
+    ON customer_mst (updated_at, office_cd, customer_cd)
+    INCLUDE (normal_name_kanji, chain_store_cd, chain_store_subcd, created_by, created_at, updated_by);
+
+CREATE INDEX IF NOT EXISTS mail_destination_parent_mst_changes_idx
+    ON mail_destination_parent_mst (updated_at, job_id, office_cd, customer_cd, chain_store_cd,
+                                    supplier_cd, order_branch_cd, extend_cd);
+
+CREATE INDEX IF NOT EXISTS mail_destination_child_mst_changes_idx
+    ON mail_destination_child_mst (updated_at, mailing_list_id, destination_seq)
+    INCLUDE (destination_address, destination_note, status_div, importer_cd, created_by, created_at, updated_by);
+
+-- Verify
+SELECT table_name, version, reloaded_version, reloaded_at FROM master_data_version ORDER BY table_name;
@@ -0,0 +1,28 @@
+-- Customer Name Search Columns and Index
+-- メール宛先マスター管理システム (NAIS) - 得意先名検索
+--
+-- search_name    : normal_name_kanji normalized with NFKC, katakana folded to hiragana,
+--                  lower-cased, whitespace and '・' removed
+-- search_bigrams : distinct 2-character grams of search_name
+--
+-- Both columns are computed by CustomerMasterReplacementHandler during CSV ingest
+-- (com.nais.search.NameSearchKeys), so GET /customer/search never normalizes rows at
+-- read time. Rows loaded before this script have no keys (and are not found by search)
+-- until they are backfilled with
+--   java -cp target/amplify-auth-lambda.jar com.nais.search.CustomerSearchKeys backfill
+-- or replaced by the next customer master upload.
+
+ALTER TABLE customer_mst ADD COLUMN IF NOT EXISTS search_name VARCHAR(200);
+ALTER TABLE customer_mst ADD COLUMN IF NOT EXISTS search_bigrams TEXT[];
+
+-- Candidate lookup: search_bigrams @> query bigrams
+CREATE INDEX IF NOT EXISTS customer_mst_search_bigrams_idx
+    ON customer_mst USING GIN (search_bigrams);
+
+-- Prefix ranking / single-character prefix lookups
+CREATE INDEX IF NOT EXISTS customer_mst_search_name_prefix_idx
+    ON customer_mst (search_name text_pattern_ops);
+
+-- Verify
+SELECT office_cd, customer_cd, normal_name_kanji, search_name, search_bigrams
+FROM customer_mst ORDER BY office_cd, customer_cd LIMIT 10;
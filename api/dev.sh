@@ -14,12 +14,15 @@ show_help() {
     echo "  start    - Start the local API server"
     echo "  restart  - Rebuild and restart the server"
     echo "  clean    - Clean build artifacts"
+    echo "  bench    - Handler cold-start benchmark (fresh JVM per run)"
+    echo "  appcds   - Build the AppCDS archive from a training run and benchmark it"
     echo "  help     - Show this help message"
     echo ""
     echo "Examples:"
     echo "  ./dev.sh build     # Build the application"
     echo "  ./dev.sh start     # Start local server at http://127.0.0.1:8080"
     echo "  ./dev.sh restart   # Rebuild and restart"
+    echo "  ./dev.sh bench com.nais.handlers.CustomerHandler"
     echo ""
 }
 
@@ -60,6 +63,12 @@ clean_build() {
     fi
 }
 
+startup_bench() {
+    echo "Packaging and running the startup benchmark..."
+    mvn -q -DskipTests package || exit 1
+    java -cp target/amplify-auth-lambda.jar com.nais.lifecycle.StartupBenchmark "$@"
+}
+
 # Main script logic
 case "${1:-help}" in
     build)
@@ -74,6 +83,14 @@ case "${1:-help}" in
     clean)
         clean_build
         ;;
+    bench)
+        shift
+        startup_bench "$@"
+        ;;
+    appcds)
+        shift
+        ./appcds.sh "$@"
+        ;;
     help|--help|-h)
         show_help
         ;;
@@ -0,0 +1,112 @@
+-- Mail Master Change History (append-only, monthly partitions)
+-- メール宛先マスター管理システム (NAIS) - 宛先マスタ変更履歴 (監査用)
+--
+-- One row per change of mail_destination_parent_mst / mail_destination_child_mst with the
+-- row image before and after the change. Rows are not written by the API: the write path
+-- only adds its outbox event (outbox_setup.sql, run that first), and HistoryArchiver copies
+-- events here in batches from the scheduled OutboxPublisherHandler. before_image is the
+-- row's old state captured by the outbox trigger; events without one take the previous
+-- entry's after_image and are stored with before_image_inferred = true. The archiver is off
+-- while writers run with OUTBOX_ENABLED=false, since their changes would be missing.
+--
+-- entity_key: parent = job_id|office_cd|customer_cd|chain_store_cd|supplier_cd|order_branch_cd|extend_cd
+--             child  = mailing_list_id|destination_seq
+-- event_type: baseline (seeded below) / created / updated / deleted / status_changed
+--
+-- Partitions are monthly on changed_at; the archiver creates missing ones on demand.
+-- Retention is by DROP TABLE of whole partitions; UPDATE/DELETE/TRUNCATE on the table
+-- are rejected.
+
+ALTER TABLE mail_master_outbox ADD COLUMN IF NOT EXISTS archived_at TIMESTAMP;
+
+CREATE INDEX IF NOT EXISTS mail_master_outbox_unarchived_idx
+    ON mail_master_outbox (id) WHERE archived_at IS NULL;
+
+CREATE INDEX IF NOT EXISTS mail_master_outbox_unarchived_key_idx
+    ON mail_master_outbox (aggregate_key, id) WHERE archived_at IS NULL;
+
+-- ==========================================
+-- Table: 宛先マスタ変更履歴 (mail_master_history)
+-- ==========================================
+
+CREATE TABLE IF NOT EXISTS mail_master_history (
+    history_id BIGSERIAL NOT NULL,
+    outbox_id BIGINT,
+    entity_type VARCHAR(63) NOT NULL,
+    entity_key VARCHAR(500) NOT NULL,
+    event_type VARCHAR(31) NOT NULL,
+    before_image JSONB,
+    before_image_inferred BOOLEAN NOT NULL DEFAULT false,
+    after_image JSONB NOT NULL,
+    changed_at TIMESTAMP NOT NULL,
+    changed_by VARCHAR(100),
+    recorded_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    CONSTRAINT mail_master_history_pkey PRIMARY KEY (history_id, changed_at)
+) PARTITION BY RANGE (changed_at);
+
+-- Existing installations
+ALTER TABLE mail_master_history ADD COLUMN IF NOT EXISTS before_image_inferred BOOLEAN NOT NULL DEFAULT false;
+
+-- GET /history (newest first per key) and the archiver's before-image lookup. history_id
+-- follows commit order per key; changed_at is the writer's transaction start and may not.
+CREATE INDEX IF NOT EXISTS mail_master_history_key_idx
+    ON mail_master_history (entity_type, entity_key, history_id DESC);
+
+-- Current month and the next two
+DO $$
+DECLARE
+    month_start DATE;
+BEGIN
+    FOR i IN 0..2 LOOP
+        month_start := (date_trunc('month', CURRENT_DATE) + make_interval(months => i))::date;
+        EXECUTE format('CREATE TABLE IF NOT EXISTS %I PARTITION OF mail_master_history FOR VALUES FROM (%L) TO (%L)',
+                       'mail_master_history_y' || to_char(month_start, 'YYYY') || 'm' || to_char(month_start, 'MM'),
+                       month_start, (month_start + interval '1 month')::date);
+    END LOOP;
+END $$;
+
+-- ==========================================
+-- Append-only guard
+-- ==========================================
+
+CREATE OR REPLACE FUNCTION reject_master_history_change() RETURNS TRIGGER AS $$
+BEGIN
+    RAISE EXCEPTION 'mail_master_history is append-only (drop old partitions for retention)';
+END;
+$$ LANGUAGE plpgsql;
+
+DROP TRIGGER IF EXISTS mail_master_history_append_only ON mail_master_history;
+CREATE TRIGGER mail_master_history_append_only
+    BEFORE UPDATE OR DELETE OR TRUNCATE ON mail_master_history
+    FOR EACH STATEMENT EXECUTE FUNCTION reject_master_history_change();
+
+-- Events written before the baseline are covered by it. Marked first: an event committed
+-- in between is archived again on top of the baseline rather than lost.
+UPDATE mail_master_outbox SET archived_at = CURRENT_TIMESTAMP WHERE archived_at IS NULL;
+
+-- ==========================================
+-- Baseline: current image of every existing row, so the first change after setup has a
+-- before_image. Rows already in history are skipped, so the script can be re-run.
+-- ==========================================
+
+INSERT INTO mail_master_history (entity_type, entity_key, event_type, before_image, after_image, changed_at, changed_by)
+SELECT 'mail_destination_parent',
+       p.job_id || '|' || p.office_cd || '|' || p.customer_cd || '|' || p.chain_store_cd || '|' ||
+       p.supplier_cd || '|' || p.order_branch_cd || '|' || p.extend_cd,
+       'baseline', NULL, to_jsonb(p), CURRENT_TIMESTAMP, p.updated_by
+FROM mail_destination_parent_mst p
+WHERE NOT EXISTS (SELECT 1 FROM mail_master_history h
+                  WHERE h.entity_type = 'mail_destination_parent'
+                    AND h.entity_key = p.job_id || '|' || p.office_cd || '|' || p.customer_cd || '|' || p.chain_store_cd || '|' ||
+                                       p.supplier_cd || '|' || p.order_branch_cd || '|' || p.extend_cd);
+
+INSERT INTO mail_master_history (entity_type, entity_key, event_type, before_image, after_image, changed_at, changed_by)
+SELECT 'mail_destination_child', c.mailing_list_id || '|' || c.destination_seq,
+       'baseline', NULL, to_jsonb(c), CURRENT_TIMESTAMP, c.updated_by
+FROM mail_destination_child_mst c
+WHERE NOT EXISTS (SELECT 1 FROM mail_master_history h
+                  WHERE h.entity_type = 'mail_destination_child'
+                    AND h.entity_key = c.mailing_list_id || '|' || c.destination_seq);
+
+-- Verify
+SELECT entity_type, event_type, count(*) FROM mail_master_history GROUP BY entity_type, event_type ORDER BY 1, 2;
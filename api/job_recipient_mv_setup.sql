@@ -0,0 +1,53 @@
+-- Job Recipient Materialized Table
+-- メール宛先マスター管理システム (NAIS) - ジョブ送信先マテリアライズテーブル
+--
+-- One row per active parent destination (delete_flag = '0') with its active child
+-- addresses (status_div = '0') pre-aggregated as JSONB. Maintained incrementally by
+-- MailDestinationParentHandler / MailDestinationChildHandler in the same transaction
+-- as their writes (com.nais.cache.JobRecipientRoutes); only the affected parent key or
+-- mailing list is recomputed. GET /jobs/{job_id}/recipients reads it with a primary-key
+-- prefix scan. Customer names are joined at read time, so customer master replacement
+-- does not invalidate it.
+--
+-- Initial load / recovery (full rebuild in one transaction):
+--   DB_URL=... DB_USER=... DB_PASSWORD=... \
+--   java -cp target/amplify-auth-lambda.jar com.nais.cache.JobRecipientRoutes rebuild
+
+-- ==========================================
+-- Table: ジョブ送信先 (job_recipient_mv)
+-- ==========================================
+
+CREATE TABLE IF NOT EXISTS job_recipient_mv (
+    job_id VARCHAR NOT NULL,
+    office_cd VARCHAR NOT NULL,
+    customer_cd VARCHAR NOT NULL,
+    chain_store_cd VARCHAR NOT NULL,
+    supplier_cd VARCHAR NOT NULL,
+    order_branch_cd VARCHAR NOT NULL,
+    extend_cd VARCHAR NOT NULL,
+    destination_name VARCHAR,
+    send_mode VARCHAR,
+    search_file VARCHAR,
+    search_directory VARCHAR,
+    send_directory VARCHAR,
+    subject VARCHAR,
+    body_file_path VARCHAR,
+    attachment_file_path VARCHAR,
+    mailing_list_id VARCHAR NOT NULL,
+    update_sys_div VARCHAR,
+    parent_updated_at TIMESTAMP,
+    recipient_count INTEGER NOT NULL DEFAULT 0,
+    recipients JSONB NOT NULL DEFAULT '[]'::jsonb,
+    refreshed_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+    CONSTRAINT job_recipient_mv_pkey PRIMARY KEY (
+        job_id, office_cd, customer_cd, chain_store_cd, supplier_cd, order_branch_cd, extend_cd
+    )
+);
+
+-- Child writes recompute every parent routed to the mailing list
+CREATE INDEX IF NOT EXISTS job_recipient_mv_mailing_list_idx
+    ON job_recipient_mv (mailing_list_id);
+
+-- Verify
+SELECT job_id, count(*) AS parents, sum(recipient_count) AS recipients
+FROM job_recipient_mv GROUP BY job_id ORDER BY job_id LIMIT 20;
@@ -0,0 +1,29 @@
+-- Job Recipient Resolution Indexes
+-- メール宛先マスター管理システム (NAIS) - ジョブ送信先解決
+--
+-- GET /jobs/{job_id}/recipients (JobRecipientsHandler) resolves a job's parent
+-- destinations, their active child addresses and the customer name in one query:
+--   parent  : WHERE job_id = ? AND delete_flag = ?
+--   child   : LATERAL ... WHERE mailing_list_id = p.mailing_list_id AND status_div = ?
+--   customer: primary key (office_cd, customer_cd)
+
+-- Parent rows of a job, active rows only
+CREATE INDEX IF NOT EXISTS mail_destination_parent_mst_job_idx
+    ON mail_destination_parent_mst (job_id, delete_flag);
+
+-- Child addresses of a mailing list by status, already in destination_seq order
+CREATE INDEX IF NOT EXISTS mail_destination_child_mst_list_status_idx
+    ON mail_destination_child_mst (mailing_list_id, status_div, destination_seq)
+    INCLUDE (destination_address, destination_note);
+
+-- Verify
+EXPLAIN
+SELECT p.job_id, p.mailing_list_id, c.normal_name_kanji, r.recipients
+FROM mail_destination_parent_mst p
+LEFT JOIN customer_mst c ON c.office_cd = p.office_cd AND c.customer_cd = p.customer_cd
+LEFT JOIN LATERAL (
+    SELECT json_agg(d.destination_address ORDER BY d.destination_seq) AS recipients
+    FROM mail_destination_child_mst d
+    WHERE d.mailing_list_id = p.mailing_list_id AND d.status_div = '0'
+) r ON TRUE
+WHERE p.job_id = 'JOB001' AND p.delete_flag = '0';
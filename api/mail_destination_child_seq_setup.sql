@@ -0,0 +1,33 @@
+-- Mail Destination Child Sequence Counter
+-- メール宛先マスター管理システム (NAIS) - 宛先連番採番テーブル
+--
+-- One row per mailing list holding the last destination_seq handed out.
+-- MailDestinationChildHandler reserves seqs with a single
+--   UPDATE ... SET last_seq = last_seq + n RETURNING last_seq
+-- inside the insert transaction, so concurrent creates for the same list queue on
+-- this row instead of colliding on the child primary key, and a bulk insert gets a
+-- contiguous block [last_seq - n + 1, last_seq] in one round trip.
+-- Rows are created on first use from MAX(destination_seq); the seed below only
+-- saves that lookup for lists that already exist.
+
+-- ==========================================
+-- Table: 宛先連番 (mail_destination_child_seq)
+-- ==========================================
+
+CREATE TABLE IF NOT EXISTS mail_destination_child_seq (
+    mailing_list_id VARCHAR(320) NOT NULL,
+    last_seq INTEGER NOT NULL DEFAULT 0,
+    updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+    CONSTRAINT mail_destination_child_seq_pkey PRIMARY KEY (mailing_list_id)
+);
+
+INSERT INTO mail_destination_child_seq (mailing_list_id, last_seq)
+SELECT mailing_list_id, MAX(destination_seq)
+FROM mail_destination_child_mst
+GROUP BY mailing_list_id
+ON CONFLICT (mailing_list_id) DO UPDATE SET
+    last_seq = GREATEST(mail_destination_child_seq.last_seq, EXCLUDED.last_seq),
+    updated_at = CURRENT_TIMESTAMP;
+
+-- Verify
+SELECT * FROM mail_destination_child_seq ORDER BY mailing_list_id LIMIT 20;
@@ -0,0 +1,55 @@
+-- Master Data Version Table
+-- メール宛先マスター管理システム (NAIS) - マスタデータ版数管理
+--
+-- One row per master table. The API returns the version as a strong ETag on GET
+-- responses and answers If-None-Match with 304 after a single-row lookup.
+-- CustomerMasterReplacementHandler and the mail destination parent/child handlers
+-- bump their row inside the same transaction as the data change.
+
+-- ==========================================
+-- Table: マスタデータ版数 (master_data_version)
+-- ==========================================
+
+CREATE TABLE IF NOT EXISTS master_data_version (
+    table_name VARCHAR(63) NOT NULL,
+    version BIGINT NOT NULL DEFAULT 1,
+    updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+    CONSTRAINT master_data_version_pkey PRIMARY KEY (table_name)
+);
+
+INSERT INTO master_data_version (table_name, version) VALUES
+('customer_mst', 1),
+('mail_to_child_mst', 1),
+('mail_api_config_mst', 1),
+('mail_destination_parent_mst', 1),
+('mail_destination_child_mst', 1)
+ON CONFLICT (table_name) DO NOTHING;
+
+-- ==========================================
+-- Statement-level triggers for tables without an API write path
+-- (mail_to_child_mst / mail_api_config_mst are maintained by other systems)
+-- ==========================================
+
+CREATE OR REPLACE FUNCTION bump_master_data_version() RETURNS TRIGGER AS $$
+BEGIN
+    INSERT INTO master_data_version (table_name, version, updated_at)
+    VALUES (TG_TABLE_NAME, 1, CURRENT_TIMESTAMP)
+    ON CONFLICT (table_name) DO UPDATE SET
+        version = master_data_version.version + 1,
+        updated_at = CURRENT_TIMESTAMP;
+    RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+DROP TRIGGER IF EXISTS mail_to_child_mst_version ON mail_to_child_mst;
+CREATE TRIGGER mail_to_child_mst_version
+    AFTER INSERT OR UPDATE OR DELETE OR TRUNCATE ON mail_to_child_mst
+    FOR EACH STATEMENT EXECUTE FUNCTION bump_master_data_version();
+
+DROP TRIGGER IF EXISTS mail_api_config_mst_version ON mail_api_config_mst;
+CREATE TRIGGER mail_api_config_mst_version
+    AFTER INSERT OR UPDATE OR DELETE OR TRUNCATE ON mail_api_config_mst
+    FOR EACH STATEMENT EXECUTE FUNCTION bump_master_data_version();
+
+-- Verify
+SELECT * FROM master_data_version ORDER BY table_name;
@@ -0,0 +1,81 @@
+#!/bin/bash
+# Native vs JVM cold start under the Lambda Runtime Interface Emulator
+# ネイティブ版とJVM版の起動時間・メモリ(RSS)比較
+#
+# Usage: ./native-compare.sh [handler] [runs]
+#   handler  default com.nais.handlers.MailApiConfigHandler::handleRequest
+#   runs     default 5
+# Requirements:
+#   - mvn -Pnative package has been run (GraalVM JDK), producing target/nais-native
+#     and target/amplify-auth-lambda.jar (which then includes the runtime interface client)
+#   - aws-lambda-rie on PATH, or RIE=/path/to/aws-lambda-rie
+#     (https://github.com/aws/aws-lambda-runtime-interface-emulator/releases)
+#   - EVENT=file.json to send your own API Gateway event; the default is an unauthenticated
+#     GET (401 path), which needs no database
+# Output: one line per run with first-invoke time (includes init, since RIE starts the
+# runtime on the first request), warm-invoke time and peak RSS of the runtime process.
+
+set -u
+
+HANDLER="${1:-com.nais.handlers.MailApiConfigHandler::handleRequest}"
+RUNS="${2:-5}"
+RIE="${RIE:-aws-lambda-rie}"
+PORT="${PORT:-9000}"
+URL="http://127.0.0.1:${PORT}/2015-03-31/functions/function/invocations"
+TARGET="$(cd "$(dirname "$0")" && pwd)/target"
+
+if ! command -v "$RIE" >/dev/null 2>&1; then
+    echo "aws-lambda-rie not found (set RIE=/path/to/aws-lambda-rie)"
+    exit 1
+fi
+if [ ! -x "$TARGET/nais-native" ] || [ ! -f "$TARGET/amplify-auth-lambda.jar" ]; then
+    echo "Build first: mvn -Pnative package"
+    exit 1
+fi
+
+EVENT_FILE="${EVENT:-}"
+if [ -z "$EVENT_FILE" ]; then
+    EVENT_FILE="$(mktemp)"
+    cat > "$EVENT_FILE" <<'JSON'
+{"resource":"/mail-api-config","path":"/mail-api-config","httpMethod":"GET",
+ "headers":{"Accept-Encoding":"gzip"},"queryStringParameters":null,"pathParameters":null,
+ "requestContext":{"requestId":"native-compare","stage":"dev"},"body":null,"isBase64Encoded":false}
+JSON
+fi
+
+# run <label> <command...>: start RIE with the runtime, time two invocations, read peak RSS
+run() {
+    local label="$1"
+    shift
+    _HANDLER="$HANDLER" LAMBDA_TASK_ROOT="$TARGET" AUTH_MODE="${AUTH_MODE:-MOCK}" \
+        "$RIE" --runtime-interface-emulator-address "127.0.0.1:${PORT}" "$@" >/dev/null 2>&1 &
+    local rie_pid=$!
+
+    # Wait for the emulator's HTTP endpoint (the runtime itself starts on the first invoke)
+    for _ in $(seq 1 100); do
+        curl -s -o /dev/null "http://127.0.0.1:${PORT}/" && break
+        sleep 0.05
+    done
+
+    local first warm rss runtime_pid
+    first=$(curl -s -o /dev/null -w '%{time_total}' -XPOST "$URL" -d @"$EVENT_FILE")
+    warm=$(curl -s -o /dev/null -w '%{time_total}' -XPOST "$URL" -d @"$EVENT_FILE")
+
+    rss="n/a"
+    for runtime_pid in $(pgrep -P "$rie_pid"); do
+        rss=$(awk '/VmHWM/ {print $2 " kB"}' "/proc/${runtime_pid}/status" 2>/dev/null)
+    done
+
+    kill "$rie_pid" 2>/dev/null
+    wait "$rie_pid" 2>/dev/null
+    printf "%-7s first=%6.0f ms  warm=%6.1f ms  peak_rss=%s\n" "$label" \
+        "$(echo "$first * 1000" | bc)" "$(echo "$warm * 1000" | bc)" "$rss"
+}
+
+echo "Handler: $HANDLER"
+for i in $(seq 1 "$RUNS"); do
+    run "native" "$TARGET/nais-native" "$HANDLER"
+    # Same flags as the managed java11 runtime
+    run "jvm" java -XX:+TieredCompilation -XX:TieredStopAtLevel=1 -XX:+UseSerialGC \
+        -cp "$TARGET/amplify-auth-lambda.jar" com.amazonaws.services.lambda.runtime.api.client.AWSLambda "$HANDLER"
+done
@@ -0,0 +1,115 @@
+-- Mail Master Outbox Table
+-- メール宛先マスター管理システム (NAIS) - 宛先マスタ変更イベント (トランザクショナルアウトボックス)
+--
+-- MailDestinationParentHandler and MailDestinationChildHandler insert one row per changed
+-- master row in the same transaction as the change (com.nais.outbox.OutboxEvents); the
+-- payload is the row image after the change and before_image the row image before it
+-- (captured by the BEFORE UPDATE triggers below). OutboxPublisherHandler claims pending rows
+-- in id order with FOR UPDATE SKIP LOCKED, hands them to the configured sink and sets
+-- published_at. Delivery is at-least-once (consumers de-duplicate on id) and in id order
+-- per aggregate_key (parent composite key / mailing_list_id).
+-- Writers hold pg_advisory_xact_lock(hashtext('mail_master_outbox'), hashtext(type || ':' || key))
+-- while they insert, so per key the id order is also the commit order.
+-- Published rows are purged after OUTBOX_RETENTION_HOURS (default 72).
+
+-- ==========================================
+-- Table: 宛先マスタ変更イベント (mail_master_outbox)
+-- ==========================================
+
+CREATE TABLE IF NOT EXISTS mail_master_outbox (
+    id BIGSERIAL NOT NULL,
+    aggregate_type VARCHAR(63) NOT NULL,
+    aggregate_key VARCHAR(500) NOT NULL,
+    event_type VARCHAR(31) NOT NULL,
+    payload JSONB NOT NULL,
+    before_image JSONB,
+    created_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    published_at TIMESTAMP,
+    attempts INTEGER NOT NULL DEFAULT 0,
+    last_error VARCHAR(1000),
+    CONSTRAINT mail_master_outbox_pkey PRIMARY KEY (id)
+);
+
+-- Claim: pending rows in id order (stays small while the publisher keeps up)
+CREATE INDEX IF NOT EXISTS mail_master_outbox_pending_idx
+    ON mail_master_outbox (id) WHERE published_at IS NULL;
+
+-- Per-key ordering check: earlier pending events of the same key
+CREATE INDEX IF NOT EXISTS mail_master_outbox_pending_key_idx
+    ON mail_master_outbox (aggregate_key, id) WHERE published_at IS NULL;
+
+-- Retention purge
+CREATE INDEX IF NOT EXISTS mail_master_outbox_published_idx
+    ON mail_master_outbox (published_at) WHERE published_at IS NOT NULL;
+
+-- Existing installations
+ALTER TABLE mail_master_outbox ADD COLUMN IF NOT EXISTS before_image JSONB;
+
+-- ==========================================
+-- Before-images: a BEFORE UPDATE trigger keeps OLD of each master row in a transaction-local
+-- setting until the writer's outbox insert takes it (mail_master_take_before_image), so
+-- before_image is the real previous state even when earlier changes wrote no event.
+-- BEFORE, not AFTER: AFTER row triggers run at the end of the statement, after the outbox
+-- CTE of a set-based writer (WITH changed AS (UPDATE ... RETURNING *) INSERT ...) has read
+-- the setting; a BEFORE trigger has run for a row before UPDATE returns it to the CTE.
+-- Several updates of one row before its event keep the image before the first of them.
+-- ==========================================
+
+CREATE OR REPLACE FUNCTION mail_master_before_image_setting(entity_type TEXT, entity_key TEXT) RETURNS TEXT AS $$
+    SELECT 'mail_master_before.h' || md5(entity_type || ':' || entity_key)
+$$ LANGUAGE sql IMMUTABLE;
+
+CREATE OR REPLACE FUNCTION mail_master_keep_before_image(entity_type TEXT, entity_key TEXT, image JSONB) RETURNS VOID AS $$
+DECLARE
+    setting TEXT := mail_master_before_image_setting(entity_type, entity_key);
+BEGIN
+    IF coalesce(current_setting(setting, true), '') = '' THEN
+        PERFORM set_config(setting, image::text, true);
+    END IF;
+END;
+$$ LANGUAGE plpgsql;
+
+CREATE OR REPLACE FUNCTION mail_master_take_before_image(entity_type TEXT, entity_key TEXT) RETURNS JSONB AS $$
+DECLARE
+    setting TEXT := mail_master_before_image_setting(entity_type, entity_key);
+    image TEXT := current_setting(setting, true);
+BEGIN
+    IF coalesce(image, '') = '' THEN
+        RETURN NULL;
+    END IF;
+    PERFORM set_config(setting, '', true);
+    RETURN image::jsonb;
+END;
+$$ LANGUAGE plpgsql;
+
+CREATE OR REPLACE FUNCTION keep_parent_before_image() RETURNS TRIGGER AS $$
+BEGIN
+    PERFORM mail_master_keep_before_image('mail_destination_parent',
+        OLD.job_id || '|' || OLD.office_cd || '|' || OLD.customer_cd || '|' || OLD.chain_store_cd || '|' ||
+        OLD.supplier_cd || '|' || OLD.order_branch_cd || '|' || OLD.extend_cd, to_jsonb(OLD));
+    RETURN NEW;
+END;
+$$ LANGUAGE plpgsql;
+
+CREATE OR REPLACE FUNCTION keep_child_before_image() RETURNS TRIGGER AS $$
+BEGIN
+    PERFORM mail_master_keep_before_image('mail_destination_child',
+        OLD.mailing_list_id || '|' || OLD.destination_seq, to_jsonb(OLD));
+    RETURN NEW;
+END;
+$$ LANGUAGE plpgsql;
+
+DROP TRIGGER IF EXISTS mail_destination_parent_before_image ON mail_destination_parent_mst;
+CREATE TRIGGER mail_destination_parent_before_image
+    BEFORE UPDATE ON mail_destination_parent_mst
+    FOR EACH ROW EXECUTE FUNCTION keep_parent_before_image();
+
+DROP TRIGGER IF EXISTS mail_destination_child_before_image ON mail_destination_child_mst;
+CREATE TRIGGER mail_destination_child_before_image
+    BEFORE UPDATE ON mail_destination_child_mst
+    FOR EACH ROW EXECUTE FUNCTION keep_child_before_image();
+
+-- Verify
+SELECT aggregate_type, event_type, count(*) AS pending
+FROM mail_master_outbox WHERE published_at IS NULL
+GROUP BY aggregate_type, event_type ORDER BY aggregate_type, event_type;
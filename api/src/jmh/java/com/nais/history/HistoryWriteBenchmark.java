@@ -0,0 +1,176 @@
+package com.nais.history;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Write-path cost of change history: none vs outbox event vs synchronous history trigger
+ * 宛先マスタ更新1件あたりの履歴記録コスト (履歴なし / outbox 経由 / 同期トリガー)
+ *
+ * Each operation updates one parent-like row and commits, as PUT /mail-destination-parent
+ * does. updateWithOutbox pays what the handlers pay for history: the BEFORE UPDATE trigger of
+ * outbox_setup.sql keeping OLD in a transaction-local setting, and the INSERT ... SELECT of
+ * OutboxEvents.append with its per-key pg_advisory_xact_lock and mail_master_take_before_image
+ * (the history itself is written later by HistoryArchiver, off the request path). The
+ * trigger and functions are pg_temp copies of outbox_setup.sql. updateWithSyncHistory instead has a row trigger insert the OLD/NEW images
+ * into an indexed history table in the same transaction, the design history_setup.sql avoids.
+ * Tables are TEMP tables of the benchmark session, so no NAIS schema is needed.
+ *
+ * Usage: mvn -Pjmh -DskipTests package
+ *        DB_URL=jdbc:postgresql://localhost:5432/nais \
+ *        java -cp target/amplify-auth-lambda.jar org.openjdk.jmh.Main HistoryWriteBenchmark
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class HistoryWriteBenchmark {
+
+    private static final String UPDATE_SQL =
+            "UPDATE %s SET subject = ?, updated_by = 'BENCH', updated_at = CURRENT_TIMESTAMP WHERE id = ?";
+
+    // Same shape as OutboxEvents.insertSelect: lock the keys, then draw ids and take the before-image
+    private static final String OUTBOX_SQL =
+            "INSERT INTO bench_outbox (aggregate_key, event_type, payload, before_image) " +
+            "SELECT r.mailing_list_id, 'updated', to_jsonb(r), pg_temp.bench_take_before_image(r.id::text) " +
+            "FROM (SELECT count(pg_advisory_xact_lock(hashtext('bench_outbox'), hashtext('bench_parent:' || k))) AS locked " +
+            "FROM (SELECT DISTINCT mailing_list_id AS k FROM bench_parent_outbox r WHERE r.id = ? ORDER BY 1) keys) l " +
+            "CROSS JOIN bench_parent_outbox r WHERE r.id = ? AND l.locked >= 0";
+
+    @Param({"10000"})
+    public int rows;
+
+    private Connection conn;
+    private PreparedStatement plainUpdate;
+    private PreparedStatement outboxUpdate;
+    private PreparedStatement outboxInsert;
+    private PreparedStatement auditedUpdate;
+    private long sequence;
+
+    @Setup
+    public void setUp() throws SQLException {
+        conn = DriverManager.getConnection(
+                System.getenv().getOrDefault("DB_URL", "jdbc:postgresql://localhost:5432/nais"),
+                System.getenv().getOrDefault("DB_USER", "postgres"),
+                System.getenv().getOrDefault("DB_PASSWORD", "password"));
+
+        try (Statement stmt = conn.createStatement()) {
+            for (String table : new String[] {"bench_parent", "bench_parent_outbox", "bench_parent_audited"}) {
+                stmt.execute("CREATE TEMP TABLE " + table + " (id INTEGER PRIMARY KEY, job_id VARCHAR(20), " +
+                        "destination_name VARCHAR(100), subject VARCHAR(200), mailing_list_id VARCHAR(20), " +
+                        "delete_flag CHAR(1) DEFAULT '0', updated_by VARCHAR(50), updated_at TIMESTAMP)");
+                stmt.execute("INSERT INTO " + table + " SELECT g, 'JOB' || g, 'Destination ' || g, 'Subject ' || g, " +
+                        "'ML' || (g % 997), '0', 'SEED', CURRENT_TIMESTAMP FROM generate_series(1, " + rows + ") g");
+            }
+
+            stmt.execute("CREATE TEMP TABLE bench_outbox (id BIGSERIAL PRIMARY KEY, aggregate_key VARCHAR(500), " +
+                    "event_type VARCHAR(31), payload JSONB, before_image JSONB, created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP, " +
+                    "published_at TIMESTAMP, archived_at TIMESTAMP)");
+            stmt.execute("CREATE INDEX ON bench_outbox (id) WHERE published_at IS NULL");
+            stmt.execute("CREATE INDEX ON bench_outbox (id) WHERE archived_at IS NULL");
+            stmt.execute("CREATE FUNCTION pg_temp.bench_take_before_image(entity_key TEXT) RETURNS JSONB AS $$ " +
+                    "DECLARE " +
+                    "  setting TEXT := 'bench_before.h' || md5('bench_parent:' || entity_key); " +
+                    "  image TEXT := current_setting(setting, true); " +
+                    "BEGIN " +
+                    "  IF coalesce(image, '') = '' THEN RETURN NULL; END IF; " +
+                    "  PERFORM set_config(setting, '', true); " +
+                    "  RETURN image::jsonb; " +
+                    "END $$ LANGUAGE plpgsql");
+            stmt.execute("CREATE FUNCTION pg_temp.bench_keep_before_image() RETURNS TRIGGER AS $$ " +
+                    "DECLARE " +
+                    "  setting TEXT := 'bench_before.h' || md5('bench_parent:' || OLD.id::text); " +
+                    "BEGIN " +
+                    "  IF coalesce(current_setting(setting, true), '') = '' THEN " +
+                    "    PERFORM set_config(setting, to_jsonb(OLD)::text, true); " +
+                    "  END IF; " +
+                    "  RETURN NEW; " +
+                    "END $$ LANGUAGE plpgsql");
+            stmt.execute("CREATE TRIGGER bench_before_image BEFORE UPDATE ON bench_parent_outbox " +
+                    "FOR EACH ROW EXECUTE FUNCTION pg_temp.bench_keep_before_image()");
+
+            stmt.execute("CREATE TEMP TABLE bench_history (history_id BIGSERIAL PRIMARY KEY, entity_key VARCHAR(500), " +
+                    "event_type VARCHAR(31), before_image JSONB, after_image JSONB, changed_at TIMESTAMP, changed_by VARCHAR(100))");
+            stmt.execute("CREATE INDEX ON bench_history (entity_key, history_id DESC)");
+            stmt.execute("CREATE FUNCTION pg_temp.bench_history_trigger() RETURNS TRIGGER AS $$ " +
+                    "BEGIN " +
+                    "  INSERT INTO bench_history (entity_key, event_type, before_image, after_image, changed_at, changed_by) " +
+                    "  VALUES (NEW.id::text, 'updated', to_jsonb(OLD), to_jsonb(NEW), CURRENT_TIMESTAMP, NEW.updated_by); " +
+                    "  RETURN NEW; " +
+                    "END $$ LANGUAGE plpgsql");
+            stmt.execute("CREATE TRIGGER bench_history_sync AFTER UPDATE ON bench_parent_audited " +
+                    "FOR EACH ROW EXECUTE FUNCTION pg_temp.bench_history_trigger()");
+            stmt.execute("ANALYZE bench_parent");
+            stmt.execute("ANALYZE bench_parent_outbox");
+            stmt.execute("ANALYZE bench_parent_audited");
+        }
+
+        conn.setAutoCommit(false);
+        plainUpdate = conn.prepareStatement(String.format(UPDATE_SQL, "bench_parent"));
+        outboxUpdate = conn.prepareStatement(String.format(UPDATE_SQL, "bench_parent_outbox"));
+        outboxInsert = conn.prepareStatement(OUTBOX_SQL);
+        auditedUpdate = conn.prepareStatement(String.format(UPDATE_SQL, "bench_parent_audited"));
+    }
+
+    @TearDown
+    public void tearDown() throws SQLException {
+        conn.close();
+    }
+
+    @Benchmark
+    public int updateOnly() throws SQLException {
+        int id = nextId();
+        plainUpdate.setString(1, "Subject " + sequence);
+        plainUpdate.setInt(2, id);
+        int updated = plainUpdate.executeUpdate();
+        conn.commit();
+        return updated;
+    }
+
+    @Benchmark
+    public int updateWithOutbox() throws SQLException {
+        int id = nextId();
+        outboxUpdate.setString(1, "Subject " + sequence);
+        outboxUpdate.setInt(2, id);
+        int updated = outboxUpdate.executeUpdate();
+        outboxInsert.setInt(1, id);
+        outboxInsert.setInt(2, id);
+        outboxInsert.executeUpdate();
+        conn.commit();
+        return updated;
+    }
+
+    @Benchmark
+    public int updateWithSyncHistory() throws SQLException {
+        int id = nextId();
+        auditedUpdate.setString(1, "Subject " + sequence);
+        auditedUpdate.setInt(2, id);
+        int updated = auditedUpdate.executeUpdate();
+        conn.commit();
+        return updated;
+    }
+
+    private int nextId() {
+        sequence++;
+        return (int) (sequence % rows) + 1;
+    }
+}
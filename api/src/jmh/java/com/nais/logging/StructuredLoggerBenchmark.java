@@ -0,0 +1,111 @@
+package com.nais.logging;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-request logging cost: per-handler createLogJson vs StructuredLogger
+ * ログ出力コストのベンチマーク (Map.of + ObjectMapper と 共通ロガー)
+ *
+ * legacyRequest is what CustomerHandler logged for one GET before the shared logger: five
+ * getDatabaseConnection lines plus two handler lines, each built by createLogJson, whose
+ * Map.of(..., "error", null) throws NullPointerException for every INFO line and falls
+ * back to string concatenation. structuredRequest logs the same two handler lines at INFO
+ * with the connection line at DEBUG (skipped at the default level). The single-line
+ * variants compare one INFO line. System.out is swapped for a discarding stream, so only
+ * formatting and encoding are measured.
+ *
+ * Usage: mvn -Pjmh -DskipTests package
+ *        java -cp target/amplify-auth-lambda.jar org.openjdk.jmh.Main StructuredLoggerBenchmark -prof gc
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Thread)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class StructuredLoggerBenchmark {
+
+    private static final StructuredLogger LOG = StructuredLogger.forService("customer-api");
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final String dbUrl = "jdbc:postgresql://localhost:5432/nais";
+    private final String dbUser = "postgres";
+    private PrintStream originalOut;
+
+    @Setup
+    public void setUp() {
+        originalOut = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream(), true));
+        StructuredLogger.beginInvocation("c0a8d1e2-5b7f-4e3a-9d21-6f0e8b4a7c19", "GET /customer/{code}");
+    }
+
+    @TearDown
+    public void tearDown() {
+        System.setOut(originalOut);
+    }
+
+    @Benchmark
+    public void legacyInfoLine() {
+        System.out.println(createLogJson("INFO", "Fetching customer by code: 123456", null));
+    }
+
+    @Benchmark
+    public void structuredInfoLine() {
+        LOG.info("Fetching customer by code: 123456");
+    }
+
+    @Benchmark
+    public void legacyRequest() {
+        System.out.println(createLogJson("INFO", "Fetching customer by code: 123456", null));
+        System.out.println(createLogJson("INFO", "DB_URL from env: " + dbUrl, null));
+        System.out.println(createLogJson("INFO", "DB_USER from env: " + dbUser, null));
+        System.out.println(createLogJson("INFO", "DB_PASSWORD from env: ***set***", null));
+        System.out.println(createLogJson("INFO", "Attempting to connect to database: " + dbUrl + " with user: " + dbUser, null));
+        System.out.println(createLogJson("INFO", "Successfully connected to database", null));
+        System.out.println(createLogJson("INFO", "Found customer: 123456", null));
+    }
+
+    @Benchmark
+    public void structuredRequest() {
+        LOG.info("Fetching customer by code: 123456");
+        if (LOG.isDebugEnabled()) {
+            LOG.debug("Connected to database " + dbUrl + " as " + dbUser);
+        }
+        LOG.info("Found customer: 123456");
+    }
+
+    /**
+     * CustomerHandler.createLogJson as it was before StructuredLogger
+     */
+    private String createLogJson(String level, String message, Exception e) {
+        try {
+            Map<String, Object> logData = Map.of(
+                    "timestamp", LocalDateTime.now().toString(),
+                    "level", level,
+                    "message", message,
+                    "service", "customer-api",
+                    "error", e != null ? e.getMessage() : null
+            );
+            return objectMapper.writeValueAsString(logData);
+        } catch (Exception ex) {
+            return "{\"level\":\"" + level + "\",\"message\":\"" + message + "\",\"service\":\"customer-api\",\"error\":\"" + (e != null ? e.getMessage() : "") + "\"}";
+        }
+    }
+}
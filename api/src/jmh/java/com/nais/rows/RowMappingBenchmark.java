@@ -0,0 +1,243 @@
+package com.nais.rows;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.nais.jdbc.InstrumentedConnection;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * List endpoint row mapping + serialization: Map per row vs typed rows
+ * 一覧APIの行変換ベンチマーク (HashMap + 列名参照 と 行型 + 列番号参照)
+ *
+ * Both variants read the 23 columns of mail_destination_parent_mst from the same in-memory
+ * ResultSet stand-in and write the handler's response ({"status","data","count"}) with one
+ * ObjectMapper, so the difference is the per-row HashMap and label lookups vs. the
+ * MailDestinationParentRow reader and serializer. The stand-in resolves labels through a
+ * HashMap like PgJDBC does and returns pre-built values, so driver parsing cost is excluded.
+ * The *Instrumented variants read the same rows through InstrumentedConnection, as the
+ * handlers do (SQL_METRICS_ENABLED default), so the difference to *Only is the ResultSet
+ * wrapper: timing of next() plus one direct delegating call per column.
+ *
+ * Usage: mvn -Pjmh -DskipTests package
+ *        java -cp target/amplify-auth-lambda.jar org.openjdk.jmh.Main RowMappingBenchmark -prof gc
+ * (-prof gc adds gc.alloc.rate.norm, the bytes allocated per operation)
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms1g", "-Xmx1g"})
+public class RowMappingBenchmark {
+
+    private static final String[] PARENT_COLUMNS = {
+        "job_id", "office_cd", "customer_cd", "chain_store_cd", "supplier_cd", "order_branch_cd",
+        "extend_cd", "destination_name", "send_mode", "search_file", "search_directory", "send_directory",
+        "subject", "body_file_path", "attachment_file_path", "mailing_list_id", "update_sys_div",
+        "importer_cd", "delete_flag", "created_by", "created_at", "updated_by", "updated_at"
+    };
+
+    @Param({"100000"})
+    public int rows;
+
+    private Object[][] data;
+    private ObjectMapper objectMapper;
+
+    @Setup
+    public void setUp() {
+        objectMapper = new ObjectMapper();
+        data = new Object[rows][];
+        Timestamp now = new Timestamp(System.currentTimeMillis());
+        for (int i = 0; i < rows; i++) {
+            Object[] row = new Object[PARENT_COLUMNS.length];
+            for (int c = 0; c < row.length; c++) {
+                row[c] = PARENT_COLUMNS[c].endsWith("_at") ? now : PARENT_COLUMNS[c] + "-" + (i % 997);
+            }
+            data[i] = row;
+        }
+    }
+
+    @Benchmark
+    public List<Map<String, Object>> mapRowsOnly() throws SQLException {
+        ResultSet rs = resultSet(data);
+        List<Map<String, Object>> parents = new ArrayList<>();
+        while (rs.next()) {
+            parents.add(mapResultSetToParent(rs));
+        }
+        return parents;
+    }
+
+    @Benchmark
+    public List<MailDestinationParentRow> typedRowsOnly() throws SQLException {
+        ResultSet rs = resultSet(data);
+        List<MailDestinationParentRow> parents = new ArrayList<>();
+        MailDestinationParentRow.Reader reader = MailDestinationParentRow.reader(rs);
+        while (rs.next()) {
+            parents.add(reader.read(rs));
+        }
+        return parents;
+    }
+
+    @Benchmark
+    public List<Map<String, Object>> mapRowsInstrumented() throws SQLException {
+        ResultSet rs = instrumented(data);
+        List<Map<String, Object>> parents = new ArrayList<>();
+        while (rs.next()) {
+            parents.add(mapResultSetToParent(rs));
+        }
+        rs.close();
+        return parents;
+    }
+
+    @Benchmark
+    public List<MailDestinationParentRow> typedRowsInstrumented() throws SQLException {
+        ResultSet rs = instrumented(data);
+        List<MailDestinationParentRow> parents = new ArrayList<>();
+        MailDestinationParentRow.Reader reader = MailDestinationParentRow.reader(rs);
+        while (rs.next()) {
+            parents.add(reader.read(rs));
+        }
+        rs.close();
+        return parents;
+    }
+
+    @Benchmark
+    public String mapRowsToJson() throws Exception {
+        return respond(mapRowsOnly());
+    }
+
+    @Benchmark
+    public String typedRowsToJson() throws Exception {
+        return respond(typedRowsOnly());
+    }
+
+    private String respond(List<?> parents) throws Exception {
+        Map<String, Object> response = new HashMap<>();
+        response.put("status", "success");
+        response.put("data", parents);
+        response.put("count", parents.size());
+        return objectMapper.writeValueAsString(response);
+    }
+
+    /**
+     * The handler's previous per-row mapping (kept here as the baseline)
+     */
+    private static Map<String, Object> mapResultSetToParent(ResultSet rs) throws SQLException {
+        Map<String, Object> parent = new HashMap<>();
+        parent.put("job_id", rs.getString("job_id"));
+        parent.put("office_cd", rs.getString("office_cd"));
+        parent.put("customer_cd", rs.getString("customer_cd"));
+        parent.put("chain_store_cd", rs.getString("chain_store_cd"));
+        parent.put("supplier_cd", rs.getString("supplier_cd"));
+        parent.put("order_branch_cd", rs.getString("order_branch_cd"));
+        parent.put("extend_cd", rs.getString("extend_cd"));
+        parent.put("destination_name", rs.getString("destination_name"));
+        parent.put("send_mode", rs.getString("send_mode"));
+        parent.put("search_file", rs.getString("search_file"));
+        parent.put("search_directory", rs.getString("search_directory"));
+        parent.put("send_directory", rs.getString("send_directory"));
+        parent.put("subject", rs.getString("subject"));
+        parent.put("body_file_path", rs.getString("body_file_path"));
+        parent.put("attachment_file_path", rs.getString("attachment_file_path"));
+        parent.put("mailing_list_id", rs.getString("mailing_list_id"));
+        parent.put("update_sys_div", rs.getString("update_sys_div"));
+        parent.put("importer_cd", rs.getString("importer_cd"));
+        parent.put("delete_flag", rs.getString("delete_flag"));
+        parent.put("created_by", rs.getString("created_by"));
+        parent.put("created_at", rs.getTimestamp("created_at"));
+        parent.put("updated_by", rs.getString("updated_by"));
+        parent.put("updated_at", rs.getTimestamp("updated_at"));
+        return parent;
+    }
+
+    /**
+     * Forward-only ResultSet over in-memory rows: next, findColumn, getString/getTimestamp/getInt
+     * by index or label. Labels go through a HashMap, as in PgJDBC's findColumn.
+     */
+    private static ResultSet resultSet(Object[][] rows) {
+        Map<String, Integer> labels = new HashMap<>();
+        for (int i = 0; i < PARENT_COLUMNS.length; i++) {
+            labels.put(PARENT_COLUMNS[i], i + 1);
+        }
+        int[] cursor = {-1};
+        return (ResultSet) Proxy.newProxyInstance(RowMappingBenchmark.class.getClassLoader(),
+                new Class<?>[] {ResultSet.class}, (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "next":
+                            return ++cursor[0] < rows.length;
+                        case "findColumn":
+                            return column(labels, args[0]);
+                        case "getString":
+                        case "getTimestamp":
+                            return rows[cursor[0]][column(labels, args[0]) - 1];
+                        case "getInt":
+                            return ((Number) rows[cursor[0]][column(labels, args[0]) - 1]).intValue();
+                        case "close":
+                            return null;
+                        default:
+                            throw new UnsupportedOperationException(method.getName());
+                    }
+                });
+    }
+
+    /**
+     * The stand-in ResultSet behind InstrumentedConnection, via a stand-in connection whose
+     * prepareStatement(...).executeQuery() returns it
+     */
+    private static ResultSet instrumented(Object[][] rows) throws SQLException {
+        ResultSet resultSet = resultSet(rows);
+        Object statement = Proxy.newProxyInstance(RowMappingBenchmark.class.getClassLoader(),
+                new Class<?>[] {PreparedStatement.class}, (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "executeQuery":
+                            return resultSet;
+                        case "close":
+                            return null;
+                        default:
+                            throw new UnsupportedOperationException(method.getName());
+                    }
+                });
+        Connection conn = (Connection) Proxy.newProxyInstance(RowMappingBenchmark.class.getClassLoader(),
+                new Class<?>[] {Connection.class}, (proxy, method, args) -> {
+                    if ("prepareStatement".equals(method.getName())) {
+                        return statement;
+                    }
+                    throw new UnsupportedOperationException(method.getName());
+                });
+        return InstrumentedConnection.wrap(conn)
+                .prepareStatement("SELECT * FROM mail_destination_parent_mst ORDER BY job_id")
+                .executeQuery();
+    }
+
+    private static int column(Map<String, Integer> labels, Object column) throws SQLException {
+        if (column instanceof Integer) {
+            return (Integer) column;
+        }
+        Integer index = labels.get(column);
+        if (index == null) {
+            throw new SQLException("The column name " + column + " was not found in this ResultSet.");
+        }
+        return index;
+    }
+}
@@ -0,0 +1,104 @@
+package com.nais.auth;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Claims of the caller authenticated by {@link AuthFilter} for the current request
+ * 認証済み呼び出し元 - リクエスト毎に一度だけ解析したクレーム (sub, email, groups, 呼び出し元システム)
+ */
+public final class AuthContext {
+
+    /** created_by / updated_by are VARCHAR(40) */
+    private static final int MAX_USER_ID_LENGTH = 40;
+
+    private final String subject;
+    private final String username;
+    private final String email;
+    private final List<String> groups;
+    private final String callingSystem;
+    private final boolean mock;
+    private final String userId;
+
+    AuthContext(String subject, String username, String email, List<String> groups,
+                String callingSystem, boolean mock) {
+        this.subject = subject;
+        this.username = username;
+        this.email = email;
+        this.groups = groups != null ? groups : Collections.emptyList();
+        this.callingSystem = callingSystem;
+        this.mock = mock;
+        this.userId = userId(username, email, subject);
+    }
+
+    /**
+     * The caller of the request on this thread, or null before {@link AuthFilter#authenticate}
+     * accepted it
+     */
+    public static AuthContext current() {
+        return AuthFilter.current();
+    }
+
+    /**
+     * Audit user (created_by / updated_by) of the current request; "API_USER" outside one
+     */
+    public static String currentUserId() {
+        AuthContext auth = AuthFilter.current();
+        return auth != null ? auth.userId : "API_USER";
+    }
+
+    /**
+     * Calling system of the current request; the deployment default outside one
+     */
+    public static String currentCallingSystem() {
+        AuthContext auth = AuthFilter.current();
+        return auth != null ? auth.callingSystem : AuthFilter.DEFAULT_CALLING_SYSTEM;
+    }
+
+    /**
+     * update_sys_div values the current request's calling system may modify
+     */
+    public static String[] currentAllowedUpdateSysDivs() {
+        return allowedUpdateSysDivs(currentCallingSystem());
+    }
+
+    /**
+     * update_sys_div values a calling system may modify
+     * 0: 制限なし (No restrictions) - any caller
+     * 1: 他システム連携のみ (Other system integration only) - OTHER_SYSTEM
+     * 2: 宛先サービスのみ (Destination service only) - DESTINATION_SERVICE
+     */
+    public static String[] allowedUpdateSysDivs(String callingSystem) {
+        if ("OTHER_SYSTEM".equals(callingSystem)) {
+            return new String[] {"0", "1"};
+        }
+        if ("DESTINATION_SERVICE".equals(callingSystem)) {
+            return new String[] {"0", "2"};
+        }
+        return new String[] {"0"};
+    }
+
+    public String getSubject() { return subject; }
+    public String getUsername() { return username; }
+    public String getEmail() { return email; }
+    public List<String> getGroups() { return groups; }
+    public String getCallingSystem() { return callingSystem; }
+    public boolean isMock() { return mock; }
+
+    /**
+     * username, else email, else sub - at most 40 characters
+     */
+    public String getUserId() { return userId; }
+
+    public boolean isInGroup(String group) {
+        return groups.contains(group);
+    }
+
+    private static String userId(String username, String email, String subject) {
+        String id = username != null && !username.isEmpty() ? username
+                : email != null && !email.isEmpty() ? email
+                : subject != null && !subject.isEmpty() ? subject
+                : "API_USER";
+        return id.length() > MAX_USER_ID_LENGTH ? id.substring(0, MAX_USER_ID_LENGTH) : id;
+    }
+}
@@ -0,0 +1,237 @@
+package com.nais.auth;
+
+import com.amazonaws.services.lambda.runtime.Context;
+import com.amazonaws.services.lambda.runtime.events.APIGatewayProxyRequestEvent;
+import com.auth0.jwt.JWT;
+import com.auth0.jwt.exceptions.JWTDecodeException;
+import com.auth0.jwt.exceptions.JWTVerificationException;
+import com.auth0.jwt.exceptions.TokenExpiredException;
+import com.auth0.jwt.interfaces.DecodedJWT;
+import com.nais.auth.jwt.CognitoJwtVerifier;
+import com.nais.auth.jwt.VerifiedToken;
+import com.nais.logging.StructuredLogger;
+import com.nais.metrics.RouteMetrics;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Authentication of API Gateway requests shared by all API handlers
+ * 共通認証フィルタ - トークンをリクエスト毎に一度だけ解析し、クレームを {@link AuthContext} として公開
+ *
+ * The token is the Bearer credential of the Authorization header, else X-Auth-Token (header
+ * names in any case). With AUTH_MODE=MOCK the legacy local rule applies (eyJ..., or containing
+ * "mock" / "dummy") and claims are read from the token when it is a JWT, without a signature
+ * check; otherwise the token goes to {@link CognitoJwtVerifier}. Tokens that cannot be a JWT
+ * (wrong part count, over MAX_TOKEN_LENGTH) are rejected before hashing or decoding.
+ *
+ * The calling system (update_sys_div permissions) is membership of the OTHER_SYSTEM /
+ * DESTINATION_SERVICE Cognito group, else CALLING_SYSTEM (API_SERVICE). Only pool admins
+ * assign groups; user attributes such as custom:calling_system are not read, since users can
+ * change their own attributes and access tokens do not carry them.
+ *
+ * Every call except priming counts one {@link Outcome} in this container ({@link #counts()})
+ * and tags the request's {@link RouteMetrics} record with authOutcome and AuthRejected.
+ */
+public final class AuthFilter {
+
+    /**
+     * Result of one authentication
+     */
+    public enum Outcome {
+        /** Verified Cognito token */
+        ACCEPTED,
+        /** Accepted by the AUTH_MODE=MOCK rule */
+        MOCK,
+        /** Neither Authorization: Bearer nor X-Auth-Token */
+        MISSING_TOKEN,
+        /** Not a JWT, or not decodable */
+        MALFORMED,
+        /** Signature, issuer, client or token_use rejected, or no issuer configured */
+        INVALID,
+        /** Valid signature but past exp */
+        EXPIRED
+    }
+
+    static final String DEFAULT_CALLING_SYSTEM = defaultCallingSystem();
+
+    private static final int MAX_TOKEN_LENGTH = 16 * 1024;
+    private static final String BEARER = "Bearer ";
+    private static final boolean MOCK_MODE = "MOCK".equalsIgnoreCase(System.getenv("AUTH_MODE"));
+    private static final String[] CALLING_SYSTEM_GROUPS = {"OTHER_SYSTEM", "DESTINATION_SERVICE"};
+
+    private static final StructuredLogger LOG = StructuredLogger.forService("auth-filter");
+    private static final ThreadLocal<AuthContext> CURRENT = new ThreadLocal<>();
+    private static final LongAdder[] COUNTS = new LongAdder[Outcome.values().length];
+
+    static {
+        for (int i = 0; i < COUNTS.length; i++) {
+            COUNTS[i] = new LongAdder();
+        }
+    }
+
+    private AuthFilter() {
+    }
+
+    /**
+     * Authenticate the request and bind its caller to this thread; null (nothing bound)
+     * when the request must be answered with 401. Priming requests (SnapStart, no token) are
+     * answered the same way but not counted.
+     */
+    public static AuthContext authenticate(APIGatewayProxyRequestEvent input, Context context) {
+        CURRENT.remove();
+        boolean counted = context == null || !"priming".equals(context.getAwsRequestId());
+        String token = token(input != null ? input.getHeaders() : null);
+        if (token == null) {
+            return reject(Outcome.MISSING_TOKEN, counted, "No valid Authorization header or X-Auth-Token header");
+        }
+        if (MOCK_MODE) {
+            if (!(token.startsWith("eyJ") || token.contains("mock") || token.contains("dummy"))) {
+                return reject(Outcome.INVALID, counted, "Mock mode: token is not a mock token");
+            }
+            return accept(Outcome.MOCK, counted, mockContext(token));
+        }
+        if (token.length() > MAX_TOKEN_LENGTH || !hasJwtShape(token)) {
+            return reject(Outcome.MALFORMED, counted, "Token is not a JWT");
+        }
+
+        try {
+            VerifiedToken verified = CognitoJwtVerifier.shared().verify(token);
+            return accept(Outcome.ACCEPTED, counted, new AuthContext(verified.getSubject(), verified.getUsername(),
+                    verified.getEmail(), verified.getGroups(), callingSystem(verified.getGroups()), false));
+        } catch (TokenExpiredException e) {
+            return reject(Outcome.EXPIRED, counted, "Token rejected: " + e.getMessage());
+        } catch (JWTDecodeException e) {
+            return reject(Outcome.MALFORMED, counted, "Token rejected: " + e.getMessage());
+        } catch (JWTVerificationException e) {
+            return reject(Outcome.INVALID, counted, "Token rejected: " + e.getMessage());
+        }
+    }
+
+    /**
+     * The caller bound by the last successful {@link #authenticate} on this thread
+     */
+    public static AuthContext current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * Authentications per outcome since this container started
+     */
+    public static Map<Outcome, Long> counts() {
+        Map<Outcome, Long> counts = new EnumMap<>(Outcome.class);
+        for (Outcome outcome : Outcome.values()) {
+            counts.put(outcome, COUNTS[outcome.ordinal()].sum());
+        }
+        return counts;
+    }
+
+    private static AuthContext accept(Outcome outcome, boolean counted, AuthContext auth) {
+        if (counted) {
+            record(outcome, true);
+        }
+        CURRENT.set(auth);
+        return auth;
+    }
+
+    private static AuthContext reject(Outcome outcome, boolean counted, String reason) {
+        if (counted) {
+            record(outcome, false);
+            LOG.info(reason);
+        }
+        return null;
+    }
+
+    private static void record(Outcome outcome, boolean accepted) {
+        COUNTS[outcome.ordinal()].increment();
+        RouteMetrics.Request request = RouteMetrics.current();
+        if (request != null) {
+            request.setAuthOutcome(outcome.name(), accepted);
+        }
+    }
+
+    /**
+     * Bearer credential of Authorization, else X-Auth-Token
+     */
+    private static String token(Map<String, String> headers) {
+        if (headers == null || headers.isEmpty()) {
+            return null;
+        }
+        String authHeader = header(headers, "Authorization", "authorization");
+        if (authHeader != null && authHeader.length() > BEARER.length()
+                && authHeader.regionMatches(true, 0, BEARER, 0, BEARER.length())) {
+            return authHeader.substring(BEARER.length());
+        }
+        String xAuthToken = header(headers, "X-Auth-Token", "x-auth-token");
+        return xAuthToken != null && !xAuthToken.isEmpty() ? xAuthToken : null;
+    }
+
+    /**
+     * API Gateway keeps the client's header case: the usual spellings first, then any case
+     */
+    private static String header(Map<String, String> headers, String name, String lowerName) {
+        String value = headers.get(name);
+        if (value == null) {
+            value = headers.get(lowerName);
+        }
+        if (value == null) {
+            for (Map.Entry<String, String> entry : headers.entrySet()) {
+                if (name.equalsIgnoreCase(entry.getKey())) {
+                    return entry.getValue();
+                }
+            }
+        }
+        return value;
+    }
+
+    /**
+     * header.payload.signature with non-empty header and payload
+     */
+    private static boolean hasJwtShape(String token) {
+        int first = token.indexOf('.');
+        if (first <= 0) {
+            return false;
+        }
+        int second = token.indexOf('.', first + 1);
+        return second > first + 1 && token.indexOf('.', second + 1) < 0;
+    }
+
+    /**
+     * Claims of a mock token that is a JWT (not verified), else a fixed local user
+     */
+    private static AuthContext mockContext(String token) {
+        if (hasJwtShape(token)) {
+            try {
+                DecodedJWT jwt = JWT.decode(token);
+                String username = jwt.getClaim("cognito:username").asString();
+                if (username == null) {
+                    username = jwt.getClaim("username").asString();
+                }
+                List<String> groups = jwt.getClaim("cognito:groups").asList(String.class);
+                groups = groups != null ? Collections.unmodifiableList(groups) : Collections.emptyList();
+                return new AuthContext(jwt.getSubject(), username, jwt.getClaim("email").asString(), groups,
+                        callingSystem(groups), true);
+            } catch (JWTDecodeException e) {
+                // not a JWT after all: fall through to the local user
+            }
+        }
+        return new AuthContext(null, "mock-user", null, Collections.emptyList(), DEFAULT_CALLING_SYSTEM, true);
+    }
+
+    private static String callingSystem(List<String> groups) {
+        for (String group : CALLING_SYSTEM_GROUPS) {
+            if (groups.contains(group)) {
+                return group;
+            }
+        }
+        return DEFAULT_CALLING_SYSTEM;
+    }
+
+    private static String defaultCallingSystem() {
+        String callingSystem = System.getenv("CALLING_SYSTEM");
+        return callingSystem != null && !callingSystem.isEmpty() ? callingSystem : "API_SERVICE";
+    }
+}
@@ -0,0 +1,253 @@
+package com.nais.auth.jwt;
+
+import com.auth0.jwk.UrlJwkProvider;
+import com.auth0.jwt.JWT;
+import com.auth0.jwt.JWTVerifier;
+import com.auth0.jwt.algorithms.Algorithm;
+import com.auth0.jwt.exceptions.JWTVerificationException;
+import com.auth0.jwt.exceptions.TokenExpiredException;
+import com.auth0.jwt.interfaces.DecodedJWT;
+import com.nais.logging.StructuredLogger;
+
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * RS256 verification of Cognito ID and access tokens with a cache of verified tokens
+ * Cognito JWT 検証 - JWKS署名検証 + 検証済みトークンキャッシュ (同じトークンはRSA検証を省略)
+ *
+ * A token is accepted when its RS256 signature matches a key of the user pool's JWKS
+ * ({@link JwksKeyCache}), iss is the pool, it has not expired, token_use is id or access and,
+ * when CLIENT_ID is set, aud (ID token) or client_id (access token) is that app client.
+ * Verified tokens are remembered by the SHA-256 of the token text until their exp, up to
+ * COGNITO_TOKEN_CACHE_SIZE (default 1024, least recently used dropped first), so a warm
+ * request with a known token costs one hash and a map lookup and no RSA work.
+ *
+ * Configuration: USER_POOL_ID and AWS_REGION give the issuer
+ * https://cognito-idp.{region}.amazonaws.com/{pool}; COGNITO_ISSUER overrides it (e.g. the
+ * LocalJwksServer stand-in of the tests). The JWKS is read from {issuer}/.well-known/jwks.json,
+ * refreshed in the background after COGNITO_JWKS_REFRESH_SECONDS (3600) and reloaded for an
+ * unknown kid at most every COGNITO_JWKS_KID_MISS_SECONDS (30). Without an issuer every
+ * token is rejected.
+ */
+public final class CognitoJwtVerifier {
+
+    private static final String DEFAULT_REGION = "ap-northeast-1";
+    private static final StructuredLogger LOG = StructuredLogger.forService("cognito-jwt");
+    private static final ThreadLocal<MessageDigest> SHA256 = ThreadLocal.withInitial(() -> {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    });
+
+    private final String issuer;
+    private final String clientId;
+    private final JwksKeyCache keys;
+    private final JWTVerifier verifier;
+    private final TokenCache verified;
+
+    public CognitoJwtVerifier(String issuer, String clientId, JwksKeyCache keys, int tokenCacheSize) {
+        this.issuer = issuer;
+        this.clientId = clientId;
+        this.keys = keys;
+        this.verifier = issuer != null
+                ? JWT.require(Algorithm.RSA256(keys)).withIssuer(issuer).build()
+                : null;
+        this.verified = new TokenCache(tokenCacheSize);
+    }
+
+    /**
+     * Verifier configured from the environment, created on first use
+     */
+    public static CognitoJwtVerifier shared() {
+        return Holder.INSTANCE;
+    }
+
+    public static CognitoJwtVerifier fromEnv() {
+        String issuer = System.getenv("COGNITO_ISSUER");
+        String userPoolId = System.getenv("USER_POOL_ID");
+        if ((issuer == null || issuer.isEmpty()) && userPoolId != null && !userPoolId.isEmpty()) {
+            String region = System.getenv("AWS_REGION");
+            issuer = "https://cognito-idp." + (region != null ? region : DEFAULT_REGION) + ".amazonaws.com/" + userPoolId;
+        }
+        if (issuer != null && issuer.isEmpty()) {
+            issuer = null;
+        }
+        String clientId = System.getenv("CLIENT_ID");
+
+        JwksKeyCache keys = null;
+        if (issuer != null) {
+            try {
+                UrlJwkProvider provider = new UrlJwkProvider(new URL(issuer + "/.well-known/jwks.json"), 2000, 2000);
+                keys = new JwksKeyCache(provider,
+                        envLong("COGNITO_JWKS_REFRESH_SECONDS", 3600L) * 1000L,
+                        envLong("COGNITO_JWKS_KID_MISS_SECONDS", 30L) * 1000L);
+            } catch (MalformedURLException e) {
+                LOG.warn("Invalid Cognito issuer URL: " + issuer);
+                issuer = null;
+            }
+        }
+        return new CognitoJwtVerifier(issuer, clientId != null && !clientId.isEmpty() ? clientId : null,
+                keys, (int) envLong("COGNITO_TOKEN_CACHE_SIZE", 1024L));
+    }
+
+    public boolean isConfigured() {
+        return verifier != null;
+    }
+
+    /**
+     * Verify a raw token (without "Bearer "), from the cache when it was verified before
+     *
+     * @throws JWTVerificationException when the token is not a valid, unexpired token of this pool
+     */
+    public VerifiedToken verify(String token) {
+        if (verifier == null) {
+            throw new JWTVerificationException("Cognito issuer is not configured (USER_POOL_ID / COGNITO_ISSUER)");
+        }
+        TokenKey key = TokenKey.of(token);
+        long now = System.currentTimeMillis();
+        VerifiedToken cached = verified.get(key);
+        if (cached != null) {
+            if (now < cached.getExpiresAtMillis()) {
+                return cached;
+            }
+            verified.remove(key);
+            throw new TokenExpiredException("The Token has expired", Instant.ofEpochMilli(cached.getExpiresAtMillis()));
+        }
+
+        DecodedJWT jwt = verifier.verify(token);
+        if (jwt.getExpiresAt() == null) {
+            throw new JWTVerificationException("Token has no exp claim");
+        }
+        String tokenUse = jwt.getClaim("token_use").asString();
+        String tokenClient;
+        if ("id".equals(tokenUse)) {
+            List<String> audience = jwt.getAudience();
+            tokenClient = audience != null && !audience.isEmpty() ? audience.get(0) : null;
+            if (clientId != null && (audience == null || !audience.contains(clientId))) {
+                throw new JWTVerificationException("Token audience is not this app client");
+            }
+        } else if ("access".equals(tokenUse)) {
+            tokenClient = jwt.getClaim("client_id").asString();
+            if (clientId != null && !clientId.equals(tokenClient)) {
+                throw new JWTVerificationException("Token client_id is not this app client");
+            }
+        } else {
+            throw new JWTVerificationException("Unexpected token_use: " + tokenUse);
+        }
+
+        VerifiedToken result = VerifiedToken.from(jwt, tokenUse, tokenClient);
+        verified.put(key, result);
+        return result;
+    }
+
+    public String getIssuer() {
+        return issuer;
+    }
+
+    /**
+     * Signing keys currently cached (0 before the first verification)
+     */
+    public int cachedKeyCount() {
+        return keys != null ? keys.size() : 0;
+    }
+
+    public int cachedTokenCount() {
+        return verified.size();
+    }
+
+    private static long envLong(String name, long defaultValue) {
+        String value = System.getenv(name);
+        if (value != null) {
+            try {
+                return Math.max(0L, Long.parseLong(value.trim()));
+            } catch (NumberFormatException e) {
+                // fall through to default
+            }
+        }
+        return defaultValue;
+    }
+
+    private static final class Holder {
+        private static final CognitoJwtVerifier INSTANCE = fromEnv();
+    }
+
+    /**
+     * First 128 bits of SHA-256(token): the cache never holds token text
+     */
+    private static final class TokenKey {
+        private final long high;
+        private final long low;
+
+        private TokenKey(long high, long low) {
+            this.high = high;
+            this.low = low;
+        }
+
+        static TokenKey of(String token) {
+            byte[] digest = SHA256.get().digest(token.getBytes(StandardCharsets.UTF_8));
+            long high = 0L;
+            long low = 0L;
+            for (int i = 0; i < 8; i++) {
+                high = (high << 8) | (digest[i] & 0xFF);
+                low = (low << 8) | (digest[i + 8] & 0xFF);
+            }
+            return new TokenKey(high, low);
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (!(other instanceof TokenKey)) {
+                return false;
+            }
+            TokenKey key = (TokenKey) other;
+            return high == key.high && low == key.low;
+        }
+
+        @Override
+        public int hashCode() {
+            return (int) (low ^ (low >>> 32));
+        }
+    }
+
+    /**
+     * Bounded LRU map of verified tokens
+     */
+    private static final class TokenCache {
+        private final Map<TokenKey, VerifiedToken> entries;
+
+        TokenCache(int maxEntries) {
+            this.entries = new LinkedHashMap<TokenKey, VerifiedToken>(Math.min(maxEntries, 1024) * 2, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<TokenKey, VerifiedToken> eldest) {
+                    return size() > maxEntries;
+                }
+            };
+        }
+
+        synchronized VerifiedToken get(TokenKey key) {
+            return entries.get(key);
+        }
+
+        synchronized void put(TokenKey key, VerifiedToken token) {
+            entries.put(key, token);
+        }
+
+        synchronized void remove(TokenKey key) {
+            entries.remove(key);
+        }
+
+        synchronized int size() {
+            return entries.size();
+        }
+    }
+}
@@ -0,0 +1,134 @@
+package com.nais.auth.jwt;
+
+import com.auth0.jwk.Jwk;
+import com.auth0.jwk.UrlJwkProvider;
+import com.auth0.jwt.interfaces.RSAKeyProvider;
+import com.nais.logging.StructuredLogger;
+
+import java.security.PublicKey;
+import java.security.interfaces.RSAPrivateKey;
+import java.security.interfaces.RSAPublicKey;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * In-memory copy of the user pool's signing keys (JWKS), keyed by kid
+ * JWKS公開鍵キャッシュ - 期限切れ時はバックグラウンド更新、未知の kid は間隔を空けて再取得
+ *
+ * The first lookup loads the key set synchronously. After refreshMillis the current keys keep
+ * being served while one daemon thread reloads them, so no request waits on the JWKS endpoint
+ * once the cache is warm. A kid that is not in the set (key rotation, or a forged header)
+ * triggers a synchronous reload at most once per kidMissIntervalMillis; other misses return
+ * null and the signature check fails. A failed reload keeps the previous keys and is retried
+ * after kidMissIntervalMillis.
+ */
+public final class JwksKeyCache implements RSAKeyProvider {
+
+    private static final StructuredLogger LOG = StructuredLogger.forService("cognito-jwt");
+
+    private final UrlJwkProvider provider;
+    private final long refreshMillis;
+    private final long kidMissIntervalMillis;
+
+    private final Object loadLock = new Object();
+    private final AtomicBoolean refreshing = new AtomicBoolean();
+    private final ExecutorService refresher = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "jwks-refresh");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private volatile Map<String, RSAPublicKey> keys = Collections.emptyMap();
+    private volatile long loadedAt;
+    private long lastForcedLoad;
+
+    public JwksKeyCache(UrlJwkProvider provider, long refreshMillis, long kidMissIntervalMillis) {
+        this.provider = provider;
+        this.refreshMillis = refreshMillis;
+        this.kidMissIntervalMillis = kidMissIntervalMillis;
+    }
+
+    @Override
+    public RSAPublicKey getPublicKeyById(String kid) {
+        if (loadedAt != 0L && System.currentTimeMillis() - loadedAt > refreshMillis) {
+            refreshInBackground();
+        }
+        RSAPublicKey key = kid != null ? keys.get(kid) : null;
+        if (key == null && kid != null) {
+            // Also the first lookup (empty set) and retries after a failed load
+            synchronized (loadLock) {
+                key = keys.get(kid);
+                long now = System.currentTimeMillis();
+                if (key == null && now - lastForcedLoad >= kidMissIntervalMillis) {
+                    lastForcedLoad = now;
+                    load();
+                    key = keys.get(kid);
+                }
+            }
+        }
+        return key;
+    }
+
+    @Override
+    public RSAPrivateKey getPrivateKey() {
+        return null;
+    }
+
+    @Override
+    public String getPrivateKeyId() {
+        return null;
+    }
+
+    /**
+     * Number of RSA signing keys currently cached
+     */
+    public int size() {
+        return keys.size();
+    }
+
+    private void refreshInBackground() {
+        if (refreshing.compareAndSet(false, true)) {
+            refresher.execute(() -> {
+                try {
+                    synchronized (loadLock) {
+                        if (System.currentTimeMillis() - loadedAt > refreshMillis) {
+                            load();
+                        }
+                    }
+                } finally {
+                    refreshing.set(false);
+                }
+            });
+        }
+    }
+
+    /**
+     * Replace the key set from the JWKS endpoint (caller holds loadLock)
+     */
+    private void load() {
+        try {
+            Map<String, RSAPublicKey> loaded = new HashMap<>();
+            for (Jwk jwk : provider.getAll()) {
+                if (!"RSA".equals(jwk.getType()) || (jwk.getUsage() != null && !"sig".equals(jwk.getUsage()))) {
+                    continue;
+                }
+                PublicKey key = jwk.getPublicKey();
+                if (key instanceof RSAPublicKey && jwk.getId() != null) {
+                    loaded.put(jwk.getId(), (RSAPublicKey) key);
+                }
+            }
+            keys = Collections.unmodifiableMap(loaded);
+            loadedAt = System.currentTimeMillis();
+        } catch (Exception e) {
+            LOG.warn("Could not load JWKS, keeping " + keys.size() + " cached keys: " + e.getMessage());
+            if (loadedAt != 0L) {
+                // Retry the background refresh after kidMissIntervalMillis, not on every request
+                loadedAt = System.currentTimeMillis() - refreshMillis + kidMissIntervalMillis;
+            }
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package com.nais.auth.jwt;
+
+import com.auth0.jwt.interfaces.DecodedJWT;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Claims of a Cognito token whose signature, issuer, expiry and client were checked
+ * 検証済みトークンのクレーム (sub, username, email, groups, client)
+ */
+public final class VerifiedToken {
+
+    private final String subject;
+    private final String username;
+    private final String email;
+    private final List<String> groups;
+    private final String clientId;
+    private final String tokenUse;
+    private final long expiresAtMillis;
+
+    VerifiedToken(String subject, String username, String email, List<String> groups,
+                  String clientId, String tokenUse, long expiresAtMillis) {
+        this.subject = subject;
+        this.username = username;
+        this.email = email;
+        this.groups = groups != null ? Collections.unmodifiableList(groups) : Collections.emptyList();
+        this.clientId = clientId;
+        this.tokenUse = tokenUse;
+        this.expiresAtMillis = expiresAtMillis;
+    }
+
+    static VerifiedToken from(DecodedJWT jwt, String tokenUse, String clientId) {
+        String username = jwt.getClaim("cognito:username").asString();
+        if (username == null) {
+            username = jwt.getClaim("username").asString();
+        }
+        return new VerifiedToken(
+                jwt.getSubject(),
+                username,
+                jwt.getClaim("email").asString(),
+                jwt.getClaim("cognito:groups").asList(String.class),
+                clientId,
+                tokenUse,
+                jwt.getExpiresAt().getTime());
+    }
+
+    public String getSubject() { return subject; }
+    public String getUsername() { return username; }
+    public String getEmail() { return email; }
+    public List<String> getGroups() { return groups; }
+    public String getClientId() { return clientId; }
+    public String getTokenUse() { return tokenUse; }
+    public long getExpiresAtMillis() { return expiresAtMillis; }
+}
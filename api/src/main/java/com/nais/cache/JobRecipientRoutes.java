@@ -0,0 +1,208 @@
+package com.nais.cache;
+
+import java.sql.Array;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Collection;
+import java.util.TreeSet;
+
+/**
+ * Denormalized job routing table (job_recipient_mv) maintenance
+ * ジョブ送信先マテリアライズテーブル - 親/子マスタ更新時に差分再計算
+ *
+ * One row per active parent destination with its active child addresses pre-aggregated
+ * as JSONB, so "who receives job X" is a primary-key prefix scan. Parent and child
+ * writers call {@link #refreshParent} / {@link #refreshMailingList} inside their own
+ * transaction; only the affected mailing lists are recomputed. Refreshes of the same
+ * mailing list are serialized with a transaction-scoped advisory lock so concurrent
+ * writers cannot leave a stale aggregate behind.
+ *
+ * Full rebuild (recovery): java -cp target/amplify-auth-lambda.jar com.nais.cache.JobRecipientRoutes rebuild
+ */
+public final class JobRecipientRoutes {
+
+    public static final String TABLE = "job_recipient_mv";
+
+    private static final boolean ENABLED = !"false".equalsIgnoreCase(System.getenv("JOB_RECIPIENT_MV_ENABLED"));
+
+    private static final String PARENT_KEY_WHERE =
+            "job_id = ? AND office_cd = ? AND customer_cd = ? AND chain_store_cd = ? " +
+            "AND supplier_cd = ? AND order_branch_cd = ? AND extend_cd = ?";
+
+    private static final String INSERT_SELECT =
+            "INSERT INTO job_recipient_mv (job_id, office_cd, customer_cd, chain_store_cd, supplier_cd, " +
+            "order_branch_cd, extend_cd, destination_name, send_mode, search_file, search_directory, " +
+            "send_directory, subject, body_file_path, attachment_file_path, mailing_list_id, update_sys_div, " +
+            "parent_updated_at, recipient_count, recipients, refreshed_at) " +
+            "SELECT p.job_id, p.office_cd, p.customer_cd, p.chain_store_cd, p.supplier_cd, " +
+            "p.order_branch_cd, p.extend_cd, p.destination_name, p.send_mode, p.search_file, p.search_directory, " +
+            "p.send_directory, p.subject, p.body_file_path, p.attachment_file_path, p.mailing_list_id, p.update_sys_div, " +
+            "p.updated_at, COALESCE(r.recipient_count, 0), COALESCE(r.recipients, '[]'::jsonb), CURRENT_TIMESTAMP " +
+            "FROM mail_destination_parent_mst p " +
+            "LEFT JOIN LATERAL (" +
+            "  SELECT count(*) AS recipient_count, " +
+            "         jsonb_agg(jsonb_build_object(" +
+            "           'destination_seq', d.destination_seq, " +
+            "           'destination_address', d.destination_address, " +
+            "           'destination_note', d.destination_note, " +
+            "           'status_div', d.status_div) ORDER BY d.destination_seq) AS recipients " +
+            "  FROM mail_destination_child_mst d " +
+            "  WHERE d.mailing_list_id = p.mailing_list_id AND d.status_div = '0'" +
+            ") r ON TRUE " +
+            "WHERE p.delete_flag = '0'";
+
+    private JobRecipientRoutes() {
+    }
+
+    /**
+     * Whether writers maintain and readers use job_recipient_mv (JOB_RECIPIENT_MV_ENABLED, default true)
+     */
+    public static boolean isEnabled() {
+        return ENABLED;
+    }
+
+    /**
+     * Recompute the row of one parent destination after it was inserted, updated or
+     * soft deleted. Covers a mailing_list_id change by locking both the previous and the
+     * current list. Must run inside the writer's transaction.
+     */
+    public static void refreshParent(Connection conn, String[] parentKey) throws SQLException {
+        if (!ENABLED) {
+            return;
+        }
+        TreeSet<String> mailingLists = new TreeSet<>();
+        collectMailingLists(conn, "SELECT mailing_list_id FROM job_recipient_mv WHERE " + PARENT_KEY_WHERE, parentKey, mailingLists);
+        collectMailingLists(conn, "SELECT mailing_list_id FROM mail_destination_parent_mst WHERE " + PARENT_KEY_WHERE, parentKey, mailingLists);
+        lockMailingLists(conn, mailingLists);
+
+        try (PreparedStatement delete = conn.prepareStatement("DELETE FROM job_recipient_mv WHERE " + PARENT_KEY_WHERE);
+             PreparedStatement insert = conn.prepareStatement(INSERT_SELECT + " AND p." + PARENT_KEY_WHERE.replace(" AND ", " AND p."))) {
+            setParentKey(delete, parentKey);
+            delete.executeUpdate();
+            setParentKey(insert, parentKey);
+            insert.executeUpdate();
+        }
+    }
+
+    /**
+     * Recompute every parent row routed to a mailing list after a child insert, update
+     * or soft delete. Must run inside the writer's transaction.
+     */
+    public static int refreshMailingList(Connection conn, String mailingListId) throws SQLException {
+        if (!ENABLED || mailingListId == null) {
+            return 0;
+        }
+        TreeSet<String> mailingLists = new TreeSet<>();
+        mailingLists.add(mailingListId);
+        lockMailingLists(conn, mailingLists);
+
+        try (PreparedStatement delete = conn.prepareStatement("DELETE FROM job_recipient_mv WHERE mailing_list_id = ?");
+             PreparedStatement insert = conn.prepareStatement(INSERT_SELECT + " AND p.mailing_list_id = ?")) {
+            delete.setString(1, mailingListId);
+            delete.executeUpdate();
+            insert.setString(1, mailingListId);
+            return insert.executeUpdate();
+        }
+    }
+
+    /**
+     * Set-based variant of {@link #refreshMailingList} for bulk writers: one DELETE and one
+     * INSERT ... SELECT for all lists. Must run inside the writer's transaction.
+     */
+    public static int refreshMailingLists(Connection conn, Collection<String> mailingListIds) throws SQLException {
+        if (!ENABLED || mailingListIds == null || mailingListIds.isEmpty()) {
+            return 0;
+        }
+        TreeSet<String> mailingLists = new TreeSet<>();
+        for (String mailingListId : mailingListIds) {
+            if (mailingListId != null) {
+                mailingLists.add(mailingListId);
+            }
+        }
+        lockMailingLists(conn, mailingLists);
+
+        Array lists = conn.createArrayOf("varchar", mailingLists.toArray());
+        try (PreparedStatement delete = conn.prepareStatement("DELETE FROM job_recipient_mv WHERE mailing_list_id = ANY(?)");
+             PreparedStatement insert = conn.prepareStatement(INSERT_SELECT + " AND p.mailing_list_id = ANY(?)")) {
+            delete.setArray(1, lists);
+            delete.executeUpdate();
+            insert.setArray(1, lists);
+            return insert.executeUpdate();
+        }
+    }
+
+    /**
+     * Rebuild the whole table from the parent/child masters in one transaction
+     */
+    public static int rebuild(Connection conn) throws SQLException {
+        boolean autoCommit = conn.getAutoCommit();
+        conn.setAutoCommit(false);
+        try (Statement stmt = conn.createStatement()) {
+            // Blocks incremental refreshes until the rebuild commits
+            stmt.execute("LOCK TABLE job_recipient_mv IN EXCLUSIVE MODE");
+            stmt.executeUpdate("DELETE FROM job_recipient_mv");
+            int rows = stmt.executeUpdate(INSERT_SELECT);
+            conn.commit();
+            return rows;
+        } catch (SQLException e) {
+            conn.rollback();
+            throw e;
+        } finally {
+            conn.setAutoCommit(autoCommit);
+        }
+    }
+
+    /**
+     * Recovery command: rebuild job_recipient_mv using DB_URL / DB_USER / DB_PASSWORD
+     */
+    public static void main(String[] args) throws Exception {
+        if (args.length != 1 || !"rebuild".equals(args[0])) {
+            System.err.println("Usage: java -cp amplify-auth-lambda.jar " + JobRecipientRoutes.class.getName() + " rebuild");
+            System.exit(2);
+        }
+        String dbUrl = System.getenv("DB_URL") != null ? System.getenv("DB_URL") : "jdbc:postgresql://localhost:5432/nais";
+        String dbUser = System.getenv("DB_USER") != null ? System.getenv("DB_USER") : "postgres";
+        String dbPassword = System.getenv("DB_PASSWORD") != null ? System.getenv("DB_PASSWORD") : "password";
+
+        long start = System.currentTimeMillis();
+        try (Connection conn = DriverManager.getConnection(dbUrl, dbUser, dbPassword)) {
+            int rows = rebuild(conn);
+            System.out.println("Rebuilt " + TABLE + ": " + rows + " rows in " + (System.currentTimeMillis() - start) + " ms");
+        }
+    }
+
+    private static void collectMailingLists(Connection conn, String sql, String[] parentKey, TreeSet<String> into) throws SQLException {
+        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+            setParentKey(stmt, parentKey);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    if (rs.getString(1) != null) {
+                        into.add(rs.getString(1));
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Take transaction-scoped advisory locks in sorted order (no lock-order deadlocks)
+     */
+    private static void lockMailingLists(Connection conn, TreeSet<String> mailingLists) throws SQLException {
+        try (PreparedStatement stmt = conn.prepareStatement("SELECT pg_advisory_xact_lock(hashtext('job_recipient_mv:' || ?))")) {
+            for (String mailingListId : mailingLists) {
+                stmt.setString(1, mailingListId);
+                stmt.executeQuery().close();
+            }
+        }
+    }
+
+    private static void setParentKey(PreparedStatement stmt, String[] parentKey) throws SQLException {
+        for (int i = 0; i < parentKey.length; i++) {
+            stmt.setString(i + 1, parentKey[i]);
+        }
+    }
+}
@@ -0,0 +1,214 @@
+package com.nais.cache;
+
+import com.amazonaws.services.lambda.runtime.events.APIGatewayProxyRequestEvent;
+import com.amazonaws.services.lambda.runtime.events.APIGatewayProxyResponseEvent;
+import com.nais.http.ResponseCompression;
+import com.nais.logging.StructuredLogger;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Savepoint;
+import java.sql.Timestamp;
+import java.util.Map;
+
+/**
+ * Per-table version counters backing ETag / If-None-Match for master data GETs
+ * マスタデータ版数管理 (master_data_version)
+ *
+ * Each master table has one row in master_data_version. Writers bump the row in the
+ * same transaction as their data change; readers check it with a single primary-key
+ * lookup and answer 304 without running the list query.
+ */
+public final class TableVersions {
+
+    public static final String CUSTOMER = "customer_mst";
+    public static final String MAIL_TO_CHILD = "mail_to_child_mst";
+    public static final String MAIL_API_CONFIG = "mail_api_config_mst";
+    public static final String MAIL_DESTINATION_PARENT = "mail_destination_parent_mst";
+    public static final String MAIL_DESTINATION_CHILD = "mail_destination_child_mst";
+
+    /** Returned when the version row cannot be read; callers then skip conditional handling */
+    public static final long UNVERSIONED = -1L;
+
+    private static final String SELECT_SQL =
+            "SELECT version FROM master_data_version WHERE table_name = ?";
+
+    private static final String BUMP_SQL =
+            "INSERT INTO master_data_version (table_name, version, updated_at) " +
+            "VALUES (?, 1, CURRENT_TIMESTAMP) " +
+            "ON CONFLICT (table_name) DO UPDATE SET " +
+            "version = master_data_version.version + 1, updated_at = CURRENT_TIMESTAMP " +
+            "RETURNING version";
+
+    private static final String MARK_RELOAD_SQL =
+            "UPDATE master_data_version SET reloaded_version = ?, reloaded_at = ? WHERE table_name = ?";
+
+    private static final String CACHE_CONTROL = buildCacheControl();
+    private static final String UNDEFINED_COLUMN = "42703";
+    private static final StructuredLogger LOG = StructuredLogger.forService("table-versions");
+
+    private TableVersions() {
+    }
+
+    /**
+     * Read the current version of a table (single-row index lookup)
+     */
+    public static long currentVersion(Connection conn, String tableName) {
+        try (PreparedStatement stmt = conn.prepareStatement(SELECT_SQL)) {
+            stmt.setString(1, tableName);
+            try (ResultSet rs = stmt.executeQuery()) {
+                return rs.next() ? rs.getLong(1) : 0L;
+            }
+        } catch (SQLException e) {
+            LOG.warn("Could not read master_data_version for " + tableName + ": " + e.getMessage());
+            return UNVERSIONED;
+        }
+    }
+
+    /**
+     * Increment the version of a table. Must run inside the writer's transaction so the
+     * new version becomes visible together with the data change.
+     */
+    public static long bump(Connection conn, String tableName) throws SQLException {
+        try (PreparedStatement stmt = conn.prepareStatement(BUMP_SQL)) {
+            stmt.setString(1, tableName);
+            try (ResultSet rs = stmt.executeQuery()) {
+                return rs.next() ? rs.getLong(1) : UNVERSIONED;
+            }
+        }
+    }
+
+    /**
+     * Record that a table was replaced wholesale at the given version, so the change feed
+     * reports one full_reload marker instead of every row. Runs under a savepoint in the
+     * writer's transaction; without the reload columns (change_feed_setup.sql) it only logs a
+     * warning, any other failure is thrown to the writer.
+     */
+    public static void markFullReload(Connection conn, String tableName, long version, Timestamp reloadedAt) throws SQLException {
+        Savepoint savepoint = conn.setSavepoint();
+        try (PreparedStatement stmt = conn.prepareStatement(MARK_RELOAD_SQL)) {
+            stmt.setLong(1, version);
+            stmt.setTimestamp(2, reloadedAt);
+            stmt.setString(3, tableName);
+            stmt.executeUpdate();
+            conn.releaseSavepoint(savepoint);
+        } catch (SQLException e) {
+            conn.rollback(savepoint);
+            if (!UNDEFINED_COLUMN.equals(e.getSQLState())) {
+                throw e;
+            }
+            LOG.warn("Full reload of " + tableName + " not recorded, run change_feed_setup.sql: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Build a strong ETag for the given table version, or null when unversioned
+     */
+    public static String etag(String tableName, long version) {
+        if (version == UNVERSIONED) {
+            return null;
+        }
+        return "\"" + tableName + "-v" + version + "\"";
+    }
+
+    /**
+     * Build a strong ETag for a response derived from several tables, or null when any
+     * of them is unversioned
+     */
+    public static String compositeEtag(String name, long... versions) {
+        StringBuilder tag = new StringBuilder("\"").append(name).append("-v");
+        for (int i = 0; i < versions.length; i++) {
+            if (versions[i] == UNVERSIONED) {
+                return null;
+            }
+            if (i > 0) {
+                tag.append('.');
+            }
+            tag.append(versions[i]);
+        }
+        return tag.append('"').toString();
+    }
+
+    /**
+     * Check the request's If-None-Match header against the current ETag
+     */
+    public static boolean isNotModified(APIGatewayProxyRequestEvent input, String etag) {
+        if (etag == null) {
+            return false;
+        }
+        String ifNoneMatch = getHeader(input.getHeaders(), "If-None-Match");
+        if (ifNoneMatch == null || ifNoneMatch.isEmpty()) {
+            return false;
+        }
+        for (String candidate : ifNoneMatch.split(",")) {
+            String tag = candidate.trim();
+            if (tag.startsWith("W/")) {
+                tag = tag.substring(2);
+            }
+            // A compressed response carried the same tag with an encoding suffix
+            if ("*".equals(tag) || etag.equals(tag) || etag.equals(ResponseCompression.identityEtag(tag))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Attach ETag and Cache-Control headers to a response (no-op when unversioned)
+     */
+    public static APIGatewayProxyResponseEvent withCacheHeaders(APIGatewayProxyResponseEvent response, String etag) {
+        if (etag != null && response.getHeaders() != null) {
+            response.getHeaders().put("ETag", etag);
+            response.getHeaders().put("Cache-Control", CACHE_CONTROL);
+            response.getHeaders().put("Access-Control-Expose-Headers", "ETag");
+        }
+        return response;
+    }
+
+    /**
+     * Turn a CORS response into a bodyless 304 Not Modified
+     */
+    public static APIGatewayProxyResponseEvent notModified(APIGatewayProxyResponseEvent corsResponse, String etag) {
+        corsResponse.setStatusCode(304);
+        corsResponse.setBody(null);
+        if (corsResponse.getHeaders() != null) {
+            corsResponse.getHeaders().remove("Content-Type");
+        }
+        return withCacheHeaders(corsResponse, etag);
+    }
+
+    private static String getHeader(Map<String, String> headers, String name) {
+        if (headers == null) {
+            return null;
+        }
+        String value = headers.get(name);
+        if (value != null) {
+            return value;
+        }
+        for (Map.Entry<String, String> entry : headers.entrySet()) {
+            if (name.equalsIgnoreCase(entry.getKey())) {
+                return entry.getValue();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Master data changes about once a day, so clients may reuse a response for
+     * MASTER_DATA_CACHE_MAX_AGE seconds (default 0) and must revalidate afterwards.
+     */
+    private static String buildCacheControl() {
+        String maxAge = System.getenv("MASTER_DATA_CACHE_MAX_AGE");
+        int seconds = 0;
+        if (maxAge != null) {
+            try {
+                seconds = Math.max(0, Integer.parseInt(maxAge.trim()));
+            } catch (NumberFormatException e) {
+                seconds = 0;
+            }
+        }
+        return "private, max-age=" + seconds + ", must-revalidate";
+    }
+}
@@ -0,0 +1,160 @@
+package com.nais.handlers;
+
+import com.amazonaws.services.lambda.runtime.Context;
+import com.amazonaws.services.lambda.runtime.RequestHandler;
+import com.amazonaws.services.lambda.runtime.events.APIGatewayProxyRequestEvent;
+import com.amazonaws.services.lambda.runtime.events.APIGatewayProxyResponseEvent;
+import com.nais.http.PathRouter;
+import com.nais.lifecycle.Priming;
+import org.crac.Resource;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Unified API entry point (optional single-function deployment)
+ * 統合APIエントリポイント - マスタ系RESTハンドラを1つのLambdaで処理
+ *
+ * Routes every REST path through a precompiled {@link PathRouter} trie to the existing
+ * handlers, filling pathParameters / resource the way API Gateway would for a
+ * per-resource integration. Handlers are created on first use and then reused, so one
+ * warm container serves all endpoints. Enabled with the FrontController=true parameter of
+ * template.yaml; with the default (false) each resource keeps invoking its own function.
+ * /auth stays on AmplifyAuthFunction, which carries the Cognito / Secrets Manager access.
+ * Under SnapStart every handler is created during init so all of them are in the snapshot.
+ */
+public class ApiFrontController implements RequestHandler<APIGatewayProxyRequestEvent, APIGatewayProxyResponseEvent>, Resource {
+
+    private final PathRouter<Route> router = new PathRouter<>();
+    private final List<Route> routes = new ArrayList<>();
+
+    public ApiFrontController() {
+        Route customer = new Route(CustomerHandler::new);
+        Route mailToChild = new Route(MailToChildHandler::new);
+        Route mailApiConfig = new Route(MailApiConfigHandler::new);
+        Route parent = new Route(MailDestinationParentHandler::new);
+        Route child = new Route(MailDestinationChildHandler::new);
+        Route jobRecipients = new Route(JobRecipientsHandler::new);
+        Route changeFeed = new Route(ChangeFeedHandler::new);
+        Route history = new Route(HistoryHandler::new);
+        routes.add(customer);
+        routes.add(mailToChild);
+        routes.add(mailApiConfig);
+        routes.add(parent);
+        routes.add(child);
+        routes.add(jobRecipients);
+        routes.add(changeFeed);
+        routes.add(history);
+
+        router.add("/customer", customer)
+              .add("/customer/search", customer)
+              .add("/customer/batch-get", customer)
+              .add("/customer/{code}", customer)
+              .add("/mail-to-child", mailToChild)
+              .add("/mail-to-child/{mailing_list_id}", mailToChild)
+              .add("/mail-api-config", mailApiConfig)
+              .add("/mail-api-config/{job_id}", mailApiConfig)
+              .add("/mail-destination-parent", parent)
+              .add("/mail-destination-parent/bulk-delete", parent)
+              .add("/mail-destination-parent/{key}", parent)
+              .add("/mail-destination-child", child)
+              .add("/mail-destination-child/bulk", child)
+              .add("/mail-destination-child/bulk-status", child)
+              .add("/mail-destination-child/{mailing_list_id}", child)
+              .add("/mail-destination-child/{mailing_list_id}/{destination_seq}", child)
+              .add("/jobs/{job_id}/recipients", jobRecipients)
+              .add("/changes", changeFeed)
+              .add("/history", history);
+
+        if ("snap-start".equals(System.getenv("AWS_LAMBDA_INITIALIZATION_TYPE"))) {
+            // Handlers register their own priming hooks when created
+            for (Route route : routes) {
+                route.handler();
+            }
+        }
+        Priming.register(this);
+    }
+
+    /**
+     * SnapStart: resolve a request for each route through the trie (handlers prime themselves)
+     */
+    @Override
+    public void beforeCheckpoint(org.crac.Context<? extends Resource> context) {
+        String[] paths = {
+            "/customer", "/customer/search", "/customer/0001-0002", "/mail-to-child/ML0001",
+            "/mail-api-config/JOB001", "/mail-destination-parent", "/mail-destination-child/ML0001/1",
+            "/jobs/JOB001/recipients", "/changes", "/history", "/unknown"
+        };
+        for (String path : paths) {
+            handleRequest(Priming.request("OPTIONS", path), Priming.context());
+        }
+    }
+
+    @Override
+    public void afterRestore(org.crac.Context<? extends Resource> context) {
+    }
+
+    @Override
+    public APIGatewayProxyResponseEvent handleRequest(APIGatewayProxyRequestEvent input, Context context) {
+        PathRouter.Match<Route> match = router.match(input.getPath());
+        if (match == null) {
+            return notFound();
+        }
+
+        // Fill in the parameters a per-resource integration provides (needed when invoked
+        // through a proxy resource or directly)
+        Map<String, String> pathParameters = new HashMap<>();
+        if (input.getPathParameters() != null) {
+            pathParameters.putAll(input.getPathParameters());
+        }
+        pathParameters.putAll(match.getPathParameters());
+        input.setPathParameters(pathParameters);
+        input.setResource(match.getTemplate());
+
+        return match.getTarget().handler().handleRequest(input, context);
+    }
+
+    private APIGatewayProxyResponseEvent notFound() {
+        APIGatewayProxyResponseEvent response = new APIGatewayProxyResponseEvent();
+        response.setStatusCode(404);
+
+        Map<String, String> headers = new HashMap<>();
+        headers.put("Access-Control-Allow-Origin", "*");
+        headers.put("Access-Control-Allow-Headers", "Content-Type,X-Amz-Date,Authorization,X-Api-Key,X-Amz-Security-Token");
+        headers.put("Access-Control-Allow-Methods", "GET,POST,PUT,DELETE,OPTIONS");
+        headers.put("Content-Type", "application/json");
+        response.setHeaders(headers);
+
+        response.setBody("{\"error\":\"Not Found\",\"message\":\"Endpoint not found\"}");
+        return response;
+    }
+
+    /**
+     * Lazily created, then shared handler instance (cold start only pays for handlers in use)
+     */
+    private static final class Route {
+        private final Supplier<RequestHandler<APIGatewayProxyRequestEvent, APIGatewayProxyResponseEvent>> factory;
+        private volatile RequestHandler<APIGatewayProxyRequestEvent, APIGatewayProxyResponseEvent> handler;
+
+        Route(Supplier<RequestHandler<APIGatewayProxyRequestEvent, APIGatewayProxyResponseEvent>> factory) {
+            this.factory = factory;
+        }
+
+        RequestHandler<APIGatewayProxyRequestEvent, APIGatewayProxyResponseEvent> handler() {
+            RequestHandler<APIGatewayProxyRequestEvent, APIGatewayProxyResponseEvent> current = handler;
+            if (current == null) {
+                synchronized (this) {
+                    current = handler;
+                    if (current == null) {
+                        current = factory.get();
+                        handler = current;
+                    }
+                }
+            }
+            return current;
+        }
+    }
+}
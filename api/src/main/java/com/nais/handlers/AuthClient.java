@@ -3,6 +3,7 @@ package com.nais.handlers;
 import com.amazonaws.services.lambda.runtime.Context;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.nais.lifecycle.InitOrchestrator;
 import software.amazon.awssdk.services.cognitoidentityprovider.CognitoIdentityProviderClient;
 import software.amazon.awssdk.services.secretsmanager.SecretsManagerClient;
 import software.amazon.awssdk.regions.Region;
@@ -13,8 +14,8 @@ import software.amazon.awssdk.http.urlconnection.UrlConnectionHttpClient;
  * Provides a simplified interface for authentication operations
  */
 public class AuthClient {
-    private final CognitoIdentityProviderClient cognitoClient;
-    private final SecretsManagerClient secretsClient;
+    private final InitOrchestrator.Deferred<CognitoIdentityProviderClient> cognitoClient;
+    private final InitOrchestrator.Deferred<SecretsManagerClient> secretsClient;
     private final ObjectMapper objectMapper;
     private final AuthConfig config;
     private final Context lambdaContext;
@@ -23,16 +24,20 @@ public class AuthClient {
         this.lambdaContext = context;
         this.config = new AuthConfig();
         
-        this.cognitoClient = CognitoIdentityProviderClient.builder()
-                .region(Region.of(config.getAwsRegion()))
+        Region region = Region.of(config.getAwsRegion());
+
+        // Cognito is used by every token flow: build it in the background right away.
+        // The Secrets Manager client is only needed for the app client secret: build on first use.
+        this.cognitoClient = InitOrchestrator.start("cognito-client", () -> CognitoIdentityProviderClient.builder()
+                .region(region)
                 .httpClient(UrlConnectionHttpClient.builder().build())
-                .build();
-                
-        this.secretsClient = SecretsManagerClient.builder()
-                .region(Region.of(config.getAwsRegion()))
+                .build());
+
+        this.secretsClient = InitOrchestrator.lazy("auth-secrets-client", () -> SecretsManagerClient.builder()
+                .region(region)
                 .httpClient(UrlConnectionHttpClient.builder().build())
-                .build();
-                
+                .build());
+
         this.objectMapper = new ObjectMapper();
         this.objectMapper.registerModule(new JavaTimeModule());
     }
@@ -52,13 +57,21 @@ public class AuthClient {
     }
 
 
+    /**
+     * Release the SDK clients (SnapStart: before the snapshot is taken)
+     */
+    public void close() {
+        cognitoClient.ifCreated(CognitoIdentityProviderClient::close);
+        secretsClient.ifCreated(SecretsManagerClient::close);
+    }
+
     // Package-private getters for internal use
     CognitoIdentityProviderClient getCognitoClient() { 
-        return cognitoClient; 
+        return cognitoClient.get(); 
     }
     
     SecretsManagerClient getSecretsClient() { 
-        return secretsClient; 
+        return secretsClient.get(); 
     }
     
     ObjectMapper getObjectMapper() { 
@@ -8,6 +8,12 @@ import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.nais.auth.services.WorkspaceAuthService;
 import com.nais.auth.validators.EmailValidationResult;
+import com.nais.http.ResponseCompression;
+import com.nais.lifecycle.InitOrchestrator;
+import com.nais.lifecycle.Priming;
+import com.nais.lifecycle.StartupProfile;
+import com.nais.metrics.RouteMetrics;
+import org.crac.Resource;
 
 import software.amazon.awssdk.services.secretsmanager.SecretsManagerClient;
 import software.amazon.awssdk.http.urlconnection.UrlConnectionHttpClient;
@@ -27,12 +33,14 @@ import java.net.HttpURLConnection;
 /**
  * AuthHandler implementing proper OAuth 2.0 flow with Google Workspace validation
  */
-public class AuthHandler implements RequestHandler<APIGatewayProxyRequestEvent, APIGatewayProxyResponseEvent> {
+public class AuthHandler implements RequestHandler<APIGatewayProxyRequestEvent, APIGatewayProxyResponseEvent>, Resource {
     
     // Static initializer to set the default HTTP client for AWS SDK
     static {
-        System.setProperty("software.amazon.awssdk.http.service.impl", 
-                         "software.amazon.awssdk.http.urlconnection.UrlConnectionSdkHttpService");
+        try (StartupProfile.Phase phase = StartupProfile.phase("sdk-http-service-property")) {
+            System.setProperty("software.amazon.awssdk.http.service.impl",
+                             "software.amazon.awssdk.http.urlconnection.UrlConnectionSdkHttpService");
+        }
     }
 
     private AuthClient authClient;
@@ -40,28 +48,112 @@ public class AuthHandler implements RequestHandler<APIGatewayProxyRequestEvent,
     private WorkspaceAuthService workspaceAuthService;
     private SecretsManagerClient secretsManagerClient;
 
+    // Components being built in the background since init (see startComponents)
+    private InitOrchestrator.Deferred<SecretsManagerClient> pendingSecretsManagerClient;
+    private InitOrchestrator.Deferred<AuthClient> pendingAuthClient;
+    private InitOrchestrator.Deferred<WorkspaceAuthService> pendingWorkspaceAuthService;
+
     public AuthHandler() {
-        this.objectMapper = new ObjectMapper();
-        // Only initialize SecretsManagerClient if needed (not in local/mock mode)
-        String authMode = System.getenv("AUTH_MODE");
-        if (!"MOCK".equalsIgnoreCase(authMode)) {
-            try {
-                this.secretsManagerClient = SecretsManagerClient.builder()
-                    .httpClient(UrlConnectionHttpClient.builder().build())
-                    .build();
-            } catch (Exception e) {
-                System.err.println("Warning: Could not initialize SecretsManagerClient: " + e.getMessage());
-                this.secretsManagerClient = null;
+        // A SnapStart snapshot must not hold the workspace secret: components start after restore
+        if (!"snap-start".equals(System.getenv("AWS_LAMBDA_INITIALIZATION_TYPE"))) {
+            startComponents();
+        }
+        try (StartupProfile.Phase phase = StartupProfile.phase("object-mapper")) {
+            this.objectMapper = new ObjectMapper();
+        }
+        Priming.register(this);
+    }
+
+    /**
+     * Build the SDK clients and read the workspace secret concurrently, overlapping with the
+     * rest of init instead of running serially on the first request
+     */
+    private void startComponents() {
+        InitOrchestrator.Deferred<SecretsManagerClient> secrets =
+                InitOrchestrator.start("secrets-manager-client", this::createSecretsManagerClient);
+        this.pendingSecretsManagerClient = secrets;
+        this.pendingAuthClient = InitOrchestrator.start("auth-client", () -> new AuthClient(Priming.context()));
+        // EmailValidator reads the workspace secret in its constructor
+        this.pendingWorkspaceAuthService = InitOrchestrator.start("workspace-auth-service", () -> {
+            SecretsManagerClient client = secrets.get();
+            if (client == null) {
+                return new MockWorkspaceAuthService(Priming.context());
             }
-        } else {
-            this.secretsManagerClient = null;
+            return new WorkspaceAuthService(client, System.getenv("SECRET_NAME"), Priming.context());
+        });
+    }
+
+    /**
+     * Only initialize SecretsManagerClient if needed (not in local/mock mode)
+     */
+    private SecretsManagerClient createSecretsManagerClient() {
+        String authMode = System.getenv("AUTH_MODE");
+        if ("MOCK".equalsIgnoreCase(authMode)) {
+            return null;
+        }
+        try {
+            return SecretsManagerClient.builder()
+                .httpClient(UrlConnectionHttpClient.builder().build())
+                .build();
+        } catch (Exception e) {
+            System.err.println("Warning: Could not initialize SecretsManagerClient: " + e.getMessage());
+            return null;
         }
     }
 
+    /**
+     * SnapStart: build the SDK clients and the mock workspace service so their classes are
+     * loaded in the snapshot, then release them - no connection or secret is snapshotted.
+     * The real WorkspaceAuthService is not built here: its EmailValidator reads the secret.
+     */
+    @Override
+    public void beforeCheckpoint(org.crac.Context<? extends Resource> context) throws Exception {
+        synchronized (this) {
+            secretsManagerClient = createSecretsManagerClient();
+            authClient = new AuthClient(Priming.context());
+            workspaceAuthService = new MockWorkspaceAuthService(Priming.context());
+        }
+        handleRequest(Priming.request("OPTIONS", "/auth/health"), Priming.context());
+        objectMapper.readTree(objectMapper.writeValueAsString(Priming.sampleResponse("email", "name", "domain")));
+
+        if (authClient != null) {
+            authClient.close();
+        }
+        if (secretsManagerClient != null) {
+            secretsManagerClient.close();
+        }
+        authClient = null;
+        workspaceAuthService = null;
+        secretsManagerClient = null;
+        pendingSecretsManagerClient = null;
+        pendingAuthClient = null;
+        pendingWorkspaceAuthService = null;
+    }
+
+    /**
+     * SnapStart: new SDK clients per restored environment and a fresh read of the workspace
+     * secret, started in the background so the restore itself is not delayed
+     */
+    @Override
+    public void afterRestore(org.crac.Context<? extends Resource> context) {
+        startComponents();
+    }
+
     @Override
     public APIGatewayProxyResponseEvent handleRequest(APIGatewayProxyRequestEvent input, Context context) {
+        StartupProfile.beforeInvoke();
+        RouteMetrics.begin(input, context);
+        try {
+            return RouteMetrics.end("auth-api", dispatch(input, context));
+        } finally {
+            StartupProfile.afterInvoke("auth-api");
+        }
+    }
+
+    private APIGatewayProxyResponseEvent dispatch(APIGatewayProxyRequestEvent input, Context context) {
         try {
             initializeComponents(context);
+            ResponseCompression.decodeRequestBody(input);
             
             String path = input.getPath();
             String httpMethod = input.getHttpMethod();
@@ -77,17 +169,25 @@ public class AuthHandler implements RequestHandler<APIGatewayProxyRequestEvent,
         }
     }
 
-    private void initializeComponents(Context context) {
+    private synchronized void initializeComponents(Context context) {
         if (authClient == null) {
-            this.authClient = new AuthClient(context);
-            
-            String secretName = System.getenv("SECRET_NAME");
+            if (pendingAuthClient == null) {
+                startComponents();
+            }
+            try {
+                this.secretsManagerClient = pendingSecretsManagerClient.get();
+                this.workspaceAuthService = pendingWorkspaceAuthService.get();
+                this.authClient = pendingAuthClient.get();
+            } catch (RuntimeException e) {
+                // Start over on the next request instead of rethrowing the same failure
+                pendingAuthClient = null;
+                throw e;
+            }
+
             if (secretsManagerClient != null) {
-                this.workspaceAuthService = new WorkspaceAuthService(secretsManagerClient, secretName, context);
                 context.getLogger().log("AuthHandler initialized with proper OAuth flow and workspace validation");
             } else {
-                // Create a mock workspace service for local development
-                this.workspaceAuthService = new MockWorkspaceAuthService(context);
+                // Mock workspace service for local development
                 context.getLogger().log("AuthHandler initialized with mock workspace service for local development");
             }
         }
@@ -243,7 +343,7 @@ public class AuthHandler implements RequestHandler<APIGatewayProxyRequestEvent,
             APIGatewayProxyResponseEvent response = new APIGatewayProxyResponseEvent();
             response.setStatusCode(200); // Use 200 instead of 302 to avoid CORS issues
             response.setHeaders(getResponseHeaders()); // Use standard CORS headers
-            response.setBody(objectMapper.writeValueAsString(responseBody));
+            response.setBody(RouteMetrics.toJson(objectMapper, responseBody));
             
             context.getLogger().log("Google OAuth initiation successful with workspace validation enabled");
             
@@ -889,7 +989,7 @@ public class AuthHandler implements RequestHandler<APIGatewayProxyRequestEvent,
             APIGatewayProxyResponseEvent response = new APIGatewayProxyResponseEvent();
             response.setStatusCode(200);
             response.setHeaders(getResponseHeaders());
-            response.setBody(objectMapper.writeValueAsString(responseBody));
+            response.setBody(RouteMetrics.toJson(objectMapper, responseBody));
             
             return response;
             
@@ -934,7 +1034,7 @@ public class AuthHandler implements RequestHandler<APIGatewayProxyRequestEvent,
             APIGatewayProxyResponseEvent apiResponse = new APIGatewayProxyResponseEvent();
             apiResponse.setStatusCode(200);
             apiResponse.setHeaders(getResponseHeaders());
-            apiResponse.setBody(objectMapper.writeValueAsString(response));
+            apiResponse.setBody(RouteMetrics.toJson(objectMapper, response));
             
             return apiResponse;
             
@@ -1017,7 +1117,7 @@ public class AuthHandler implements RequestHandler<APIGatewayProxyRequestEvent,
             APIGatewayProxyResponseEvent response = new APIGatewayProxyResponseEvent();
             response.setStatusCode(200);
             response.setHeaders(getResponseHeaders());
-            response.setBody(objectMapper.writeValueAsString(responseBody));
+            response.setBody(RouteMetrics.toJson(objectMapper, responseBody));
             
             context.getLogger().log("Hybrid authentication initiated");
             return response;
@@ -1050,7 +1150,7 @@ public class AuthHandler implements RequestHandler<APIGatewayProxyRequestEvent,
             APIGatewayProxyResponseEvent response = new APIGatewayProxyResponseEvent();
             response.setStatusCode(200);
             response.setHeaders(getResponseHeaders());
-            response.setBody(objectMapper.writeValueAsString(responseBody));
+            response.setBody(RouteMetrics.toJson(objectMapper, responseBody));
             
             context.getLogger().log("Mock authentication initiated");
             return response;
@@ -1137,7 +1237,7 @@ public class AuthHandler implements RequestHandler<APIGatewayProxyRequestEvent,
             APIGatewayProxyResponseEvent apiResponse = new APIGatewayProxyResponseEvent();
             apiResponse.setStatusCode(200);
             apiResponse.setHeaders(getResponseHeaders());
-            apiResponse.setBody(objectMapper.writeValueAsString(response));
+            apiResponse.setBody(RouteMetrics.toJson(objectMapper, response));
             
             return apiResponse;
             
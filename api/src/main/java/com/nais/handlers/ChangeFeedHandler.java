@@ -0,0 +1,708 @@
+package com.nais.handlers;
+
+import com.amazonaws.services.lambda.runtime.Context;
+import com.amazonaws.services.lambda.runtime.RequestHandler;
+import com.amazonaws.services.lambda.runtime.events.APIGatewayProxyRequestEvent;
+import com.amazonaws.services.lambda.runtime.events.APIGatewayProxyResponseEvent;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.nais.auth.AuthFilter;
+import com.nais.cache.TableVersions;
+import com.nais.http.ResponseCompression;
+import com.nais.http.StreamingResponse;
+import com.nais.jdbc.InstrumentedConnection;
+import com.nais.lifecycle.Priming;
+import com.nais.lifecycle.StartupProfile;
+import com.nais.logging.StructuredLogger;
+import com.nais.metrics.RouteMetrics;
+import com.nais.rows.CustomerRow;
+import com.nais.rows.MailDestinationChildRow;
+import com.nais.rows.MailDestinationParentRow;
+import org.crac.Resource;
+import software.amazon.lambda.powertools.logging.Logging;
+import software.amazon.lambda.powertools.tracing.Tracing;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Master Data Change Feed API Handler
+ * マスタデータ差分取得API - カーソル以降の追加・更新・論理削除行を返却
+ *
+ * GET /changes?since=&lt;cursor&gt;&amp;tables=customer_mst,mail_destination_parent_mst&amp;limit=500
+ * replaces polling of the full /customer and /mail-destination-parent lists. Each table is
+ * read with a keyset scan on (updated_at, primary key) backed by the indexes in
+ * change_feed_setup.sql; the opaque cursor carries the last position per table.
+ *
+ * Writers take updated_at from the application clock at statement time, not at commit, so a
+ * row can become visible after the cursor has moved past its updated_at (a transaction that
+ * commits late, or a writer whose clock is behind). Each page is read in one REPEATABLE READ
+ * snapshot, which the cursor keeps per table. The next page also returns the rows behind the
+ * cursor, within CHANGE_FEED_LATE_WINDOW_SECONDS (900), whose writing transaction was not
+ * visible in that snapshot. More than MAX_LIMIT such rows turn into a full_reload marker.
+ * Rows are served up to now - CHANGE_FEED_LAG_SECONDS, which only keeps those re-reads rare.
+ * A customer master replacement is reported as one full_reload marker (re-fetch GET /customer)
+ * instead of its rows. Without since, every requested table starts with a full_reload marker
+ * at its current version.
+ */
+public class ChangeFeedHandler implements RequestHandler<APIGatewayProxyRequestEvent, APIGatewayProxyResponseEvent>, Resource {
+
+    private static final StructuredLogger LOG = StructuredLogger.forService("change-feed-api");
+    private static final int DEFAULT_LIMIT = 500;
+    private static final int MAX_LIMIT = 5000;
+    private static final long LAG_MILLIS = getSecondsEnv("CHANGE_FEED_LAG_SECONDS", 5) * 1000L;
+    private static final long LATE_WINDOW_MILLIS = getSecondsEnv("CHANGE_FEED_LATE_WINDOW_SECONDS", 900) * 1000L;
+
+    /**
+     * 64-bit id of the transaction that wrote the row version: xmin is 32 bits, so it takes
+     * the epoch of the reading snapshot's xmax (parameters: epoch base, epoch base, xmax)
+     */
+    private static final String ROW_TXID =
+            "(? + xmin::text::bigint - CASE WHEN ? + xmin::text::bigint > ? THEN 4294967296 ELSE 0 END)";
+
+    private static final String OP_INSERT = "insert";
+    private static final String OP_UPDATE = "update";
+    private static final String OP_DELETE = "delete";
+    private static final String OP_FULL_RELOAD = "full_reload";
+
+    private static final Map<String, FeedTable> TABLES = new LinkedHashMap<>();
+
+    static {
+        TABLES.put(TableVersions.CUSTOMER, new FeedTable(TableVersions.CUSTOMER,
+                "office_cd, customer_cd, normal_name_kanji, chain_store_cd, chain_store_subcd, " +
+                "created_by, created_at, updated_by, updated_at",
+                new String[] {"office_cd", "customer_cd"},
+                rs -> {
+                    CustomerRow.Reader reader = CustomerRow.reader(rs);
+                    return row -> {
+                        CustomerRow customer = reader.read(row);
+                        return new Change(TableVersions.CUSTOMER, op(customer.getCreatedAt(), customer.getUpdatedAt(), false),
+                                customer.getUpdatedAt(), new Object[] {customer.getOfficeCd(), customer.getCustomerCd()}, customer);
+                    };
+                }));
+        TABLES.put(TableVersions.MAIL_DESTINATION_PARENT, new FeedTable(TableVersions.MAIL_DESTINATION_PARENT,
+                "job_id, office_cd, customer_cd, chain_store_cd, supplier_cd, order_branch_cd, extend_cd, " +
+                "destination_name, send_mode, search_file, search_directory, send_directory, subject, " +
+                "body_file_path, attachment_file_path, mailing_list_id, update_sys_div, importer_cd, delete_flag, " +
+                "created_by, created_at, updated_by, updated_at",
+                new String[] {"job_id", "office_cd", "customer_cd", "chain_store_cd", "supplier_cd", "order_branch_cd", "extend_cd"},
+                rs -> {
+                    MailDestinationParentRow.Reader reader = MailDestinationParentRow.reader(rs);
+                    return row -> {
+                        MailDestinationParentRow parent = reader.read(row);
+                        return new Change(TableVersions.MAIL_DESTINATION_PARENT,
+                                op(parent.getCreatedAt(), parent.getUpdatedAt(), "1".equals(parent.getDeleteFlag())),
+                                parent.getUpdatedAt(),
+                                new Object[] {parent.getJobId(), parent.getOfficeCd(), parent.getCustomerCd(), parent.getChainStoreCd(),
+                                        parent.getSupplierCd(), parent.getOrderBranchCd(), parent.getExtendCd()},
+                                parent);
+                    };
+                }));
+        TABLES.put(TableVersions.MAIL_DESTINATION_CHILD, new FeedTable(TableVersions.MAIL_DESTINATION_CHILD,
+                "mailing_list_id, destination_seq, destination_address, destination_note, status_div, importer_cd, " +
+                "created_by, created_at, updated_by, updated_at",
+                new String[] {"mailing_list_id", "destination_seq"},
+                rs -> {
+                    MailDestinationChildRow.Reader reader = MailDestinationChildRow.reader(rs);
+                    return row -> {
+                        MailDestinationChildRow child = reader.read(row);
+                        return new Change(TableVersions.MAIL_DESTINATION_CHILD,
+                                op(child.getCreatedAt(), child.getUpdatedAt(), "2".equals(child.getStatusDiv())),
+                                child.getUpdatedAt(), new Object[] {child.getMailingListId(), child.getDestinationSeq()}, child);
+                    };
+                }));
+    }
+
+    private final ObjectMapper objectMapper;
+
+    public ChangeFeedHandler() {
+        try (StartupProfile.Phase phase = StartupProfile.phase("object-mapper")) {
+            this.objectMapper = new ObjectMapper();
+        }
+        Priming.register(this);
+    }
+
+    /**
+     * SnapStart: warm routing, the 401 path, cursor coding and serialization before the snapshot (no DB access)
+     */
+    @Override
+    public void beforeCheckpoint(org.crac.Context<? extends Resource> context) throws Exception {
+        Priming.loadJdbcDriver();
+        handleRequest(Priming.request("OPTIONS", "/changes"), Priming.context());
+        handleRequest(Priming.request("GET", "/changes"), Priming.context());
+        Map<String, Position> positions = new LinkedHashMap<>();
+        positions.put(TableVersions.CUSTOMER, new Position(LocalDateTime.now().toString(), null, 0L, "1:1:"));
+        decodeCursor(encodeCursor(positions));
+        Priming.primeJson(objectMapper, Priming.sampleResponse("table", "op", "key", "updated_at", "data"));
+    }
+
+    @Override
+    public void afterRestore(org.crac.Context<? extends Resource> context) {
+        // Connections are opened per request; nothing is held across the snapshot
+    }
+
+    @Override
+    @Logging
+    @Tracing
+    public APIGatewayProxyResponseEvent handleRequest(APIGatewayProxyRequestEvent input, Context context) {
+        StartupProfile.beforeInvoke();
+        RouteMetrics.begin(input, context);
+        try {
+            return RouteMetrics.end("change-feed-api", dispatch(input, context));
+        } finally {
+            StartupProfile.afterInvoke("change-feed-api");
+        }
+    }
+
+    private APIGatewayProxyResponseEvent dispatch(APIGatewayProxyRequestEvent input, Context context) {
+        try {
+            logInfo("Processing Change Feed API request: " + input.getHttpMethod() + " " + input.getPath());
+
+            // Handle CORS preflight
+            if ("OPTIONS".equals(input.getHttpMethod())) {
+                return createCorsResponse(200, "");
+            }
+
+            // Validate authentication
+            if (AuthFilter.authenticate(input, context) == null) {
+                logInfo("Authentication failed for request");
+                return createCorsResponse(401, "{\"error\":\"Unauthorized\",\"message\":\"Valid authentication token required\"}");
+            }
+
+            String path = input.getPath();
+            String method = input.getHttpMethod();
+
+            // Route requests
+            if (path.equals("/changes") && "GET".equals(method)) {
+                return ResponseCompression.apply(input, handleGetChanges(input), "change-feed-api");
+            } else {
+                logInfo("Endpoint not found: " + method + " " + path);
+                return createCorsResponse(404, "{\"error\":\"Not Found\",\"message\":\"Endpoint not found\"}");
+            }
+
+        } catch (Exception e) {
+            logError("Error in ChangeFeedHandler", e);
+            return createCorsResponse(500, "{\"error\":\"Internal Server Error\",\"message\":\"" + e.getMessage() + "\"}");
+        }
+    }
+
+    /**
+     * GET /changes - Rows changed since the cursor, ordered by (updated_at, primary key) per table
+     * Query parameters: since (cursor from the previous page), tables (comma separated, default all), limit
+     */
+    private APIGatewayProxyResponseEvent handleGetChanges(APIGatewayProxyRequestEvent input) {
+        try {
+            Map<String, String> queryParams = input.getQueryStringParameters();
+            String since = queryParams != null ? queryParams.get("since") : null;
+            String tablesParam = queryParams != null ? queryParams.get("tables") : null;
+            String limitParam = queryParams != null ? queryParams.get("limit") : null;
+
+            List<FeedTable> tables = new ArrayList<>();
+            if (tablesParam == null || tablesParam.trim().isEmpty()) {
+                tables.addAll(TABLES.values());
+            } else {
+                for (String name : tablesParam.split(",")) {
+                    FeedTable table = TABLES.get(name.trim());
+                    if (table == null) {
+                        return createErrorResponse(400, "Bad Request", "Unknown table: " + name.trim() + ". Supported: " + String.join(",", TABLES.keySet()));
+                    }
+                    if (!tables.contains(table)) {
+                        tables.add(table);
+                    }
+                }
+            }
+
+            int limit = DEFAULT_LIMIT;
+            if (limitParam != null) {
+                try {
+                    limit = Math.max(1, Math.min(MAX_LIMIT, Integer.parseInt(limitParam.trim())));
+                } catch (NumberFormatException e) {
+                    return createErrorResponse(400, "Bad Request", "limit must be a valid integer");
+                }
+            }
+
+            Map<String, Position> positions;
+            try {
+                positions = since == null || since.trim().isEmpty() ? new LinkedHashMap<>() : decodeCursor(since.trim());
+            } catch (IllegalArgumentException e) {
+                return createErrorResponse(400, "Bad Request", "Invalid cursor");
+            }
+
+            Timestamp upperBound = new Timestamp(System.currentTimeMillis() - LAG_MILLIS);
+            List<Map<String, Object>> markers = new ArrayList<>();
+            List<Change> late = new ArrayList<>();
+            List<Change> fetched = new ArrayList<>();
+            String snapshot;
+
+            try (Connection conn = getDatabaseConnection()) {
+                // Versions, scans and the snapshot stored in the cursor all come from one snapshot
+                conn.setTransactionIsolation(Connection.TRANSACTION_REPEATABLE_READ);
+                conn.setAutoCommit(false);
+                conn.setReadOnly(true);
+                Snapshot current = readSnapshot(conn);
+                snapshot = current.text;
+                Map<String, VersionState> versions = readVersions(conn);
+
+                for (FeedTable table : tables) {
+                    VersionState version = versions.getOrDefault(table.name, new VersionState(0L, 0L, null));
+                    Position position = positions.get(table.name);
+
+                    if (position == null) {
+                        // New consumer: load the full list once, then follow the feed from here
+                        markers.add(fullReloadMarker(table.name, version.version, upperBound));
+                        positions.put(table.name, new Position(upperBound.toLocalDateTime().toString(), null, version.reloadedVersion, snapshot));
+                        continue;
+                    }
+                    if (version.reloadedVersion > position.reloaded && version.reloadedAt != null) {
+                        // Replaced wholesale since the cursor: one marker instead of every row
+                        Timestamp reloadTime = version.reloadedAt;
+                        markers.add(fullReloadMarker(table.name, version.reloadedVersion, reloadTime));
+                        Timestamp from = reloadTime.after(position.timestamp()) ? reloadTime : position.timestamp();
+                        position = new Position(from.toLocalDateTime().toString(), null, version.reloadedVersion, null);
+                        positions.put(table.name, position);
+                    } else if (position.snapshot != null) {
+                        // Committed since the previous page but stamped behind its cursor
+                        List<Change> missed = fetchLateChanges(conn, table, position, current, MAX_LIMIT + 1);
+                        if (missed.size() > MAX_LIMIT) {
+                            markers.add(fullReloadMarker(table.name, version.version, upperBound));
+                            positions.put(table.name, new Position(upperBound.toLocalDateTime().toString(), null, version.reloadedVersion, snapshot));
+                            continue;
+                        }
+                        late.addAll(missed);
+                    }
+
+                    fetched.addAll(fetchChanges(conn, table, position, upperBound, limit + 1));
+                }
+                conn.commit();
+            }
+
+            // Merge the tables in updated_at order and cut the page at limit
+            List<String> tableOrder = new ArrayList<>(TABLES.keySet());
+            fetched.sort(Comparator.comparing((Change change) -> change.updatedAt)
+                    .thenComparingInt(change -> tableOrder.indexOf(change.table)));
+            int emitted = Math.min(limit, fetched.size());
+            boolean hasMore = fetched.size() > emitted;
+
+            List<Map<String, Object>> changes = new ArrayList<>(markers.size() + late.size() + emitted);
+            changes.addAll(markers);
+            for (Change change : late) {
+                // Behind the cursor: delivered without moving it
+                changes.add(change.toMap(TABLES.get(change.table).keyColumns));
+            }
+            for (int i = 0; i < emitted; i++) {
+                Change change = fetched.get(i);
+                Position previous = positions.get(change.table);
+                positions.put(change.table, new Position(change.updatedAt.toLocalDateTime().toString(), change.key, previous.reloaded, snapshot));
+                changes.add(change.toMap(TABLES.get(change.table).keyColumns));
+            }
+            for (FeedTable table : tables) {
+                // Tables without rows on this page were still read in this snapshot
+                Position position = positions.get(table.name);
+                positions.put(table.name, new Position(position.updatedAt, position.key, position.reloaded, snapshot));
+            }
+
+            Map<String, Object> response = new LinkedHashMap<>();
+            response.put("status", "success");
+            response.put("changes", changes);
+            response.put("count", changes.size());
+            response.put("has_more", hasMore);
+            response.put("cursor", encodeCursor(positions));
+            response.put("upper_bound", upperBound.getTime());
+
+            logInfo("Returned " + emitted + " changes, " + late.size() + " late commits and " + markers.size() + " reload markers" + (hasMore ? " (more pending)" : ""));
+            return StreamingResponse.of(createCorsResponse(200, null), out -> objectMapper.writeValue(out, response));
+
+        } catch (Exception e) {
+            logError("Error reading change feed", e);
+            return createErrorResponse(500, "Database Error", e.getMessage());
+        }
+    }
+
+    /**
+     * Keyset page of one table after the cursor position and before the lag boundary
+     */
+    private List<Change> fetchChanges(Connection conn, FeedTable table, Position position, Timestamp upperBound, int fetchLimit) throws SQLException {
+        String keyList = String.join(", ", table.keyColumns);
+        StringBuilder sql = new StringBuilder("SELECT ").append(table.columns)
+                .append(" FROM ").append(table.name)
+                .append(" WHERE updated_at < ? AND ");
+        if (position.key == null) {
+            sql.append("updated_at > ?");
+        } else {
+            sql.append("(updated_at, ").append(keyList).append(") > (?");
+            for (int i = 0; i < table.keyColumns.length; i++) {
+                sql.append(", ?");
+            }
+            sql.append(')');
+        }
+        sql.append(" ORDER BY updated_at, ").append(keyList).append(" LIMIT ?");
+
+        List<Change> changes = new ArrayList<>();
+        try (PreparedStatement stmt = conn.prepareStatement(sql.toString())) {
+            int index = 1;
+            stmt.setTimestamp(index++, upperBound);
+            stmt.setTimestamp(index++, position.timestamp());
+            if (position.key != null) {
+                for (Object keyPart : position.key) {
+                    stmt.setObject(index++, keyPart);
+                }
+            }
+            stmt.setInt(index, fetchLimit);
+
+            try (ResultSet rs = stmt.executeQuery()) {
+                ChangeReader reader = table.readerFactory.create(rs);
+                while (rs.next()) {
+                    changes.add(reader.read(rs));
+                }
+            }
+        }
+        return changes;
+    }
+
+    /**
+     * Rows behind the cursor (within the late window) written by a transaction that the
+     * snapshot of the previous page did not see
+     */
+    private List<Change> fetchLateChanges(Connection conn, FeedTable table, Position position, Snapshot current, int fetchLimit) throws SQLException {
+        String keyList = String.join(", ", table.keyColumns);
+        StringBuilder sql = new StringBuilder("SELECT ").append(table.columns)
+                .append(" FROM ").append(table.name)
+                .append(" WHERE updated_at > ? AND ");
+        if (position.key == null) {
+            sql.append("updated_at <= ?");
+        } else {
+            sql.append("(updated_at, ").append(keyList).append(") <= (?");
+            for (int i = 0; i < table.keyColumns.length; i++) {
+                sql.append(", ?");
+            }
+            sql.append(')');
+        }
+        sql.append(" AND NOT txid_visible_in_snapshot(").append(ROW_TXID).append(", ?::txid_snapshot)")
+                .append(" ORDER BY updated_at, ").append(keyList).append(" LIMIT ?");
+
+        Timestamp cursorTime = position.timestamp();
+        List<Change> changes = new ArrayList<>();
+        try (PreparedStatement stmt = conn.prepareStatement(sql.toString())) {
+            int index = 1;
+            stmt.setTimestamp(index++, new Timestamp(cursorTime.getTime() - LATE_WINDOW_MILLIS));
+            stmt.setTimestamp(index++, cursorTime);
+            if (position.key != null) {
+                for (Object keyPart : position.key) {
+                    stmt.setObject(index++, keyPart);
+                }
+            }
+            stmt.setLong(index++, current.epochBase);
+            stmt.setLong(index++, current.epochBase);
+            stmt.setLong(index++, current.xmax);
+            stmt.setString(index++, position.snapshot);
+            stmt.setInt(index, fetchLimit);
+
+            try (ResultSet rs = stmt.executeQuery()) {
+                ChangeReader reader = table.readerFactory.create(rs);
+                while (rs.next()) {
+                    changes.add(reader.read(rs));
+                }
+            }
+        }
+        return changes;
+    }
+
+    /**
+     * Snapshot of this page's transaction, e.g. "1000:1004:1001,1003"
+     */
+    private Snapshot readSnapshot(Connection conn) throws SQLException {
+        String sql = "SELECT txid_current_snapshot()::text AS snapshot, txid_snapshot_xmax(txid_current_snapshot()) AS xmax";
+        try (PreparedStatement stmt = conn.prepareStatement(sql);
+             ResultSet rs = stmt.executeQuery()) {
+            if (!rs.next()) {
+                throw new SQLException("txid_current_snapshot() returned no row");
+            }
+            return new Snapshot(rs.getString("snapshot"), rs.getLong("xmax"));
+        }
+    }
+
+    /**
+     * Current and last full-reload version of every master table (reload columns from change_feed_setup.sql)
+     */
+    private Map<String, VersionState> readVersions(Connection conn) throws SQLException {
+        Map<String, VersionState> versions = new HashMap<>();
+        String sql = "SELECT table_name, version, COALESCE(reloaded_version, 0) AS reloaded_version, reloaded_at FROM master_data_version";
+        try (PreparedStatement stmt = conn.prepareStatement(sql);
+             ResultSet rs = stmt.executeQuery()) {
+            while (rs.next()) {
+                versions.put(rs.getString("table_name"),
+                        new VersionState(rs.getLong("version"), rs.getLong("reloaded_version"), rs.getTimestamp("reloaded_at")));
+            }
+        }
+        return versions;
+    }
+
+    private static Map<String, Object> fullReloadMarker(String table, long version, Timestamp at) {
+        Map<String, Object> marker = new LinkedHashMap<>();
+        marker.put("table", table);
+        marker.put("op", OP_FULL_RELOAD);
+        marker.put("version", version);
+        marker.put("updated_at", at.getTime());
+        return marker;
+    }
+
+    private static String op(Timestamp createdAt, Timestamp updatedAt, boolean deleted) {
+        if (deleted) {
+            return OP_DELETE;
+        }
+        // Writers stamp created_at and updated_at with the same value on insert
+        return createdAt != null && createdAt.equals(updatedAt) ? OP_INSERT : OP_UPDATE;
+    }
+
+    /**
+     * Cursor: base64url JSON of {table: {"t": updated_at, "k": [primary key] | null, "r": reloaded_version,
+     * "s": txid snapshot of the page that last read the table}}
+     */
+    private String encodeCursor(Map<String, Position> positions) throws Exception {
+        Map<String, Object> cursor = new LinkedHashMap<>();
+        for (Map.Entry<String, Position> entry : positions.entrySet()) {
+            Map<String, Object> position = new LinkedHashMap<>();
+            position.put("t", entry.getValue().updatedAt);
+            position.put("k", entry.getValue().key);
+            position.put("r", entry.getValue().reloaded);
+            position.put("s", entry.getValue().snapshot);
+            cursor.put(entry.getKey(), position);
+        }
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(objectMapper.writeValueAsBytes(cursor));
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<String, Position> decodeCursor(String cursor) {
+        try {
+            Map<String, Object> decoded = objectMapper.readValue(Base64.getUrlDecoder().decode(cursor), Map.class);
+            Map<String, Position> positions = new LinkedHashMap<>();
+            for (Map.Entry<String, Object> entry : decoded.entrySet()) {
+                FeedTable table = TABLES.get(entry.getKey());
+                Map<String, Object> position = (Map<String, Object>) entry.getValue();
+                String updatedAt = (String) position.get("t");
+                List<Object> key = (List<Object>) position.get("k");
+                if (table == null || updatedAt == null || (key != null && key.size() != table.keyColumns.length)) {
+                    throw new IllegalArgumentException("Invalid cursor entry: " + entry.getKey());
+                }
+                LocalDateTime.parse(updatedAt);
+                Number reloaded = (Number) position.get("r");
+                Object snapshot = position.get("s");
+                if (snapshot != null && !(snapshot instanceof String && isSnapshot((String) snapshot))) {
+                    throw new IllegalArgumentException("Invalid cursor snapshot: " + entry.getKey());
+                }
+                positions.put(entry.getKey(), new Position(updatedAt, key != null ? key.toArray() : null,
+                        reloaded != null ? reloaded.longValue() : 0L, (String) snapshot));
+            }
+            return positions;
+        } catch (IllegalArgumentException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new IllegalArgumentException("Invalid cursor", e);
+        }
+    }
+
+    /**
+     * "xmin:xmax:xip,..." with digits only, as txid_current_snapshot() prints it
+     */
+    private static boolean isSnapshot(String snapshot) {
+        int colons = 0;
+        for (int i = 0; i < snapshot.length(); i++) {
+            char c = snapshot.charAt(i);
+            if (c == ':') {
+                colons++;
+            } else if ((c < '0' || c > '9') && c != ',') {
+                return false;
+            }
+        }
+        return colons == 2 && snapshot.length() <= 64 * 1024;
+    }
+
+    private static long getSecondsEnv(String name, long defaultValue) {
+        String value = System.getenv(name);
+        if (value != null) {
+            try {
+                return Math.max(0, Long.parseLong(value.trim()));
+            } catch (NumberFormatException e) {
+                // fall through to default
+            }
+        }
+        return defaultValue;
+    }
+
+    /**
+     * Feed definition of one master table
+     */
+    private static final class FeedTable {
+        final String name;
+        final String columns;
+        final String[] keyColumns;
+        final ChangeReaderFactory readerFactory;
+
+        FeedTable(String name, String columns, String[] keyColumns, ChangeReaderFactory readerFactory) {
+            this.name = name;
+            this.columns = columns;
+            this.keyColumns = keyColumns;
+            this.readerFactory = readerFactory;
+        }
+    }
+
+    private interface ChangeReaderFactory {
+        ChangeReader create(ResultSet rs) throws SQLException;
+    }
+
+    private interface ChangeReader {
+        Change read(ResultSet rs) throws SQLException;
+    }
+
+    /**
+     * Last position read from one table
+     */
+    private static final class Position {
+        final String updatedAt;
+        final Object[] key;
+        final long reloaded;
+        final String snapshot;
+
+        Position(String updatedAt, Object[] key, long reloaded, String snapshot) {
+            this.updatedAt = updatedAt;
+            this.key = key;
+            this.reloaded = reloaded;
+            this.snapshot = snapshot;
+        }
+
+        Timestamp timestamp() {
+            return Timestamp.valueOf(LocalDateTime.parse(updatedAt));
+        }
+    }
+
+    /**
+     * txid snapshot of a page and the epoch needed to widen row xmin values
+     */
+    private static final class Snapshot {
+        final String text;
+        final long xmax;
+        final long epochBase;
+
+        Snapshot(String text, long xmax) {
+            this.text = text;
+            this.xmax = xmax;
+            this.epochBase = (xmax >>> 32) << 32;
+        }
+    }
+
+    private static final class VersionState {
+        final long version;
+        final long reloadedVersion;
+        final Timestamp reloadedAt;
+
+        VersionState(long version, long reloadedVersion, Timestamp reloadedAt) {
+            this.version = version;
+            this.reloadedVersion = reloadedVersion;
+            this.reloadedAt = reloadedAt;
+        }
+    }
+
+    private static final class Change {
+        final String table;
+        final String op;
+        final Timestamp updatedAt;
+        final Object[] key;
+        final Object data;
+
+        Change(String table, String op, Timestamp updatedAt, Object[] key, Object data) {
+            this.table = table;
+            this.op = op;
+            this.updatedAt = updatedAt;
+            this.key = key;
+            this.data = data;
+        }
+
+        Map<String, Object> toMap(String[] keyColumns) {
+            Map<String, Object> keyMap = new LinkedHashMap<>();
+            for (int i = 0; i < keyColumns.length; i++) {
+                keyMap.put(keyColumns[i], key[i]);
+            }
+            Map<String, Object> map = new LinkedHashMap<>();
+            map.put("table", table);
+            map.put("op", op);
+            map.put("key", keyMap);
+            map.put("updated_at", updatedAt.getTime());
+            map.put("data", data);
+            return map;
+        }
+    }
+
+    private Connection getDatabaseConnection() throws Exception {
+        String dbUrl = System.getenv("DB_URL");
+        String dbUser = System.getenv("DB_USER");
+        String dbPassword = System.getenv("DB_PASSWORD");
+
+        if (dbUrl == null) {
+            dbUrl = "jdbc:postgresql://localhost:5432/nais";
+        }
+        if (dbUser == null) {
+            dbUser = "postgres";
+        }
+        if (dbPassword == null) {
+            dbPassword = "password";
+        }
+
+        Connection conn;
+        try (StartupProfile.Phase phase = StartupProfile.phase("db-connect");
+             RouteMetrics.Timer db = RouteMetrics.db()) {
+            conn = InstrumentedConnection.wrap(DriverManager.getConnection(dbUrl, dbUser, dbPassword));
+        }
+        if (LOG.isDebugEnabled()) {
+            LOG.debug("Connected to database " + dbUrl + " as " + dbUser);
+        }
+        return conn;
+    }
+
+    private APIGatewayProxyResponseEvent createCorsResponse(int statusCode, String body) {
+        APIGatewayProxyResponseEvent response = new APIGatewayProxyResponseEvent();
+        response.setStatusCode(statusCode);
+
+        Map<String, String> headers = new HashMap<>();
+        headers.put("Access-Control-Allow-Origin", "*");
+        headers.put("Access-Control-Allow-Headers", "Content-Type,X-Amz-Date,Authorization,X-Api-Key,X-Amz-Security-Token");
+        headers.put("Access-Control-Allow-Methods", "GET,OPTIONS");
+        headers.put("Content-Type", "application/json");
+        response.setHeaders(headers);
+
+        response.setBody(body);
+        return response;
+    }
+
+    private APIGatewayProxyResponseEvent createErrorResponse(int statusCode, String error, String message) {
+        try {
+            Map<String, Object> errorResponse = new HashMap<>();
+            errorResponse.put("error", error);
+            errorResponse.put("message", message);
+            return createCorsResponse(statusCode, objectMapper.writeValueAsString(errorResponse));
+        } catch (Exception e) {
+            return createCorsResponse(statusCode, "{\"error\":\"" + error + "\",\"message\":\"" + message + "\"}");
+        }
+    }
+
+    /**
+     * Structured logging methods using AWS Lambda Powertools format
+     */
+    private void logInfo(String message) {
+        LOG.info(message);
+    }
+
+    private void logError(String message, Exception e) {
+        LOG.error(message, e);
+    }
+}
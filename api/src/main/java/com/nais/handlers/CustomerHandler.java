@@ -4,7 +4,20 @@ import com.amazonaws.services.lambda.runtime.Context;
 import com.amazonaws.services.lambda.runtime.RequestHandler;
 import com.amazonaws.services.lambda.runtime.events.APIGatewayProxyRequestEvent;
 import com.amazonaws.services.lambda.runtime.events.APIGatewayProxyResponseEvent;
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.nais.auth.AuthFilter;
+import com.nais.cache.TableVersions;
+import com.nais.lifecycle.Priming;
+import com.nais.lifecycle.StartupProfile;
+import com.nais.http.ResponseCompression;
+import com.nais.http.StreamingResponse;
+import com.nais.jdbc.InstrumentedConnection;
+import com.nais.logging.StructuredLogger;
+import com.nais.metrics.RouteMetrics;
+import com.nais.rows.CustomerRow;
+import com.nais.search.NameSearchKeys;
+import org.crac.Resource;
 import software.amazon.lambda.powertools.logging.Logging;
 import software.amazon.lambda.powertools.tracing.Tracing;
 
@@ -12,9 +25,9 @@ import java.sql.Connection;
 import java.sql.DriverManager;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
-import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 
@@ -22,18 +35,57 @@ import java.util.Map;
  * Customer Master API Handler
  * メール宛先マスター管理システム (NAIS) - 得意先マスタAPI
  */
-public class CustomerHandler implements RequestHandler<APIGatewayProxyRequestEvent, APIGatewayProxyResponseEvent> {
+public class CustomerHandler implements RequestHandler<APIGatewayProxyRequestEvent, APIGatewayProxyResponseEvent>, Resource {
+
+    private static final StructuredLogger LOG = StructuredLogger.forService("customer-api");
+    private static final int DEFAULT_SEARCH_LIMIT = 20;
+    private static final int MAX_SEARCH_LIMIT = 100;
+    private static final int MAX_BATCH_GET_KEYS = getBatchGetMaxKeys();
+    private static final char BATCH_KEY_SEPARATOR = '\u0000';
 
     private final ObjectMapper objectMapper;
 
     public CustomerHandler() {
-        this.objectMapper = new ObjectMapper();
+        try (StartupProfile.Phase phase = StartupProfile.phase("object-mapper")) {
+            this.objectMapper = new ObjectMapper();
+        }
+        Priming.register(this);
+    }
+
+    /**
+     * SnapStart: warm routing, the 401 path and serialization before the snapshot (no DB access)
+     */
+    @Override
+    public void beforeCheckpoint(org.crac.Context<? extends Resource> context) throws Exception {
+        Priming.loadJdbcDriver();
+        handleRequest(Priming.request("OPTIONS", "/customer"), Priming.context());
+        handleRequest(Priming.request("GET", "/customer"), Priming.context());
+        handleRequest(Priming.request("GET", "/customer/search"), Priming.context());
+        objectMapper.readTree("{\"keys\":[{\"office_cd\":\"0001\",\"customer_cd\":\"0001\"}]}");
+        NameSearchKeys.normalize("カブシキガイシャ　ｻﾝﾌﾟﾙ");
+        Priming.primeJson(objectMapper, Priming.sampleResponse(
+                "office_cd", "customer_cd", "normal_name_kanji", "chain_store_cd", "chain_store_subcd", "created_by", "updated_by"));
+    }
+
+    @Override
+    public void afterRestore(org.crac.Context<? extends Resource> context) {
+        // Connections are opened per request; nothing is held across the snapshot
     }
 
     @Override
     @Logging
     @Tracing
     public APIGatewayProxyResponseEvent handleRequest(APIGatewayProxyRequestEvent input, Context context) {
+        StartupProfile.beforeInvoke();
+        RouteMetrics.begin(input, context);
+        try {
+            return RouteMetrics.end("customer-api", dispatch(input, context));
+        } finally {
+            StartupProfile.afterInvoke("customer-api");
+        }
+    }
+
+    private APIGatewayProxyResponseEvent dispatch(APIGatewayProxyRequestEvent input, Context context) {
         try {
             logInfo("Processing Customer API request: " + input.getHttpMethod() + " " + input.getPath());
 
@@ -42,21 +94,26 @@ public class CustomerHandler implements RequestHandler<APIGatewayProxyRequestEve
                 return createCorsResponse(200, "");
             }
 
-            // Validate authentication
-            if (!isAuthenticated(input)) {
+            // Validate authentication (before the body is decoded or the database is touched)
+            if (AuthFilter.authenticate(input, context) == null) {
                 logInfo("Authentication failed for request");
                 return createCorsResponse(401, "{\"error\":\"Unauthorized\",\"message\":\"Valid authentication token required\"}");
             }
+            ResponseCompression.decodeRequestBody(input);
 
             String path = input.getPath();
             String method = input.getHttpMethod();
 
             // Route requests
-            if (path.equals("/customer") && "GET".equals(method)) {
-                return handleGetAllCustomers();
+            if (path.equals("/customer/batch-get") && "POST".equals(method)) {
+                return ResponseCompression.apply(input, handleBatchGetCustomers(input), "customer-api");
+            } else if (path.equals("/customer/search") && "GET".equals(method)) {
+                return ResponseCompression.apply(input, handleSearchCustomers(input), "customer-api");
+            } else if (path.equals("/customer") && "GET".equals(method)) {
+                return ResponseCompression.apply(input, handleGetAllCustomers(input), "customer-api");
             } else if (path.startsWith("/customer/") && "GET".equals(method)) {
                 String customerCode = path.substring("/customer/".length());
-                return handleGetCustomerByCode(customerCode);
+                return ResponseCompression.apply(input, handleGetCustomerByCode(customerCode, input), "customer-api");
             } else {
                 logInfo("Endpoint not found: " + method + " " + path);
                 return createCorsResponse(404, "{\"error\":\"Not Found\",\"message\":\"Endpoint not found\"}");
@@ -69,126 +126,255 @@ public class CustomerHandler implements RequestHandler<APIGatewayProxyRequestEve
     }
 
     /**
-     * Validate authentication token
+     * Get all customers
      */
-    private boolean isAuthenticated(APIGatewayProxyRequestEvent input) {
+    private APIGatewayProxyResponseEvent handleGetAllCustomers(APIGatewayProxyRequestEvent input) {
         try {
-            Map<String, String> headers = input.getHeaders();
-            if (headers == null) {
-                logInfo("No headers present");
-                return false;
-            }
-
-            String authHeader = headers.get("Authorization");
-            if (authHeader == null) {
-                authHeader = headers.get("authorization");
-            }
+            logInfo("Fetching all customers");
             
-            String xAuthToken = headers.get("X-Auth-Token");
-            if (xAuthToken == null) {
-                xAuthToken = headers.get("x-auth-token");
-            }
-
-            String token = null;
-            if (authHeader != null && authHeader.startsWith("Bearer ")) {
-                token = authHeader.substring("Bearer ".length());
-            } else if (xAuthToken != null) {
-                token = xAuthToken;
-            }
+            List<CustomerRow> customers = new ArrayList<>();
+            String etag;
             
-            if (token == null) {
-                logInfo("No valid Authorization header or X-Auth-Token header");
-                return false;
-            }
-            
-            // For local development, accept mock tokens
-            String environment = System.getenv("AUTH_MODE");
-            if ("MOCK".equalsIgnoreCase(environment)) {
-                logInfo("Mock mode: accepting token for local development");
-                return token.startsWith("eyJ") || token.contains("mock") || token.contains("dummy");
+            try (Connection conn = getDatabaseConnection()) {
+                // Answer revalidation from the version row alone
+                etag = TableVersions.etag(TableVersions.CUSTOMER, TableVersions.currentVersion(conn, TableVersions.CUSTOMER));
+                if (TableVersions.isNotModified(input, etag)) {
+                    logInfo("Customer list not modified: " + etag);
+                    return TableVersions.notModified(createCorsResponse(304, null), etag);
+                }
+
+                String sql = "SELECT office_cd, customer_cd, normal_name_kanji, chain_store_cd, chain_store_subcd, " +
+                            "created_by, created_at, updated_by, updated_at FROM customer_mst ORDER BY office_cd, customer_cd";
+                try (PreparedStatement stmt = conn.prepareStatement(sql);
+                     ResultSet rs = stmt.executeQuery()) {
+                    
+                    CustomerRow.Reader reader = CustomerRow.reader(rs);
+                    while (rs.next()) {
+                        customers.add(reader.read(rs));
+                    }
+                }
             }
 
-            // For production, validate real Cognito tokens
-            return validateCognitoToken(token);
+            Map<String, Object> response = new HashMap<>();
+            response.put("status", "success");
+            response.put("data", customers);
+            response.put("count", customers.size());
+
+            logInfo("Successfully fetched " + customers.size() + " customers");
+            return TableVersions.withCacheHeaders(StreamingResponse.of(createCorsResponse(200, null), out -> objectMapper.writeValue(out, response)), etag);
 
         } catch (Exception e) {
-            logError("Authentication error", e);
-            return false;
+            logError("Error fetching customers", e);
+            Map<String, Object> errorResponse = new HashMap<>();
+            errorResponse.put("error", "Database Error");
+            errorResponse.put("message", e.getMessage());
+            
+            try {
+                return createCorsResponse(500, buildJsonResponse(errorResponse));
+            } catch (Exception jsonError) {
+                return createCorsResponse(500, "{\"error\":\"Database Error\"}");
+            }
         }
     }
 
     /**
-     * Validate Cognito JWT token (production)
+     * GET /customer/search?q=&limit= - Search customers by name (normal_name_kanji)
+     * Matches on precomputed search_name (NFKC, kana-folded) using the search_bigrams GIN index.
+     * Ranking: exact match, then prefix match, then substring match; shorter names first.
+     * A single-character query matches name prefixes only.
      */
-    private boolean validateCognitoToken(String token) {
+    private APIGatewayProxyResponseEvent handleSearchCustomers(APIGatewayProxyRequestEvent input) {
         try {
-            // Simple JWT structure validation
-            String[] parts = token.split("\\.");
-            if (parts.length != 3) {
-                logInfo("Invalid JWT format");
-                return false;
+            Map<String, String> queryParams = input.getQueryStringParameters();
+            String query = queryParams != null ? queryParams.get("q") : null;
+            String normalized = NameSearchKeys.normalize(query);
+
+            if (normalized.isEmpty()) {
+                return createCorsResponse(400, "{\"error\":\"Bad Request\",\"message\":\"Query parameter q is required\"}");
             }
 
-            // In production, you would:
-            // 1. Verify the token signature against Cognito public keys
-            // 2. Check token expiration
-            // 3. Validate token claims (audience, issuer, etc.)
-            
-            // For now, basic validation that it's a proper JWT
-            logInfo("Token validation passed (simplified)");
-            return true;
+            int limit = DEFAULT_SEARCH_LIMIT;
+            String limitParam = queryParams.get("limit");
+            if (limitParam != null) {
+                try {
+                    limit = Math.max(1, Math.min(MAX_SEARCH_LIMIT, Integer.parseInt(limitParam)));
+                } catch (NumberFormatException e) {
+                    return createCorsResponse(400, "{\"error\":\"Bad Request\",\"message\":\"limit must be a valid integer\"}");
+                }
+            }
+
+            logInfo("Searching customers by name: [" + normalized + "] limit " + limit);
+
+            List<CustomerRow> customers = new ArrayList<>();
+            String etag;
+
+            try (Connection conn = getDatabaseConnection()) {
+                etag = TableVersions.etag(TableVersions.CUSTOMER, TableVersions.currentVersion(conn, TableVersions.CUSTOMER));
+                if (TableVersions.isNotModified(input, etag)) {
+                    return TableVersions.notModified(createCorsResponse(304, null), etag);
+                }
+
+                // Single-character queries have no bigram: prefix LIKE on the text_pattern_ops index.
+                // Every name starting with that character is still read and ranked before LIMIT.
+                boolean useBigrams = normalized.codePointCount(0, normalized.length()) > 1;
+                String likeKey = NameSearchKeys.escapeLike(normalized);
+
+                // Bigram containment narrows candidates via the GIN index; LIKE removes false positives
+                String sql = "SELECT office_cd, customer_cd, normal_name_kanji, chain_store_cd, chain_store_subcd, " +
+                            "created_by, created_at, updated_by, updated_at FROM customer_mst " +
+                            "WHERE " + (useBigrams ? "search_bigrams @> ? AND " : "") +
+                            "search_name LIKE ? " +
+                            "ORDER BY CASE WHEN search_name = ? THEN 0 WHEN search_name LIKE ? THEN 1 ELSE 2 END, " +
+                            "length(search_name), office_cd, customer_cd LIMIT ?";
+
+                try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+                    int index = 1;
+                    if (useBigrams) {
+                        stmt.setArray(index++, conn.createArrayOf("text", NameSearchKeys.bigrams(normalized)));
+                    }
+                    stmt.setString(index++, useBigrams ? "%" + likeKey + "%" : likeKey + "%");
+                    stmt.setString(index++, normalized);
+                    stmt.setString(index++, likeKey + "%");
+                    stmt.setInt(index, limit);
+
+                    try (ResultSet rs = stmt.executeQuery()) {
+                        CustomerRow.Reader reader = CustomerRow.reader(rs);
+                        while (rs.next()) {
+                            customers.add(reader.read(rs));
+                        }
+                    }
+                }
+            }
+
+            Map<String, Object> response = new HashMap<>();
+            response.put("status", "success");
+            response.put("query", query);
+            response.put("data", customers);
+            response.put("count", customers.size());
+            response.put("limit", limit);
+
+            logInfo("Customer search returned " + customers.size() + " rows");
+            return TableVersions.withCacheHeaders(StreamingResponse.of(createCorsResponse(200, null), out -> objectMapper.writeValue(out, response)), etag);
 
         } catch (Exception e) {
-            logError("Token validation failed", e);
-            return false;
+            logError("Error searching customers", e);
+            Map<String, Object> errorResponse = new HashMap<>();
+            errorResponse.put("error", "Database Error");
+            errorResponse.put("message", e.getMessage());
+            
+            try {
+                return createCorsResponse(500, buildJsonResponse(errorResponse));
+            } catch (Exception jsonError) {
+                return createCorsResponse(500, "{\"error\":\"Database Error\"}");
+            }
         }
     }
 
     /**
-     * Get all customers
+     * Resolve many (office_cd, customer_cd) keys in one round trip
+     * Body: {"keys":[{"office_cd":"0001","customer_cd":"0002"}, ...]} or {"keys":["0001-0002", ...]}
      */
-    private APIGatewayProxyResponseEvent handleGetAllCustomers() {
+    private APIGatewayProxyResponseEvent handleBatchGetCustomers(APIGatewayProxyRequestEvent input) {
         try {
-            logInfo("Fetching all customers");
-            
-            List<Map<String, Object>> customers = new ArrayList<>();
-            
+            if (input.getBody() == null || input.getBody().trim().isEmpty()) {
+                return createCorsResponse(400, "{\"error\":\"Bad Request\",\"message\":\"Request body is required\"}");
+            }
+
+            JsonNode keysNode = objectMapper.readTree(input.getBody()).get("keys");
+            if (keysNode == null || !keysNode.isArray() || keysNode.size() == 0) {
+                return createCorsResponse(400, "{\"error\":\"Bad Request\",\"message\":\"keys must be a non-empty array\"}");
+            }
+            if (keysNode.size() > MAX_BATCH_GET_KEYS) {
+                return createCorsResponse(400, "{\"error\":\"Bad Request\",\"message\":\"At most " + MAX_BATCH_GET_KEYS + " keys are allowed per request\"}");
+            }
+
+            // Normalize and de-duplicate keys, keeping request order
+            LinkedHashSet<String> requestedKeys = new LinkedHashSet<>();
+            for (JsonNode keyNode : keysNode) {
+                String officeCd;
+                String custCd;
+                if (keyNode.isTextual()) {
+                    String[] parts = keyNode.asText().split("-");
+                    officeCd = parts.length == 2 ? parts[0] : null;
+                    custCd = parts.length == 2 ? parts[1] : null;
+                } else {
+                    officeCd = keyNode.hasNonNull("office_cd") ? keyNode.get("office_cd").asText() : null;
+                    custCd = keyNode.hasNonNull("customer_cd") ? keyNode.get("customer_cd").asText() : null;
+                }
+                if (officeCd == null || custCd == null || officeCd.trim().isEmpty() || custCd.trim().isEmpty()) {
+                    return createCorsResponse(400, "{\"error\":\"Bad Request\",\"message\":\"Each key requires office_cd and customer_cd\"}");
+                }
+                requestedKeys.add(officeCd.trim().toUpperCase() + BATCH_KEY_SEPARATOR + custCd.trim().toUpperCase());
+            }
+
+            String[] officeCds = new String[requestedKeys.size()];
+            String[] customerCds = new String[requestedKeys.size()];
+            int i = 0;
+            for (String key : requestedKeys) {
+                int dash = key.indexOf(BATCH_KEY_SEPARATOR);
+                officeCds[i] = key.substring(0, dash);
+                customerCds[i] = key.substring(dash + 1);
+                i++;
+            }
+
+            logInfo("Batch fetching " + requestedKeys.size() + " customers (" + keysNode.size() + " keys requested)");
+
+            List<CustomerRow> customers = new ArrayList<>();
+            LinkedHashSet<String> missingKeys = new LinkedHashSet<>(requestedKeys);
+
             try (Connection conn = getDatabaseConnection()) {
-                String sql = "SELECT office_cd, customer_cd, normal_name_kanji, chain_store_cd, chain_store_subcd, " +
-                            "created_by, created_at, updated_by, updated_at FROM customer_mst ORDER BY office_cd, customer_cd";
-                try (PreparedStatement stmt = conn.prepareStatement(sql);
-                     ResultSet rs = stmt.executeQuery()) {
-                    
-                    while (rs.next()) {
-                        Map<String, Object> customer = new HashMap<>();
-                        customer.put("office_cd", rs.getString("office_cd"));
-                        customer.put("customer_cd", rs.getString("customer_cd"));
-                        customer.put("normal_name_kanji", rs.getString("normal_name_kanji"));
-                        customer.put("chain_store_cd", rs.getString("chain_store_cd"));
-                        customer.put("chain_store_subcd", rs.getString("chain_store_subcd"));
-                        customer.put("created_by", rs.getString("created_by"));
-                        customer.put("created_at", rs.getTimestamp("created_at"));
-                        customer.put("updated_by", rs.getString("updated_by"));
-                        customer.put("updated_at", rs.getTimestamp("updated_at"));
-                        customers.add(customer);
+                // Two parallel arrays unnested into a key relation and joined on the primary key:
+                // one statement and one plan regardless of how many keys are sent
+                String sql = "SELECT c.office_cd, c.customer_cd, c.normal_name_kanji, c.chain_store_cd, c.chain_store_subcd, " +
+                            "c.created_by, c.created_at, c.updated_by, c.updated_at " +
+                            "FROM unnest(?::varchar[], ?::varchar[]) AS k(office_cd, customer_cd) " +
+                            "JOIN customer_mst c ON c.office_cd = k.office_cd AND c.customer_cd = k.customer_cd " +
+                            "ORDER BY c.office_cd, c.customer_cd";
+
+                try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+                    stmt.setArray(1, conn.createArrayOf("varchar", officeCds));
+                    stmt.setArray(2, conn.createArrayOf("varchar", customerCds));
+                    stmt.setFetchSize(1000);
+
+                    try (ResultSet rs = stmt.executeQuery()) {
+                        CustomerRow.Reader reader = CustomerRow.reader(rs);
+                        while (rs.next()) {
+                            CustomerRow customer = reader.read(rs);
+                            customers.add(customer);
+                            missingKeys.remove(customer.getOfficeCd() + BATCH_KEY_SEPARATOR + customer.getCustomerCd());
+                        }
                     }
                 }
             }
 
+            List<Map<String, Object>> missing = new ArrayList<>(missingKeys.size());
+            for (String key : missingKeys) {
+                int dash = key.indexOf(BATCH_KEY_SEPARATOR);
+                Map<String, Object> missingKey = new HashMap<>();
+                missingKey.put("office_cd", key.substring(0, dash));
+                missingKey.put("customer_cd", key.substring(dash + 1));
+                missing.add(missingKey);
+            }
+
             Map<String, Object> response = new HashMap<>();
             response.put("status", "success");
             response.put("data", customers);
             response.put("count", customers.size());
+            response.put("missing", missing);
+            response.put("missing_count", missing.size());
 
-            logInfo("Successfully fetched " + customers.size() + " customers");
-            return createCorsResponse(200, buildJsonResponse(response));
+            logInfo("Batch fetch found " + customers.size() + " customers, " + missing.size() + " missing");
+            return StreamingResponse.of(createCorsResponse(200, null), out -> objectMapper.writeValue(out, response));
 
+        } catch (com.fasterxml.jackson.core.JsonProcessingException e) {
+            logError("Invalid batch-get request body", e);
+            return createCorsResponse(400, "{\"error\":\"Bad Request\",\"message\":\"Invalid JSON body\"}");
         } catch (Exception e) {
-            logError("Error fetching customers", e);
+            logError("Error batch fetching customers", e);
             Map<String, Object> errorResponse = new HashMap<>();
             errorResponse.put("error", "Database Error");
             errorResponse.put("message", e.getMessage());
-            
+
             try {
                 return createCorsResponse(500, buildJsonResponse(errorResponse));
             } catch (Exception jsonError) {
@@ -200,7 +386,7 @@ public class CustomerHandler implements RequestHandler<APIGatewayProxyRequestEve
     /**
      * Get customer by code (expects office_cd-customer_cd format like "0001-0001")
      */
-    private APIGatewayProxyResponseEvent handleGetCustomerByCode(String customerCode) {
+    private APIGatewayProxyResponseEvent handleGetCustomerByCode(String customerCode, APIGatewayProxyRequestEvent input) {
         try {
             logInfo("Fetching customer with code: " + customerCode);
             
@@ -222,9 +408,16 @@ public class CustomerHandler implements RequestHandler<APIGatewayProxyRequestEve
                 custCd = customerCode;
             }
 
-            Map<String, Object> customer = null;
+            CustomerRow customer = null;
+            String etag;
             
             try (Connection conn = getDatabaseConnection()) {
+                etag = TableVersions.etag(TableVersions.CUSTOMER, TableVersions.currentVersion(conn, TableVersions.CUSTOMER));
+                if (TableVersions.isNotModified(input, etag)) {
+                    logInfo("Customer not modified: " + customerCode + " " + etag);
+                    return TableVersions.notModified(createCorsResponse(304, null), etag);
+                }
+
                 String sql;
                 if (officeCd != null) {
                     // Search by specific office_cd and customer_cd
@@ -248,16 +441,7 @@ public class CustomerHandler implements RequestHandler<APIGatewayProxyRequestEve
                     
                     try (ResultSet rs = stmt.executeQuery()) {
                         if (rs.next()) {
-                            customer = new HashMap<>();
-                            customer.put("office_cd", rs.getString("office_cd"));
-                            customer.put("customer_cd", rs.getString("customer_cd"));
-                            customer.put("normal_name_kanji", rs.getString("normal_name_kanji"));
-                            customer.put("chain_store_cd", rs.getString("chain_store_cd"));
-                            customer.put("chain_store_subcd", rs.getString("chain_store_subcd"));
-                            customer.put("created_by", rs.getString("created_by"));
-                            customer.put("created_at", rs.getTimestamp("created_at"));
-                            customer.put("updated_by", rs.getString("updated_by"));
-                            customer.put("updated_at", rs.getTimestamp("updated_at"));
+                            customer = CustomerRow.reader(rs).read(rs);
                         }
                     }
                 }
@@ -276,7 +460,7 @@ public class CustomerHandler implements RequestHandler<APIGatewayProxyRequestEve
             response.put("status", "success");
             response.put("data", customer);
 
-            return createCorsResponse(200, buildJsonResponse(response));
+            return TableVersions.withCacheHeaders(createCorsResponse(200, RouteMetrics.toJson(objectMapper, response)), etag);
 
         } catch (Exception e) {
             logError("Error fetching customer with code: " + customerCode, e);
@@ -299,29 +483,26 @@ public class CustomerHandler implements RequestHandler<APIGatewayProxyRequestEve
         String dbUrl = System.getenv("DB_URL");
         String dbUser = System.getenv("DB_USER");
         String dbPassword = System.getenv("DB_PASSWORD");
-        
-        // Log environment variables for debugging (mask password)
-        logInfo("DB_URL from env: " + dbUrl);
-        logInfo("DB_USER from env: " + dbUser);
-        logInfo("DB_PASSWORD from env: " + (dbPassword != null ? "***set***" : "null"));
-        
+
         // Default values for local development
         if (dbUrl == null) {
             dbUrl = "jdbc:postgresql://localhost:5432/nais";
-            logInfo("Using default DB_URL: " + dbUrl);
         }
         if (dbUser == null) {
             dbUser = "postgres";
-            logInfo("Using default DB_USER: " + dbUser);
         }
         if (dbPassword == null) {
             dbPassword = "password";
-            logInfo("Using default DB_PASSWORD");
         }
 
-        logInfo("Attempting to connect to database: " + dbUrl + " with user: " + dbUser);
-        Connection conn = DriverManager.getConnection(dbUrl, dbUser, dbPassword);
-        logInfo("Successfully connected to database");
+        Connection conn;
+        try (StartupProfile.Phase phase = StartupProfile.phase("db-connect");
+             RouteMetrics.Timer db = RouteMetrics.db()) {
+            conn = InstrumentedConnection.wrap(DriverManager.getConnection(dbUrl, dbUser, dbPassword));
+        }
+        if (LOG.isDebugEnabled()) {
+            LOG.debug("Connected to database " + dbUrl + " as " + dbUser);
+        }
         return conn;
     }
 
@@ -408,29 +589,29 @@ public class CustomerHandler implements RequestHandler<APIGatewayProxyRequestEve
         return response;
     }
 
+    /**
+     * Upper bound on keys per batch-get request (CUSTOMER_BATCH_GET_MAX_KEYS, default 5000)
+     */
+    private static int getBatchGetMaxKeys() {
+        String value = System.getenv("CUSTOMER_BATCH_GET_MAX_KEYS");
+        if (value != null) {
+            try {
+                return Math.max(1, Integer.parseInt(value.trim()));
+            } catch (NumberFormatException e) {
+                // fall through to default
+            }
+        }
+        return 5000;
+    }
+
     /**
      * Structured logging methods using AWS Lambda Powertools format
      */
     private void logInfo(String message) {
-        System.out.println(createLogJson("INFO", message, null));
+        LOG.info(message);
     }
 
     private void logError(String message, Exception e) {
-        System.out.println(createLogJson("ERROR", message, e));
-    }
-
-    private String createLogJson(String level, String message, Exception e) {
-        try {
-            Map<String, Object> logData = Map.of(
-                    "timestamp", LocalDateTime.now().toString(),
-                    "level", level,
-                    "message", message,
-                    "service", "customer-api",
-                    "error", e != null ? e.getMessage() : null
-            );
-            return objectMapper.writeValueAsString(logData);
-        } catch (Exception ex) {
-            return "{\"level\":\"" + level + "\",\"message\":\"" + message + "\",\"service\":\"customer-api\",\"error\":\"" + (e != null ? e.getMessage() : "") + "\"}";
-        }
+        LOG.error(message, e);
     }
 }
\ No newline at end of file
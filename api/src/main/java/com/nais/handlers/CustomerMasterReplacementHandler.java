@@ -3,13 +3,20 @@ package com.nais.handlers;
 import com.amazonaws.services.lambda.runtime.Context;
 import com.amazonaws.services.lambda.runtime.RequestHandler;
 import com.amazonaws.services.lambda.runtime.events.S3Event;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.nais.cache.TableVersions;
+import com.nais.jdbc.InstrumentedConnection;
+import com.nais.jdbc.SqlStats;
+import com.nais.lifecycle.InitOrchestrator;
+import com.nais.lifecycle.Priming;
+import com.nais.logging.StructuredLogger;
+import com.nais.search.NameSearchKeys;
 import software.amazon.awssdk.services.s3.S3Client;
 import software.amazon.awssdk.services.s3.model.GetObjectRequest;
 import software.amazon.awssdk.services.s3.model.S3Exception;
 import software.amazon.awssdk.http.urlconnection.UrlConnectionHttpClient;
 import software.amazon.lambda.powertools.logging.Logging;
 import software.amazon.lambda.powertools.tracing.Tracing;
+import org.crac.Resource;
 
 import java.io.BufferedReader;
 import java.io.IOException;
@@ -20,32 +27,60 @@ import java.sql.DriverManager;
 import java.sql.PreparedStatement;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.sql.Timestamp;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Map;
 
-public class CustomerMasterReplacementHandler implements RequestHandler<S3Event, String> {
+public class CustomerMasterReplacementHandler implements RequestHandler<S3Event, String>, Resource {
 
+    private static final StructuredLogger LOG = StructuredLogger.forService("customer-master-replacement");
     private static final String DB_URL = System.getenv("DB_URL");
     private static final String DB_USER = System.getenv("DB_USER");
     private static final String DB_PASSWORD = System.getenv("DB_PASSWORD");
     private static final int BATCH_SIZE = 10000;
 
-    private final S3Client s3Client;
-    private final ObjectMapper objectMapper;
+    private InitOrchestrator.Deferred<S3Client> s3Client;
 
     public CustomerMasterReplacementHandler() {
-        this.s3Client = S3Client.builder()
+        // S3 client and PgJDBC load in parallel with the rest of init
+        this.s3Client = InitOrchestrator.start("s3-client", CustomerMasterReplacementHandler::createS3Client);
+        InitOrchestrator.start("jdbc-driver", () -> {
+            Priming.loadJdbcDriver();
+            return Boolean.TRUE;
+        });
+        Priming.register(this);
+    }
+
+    private static S3Client createS3Client() {
+        return S3Client.builder()
                 .httpClient(UrlConnectionHttpClient.builder().build())
                 .build();
-        this.objectMapper = new ObjectMapper();
+    }
+
+    /**
+     * SnapStart: load the JDBC driver and warm the CSV row normalization, then close the
+     * S3 client so its HTTP connections are not part of the snapshot
+     */
+    @Override
+    public void beforeCheckpoint(org.crac.Context<? extends Resource> context) throws Exception {
+        Priming.loadJdbcDriver();
+        for (int i = 0; i < 1000; i++) {
+            NameSearchKeys.bigrams(NameSearchKeys.normalize("ｶﾌﾞｼｷｶﾞｲｼｬ サンプル商事" + i));
+        }
+        s3Client.ifCreated(S3Client::close);
+    }
+
+    @Override
+    public void afterRestore(org.crac.Context<? extends Resource> context) {
+        s3Client = InitOrchestrator.start("s3-client", CustomerMasterReplacementHandler::createS3Client);
     }
 
     @Override
     @Logging
     @Tracing
     public String handleRequest(S3Event event, Context context) {
+        StructuredLogger.beginInvocation(context != null ? context.getAwsRequestId() : null, null);
         try {
             logInfo("Starting customer master data replacement process");
             
@@ -64,6 +99,8 @@ public class CustomerMasterReplacementHandler implements RequestHandler<S3Event,
         } catch (Exception e) {
             logError("Error processing customer master data replacement", e);
             throw new RuntimeException("Customer master data replacement failed", e);
+        } finally {
+            SqlStats.flush("customer-master-replacement");
         }
     }
 
@@ -83,6 +120,14 @@ public class CustomerMasterReplacementHandler implements RequestHandler<S3Event,
                 // Process CSV file row by row
                 processCustomerData(connection, reader);
                 
+                // Invalidate cached customer lists (ETag) together with the new data
+                long version = TableVersions.bump(connection, TableVersions.CUSTOMER);
+                logInfo("Bumped customer_mst version to " + version);
+
+                // Change feed reports the replacement as one full_reload marker; stamped after
+                // the last batch so every replaced row sorts at or before it
+                TableVersions.markFullReload(connection, TableVersions.CUSTOMER, version, Timestamp.valueOf(LocalDateTime.now()));
+                
                 // Commit the transaction
                 connection.commit();
                 logInfo("Successfully committed all customer master data");
@@ -96,9 +141,10 @@ public class CustomerMasterReplacementHandler implements RequestHandler<S3Event,
     }
 
     private Connection getConnection() throws SQLException {
-        logInfo("Attempting to connect to database: " + DB_URL);
-        Connection conn = DriverManager.getConnection(DB_URL, DB_USER, DB_PASSWORD);
-        logInfo("Successfully connected to database");
+        Connection conn = InstrumentedConnection.wrap(DriverManager.getConnection(DB_URL, DB_USER, DB_PASSWORD));
+        if (LOG.isDebugEnabled()) {
+            LOG.debug("Connected to database " + DB_URL + " as " + DB_USER);
+        }
         return conn;
     }
 
@@ -111,7 +157,7 @@ public class CustomerMasterReplacementHandler implements RequestHandler<S3Event,
             
             return new BufferedReader(
                     new InputStreamReader(
-                            s3Client.getObject(getObjectRequest),
+                            s3Client.get().getObject(getObjectRequest),
                             StandardCharsets.UTF_8
                     )
             );
@@ -135,8 +181,9 @@ public class CustomerMasterReplacementHandler implements RequestHandler<S3Event,
 
     private void processCustomerData(Connection connection, BufferedReader reader) throws IOException, SQLException {
         String insertQuery = "INSERT INTO customer_mst (office_cd, customer_cd, normal_name_kanji, " +
-                           "chain_store_cd, chain_store_subcd, created_by, created_at, updated_by, updated_at) " +
-                           "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)";
+                           "chain_store_cd, chain_store_subcd, created_by, created_at, updated_by, updated_at, " +
+                           "search_name, search_bigrams) " +
+                           "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
         
         List<CustomerMasterRecord> batch = new ArrayList<>();
         String line;
@@ -212,6 +259,8 @@ public class CustomerMasterReplacementHandler implements RequestHandler<S3Event,
             preparedStatement.setObject(7, now);
             preparedStatement.setString(8, systemUser);
             preparedStatement.setObject(9, now);
+            preparedStatement.setString(10, record.getSearchName());
+            preparedStatement.setArray(11, preparedStatement.getConnection().createArrayOf("text", record.getSearchBigrams()));
             
             preparedStatement.addBatch();
         }
@@ -222,27 +271,13 @@ public class CustomerMasterReplacementHandler implements RequestHandler<S3Event,
     }
 
     private void logInfo(String message) {
-        System.out.println(createLogJson("INFO", message, null));
+        LOG.info(message);
     }
 
     private void logError(String message, Exception e) {
-        System.out.println(createLogJson("ERROR", message, e));
+        LOG.error(message, e);
     }
 
-    private String createLogJson(String level, String message, Exception e) {
-        try {
-            Map<String, Object> logData = Map.of(
-                    "timestamp", LocalDateTime.now().toString(),
-                    "level", level,
-                    "message", message,
-                    "service", "customer-master-replacement",
-                    "error", e != null ? e.getMessage() : null
-            );
-            return objectMapper.writeValueAsString(logData);
-        } catch (Exception ex) {
-            return "{\"level\":\"" + level + "\",\"message\":\"" + message + "\",\"error\":\"" + (e != null ? e.getMessage() : "") + "\"}";
-        }
-    }
 
     private static class CustomerMasterRecord {
         private final String officeCd;
@@ -250,6 +285,8 @@ public class CustomerMasterReplacementHandler implements RequestHandler<S3Event,
         private final String normalNameKanji;
         private final String chainStoreCd;
         private final String chainStoreSubcd;
+        private final String searchName;
+        private final String[] searchBigrams;
 
         public CustomerMasterRecord(String officeCd, String customerCd, String normalNameKanji, 
                                   String chainStoreCd, String chainStoreSubcd) {
@@ -258,6 +295,9 @@ public class CustomerMasterReplacementHandler implements RequestHandler<S3Event,
             this.normalNameKanji = normalNameKanji;
             this.chainStoreCd = chainStoreCd;
             this.chainStoreSubcd = chainStoreSubcd;
+            // Precompute name search keys so queries never normalize rows at read time
+            this.searchName = NameSearchKeys.normalize(normalNameKanji);
+            this.searchBigrams = NameSearchKeys.bigrams(searchName);
         }
 
         public String getOfficeCd() { return officeCd; }
@@ -265,5 +305,7 @@ public class CustomerMasterReplacementHandler implements RequestHandler<S3Event,
         public String getNormalNameKanji() { return normalNameKanji; }
         public String getChainStoreCd() { return chainStoreCd; }
         public String getChainStoreSubcd() { return chainStoreSubcd; }
+        public String getSearchName() { return searchName; }
+        public String[] getSearchBigrams() { return searchBigrams; }
     }
 }
\ No newline at end of file
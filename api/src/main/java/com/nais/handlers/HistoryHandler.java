@@ -0,0 +1,330 @@
+package com.nais.handlers;
+
+import com.amazonaws.services.lambda.runtime.Context;
+import com.amazonaws.services.lambda.runtime.RequestHandler;
+import com.amazonaws.services.lambda.runtime.events.APIGatewayProxyRequestEvent;
+import com.amazonaws.services.lambda.runtime.events.APIGatewayProxyResponseEvent;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.nais.auth.AuthFilter;
+import com.nais.history.HistoryArchiver;
+import com.nais.http.ResponseCompression;
+import com.nais.jdbc.InstrumentedConnection;
+import com.nais.lifecycle.Priming;
+import com.nais.lifecycle.StartupProfile;
+import com.nais.logging.StructuredLogger;
+import com.nais.metrics.RouteMetrics;
+import com.nais.outbox.OutboxEvents;
+import org.crac.Resource;
+import software.amazon.lambda.powertools.logging.Logging;
+import software.amazon.lambda.powertools.tracing.Tracing;
+
+import java.io.StringWriter;
+import java.sql.Array;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Mail Master Change History API Handler
+ * 宛先マスタ変更履歴API - キー単位の変更前後イメージを新しい順に返却
+ *
+ * GET /history?type=mail_destination_parent&amp;key=JOB001|001|C001|CH01|S001|B01|E01&amp;limit=50
+ * reads mail_master_history (history_setup.sql), which HistoryArchiver fills from the outbox,
+ * so the newest changes appear after the next scheduled archiver run. Pages go back in time
+ * with before=&lt;next_before of the previous page&gt;. The images are returned as stored;
+ * changed_fields is computed by PostgreSQL from the two images. before_inferred marks a
+ * before-image taken from the previous entry instead of the row's captured old state.
+ */
+public class HistoryHandler implements RequestHandler<APIGatewayProxyRequestEvent, APIGatewayProxyResponseEvent>, Resource {
+
+    private static final StructuredLogger LOG = StructuredLogger.forService("master-history-api");
+    private static final int DEFAULT_LIMIT = 50;
+    private static final int MAX_LIMIT = 500;
+
+    // Keyset page on mail_master_history_key_idx; changed_fields skips the audit columns
+    private static final String HISTORY_SQL =
+            "SELECT h.history_id, h.event_type, h.changed_at, h.changed_by, h.recorded_at, " +
+            "h.before_image::text AS before_image, h.before_image_inferred, h.after_image::text AS after_image, " +
+            "ARRAY(SELECT a.key FROM jsonb_each(h.after_image) a " +
+            "      WHERE h.before_image IS NOT NULL AND a.key NOT IN ('updated_at', 'updated_by') " +
+            "        AND a.value IS DISTINCT FROM h.before_image -> a.key ORDER BY a.key) AS changed_fields " +
+            "FROM " + HistoryArchiver.TABLE + " h " +
+            "WHERE h.entity_type = ? AND h.entity_key = ? AND (?::bigint IS NULL OR h.history_id < ?) " +
+            "ORDER BY h.history_id DESC LIMIT ?";
+
+    private final ObjectMapper objectMapper;
+
+    public HistoryHandler() {
+        try (StartupProfile.Phase phase = StartupProfile.phase("object-mapper")) {
+            this.objectMapper = new ObjectMapper();
+        }
+        Priming.register(this);
+    }
+
+    /**
+     * SnapStart: warm routing, the 401 path and serialization before the snapshot (no DB access)
+     */
+    @Override
+    public void beforeCheckpoint(org.crac.Context<? extends Resource> context) throws Exception {
+        Priming.loadJdbcDriver();
+        handleRequest(Priming.request("OPTIONS", "/history"), Priming.context());
+        handleRequest(Priming.request("GET", "/history"), Priming.context());
+        Priming.primeJson(objectMapper, Priming.sampleResponse("history_id", "event_type", "changed_at", "changed_fields", "after"));
+    }
+
+    @Override
+    public void afterRestore(org.crac.Context<? extends Resource> context) {
+        // Connections are opened per request; nothing is held across the snapshot
+    }
+
+    @Override
+    @Logging
+    @Tracing
+    public APIGatewayProxyResponseEvent handleRequest(APIGatewayProxyRequestEvent input, Context context) {
+        StartupProfile.beforeInvoke();
+        RouteMetrics.begin(input, context);
+        try {
+            return RouteMetrics.end("master-history-api", dispatch(input, context));
+        } finally {
+            StartupProfile.afterInvoke("master-history-api");
+        }
+    }
+
+    private APIGatewayProxyResponseEvent dispatch(APIGatewayProxyRequestEvent input, Context context) {
+        try {
+            logInfo("Processing History API request: " + input.getHttpMethod() + " " + input.getPath());
+
+            // Handle CORS preflight
+            if ("OPTIONS".equals(input.getHttpMethod())) {
+                return createCorsResponse(200, "");
+            }
+
+            // Validate authentication
+            if (AuthFilter.authenticate(input, context) == null) {
+                logInfo("Authentication failed for request");
+                return createCorsResponse(401, "{\"error\":\"Unauthorized\",\"message\":\"Valid authentication token required\"}");
+            }
+
+            String path = input.getPath();
+            String method = input.getHttpMethod();
+
+            // Route requests
+            if (path.equals("/history") && "GET".equals(method)) {
+                return ResponseCompression.apply(input, handleGetHistory(input), "master-history-api");
+            } else {
+                logInfo("Endpoint not found: " + method + " " + path);
+                return createCorsResponse(404, "{\"error\":\"Not Found\",\"message\":\"Endpoint not found\"}");
+            }
+
+        } catch (Exception e) {
+            logError("Error in HistoryHandler", e);
+            return createCorsResponse(500, "{\"error\":\"Internal Server Error\",\"message\":\"" + e.getMessage() + "\"}");
+        }
+    }
+
+    /**
+     * GET /history - Change history of one parent or child row, newest first
+     * Query parameters: type, key (entity_key, see history_setup.sql), limit, before (history_id)
+     */
+    private APIGatewayProxyResponseEvent handleGetHistory(APIGatewayProxyRequestEvent input) {
+        try {
+            Map<String, String> queryParams = input.getQueryStringParameters();
+            String type = queryParams != null ? queryParams.get("type") : null;
+            String key = queryParams != null ? queryParams.get("key") : null;
+            String limitParam = queryParams != null ? queryParams.get("limit") : null;
+            String beforeParam = queryParams != null ? queryParams.get("before") : null;
+
+            if (!OutboxEvents.PARENT.equals(type) && !OutboxEvents.CHILD.equals(type)) {
+                return createErrorResponse(400, "Bad Request",
+                        "type must be " + OutboxEvents.PARENT + " or " + OutboxEvents.CHILD);
+            }
+            if (key == null || key.trim().isEmpty()) {
+                return createErrorResponse(400, "Bad Request", "key is required");
+            }
+
+            int limit = DEFAULT_LIMIT;
+            if (limitParam != null) {
+                try {
+                    limit = Math.max(1, Math.min(MAX_LIMIT, Integer.parseInt(limitParam.trim())));
+                } catch (NumberFormatException e) {
+                    return createErrorResponse(400, "Bad Request", "limit must be a valid integer");
+                }
+            }
+
+            Long before = null;
+            if (beforeParam != null && !beforeParam.trim().isEmpty()) {
+                try {
+                    before = Long.parseLong(beforeParam.trim());
+                } catch (NumberFormatException e) {
+                    return createErrorResponse(400, "Bad Request", "before must be a valid history_id");
+                }
+            }
+
+            StringWriter body = new StringWriter(4096);
+            int count = 0;
+            long lastId = 0L;
+            boolean hasMore = false;
+
+            try (Connection conn = getDatabaseConnection();
+                 PreparedStatement stmt = conn.prepareStatement(HISTORY_SQL);
+                 JsonGenerator json = objectMapper.getFactory().createGenerator(body)) {
+                stmt.setString(1, type);
+                stmt.setString(2, key);
+                if (before != null) {
+                    stmt.setLong(3, before);
+                    stmt.setLong(4, before);
+                } else {
+                    stmt.setNull(3, Types.BIGINT);
+                    stmt.setNull(4, Types.BIGINT);
+                }
+                stmt.setInt(5, limit + 1);
+
+                json.writeStartObject();
+                json.writeStringField("status", "success");
+                json.writeStringField("type", type);
+                json.writeStringField("key", key);
+                json.writeArrayFieldStart("data");
+
+                try (ResultSet rs = stmt.executeQuery()) {
+                    while (rs.next()) {
+                        if (count == limit) {
+                            hasMore = true;
+                            break;
+                        }
+                        lastId = rs.getLong("history_id");
+                        writeEntry(json, rs);
+                        count++;
+                    }
+                }
+
+                json.writeEndArray();
+                json.writeNumberField("count", count);
+                json.writeBooleanField("has_more", hasMore);
+                if (hasMore) {
+                    json.writeNumberField("next_before", lastId);
+                } else {
+                    json.writeNullField("next_before");
+                }
+                json.writeEndObject();
+            }
+
+            logInfo("Returned " + count + " history entries for " + type + " " + key + (hasMore ? " (more pending)" : ""));
+            return createCorsResponse(200, body.toString());
+
+        } catch (Exception e) {
+            logError("Error reading change history", e);
+            return createErrorResponse(500, "Database Error", e.getMessage());
+        }
+    }
+
+    /**
+     * Write one history row; before/after are JSONB images written as-is
+     */
+    private void writeEntry(JsonGenerator json, ResultSet rs) throws Exception {
+        json.writeStartObject();
+        json.writeNumberField("history_id", rs.getLong("history_id"));
+        json.writeStringField("event_type", rs.getString("event_type"));
+        writeTimestamp(json, "changed_at", rs.getTimestamp("changed_at"));
+        json.writeStringField("changed_by", rs.getString("changed_by"));
+        writeTimestamp(json, "recorded_at", rs.getTimestamp("recorded_at"));
+
+        json.writeArrayFieldStart("changed_fields");
+        Array changedFields = rs.getArray("changed_fields");
+        if (changedFields != null) {
+            for (Object field : (Object[]) changedFields.getArray()) {
+                json.writeString((String) field);
+            }
+            changedFields.free();
+        }
+        json.writeEndArray();
+
+        String beforeImage = rs.getString("before_image");
+        json.writeFieldName("before");
+        if (beforeImage != null) {
+            json.writeRawValue(beforeImage);
+        } else {
+            json.writeNull();
+        }
+        json.writeBooleanField("before_inferred", rs.getBoolean("before_image_inferred"));
+        json.writeFieldName("after");
+        json.writeRawValue(rs.getString("after_image"));
+        json.writeEndObject();
+    }
+
+    private void writeTimestamp(JsonGenerator json, String field, Timestamp value) throws Exception {
+        if (value != null) {
+            json.writeNumberField(field, value.getTime());
+        } else {
+            json.writeNullField(field);
+        }
+    }
+
+    private Connection getDatabaseConnection() throws Exception {
+        String dbUrl = System.getenv("DB_URL");
+        String dbUser = System.getenv("DB_USER");
+        String dbPassword = System.getenv("DB_PASSWORD");
+
+        if (dbUrl == null) {
+            dbUrl = "jdbc:postgresql://localhost:5432/nais";
+        }
+        if (dbUser == null) {
+            dbUser = "postgres";
+        }
+        if (dbPassword == null) {
+            dbPassword = "password";
+        }
+
+        Connection conn;
+        try (StartupProfile.Phase phase = StartupProfile.phase("db-connect");
+             RouteMetrics.Timer db = RouteMetrics.db()) {
+            conn = InstrumentedConnection.wrap(DriverManager.getConnection(dbUrl, dbUser, dbPassword));
+        }
+        if (LOG.isDebugEnabled()) {
+            LOG.debug("Connected to database " + dbUrl + " as " + dbUser);
+        }
+        return conn;
+    }
+
+    private APIGatewayProxyResponseEvent createCorsResponse(int statusCode, String body) {
+        APIGatewayProxyResponseEvent response = new APIGatewayProxyResponseEvent();
+        response.setStatusCode(statusCode);
+
+        Map<String, String> headers = new HashMap<>();
+        headers.put("Access-Control-Allow-Origin", "*");
+        headers.put("Access-Control-Allow-Headers", "Content-Type,X-Amz-Date,Authorization,X-Api-Key,X-Amz-Security-Token");
+        headers.put("Access-Control-Allow-Methods", "GET,OPTIONS");
+        headers.put("Content-Type", "application/json");
+        response.setHeaders(headers);
+
+        response.setBody(body);
+        return response;
+    }
+
+    private APIGatewayProxyResponseEvent createErrorResponse(int statusCode, String error, String message) {
+        try {
+            Map<String, Object> errorResponse = new HashMap<>();
+            errorResponse.put("error", error);
+            errorResponse.put("message", message);
+            return createCorsResponse(statusCode, objectMapper.writeValueAsString(errorResponse));
+        } catch (Exception e) {
+            return createCorsResponse(statusCode, "{\"error\":\"" + error + "\",\"message\":\"" + message + "\"}");
+        }
+    }
+
+    /**
+     * Structured logging methods using AWS Lambda Powertools format
+     */
+    private void logInfo(String message) {
+        LOG.info(message);
+    }
+
+    private void logError(String message, Exception e) {
+        LOG.error(message, e);
+    }
+}
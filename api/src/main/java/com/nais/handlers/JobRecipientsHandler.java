@@ -0,0 +1,341 @@
+package com.nais.handlers;
+
+import com.amazonaws.services.lambda.runtime.Context;
+import com.amazonaws.services.lambda.runtime.RequestHandler;
+import com.amazonaws.services.lambda.runtime.events.APIGatewayProxyRequestEvent;
+import com.amazonaws.services.lambda.runtime.events.APIGatewayProxyResponseEvent;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.nais.auth.AuthFilter;
+import com.nais.cache.JobRecipientRoutes;
+import com.nais.cache.TableVersions;
+import com.nais.lifecycle.Priming;
+import com.nais.lifecycle.StartupProfile;
+import com.nais.http.ResponseCompression;
+import com.nais.jdbc.InstrumentedConnection;
+import com.nais.logging.StructuredLogger;
+import com.nais.metrics.RouteMetrics;
+import org.crac.Resource;
+import software.amazon.lambda.powertools.logging.Logging;
+import software.amazon.lambda.powertools.tracing.Tracing;
+
+import java.io.StringWriter;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Timestamp;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Job Recipient Resolution API Handler
+ * ジョブ送信先解決API - 親マスタ + 有効な子マスタ宛先 + 得意先名を1クエリで返却
+ *
+ * GET /jobs/{job_id}/recipients replaces the parent → child → customer call chain
+ * (1 + N + N requests per job) with one query whose rows are written straight into the
+ * JSON response as they are fetched: job_recipient_mv for the default filters, a
+ * lateral-join over the masters otherwise.
+ */
+public class JobRecipientsHandler implements RequestHandler<APIGatewayProxyRequestEvent, APIGatewayProxyResponseEvent>, Resource {
+
+    private static final StructuredLogger LOG = StructuredLogger.forService("job-recipients-api");
+    private static final String STATUS_ACTIVE = "0";   // 有効
+    private static final String NOT_DELETED = "0";
+    private static final int FETCH_SIZE = 500;
+
+    /**
+     * Child addresses are aggregated per parent in a LATERAL subquery so each parent row
+     * arrives with its recipients already attached (json_agg), and the customer name
+     * comes from a primary-key join on customer_mst.
+     */
+    private static final String RECIPIENTS_SQL =
+            "SELECT p.job_id, p.office_cd, p.customer_cd, p.chain_store_cd, p.supplier_cd, p.order_branch_cd, " +
+            "p.extend_cd, p.destination_name, p.send_mode, p.search_file, p.search_directory, p.send_directory, " +
+            "p.subject, p.body_file_path, p.attachment_file_path, p.mailing_list_id, p.update_sys_div, " +
+            "p.delete_flag, p.updated_at, c.normal_name_kanji AS customer_name, " +
+            "COALESCE(r.recipient_count, 0) AS recipient_count, COALESCE(r.recipients::text, '[]') AS recipients " +
+            "FROM mail_destination_parent_mst p " +
+            "LEFT JOIN customer_mst c ON c.office_cd = p.office_cd AND c.customer_cd = p.customer_cd " +
+            "LEFT JOIN LATERAL (" +
+            "  SELECT count(*) AS recipient_count, " +
+            "         json_agg(json_build_object(" +
+            "           'destination_seq', d.destination_seq, " +
+            "           'destination_address', d.destination_address, " +
+            "           'destination_note', d.destination_note, " +
+            "           'status_div', d.status_div) ORDER BY d.destination_seq) AS recipients " +
+            "  FROM mail_destination_child_mst d " +
+            "  WHERE d.mailing_list_id = p.mailing_list_id AND d.status_div = ?" +
+            ") r ON TRUE " +
+            "WHERE p.job_id = ? AND p.delete_flag = ? " +
+            "ORDER BY p.office_cd, p.customer_cd, p.chain_store_cd, p.supplier_cd, p.order_branch_cd, p.extend_cd";
+
+    /**
+     * Default filters (active parents, active children) are served from job_recipient_mv,
+     * which the parent/child writers keep current: one primary-key prefix scan per job.
+     */
+    private static final String MATERIALIZED_SQL =
+            "SELECT m.job_id, m.office_cd, m.customer_cd, m.chain_store_cd, m.supplier_cd, m.order_branch_cd, " +
+            "m.extend_cd, m.destination_name, m.send_mode, m.search_file, m.search_directory, m.send_directory, " +
+            "m.subject, m.body_file_path, m.attachment_file_path, m.mailing_list_id, m.update_sys_div, " +
+            "'0' AS delete_flag, m.parent_updated_at AS updated_at, c.normal_name_kanji AS customer_name, " +
+            "m.recipient_count, m.recipients::text AS recipients " +
+            "FROM job_recipient_mv m " +
+            "LEFT JOIN customer_mst c ON c.office_cd = m.office_cd AND c.customer_cd = m.customer_cd " +
+            "WHERE m.job_id = ? " +
+            "ORDER BY m.office_cd, m.customer_cd, m.chain_store_cd, m.supplier_cd, m.order_branch_cd, m.extend_cd";
+
+    private final ObjectMapper objectMapper;
+
+    public JobRecipientsHandler() {
+        try (StartupProfile.Phase phase = StartupProfile.phase("object-mapper")) {
+            this.objectMapper = new ObjectMapper();
+        }
+        Priming.register(this);
+    }
+
+    /**
+     * SnapStart: warm routing, the 401 path and serialization before the snapshot (no DB access)
+     */
+    @Override
+    public void beforeCheckpoint(org.crac.Context<? extends Resource> context) throws Exception {
+        Priming.loadJdbcDriver();
+        handleRequest(Priming.request("OPTIONS", "/jobs/priming/recipients"), Priming.context());
+        handleRequest(Priming.request("GET", "/jobs/priming/recipients"), Priming.context());
+        Priming.primeJson(objectMapper, Priming.sampleResponse(
+                "job_id", "office_cd", "customer_cd", "customer_name", "mailing_list_id", "destination_address"));
+    }
+
+    @Override
+    public void afterRestore(org.crac.Context<? extends Resource> context) {
+        // Connections are opened per request; nothing is held across the snapshot
+    }
+
+    @Override
+    @Logging
+    @Tracing
+    public APIGatewayProxyResponseEvent handleRequest(APIGatewayProxyRequestEvent input, Context context) {
+        StartupProfile.beforeInvoke();
+        RouteMetrics.begin(input, context);
+        try {
+            return RouteMetrics.end("job-recipients-api", dispatch(input, context));
+        } finally {
+            StartupProfile.afterInvoke("job-recipients-api");
+        }
+    }
+
+    private APIGatewayProxyResponseEvent dispatch(APIGatewayProxyRequestEvent input, Context context) {
+        try {
+            logInfo("Processing Job Recipients API request: " + input.getHttpMethod() + " " + input.getPath());
+
+            // Handle CORS preflight
+            if ("OPTIONS".equals(input.getHttpMethod())) {
+                return createCorsResponse(200, "");
+            }
+
+            // Validate authentication
+            if (AuthFilter.authenticate(input, context) == null) {
+                logInfo("Authentication failed for request");
+                return createCorsResponse(401, "{\"error\":\"Unauthorized\",\"message\":\"Valid authentication token required\"}");
+            }
+
+            String path = input.getPath();
+            String method = input.getHttpMethod();
+            Map<String, String> pathParameters = input.getPathParameters();
+
+            // Route requests
+            if (path.startsWith("/jobs/") && path.endsWith("/recipients") && "GET".equals(method)) {
+                String jobId = pathParameters != null ? pathParameters.get("job_id") : null;
+                return ResponseCompression.apply(input, handleGetRecipients(jobId, input), "job-recipients-api");
+            } else {
+                logInfo("Endpoint not found: " + method + " " + path);
+                return createCorsResponse(404, "{\"error\":\"Not Found\",\"message\":\"Endpoint not found\"}");
+            }
+
+        } catch (Exception e) {
+            logError("Error in JobRecipientsHandler", e);
+            return createCorsResponse(500, "{\"error\":\"Internal Server Error\",\"message\":\"" + e.getMessage() + "\"}");
+        }
+    }
+
+    /**
+     * GET /jobs/{job_id}/recipients - Parent destinations of a job with their active child addresses
+     * Query parameters: delete_flag (parent, default "0"), status_div (child, default "0")
+     */
+    private APIGatewayProxyResponseEvent handleGetRecipients(String jobId, APIGatewayProxyRequestEvent input) {
+        try {
+            if (jobId == null || jobId.trim().isEmpty()) {
+                return createErrorResponse(400, "Bad Request", "job_id is required");
+            }
+            jobId = java.net.URLDecoder.decode(jobId, "UTF-8");
+
+            Map<String, String> queryParams = input.getQueryStringParameters();
+            String deleteFlag = queryParams != null && queryParams.get("delete_flag") != null
+                    ? queryParams.get("delete_flag") : NOT_DELETED;
+            String statusDiv = queryParams != null && queryParams.get("status_div") != null
+                    ? queryParams.get("status_div") : STATUS_ACTIVE;
+
+            logInfo("Resolving recipients for job: " + jobId + " (delete_flag=" + deleteFlag + ", status_div=" + statusDiv + ")");
+
+            String etag;
+            StringWriter body = new StringWriter(8192);
+            int parentCount = 0;
+            long recipientCount = 0;
+
+            try (Connection conn = getDatabaseConnection()) {
+                etag = TableVersions.compositeEtag("job-recipients",
+                        TableVersions.currentVersion(conn, TableVersions.MAIL_DESTINATION_PARENT),
+                        TableVersions.currentVersion(conn, TableVersions.MAIL_DESTINATION_CHILD),
+                        TableVersions.currentVersion(conn, TableVersions.CUSTOMER));
+                if (TableVersions.isNotModified(input, etag)) {
+                    logInfo("Not modified: " + etag);
+                    return TableVersions.notModified(createCorsResponse(304, null), etag);
+                }
+
+                // PgJDBC only honours the fetch size (server-side cursor) outside autocommit
+                conn.setAutoCommit(false);
+
+                boolean materialized = JobRecipientRoutes.isEnabled()
+                        && NOT_DELETED.equals(deleteFlag) && STATUS_ACTIVE.equals(statusDiv);
+
+                try (PreparedStatement stmt = conn.prepareStatement(materialized ? MATERIALIZED_SQL : RECIPIENTS_SQL);
+                     JsonGenerator json = objectMapper.getFactory().createGenerator(body)) {
+                    if (materialized) {
+                        stmt.setString(1, jobId);
+                    } else {
+                        stmt.setString(1, statusDiv);
+                        stmt.setString(2, jobId);
+                        stmt.setString(3, deleteFlag);
+                    }
+                    stmt.setFetchSize(FETCH_SIZE);
+
+                    json.writeStartObject();
+                    json.writeStringField("status", "success");
+                    json.writeStringField("job_id", jobId);
+                    json.writeArrayFieldStart("data");
+
+                    try (ResultSet rs = stmt.executeQuery()) {
+                        while (rs.next()) {
+                            writeParent(json, rs);
+                            parentCount++;
+                            recipientCount += rs.getLong("recipient_count");
+                        }
+                    }
+
+                    json.writeEndArray();
+                    json.writeNumberField("count", parentCount);
+                    json.writeNumberField("recipient_count", recipientCount);
+                    json.writeEndObject();
+                }
+
+                conn.commit();
+            }
+
+            logInfo("Resolved " + parentCount + " parent records with " + recipientCount + " recipients for job: " + jobId);
+            return TableVersions.withCacheHeaders(createCorsResponse(200, body.toString()), etag);
+
+        } catch (Exception e) {
+            logError("Error resolving recipients for job: " + jobId, e);
+            return createErrorResponse(500, "Database Error", e.getMessage());
+        }
+    }
+
+    /**
+     * Write one parent row; the recipients column is already a JSON array built by PostgreSQL
+     */
+    private void writeParent(JsonGenerator json, ResultSet rs) throws Exception {
+        json.writeStartObject();
+        json.writeStringField("job_id", rs.getString("job_id"));
+        json.writeStringField("office_cd", rs.getString("office_cd"));
+        json.writeStringField("customer_cd", rs.getString("customer_cd"));
+        json.writeStringField("customer_name", rs.getString("customer_name"));
+        json.writeStringField("chain_store_cd", rs.getString("chain_store_cd"));
+        json.writeStringField("supplier_cd", rs.getString("supplier_cd"));
+        json.writeStringField("order_branch_cd", rs.getString("order_branch_cd"));
+        json.writeStringField("extend_cd", rs.getString("extend_cd"));
+        json.writeStringField("destination_name", rs.getString("destination_name"));
+        json.writeStringField("send_mode", rs.getString("send_mode"));
+        json.writeStringField("search_file", rs.getString("search_file"));
+        json.writeStringField("search_directory", rs.getString("search_directory"));
+        json.writeStringField("send_directory", rs.getString("send_directory"));
+        json.writeStringField("subject", rs.getString("subject"));
+        json.writeStringField("body_file_path", rs.getString("body_file_path"));
+        json.writeStringField("attachment_file_path", rs.getString("attachment_file_path"));
+        json.writeStringField("mailing_list_id", rs.getString("mailing_list_id"));
+        json.writeStringField("update_sys_div", rs.getString("update_sys_div"));
+        json.writeStringField("delete_flag", rs.getString("delete_flag"));
+        Timestamp updatedAt = rs.getTimestamp("updated_at");
+        if (updatedAt != null) {
+            json.writeNumberField("updated_at", updatedAt.getTime());
+        } else {
+            json.writeNullField("updated_at");
+        }
+        json.writeNumberField("recipient_count", rs.getLong("recipient_count"));
+        json.writeFieldName("recipients");
+        json.writeRawValue(rs.getString("recipients"));
+        json.writeEndObject();
+    }
+
+    private Connection getDatabaseConnection() throws Exception {
+        String dbUrl = System.getenv("DB_URL");
+        String dbUser = System.getenv("DB_USER");
+        String dbPassword = System.getenv("DB_PASSWORD");
+
+        if (dbUrl == null) {
+            dbUrl = "jdbc:postgresql://localhost:5432/nais";
+        }
+        if (dbUser == null) {
+            dbUser = "postgres";
+        }
+        if (dbPassword == null) {
+            dbPassword = "password";
+        }
+
+        Connection conn;
+        try (StartupProfile.Phase phase = StartupProfile.phase("db-connect");
+             RouteMetrics.Timer db = RouteMetrics.db()) {
+            conn = InstrumentedConnection.wrap(DriverManager.getConnection(dbUrl, dbUser, dbPassword));
+        }
+        if (LOG.isDebugEnabled()) {
+            LOG.debug("Connected to database " + dbUrl + " as " + dbUser);
+        }
+        return conn;
+    }
+
+    private APIGatewayProxyResponseEvent createCorsResponse(int statusCode, String body) {
+        APIGatewayProxyResponseEvent response = new APIGatewayProxyResponseEvent();
+        response.setStatusCode(statusCode);
+
+        Map<String, String> headers = new HashMap<>();
+        headers.put("Access-Control-Allow-Origin", "*");
+        headers.put("Access-Control-Allow-Headers", "Content-Type,X-Amz-Date,Authorization,X-Api-Key,X-Amz-Security-Token");
+        headers.put("Access-Control-Allow-Methods", "GET,OPTIONS");
+        headers.put("Content-Type", "application/json");
+        response.setHeaders(headers);
+
+        response.setBody(body);
+        return response;
+    }
+
+    private APIGatewayProxyResponseEvent createErrorResponse(int statusCode, String error, String message) {
+        try {
+            Map<String, Object> errorResponse = new HashMap<>();
+            errorResponse.put("error", error);
+            errorResponse.put("message", message);
+            return createCorsResponse(statusCode, objectMapper.writeValueAsString(errorResponse));
+        } catch (Exception e) {
+            return createCorsResponse(statusCode, "{\"error\":\"" + error + "\",\"message\":\"" + message + "\"}");
+        }
+    }
+
+    /**
+     * Structured logging methods using AWS Lambda Powertools format
+     */
+    private void logInfo(String message) {
+        LOG.info(message);
+    }
+
+    private void logError(String message, Exception e) {
+        LOG.error(message, e);
+    }
+}
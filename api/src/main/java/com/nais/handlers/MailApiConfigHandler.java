@@ -4,6 +4,17 @@ import com.amazonaws.services.lambda.runtime.Context;
 import com.amazonaws.services.lambda.runtime.RequestHandler;
 import com.amazonaws.services.lambda.runtime.events.APIGatewayProxyRequestEvent;
 import com.amazonaws.services.lambda.runtime.events.APIGatewayProxyResponseEvent;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.nais.auth.AuthFilter;
+import com.nais.cache.TableVersions;
+import com.nais.lifecycle.Priming;
+import com.nais.lifecycle.StartupProfile;
+import com.nais.http.StreamingResponse;
+import com.nais.jdbc.InstrumentedConnection;
+import com.nais.logging.StructuredLogger;
+import com.nais.metrics.RouteMetrics;
+import com.nais.rows.MailApiConfigRow;
+import org.crac.Resource;
 import java.sql.Connection;
 import java.sql.DriverManager;
 import java.sql.PreparedStatement;
@@ -17,10 +28,48 @@ import java.util.Map;
  * Mail API Config Master API Handler
  * メール宛先マスター管理システム (NAIS) - メールAPI連携設定マスタAPI
  */
-public class MailApiConfigHandler implements RequestHandler<APIGatewayProxyRequestEvent, APIGatewayProxyResponseEvent> {
+public class MailApiConfigHandler implements RequestHandler<APIGatewayProxyRequestEvent, APIGatewayProxyResponseEvent>, Resource {
+
+    private static final StructuredLogger LOG = StructuredLogger.forService("mail-api-config-api");
+
+    private final ObjectMapper objectMapper;
+
+    public MailApiConfigHandler() {
+        try (StartupProfile.Phase phase = StartupProfile.phase("object-mapper")) {
+            this.objectMapper = new ObjectMapper();
+        }
+        Priming.register(this);
+    }
+
+    /**
+     * SnapStart: warm routing, the 401 path and serialization before the snapshot (no DB access)
+     */
+    @Override
+    public void beforeCheckpoint(org.crac.Context<? extends Resource> context) throws Exception {
+        Priming.loadJdbcDriver();
+        handleRequest(Priming.request("OPTIONS", "/mail-api-config"), Priming.context());
+        handleRequest(Priming.request("GET", "/mail-api-config"), Priming.context());
+        Priming.primeJson(objectMapper, Priming.sampleResponse(
+                "job_id", "job_name", "send_mode", "search_directory", "send_directory", "subject", "body_file_path"));
+    }
+
+    @Override
+    public void afterRestore(org.crac.Context<? extends Resource> context) {
+        // Connections are opened per request; nothing is held across the snapshot
+    }
 
     @Override
     public APIGatewayProxyResponseEvent handleRequest(APIGatewayProxyRequestEvent input, Context context) {
+        StartupProfile.beforeInvoke();
+        RouteMetrics.begin(input, context);
+        try {
+            return RouteMetrics.end("mail-api-config-api", dispatch(input, context));
+        } finally {
+            StartupProfile.afterInvoke("mail-api-config-api");
+        }
+    }
+
+    private APIGatewayProxyResponseEvent dispatch(APIGatewayProxyRequestEvent input, Context context) {
         try {
             context.getLogger().log("Processing Mail API Config request: " + input.getHttpMethod() + " " + input.getPath());
 
@@ -30,7 +79,7 @@ public class MailApiConfigHandler implements RequestHandler<APIGatewayProxyReque
             }
 
             // Validate authentication
-            if (!isAuthenticated(input, context)) {
+            if (AuthFilter.authenticate(input, context) == null) {
                 return createCorsResponse(401, "{\"error\":\"Unauthorized\",\"message\":\"Valid authentication token required\"}");
             }
 
@@ -39,10 +88,10 @@ public class MailApiConfigHandler implements RequestHandler<APIGatewayProxyReque
 
             // Route requests
             if (path.equals("/mail-api-config") && "GET".equals(method)) {
-                return handleGetAllMailApiConfig(context);
+                return handleGetAllMailApiConfig(input, context);
             } else if (path.startsWith("/mail-api-config/") && "GET".equals(method)) {
                 String jobId = path.substring("/mail-api-config/".length());
-                return handleGetMailApiConfigByJobId(jobId, context);
+                return handleGetMailApiConfigByJobId(jobId, input, context);
             } else {
                 return createCorsResponse(404, "{\"error\":\"Not Found\",\"message\":\"Endpoint not found\"}");
             }
@@ -54,113 +103,33 @@ public class MailApiConfigHandler implements RequestHandler<APIGatewayProxyReque
         }
     }
 
-    /**
-     * Validate authentication token (same as CustomerHandler)
-     */
-    private boolean isAuthenticated(APIGatewayProxyRequestEvent input, Context context) {
-        try {
-            Map<String, String> headers = input.getHeaders();
-            if (headers == null) {
-                context.getLogger().log("No headers present");
-                return false;
-            }
-
-            String authHeader = headers.get("Authorization");
-            if (authHeader == null) {
-                authHeader = headers.get("authorization");
-            }
-            
-            String xAuthToken = headers.get("X-Auth-Token");
-            if (xAuthToken == null) {
-                xAuthToken = headers.get("x-auth-token");
-            }
-
-            String token = null;
-            if (authHeader != null && authHeader.startsWith("Bearer ")) {
-                token = authHeader.substring("Bearer ".length());
-            } else if (xAuthToken != null) {
-                token = xAuthToken;
-            }
-            
-            if (token == null) {
-                context.getLogger().log("No valid Authorization header or X-Auth-Token header");
-                return false;
-            }
-            
-            // For local development, accept mock tokens
-            String environment = System.getenv("AUTH_MODE");
-            if ("MOCK".equalsIgnoreCase(environment)) {
-                context.getLogger().log("Mock mode: accepting token for local development");
-                return token.startsWith("eyJ") || token.contains("mock") || token.contains("dummy");
-            }
-
-            // For production, validate real Cognito tokens
-            return validateCognitoToken(token, context);
-
-        } catch (Exception e) {
-            context.getLogger().log("Authentication error: " + e.getMessage());
-            return false;
-        }
-    }
-
-    /**
-     * Validate Cognito JWT token (production)
-     */
-    private boolean validateCognitoToken(String token, Context context) {
-        try {
-            // Simple JWT structure validation
-            String[] parts = token.split("\\.");
-            if (parts.length != 3) {
-                context.getLogger().log("Invalid JWT format");
-                return false;
-            }
-
-            // In production, you would:
-            // 1. Verify the token signature against Cognito public keys
-            // 2. Check token expiration
-            // 3. Validate token claims (audience, issuer, etc.)
-            
-            // For now, basic validation that it's a proper JWT
-            context.getLogger().log("Token validation passed (simplified)");
-            return true;
-
-        } catch (Exception e) {
-            context.getLogger().log("Token validation failed: " + e.getMessage());
-            return false;
-        }
-    }
-
     /**
      * Get all mail API config records
      */
-    private APIGatewayProxyResponseEvent handleGetAllMailApiConfig(Context context) {
+    private APIGatewayProxyResponseEvent handleGetAllMailApiConfig(APIGatewayProxyRequestEvent input, Context context) {
         try {
             context.getLogger().log("Fetching all mail API config records");
             
-            List<Map<String, Object>> records = new ArrayList<>();
+            List<MailApiConfigRow> records = new ArrayList<>();
+            
+            String etag;
             
             try (Connection conn = getDatabaseConnection()) {
+                etag = TableVersions.etag(TableVersions.MAIL_API_CONFIG, TableVersions.currentVersion(conn, TableVersions.MAIL_API_CONFIG));
+                if (TableVersions.isNotModified(input, etag)) {
+                    context.getLogger().log("Not modified: " + etag);
+                    return TableVersions.notModified(createCorsResponse(304, null), etag);
+                }
+
                 String sql = "SELECT job_id, job_name, send_mode, search_directory, send_directory, " +
                            "subject, body_file_path, update_sys_div, created_by, created_at, updated_by, updated_at " +
                            "FROM mail_api_config_mst ORDER BY job_id";
                 try (PreparedStatement stmt = conn.prepareStatement(sql);
                      ResultSet rs = stmt.executeQuery()) {
                     
+                    MailApiConfigRow.Reader reader = MailApiConfigRow.reader(rs);
                     while (rs.next()) {
-                        Map<String, Object> record = new HashMap<>();
-                        record.put("job_id", rs.getString("job_id"));
-                        record.put("job_name", rs.getString("job_name"));
-                        record.put("send_mode", rs.getString("send_mode"));
-                        record.put("search_directory", rs.getString("search_directory"));
-                        record.put("send_directory", rs.getString("send_directory"));
-                        record.put("subject", rs.getString("subject"));
-                        record.put("body_file_path", rs.getString("body_file_path"));
-                        record.put("update_sys_div", rs.getString("update_sys_div"));
-                        record.put("created_by", rs.getString("created_by"));
-                        record.put("created_at", rs.getTimestamp("created_at"));
-                        record.put("updated_by", rs.getString("updated_by"));
-                        record.put("updated_at", rs.getTimestamp("updated_at"));
-                        records.add(record);
+                        records.add(reader.read(rs));
                     }
                 }
             }
@@ -170,7 +139,7 @@ public class MailApiConfigHandler implements RequestHandler<APIGatewayProxyReque
             response.put("data", records);
             response.put("count", records.size());
 
-            return createCorsResponse(200, buildJsonResponse(response));
+            return TableVersions.withCacheHeaders(StreamingResponse.of(createCorsResponse(200, null), out -> objectMapper.writeValue(out, response)), etag);
 
         } catch (Exception e) {
             context.getLogger().log("Error fetching mail API config records: " + e.getMessage());
@@ -189,7 +158,7 @@ public class MailApiConfigHandler implements RequestHandler<APIGatewayProxyReque
     /**
      * Get mail API config record by job ID
      */
-    private APIGatewayProxyResponseEvent handleGetMailApiConfigByJobId(String jobId, Context context) {
+    private APIGatewayProxyResponseEvent handleGetMailApiConfigByJobId(String jobId, APIGatewayProxyRequestEvent input, Context context) {
         try {
             context.getLogger().log("Fetching mail API config for job ID: " + jobId);
             
@@ -197,9 +166,17 @@ public class MailApiConfigHandler implements RequestHandler<APIGatewayProxyReque
                 return createCorsResponse(400, "{\"error\":\"Bad Request\",\"message\":\"Job ID is required\"}");
             }
 
-            Map<String, Object> record = null;
+            MailApiConfigRow record = null;
+            
+            String etag;
             
             try (Connection conn = getDatabaseConnection()) {
+                etag = TableVersions.etag(TableVersions.MAIL_API_CONFIG, TableVersions.currentVersion(conn, TableVersions.MAIL_API_CONFIG));
+                if (TableVersions.isNotModified(input, etag)) {
+                    context.getLogger().log("Not modified: " + etag);
+                    return TableVersions.notModified(createCorsResponse(304, null), etag);
+                }
+
                 String sql = "SELECT job_id, job_name, send_mode, search_directory, send_directory, " +
                            "subject, body_file_path, update_sys_div, created_by, created_at, updated_by, updated_at " +
                            "FROM mail_api_config_mst WHERE job_id = ?";
@@ -208,19 +185,7 @@ public class MailApiConfigHandler implements RequestHandler<APIGatewayProxyReque
                     
                     try (ResultSet rs = stmt.executeQuery()) {
                         if (rs.next()) {
-                            record = new HashMap<>();
-                            record.put("job_id", rs.getString("job_id"));
-                            record.put("job_name", rs.getString("job_name"));
-                            record.put("send_mode", rs.getString("send_mode"));
-                            record.put("search_directory", rs.getString("search_directory"));
-                            record.put("send_directory", rs.getString("send_directory"));
-                            record.put("subject", rs.getString("subject"));
-                            record.put("body_file_path", rs.getString("body_file_path"));
-                            record.put("update_sys_div", rs.getString("update_sys_div"));
-                            record.put("created_by", rs.getString("created_by"));
-                            record.put("created_at", rs.getTimestamp("created_at"));
-                            record.put("updated_by", rs.getString("updated_by"));
-                            record.put("updated_at", rs.getTimestamp("updated_at"));
+                            record = MailApiConfigRow.reader(rs).read(rs);
                         }
                     }
                 }
@@ -237,7 +202,7 @@ public class MailApiConfigHandler implements RequestHandler<APIGatewayProxyReque
             response.put("status", "success");
             response.put("data", record);
 
-            return createCorsResponse(200, buildJsonResponse(response));
+            return TableVersions.withCacheHeaders(createCorsResponse(200, RouteMetrics.toJson(objectMapper, response)), etag);
 
         } catch (Exception e) {
             context.getLogger().log("Error fetching mail API config: " + e.getMessage());
@@ -260,28 +225,27 @@ public class MailApiConfigHandler implements RequestHandler<APIGatewayProxyReque
         String dbUrl = System.getenv("DB_URL");
         String dbUser = System.getenv("DB_USER");
         String dbPassword = System.getenv("DB_PASSWORD");
-        
-        // Log environment variables for debugging (mask password)
-        System.out.println("DB_URL from env: " + dbUrl);
-        System.out.println("DB_USER from env: " + dbUser);
-        System.out.println("DB_PASSWORD from env: " + (dbPassword != null ? "***set***" : "null"));
-        
+
         // Default values for local development
         if (dbUrl == null) {
             dbUrl = "jdbc:postgresql://localhost:5432/nais";
-            System.out.println("Using default DB_URL: " + dbUrl);
         }
         if (dbUser == null) {
             dbUser = "postgres";
-            System.out.println("Using default DB_USER: " + dbUser);
         }
         if (dbPassword == null) {
             dbPassword = "password";
-            System.out.println("Using default DB_PASSWORD");
         }
 
-        System.out.println("Attempting to connect to: " + dbUrl + " with user: " + dbUser);
-        return DriverManager.getConnection(dbUrl, dbUser, dbPassword);
+        Connection conn;
+        try (StartupProfile.Phase phase = StartupProfile.phase("db-connect");
+             RouteMetrics.Timer db = RouteMetrics.db()) {
+            conn = InstrumentedConnection.wrap(DriverManager.getConnection(dbUrl, dbUser, dbPassword));
+        }
+        if (LOG.isDebugEnabled()) {
+            LOG.debug("Connected to database " + dbUrl + " as " + dbUser);
+        }
+        return conn;
     }
 
     /**
@@ -4,7 +4,22 @@ import com.amazonaws.services.lambda.runtime.Context;
 import com.amazonaws.services.lambda.runtime.RequestHandler;
 import com.amazonaws.services.lambda.runtime.events.APIGatewayProxyRequestEvent;
 import com.amazonaws.services.lambda.runtime.events.APIGatewayProxyResponseEvent;
+import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.nais.auth.AuthContext;
+import com.nais.auth.AuthFilter;
+import com.nais.cache.JobRecipientRoutes;
+import com.nais.cache.TableVersions;
+import com.nais.lifecycle.Priming;
+import com.nais.lifecycle.StartupProfile;
+import com.nais.http.ResponseCompression;
+import com.nais.http.StreamingResponse;
+import com.nais.jdbc.InstrumentedConnection;
+import com.nais.logging.StructuredLogger;
+import com.nais.metrics.RouteMetrics;
+import com.nais.outbox.OutboxEvents;
+import com.nais.rows.MailDestinationParentRow;
+import org.crac.Resource;
 import software.amazon.lambda.powertools.logging.Logging;
 import software.amazon.lambda.powertools.tracing.Tracing;
 
@@ -17,6 +32,7 @@ import java.sql.SQLException;
 import java.sql.Timestamp;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -25,18 +41,54 @@ import java.util.Map;
  * Mail Destination Parent Master API Handler
  * メール宛先親マスタAPI - CRUD operations
  */
-public class MailDestinationParentHandler implements RequestHandler<APIGatewayProxyRequestEvent, APIGatewayProxyResponseEvent> {
+public class MailDestinationParentHandler implements RequestHandler<APIGatewayProxyRequestEvent, APIGatewayProxyResponseEvent>, Resource {
+
+    private static final StructuredLogger LOG = StructuredLogger.forService("mail-destination-parent-api");
 
     private final ObjectMapper objectMapper;
 
+    private static final String KEY_WHERE = "job_id = ? AND office_cd = ? AND customer_cd = ? AND chain_store_cd = ? " +
+            "AND supplier_cd = ? AND order_branch_cd = ? AND extend_cd = ?";
+
     public MailDestinationParentHandler() {
-        this.objectMapper = new ObjectMapper();
+        try (StartupProfile.Phase phase = StartupProfile.phase("object-mapper")) {
+            this.objectMapper = new ObjectMapper();
+        }
+        Priming.register(this);
+    }
+
+    /**
+     * SnapStart: warm routing, the 401 path and serialization before the snapshot (no DB access)
+     */
+    @Override
+    public void beforeCheckpoint(org.crac.Context<? extends Resource> context) throws Exception {
+        Priming.loadJdbcDriver();
+        handleRequest(Priming.request("OPTIONS", "/mail-destination-parent"), Priming.context());
+        handleRequest(Priming.request("GET", "/mail-destination-parent"), Priming.context());
+        Priming.primeJson(objectMapper, Priming.sampleResponse(
+                "job_id", "office_cd", "customer_cd", "chain_store_cd", "supplier_cd", "order_branch_cd", "extend_cd",
+                "destination_name", "send_mode", "subject", "mailing_list_id", "update_sys_div", "delete_flag"));
+    }
+
+    @Override
+    public void afterRestore(org.crac.Context<? extends Resource> context) {
+        // Connections are opened per request; nothing is held across the snapshot
     }
 
     @Override
     @Logging
     @Tracing
     public APIGatewayProxyResponseEvent handleRequest(APIGatewayProxyRequestEvent input, Context context) {
+        StartupProfile.beforeInvoke();
+        RouteMetrics.begin(input, context);
+        try {
+            return RouteMetrics.end("mail-destination-parent-api", dispatch(input, context));
+        } finally {
+            StartupProfile.afterInvoke("mail-destination-parent-api");
+        }
+    }
+
+    private APIGatewayProxyResponseEvent dispatch(APIGatewayProxyRequestEvent input, Context context) {
         try {
             logInfo("Processing Mail Destination Parent API request: " + input.getHttpMethod() + " " + input.getPath());
 
@@ -45,11 +97,12 @@ public class MailDestinationParentHandler implements RequestHandler<APIGatewayPr
                 return createCorsResponse(200, "");
             }
 
-            // Validate authentication
-            if (!isAuthenticated(input)) {
+            // Validate authentication (before the body is decoded or the database is touched)
+            if (AuthFilter.authenticate(input, context) == null) {
                 logInfo("Authentication failed for request");
                 return createCorsResponse(401, "{\"error\":\"Unauthorized\",\"message\":\"Valid authentication token required\"}");
             }
+            ResponseCompression.decodeRequestBody(input);
 
             String path = input.getPath();
             String method = input.getHttpMethod();
@@ -57,18 +110,20 @@ public class MailDestinationParentHandler implements RequestHandler<APIGatewayPr
 
             // Route requests
             if (path.equals("/mail-destination-parent") && "GET".equals(method)) {
-                return handleGetAllParents(input);
+                return ResponseCompression.apply(input, handleGetAllParents(input), "mail-destination-parent-api");
             } else if (path.equals("/mail-destination-parent") && "POST".equals(method)) {
                 return handleCreateParent(input);
+            } else if (path.equals("/mail-destination-parent/bulk-delete") && "POST".equals(method)) {
+                return handleBulkDeleteParents(input);
             } else if (path.startsWith("/mail-destination-parent/") && "GET".equals(method)) {
                 String compositeKey = extractCompositeKey(pathParameters);
-                return handleGetParentByKey(compositeKey);
+                return ResponseCompression.apply(input, handleGetParentByKey(compositeKey, input), "mail-destination-parent-api");
             } else if (path.startsWith("/mail-destination-parent/") && "PUT".equals(method)) {
                 String compositeKey = extractCompositeKey(pathParameters);
                 return handleUpdateParent(compositeKey, input);
             } else if (path.startsWith("/mail-destination-parent/") && "DELETE".equals(method)) {
                 String compositeKey = extractCompositeKey(pathParameters);
-                return handleDeleteParent(compositeKey);
+                return handleDeleteParent(compositeKey, input);
             } else {
                 logInfo("Endpoint not found: " + method + " " + path);
                 return createCorsResponse(404, "{\"error\":\"Not Found\",\"message\":\"Endpoint not found\"}");
@@ -92,9 +147,17 @@ public class MailDestinationParentHandler implements RequestHandler<APIGatewayPr
             String customerCd = queryParams != null ? queryParams.get("customer_cd") : null;
             String deleteFlag = queryParams != null ? queryParams.get("delete_flag") : "0"; // Default to active records
 
-            List<Map<String, Object>> parents = new ArrayList<>();
+            List<MailDestinationParentRow> parents = new ArrayList<>();
+
+            String etag;
 
             try (Connection conn = getDatabaseConnection()) {
+                etag = TableVersions.etag(TableVersions.MAIL_DESTINATION_PARENT, TableVersions.currentVersion(conn, TableVersions.MAIL_DESTINATION_PARENT));
+                if (TableVersions.isNotModified(input, etag)) {
+                    logInfo("Not modified: " + etag);
+                    return TableVersions.notModified(createCorsResponse(304, null), etag);
+                }
+
                 StringBuilder sql = new StringBuilder(
                     "SELECT job_id, office_cd, customer_cd, chain_store_cd, supplier_cd, order_branch_cd, " +
                     "extend_cd, destination_name, send_mode, search_file, search_directory, send_directory, " +
@@ -126,8 +189,9 @@ public class MailDestinationParentHandler implements RequestHandler<APIGatewayPr
                     }
 
                     try (ResultSet rs = stmt.executeQuery()) {
+                        MailDestinationParentRow.Reader reader = MailDestinationParentRow.reader(rs);
                         while (rs.next()) {
-                            parents.add(mapResultSetToParent(rs));
+                            parents.add(reader.read(rs));
                         }
                     }
                 }
@@ -139,7 +203,7 @@ public class MailDestinationParentHandler implements RequestHandler<APIGatewayPr
             response.put("count", parents.size());
 
             logInfo("Successfully fetched " + parents.size() + " parent records");
-            return createCorsResponse(200, objectMapper.writeValueAsString(response));
+            return TableVersions.withCacheHeaders(StreamingResponse.of(createCorsResponse(200, null), out -> objectMapper.writeValue(out, response)), etag);
 
         } catch (Exception e) {
             logError("Error fetching parent records", e);
@@ -173,6 +237,8 @@ public class MailDestinationParentHandler implements RequestHandler<APIGatewayPr
             }
 
             try (Connection conn = getDatabaseConnection()) {
+                conn.setAutoCommit(false);
+
                 String sql = "INSERT INTO mail_destination_parent_mst " +
                            "(job_id, office_cd, customer_cd, chain_store_cd, supplier_cd, order_branch_cd, " +
                            "extend_cd, destination_name, send_mode, search_file, search_directory, send_directory, " +
@@ -182,7 +248,7 @@ public class MailDestinationParentHandler implements RequestHandler<APIGatewayPr
 
                 try (PreparedStatement stmt = conn.prepareStatement(sql)) {
                     Timestamp now = Timestamp.valueOf(LocalDateTime.now());
-                    String currentUser = "API_USER"; // In production, get from JWT token
+                    String currentUser = AuthContext.currentUserId();
 
                     stmt.setString(1, (String) requestData.get("job_id"));
                     stmt.setString(2, (String) requestData.get("office_cd"));
@@ -211,6 +277,16 @@ public class MailDestinationParentHandler implements RequestHandler<APIGatewayPr
                     int rowsAffected = stmt.executeUpdate();
                     
                     if (rowsAffected > 0) {
+                        String[] keyParts = {
+                            (String) requestData.get("job_id"), (String) requestData.get("office_cd"),
+                            (String) requestData.get("customer_cd"), (String) requestData.get("chain_store_cd"),
+                            (String) requestData.get("supplier_cd"), (String) requestData.get("order_branch_cd"),
+                            (String) requestData.get("extend_cd")
+                        };
+                        JobRecipientRoutes.refreshParent(conn, keyParts);
+                        OutboxEvents.append(conn, OutboxEvents.PARENT, OutboxEvents.CREATED, KEY_WHERE, (Object[]) keyParts);
+                        TableVersions.bump(conn, TableVersions.MAIL_DESTINATION_PARENT);
+                        conn.commit();
                         logInfo("Successfully created parent record with job_id: " + requestData.get("job_id"));
                         
                         Map<String, Object> response = new HashMap<>();
@@ -218,7 +294,7 @@ public class MailDestinationParentHandler implements RequestHandler<APIGatewayPr
                         response.put("message", "Mail destination parent record created successfully");
                         response.put("job_id", requestData.get("job_id"));
                         
-                        return createCorsResponse(201, objectMapper.writeValueAsString(response));
+                        return createCorsResponse(201, RouteMetrics.toJson(objectMapper, response));
                     } else {
                         return createErrorResponse(500, "Database Error", "Failed to create record");
                     }
@@ -238,10 +314,153 @@ public class MailDestinationParentHandler implements RequestHandler<APIGatewayPr
         }
     }
 
+    /**
+     * POST /mail-destination-parent/bulk-delete - Soft delete every parent matching a filter
+     * Body: {"customer_cd":"0001","office_cd":"0001","mailing_list_id":"ML001","job_id":"JOB001","include_children":true}
+     * (at least one filter field; include_children retires the child rows of lists left without an active parent)
+     *
+     * One set-based UPDATE per table in one transaction. Rows whose update_sys_div the caller
+     * may not modify are skipped and counted, not failed.
+     */
+    private APIGatewayProxyResponseEvent handleBulkDeleteParents(APIGatewayProxyRequestEvent input) {
+        try {
+            if (input.getBody() == null || input.getBody().trim().isEmpty()) {
+                return createErrorResponse(400, "Bad Request", "Request body is required");
+            }
+
+            Map<String, Object> requestData = objectMapper.readValue(input.getBody(), new TypeReference<Map<String, Object>>() {});
+
+            StringBuilder filter = new StringBuilder();
+            List<String> filterParams = new ArrayList<>();
+            for (String column : new String[] {"job_id", "office_cd", "customer_cd", "mailing_list_id"}) {
+                Object value = requestData.get(column);
+                if (value instanceof String && !((String) value).trim().isEmpty()) {
+                    filter.append(filter.length() == 0 ? "" : " AND ").append(column).append(" = ?");
+                    filterParams.add(((String) value).trim());
+                }
+            }
+            if (filterParams.isEmpty()) {
+                return createErrorResponse(400, "Bad Request", "At least one of job_id, office_cd, customer_cd or mailing_list_id is required");
+            }
+            boolean includeChildren = Boolean.TRUE.equals(requestData.get("include_children"));
+
+            logInfo("Bulk deleting parent records where " + filter + " " + filterParams + (includeChildren ? " (with children)" : ""));
+
+            try (Connection conn = getDatabaseConnection()) {
+                conn.setAutoCommit(false);
+
+                Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+                String currentUser = AuthContext.currentUserId();
+
+                // matched sees the rows as they were before the UPDATE; changed is what was deleted
+                // (one outbox event per row). Parents without a mailing list are returned by key so
+                // their routing row can be dropped.
+                String sql = "WITH matched AS (" +
+                           "SELECT delete_flag FROM mail_destination_parent_mst WHERE " + filter +
+                           "), changed AS (" +
+                           "UPDATE mail_destination_parent_mst SET delete_flag = '1', updated_by = ?, updated_at = ? " +
+                           "WHERE " + filter + " AND delete_flag IS DISTINCT FROM '1' " +
+                           "AND (update_sys_div IS NULL OR update_sys_div = ANY(?)) " +
+                           "RETURNING *" +
+                           ")" + OutboxEvents.cte(OutboxEvents.PARENT, OutboxEvents.DELETED, "changed") +
+                           " SELECT (SELECT count(*) FROM matched), " +
+                           "(SELECT count(*) FROM matched WHERE delete_flag = '1'), " +
+                           "(SELECT count(*) FROM changed), " +
+                           "(SELECT array_agg(DISTINCT mailing_list_id) FROM changed WHERE mailing_list_id IS NOT NULL), " +
+                           "(SELECT array_agg(job_id || '|' || office_cd || '|' || customer_cd || '|' || chain_store_cd || '|' || " +
+                           "supplier_cd || '|' || order_branch_cd || '|' || extend_cd) FROM changed WHERE mailing_list_id IS NULL)";
+
+                int matched;
+                int alreadyDeleted;
+                int deleted;
+                List<String> mailingLists = new ArrayList<>();
+                List<String> unlistedKeys = new ArrayList<>();
+                try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+                    int index = 1;
+                    for (String value : filterParams) {
+                        stmt.setString(index++, value);
+                    }
+                    stmt.setString(index++, currentUser);
+                    stmt.setTimestamp(index++, now);
+                    for (String value : filterParams) {
+                        stmt.setString(index++, value);
+                    }
+                    stmt.setArray(index, conn.createArrayOf("varchar", AuthContext.currentAllowedUpdateSysDivs()));
+
+                    try (ResultSet rs = stmt.executeQuery()) {
+                        rs.next();
+                        matched = rs.getInt(1);
+                        alreadyDeleted = rs.getInt(2);
+                        deleted = rs.getInt(3);
+                        if (rs.getArray(4) != null) {
+                            mailingLists.addAll(Arrays.asList((String[]) rs.getArray(4).getArray()));
+                        }
+                        if (rs.getArray(5) != null) {
+                            unlistedKeys.addAll(Arrays.asList((String[]) rs.getArray(5).getArray()));
+                        }
+                    }
+                }
+
+                int childrenRetired = 0;
+                if (includeChildren && !mailingLists.isEmpty()) {
+                    // Only lists no longer used by any active parent (lists can be shared between jobs)
+                    String childSql = "WITH retired AS (" +
+                                    "UPDATE mail_destination_child_mst c SET status_div = '2', updated_by = ?, updated_at = ? " +
+                                    "WHERE c.mailing_list_id = ANY(?) AND c.status_div <> '2' " +
+                                    "AND NOT EXISTS (SELECT 1 FROM mail_destination_parent_mst p " +
+                                    "WHERE p.mailing_list_id = c.mailing_list_id AND p.delete_flag = '0') " +
+                                    "RETURNING c.*" +
+                                    ")" + OutboxEvents.cte(OutboxEvents.CHILD, OutboxEvents.DELETED, "retired") +
+                                    " SELECT count(*) FROM retired";
+                    try (PreparedStatement stmt = conn.prepareStatement(childSql)) {
+                        stmt.setString(1, currentUser);
+                        stmt.setTimestamp(2, now);
+                        stmt.setArray(3, conn.createArrayOf("varchar", mailingLists.toArray()));
+                        try (ResultSet rs = stmt.executeQuery()) {
+                            rs.next();
+                            childrenRetired = rs.getInt(1);
+                        }
+                    }
+                }
+
+                if (deleted > 0) {
+                    JobRecipientRoutes.refreshMailingLists(conn, mailingLists);
+                    for (String key : unlistedKeys) {
+                        JobRecipientRoutes.refreshParent(conn, key.split("\\|", -1));
+                    }
+                    TableVersions.bump(conn, TableVersions.MAIL_DESTINATION_PARENT);
+                    if (childrenRetired > 0) {
+                        TableVersions.bump(conn, TableVersions.MAIL_DESTINATION_CHILD);
+                    }
+                }
+                conn.commit();
+
+                int forbidden = matched - alreadyDeleted - deleted;
+                logInfo("Bulk delete: matched " + matched + ", deleted " + deleted + ", already deleted " + alreadyDeleted +
+                        ", forbidden " + forbidden + ", children retired " + childrenRetired);
+
+                Map<String, Object> response = new HashMap<>();
+                response.put("status", "success");
+                response.put("message", "Mail destination parent records deleted successfully");
+                response.put("matched", matched);
+                response.put("deleted", deleted);
+                response.put("already_deleted", alreadyDeleted);
+                response.put("forbidden", forbidden);
+                response.put("children_retired", childrenRetired);
+
+                return createCorsResponse(200, RouteMetrics.toJson(objectMapper, response));
+            }
+
+        } catch (Exception e) {
+            logError("Error bulk deleting parent records", e);
+            return createErrorResponse(500, "Database Error", e.getMessage());
+        }
+    }
+
     /**
      * GET /mail-destination-parent/{key} - Get specific parent record by composite key
      */
-    private APIGatewayProxyResponseEvent handleGetParentByKey(String compositeKey) {
+    private APIGatewayProxyResponseEvent handleGetParentByKey(String compositeKey, APIGatewayProxyRequestEvent input) {
         try {
             logInfo("Fetching parent record with key: " + compositeKey);
 
@@ -263,9 +482,17 @@ public class MailDestinationParentHandler implements RequestHandler<APIGatewayPr
                 logInfo("Key part " + i + ": [" + keyParts[i] + "] (length: " + keyParts[i].length() + ")");
             }
 
-            Map<String, Object> parent = null;
+            MailDestinationParentRow parent = null;
+
+            String etag;
 
             try (Connection conn = getDatabaseConnection()) {
+                etag = TableVersions.etag(TableVersions.MAIL_DESTINATION_PARENT, TableVersions.currentVersion(conn, TableVersions.MAIL_DESTINATION_PARENT));
+                if (TableVersions.isNotModified(input, etag)) {
+                    logInfo("Not modified: " + etag);
+                    return TableVersions.notModified(createCorsResponse(304, null), etag);
+                }
+
                 String sql = "SELECT job_id, office_cd, customer_cd, chain_store_cd, supplier_cd, order_branch_cd, " +
                            "extend_cd, destination_name, send_mode, search_file, search_directory, send_directory, " +
                            "subject, body_file_path, attachment_file_path, mailing_list_id, update_sys_div, " +
@@ -281,7 +508,7 @@ public class MailDestinationParentHandler implements RequestHandler<APIGatewayPr
 
                     try (ResultSet rs = stmt.executeQuery()) {
                         if (rs.next()) {
-                            parent = mapResultSetToParent(rs);
+                            parent = MailDestinationParentRow.reader(rs).read(rs);
                         }
                     }
                 }
@@ -297,7 +524,7 @@ public class MailDestinationParentHandler implements RequestHandler<APIGatewayPr
             response.put("status", "success");
             response.put("data", parent);
 
-            return createCorsResponse(200, objectMapper.writeValueAsString(response));
+            return TableVersions.withCacheHeaders(createCorsResponse(200, RouteMetrics.toJson(objectMapper, response)), etag);
 
         } catch (Exception e) {
             logError("Error fetching parent record with key: " + compositeKey, e);
@@ -333,64 +560,60 @@ public class MailDestinationParentHandler implements RequestHandler<APIGatewayPr
                 logInfo("UPDATE Key part " + i + ": [" + keyParts[i] + "] (length: " + keyParts[i].length() + ")");
             }
 
-            // Check access control before update
-            String currentUpdateSysDiv = getCurrentUpdateSysDiv(keyParts);
-            if (!canModifyRecord(currentUpdateSysDiv, "UPDATE")) {
-                return createErrorResponse(403, "Forbidden", 
-                    "Update operation not allowed for update_sys_div: " + currentUpdateSysDiv + 
-                    ". This record can only be modified by " + getUpdateSysDivDescription(currentUpdateSysDiv));
+            Timestamp expectedUpdatedAt;
+            try {
+                expectedUpdatedAt = parseIfMatch(input);
+            } catch (IllegalArgumentException e) {
+                return createErrorResponse(400, "Bad Request", e.getMessage());
             }
 
             Map<String, Object> requestData = objectMapper.readValue(input.getBody(), Map.class);
 
             try (Connection conn = getDatabaseConnection()) {
-                String sql = "UPDATE mail_destination_parent_mst SET " +
-                           "destination_name = ?, send_mode = ?, search_file = ?, search_directory = ?, " +
-                           "send_directory = ?, subject = ?, body_file_path = ?, attachment_file_path = ?, " +
-                           "mailing_list_id = ?, update_sys_div = ?, importer_cd = ?, delete_flag = ?, " +
-                           "updated_by = ?, updated_at = ? " +
-                           "WHERE job_id = ? AND office_cd = ? AND customer_cd = ? AND chain_store_cd = ? " +
-                           "AND supplier_cd = ? AND order_branch_cd = ? AND extend_cd = ?";
-
-                try (PreparedStatement stmt = conn.prepareStatement(sql)) {
-                    Timestamp now = Timestamp.valueOf(LocalDateTime.now());
-                    String currentUser = "API_USER"; // In production, get from JWT token
-
-                    stmt.setString(1, (String) requestData.get("destination_name"));
-                    stmt.setString(2, (String) requestData.get("send_mode"));
-                    stmt.setString(3, (String) requestData.get("search_file"));
-                    stmt.setString(4, (String) requestData.get("search_directory"));
-                    stmt.setString(5, (String) requestData.get("send_directory"));
-                    stmt.setString(6, (String) requestData.get("subject"));
-                    stmt.setString(7, (String) requestData.get("body_file_path"));
-                    stmt.setString(8, (String) requestData.get("attachment_file_path"));
-                    stmt.setString(9, (String) requestData.get("mailing_list_id"));
-                    stmt.setString(10, (String) requestData.get("update_sys_div"));
-                    stmt.setString(11, (String) requestData.get("importer_cd"));
-                    stmt.setString(12, (String) requestData.getOrDefault("delete_flag", "0"));
-                    stmt.setString(13, currentUser);
-                    stmt.setTimestamp(14, now);
-
-                    // Where clause parameters
-                    for (int i = 0; i < keyParts.length; i++) {
-                        stmt.setString(15 + i, keyParts[i]);
-                    }
-
-                    int rowsAffected = stmt.executeUpdate();
-                    
-                    if (rowsAffected > 0) {
-                        logInfo("Successfully updated parent record with key: " + compositeKey);
-                        
-                        Map<String, Object> response = new HashMap<>();
-                        response.put("status", "success");
-                        response.put("message", "Mail destination parent record updated successfully");
-                        response.put("key", compositeKey);
-                        
-                        return createCorsResponse(200, objectMapper.writeValueAsString(response));
-                    } else {
-                        return createErrorResponse(404, "Not Found", "Parent record not found with key: " + compositeKey);
-                    }
+                conn.setAutoCommit(false);
+
+                Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+                String currentUser = AuthContext.currentUserId();
+
+                GuardedUpdate result = executeGuardedUpdate(conn,
+                        "destination_name = ?, send_mode = ?, search_file = ?, search_directory = ?, " +
+                        "send_directory = ?, subject = ?, body_file_path = ?, attachment_file_path = ?, " +
+                        "mailing_list_id = ?, update_sys_div = ?, importer_cd = ?, delete_flag = ?, " +
+                        "updated_by = ?, updated_at = ?",
+                        new Object[] {
+                            requestData.get("destination_name"),
+                            requestData.get("send_mode"),
+                            requestData.get("search_file"),
+                            requestData.get("search_directory"),
+                            requestData.get("send_directory"),
+                            requestData.get("subject"),
+                            requestData.get("body_file_path"),
+                            requestData.get("attachment_file_path"),
+                            requestData.get("mailing_list_id"),
+                            requestData.get("update_sys_div"),
+                            requestData.get("importer_cd"),
+                            requestData.getOrDefault("delete_flag", "0"),
+                            currentUser,
+                            now
+                        },
+                        keyParts, expectedUpdatedAt);
+
+                if (result.updated) {
+                    JobRecipientRoutes.refreshParent(conn, keyParts);
+                    OutboxEvents.append(conn, OutboxEvents.PARENT, OutboxEvents.UPDATED, KEY_WHERE, (Object[]) keyParts);
+                    TableVersions.bump(conn, TableVersions.MAIL_DESTINATION_PARENT);
+                    conn.commit();
+                    logInfo("Successfully updated parent record with key: " + compositeKey);
+
+                    Map<String, Object> response = new HashMap<>();
+                    response.put("status", "success");
+                    response.put("message", "Mail destination parent record updated successfully");
+                    response.put("key", compositeKey);
+                    response.put("updated_at", result.updatedAt.getTime());
+
+                    return createCorsResponse(200, RouteMetrics.toJson(objectMapper, response));
                 }
+                return rejectGuardedUpdate(result, compositeKey, "Update");
             }
 
         } catch (Exception e) {
@@ -402,7 +625,7 @@ public class MailDestinationParentHandler implements RequestHandler<APIGatewayPr
     /**
      * DELETE /mail-destination-parent/{key} - Soft delete parent record
      */
-    private APIGatewayProxyResponseEvent handleDeleteParent(String compositeKey) {
+    private APIGatewayProxyResponseEvent handleDeleteParent(String compositeKey, APIGatewayProxyRequestEvent input) {
         try {
             logInfo("Deleting parent record with key: " + compositeKey);
 
@@ -423,47 +646,40 @@ public class MailDestinationParentHandler implements RequestHandler<APIGatewayPr
                 logInfo("DELETE Key part " + i + ": [" + keyParts[i] + "] (length: " + keyParts[i].length() + ")");
             }
 
-            // Check access control before delete
-            String currentUpdateSysDiv = getCurrentUpdateSysDiv(keyParts);
-            if (!canModifyRecord(currentUpdateSysDiv, "DELETE")) {
-                return createErrorResponse(403, "Forbidden", 
-                    "Delete operation not allowed for update_sys_div: " + currentUpdateSysDiv + 
-                    ". This record can only be modified by " + getUpdateSysDivDescription(currentUpdateSysDiv));
+            Timestamp expectedUpdatedAt;
+            try {
+                expectedUpdatedAt = parseIfMatch(input);
+            } catch (IllegalArgumentException e) {
+                return createErrorResponse(400, "Bad Request", e.getMessage());
             }
 
             try (Connection conn = getDatabaseConnection()) {
-                String sql = "UPDATE mail_destination_parent_mst SET delete_flag = '1', " +
-                           "updated_by = ?, updated_at = ? " +
-                           "WHERE job_id = ? AND office_cd = ? AND customer_cd = ? AND chain_store_cd = ? " +
-                           "AND supplier_cd = ? AND order_branch_cd = ? AND extend_cd = ?";
-
-                try (PreparedStatement stmt = conn.prepareStatement(sql)) {
-                    Timestamp now = Timestamp.valueOf(LocalDateTime.now());
-                    String currentUser = "API_USER"; // In production, get from JWT token
-
-                    stmt.setString(1, currentUser);
-                    stmt.setTimestamp(2, now);
-
-                    // Where clause parameters
-                    for (int i = 0; i < keyParts.length; i++) {
-                        stmt.setString(3 + i, keyParts[i]);
-                    }
-
-                    int rowsAffected = stmt.executeUpdate();
-                    
-                    if (rowsAffected > 0) {
-                        logInfo("Successfully deleted parent record with key: " + compositeKey);
-                        
-                        Map<String, Object> response = new HashMap<>();
-                        response.put("status", "success");
-                        response.put("message", "Mail destination parent record deleted successfully");
-                        response.put("key", compositeKey);
-                        
-                        return createCorsResponse(200, objectMapper.writeValueAsString(response));
-                    } else {
-                        return createErrorResponse(404, "Not Found", "Parent record not found with key: " + compositeKey);
-                    }
+                conn.setAutoCommit(false);
+
+                Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+                String currentUser = AuthContext.currentUserId();
+
+                GuardedUpdate result = executeGuardedUpdate(conn,
+                        "delete_flag = '1', updated_by = ?, updated_at = ?",
+                        new Object[] {currentUser, now},
+                        keyParts, expectedUpdatedAt);
+
+                if (result.updated) {
+                    JobRecipientRoutes.refreshParent(conn, keyParts);
+                    OutboxEvents.append(conn, OutboxEvents.PARENT, OutboxEvents.DELETED, KEY_WHERE, (Object[]) keyParts);
+                    TableVersions.bump(conn, TableVersions.MAIL_DESTINATION_PARENT);
+                    conn.commit();
+                    logInfo("Successfully deleted parent record with key: " + compositeKey);
+
+                    Map<String, Object> response = new HashMap<>();
+                    response.put("status", "success");
+                    response.put("message", "Mail destination parent record deleted successfully");
+                    response.put("key", compositeKey);
+                    response.put("updated_at", result.updatedAt.getTime());
+
+                    return createCorsResponse(200, RouteMetrics.toJson(objectMapper, response));
                 }
+                return rejectGuardedUpdate(result, compositeKey, "Delete");
             }
 
         } catch (Exception e) {
@@ -492,98 +708,6 @@ public class MailDestinationParentHandler implements RequestHandler<APIGatewayPr
         return null;
     }
 
-    private Map<String, Object> mapResultSetToParent(ResultSet rs) throws SQLException {
-        Map<String, Object> parent = new HashMap<>();
-        parent.put("job_id", rs.getString("job_id"));
-        parent.put("office_cd", rs.getString("office_cd"));
-        parent.put("customer_cd", rs.getString("customer_cd"));
-        parent.put("chain_store_cd", rs.getString("chain_store_cd"));
-        parent.put("supplier_cd", rs.getString("supplier_cd"));
-        parent.put("order_branch_cd", rs.getString("order_branch_cd"));
-        parent.put("extend_cd", rs.getString("extend_cd"));
-        parent.put("destination_name", rs.getString("destination_name"));
-        parent.put("send_mode", rs.getString("send_mode"));
-        parent.put("search_file", rs.getString("search_file"));
-        parent.put("search_directory", rs.getString("search_directory"));
-        parent.put("send_directory", rs.getString("send_directory"));
-        parent.put("subject", rs.getString("subject"));
-        parent.put("body_file_path", rs.getString("body_file_path"));
-        parent.put("attachment_file_path", rs.getString("attachment_file_path"));
-        parent.put("mailing_list_id", rs.getString("mailing_list_id"));
-        parent.put("update_sys_div", rs.getString("update_sys_div"));
-        parent.put("importer_cd", rs.getString("importer_cd"));
-        parent.put("delete_flag", rs.getString("delete_flag"));
-        parent.put("created_by", rs.getString("created_by"));
-        parent.put("created_at", rs.getTimestamp("created_at"));
-        parent.put("updated_by", rs.getString("updated_by"));
-        parent.put("updated_at", rs.getTimestamp("updated_at"));
-        return parent;
-    }
-
-    /**
-     * Authentication methods (similar to other handlers)
-     */
-    private boolean isAuthenticated(APIGatewayProxyRequestEvent input) {
-        try {
-            Map<String, String> headers = input.getHeaders();
-            if (headers == null) {
-                logInfo("No headers present");
-                return false;
-            }
-
-            String authHeader = headers.get("Authorization");
-            if (authHeader == null) {
-                authHeader = headers.get("authorization");
-            }
-            
-            String xAuthToken = headers.get("X-Auth-Token");
-            if (xAuthToken == null) {
-                xAuthToken = headers.get("x-auth-token");
-            }
-
-            String token = null;
-            if (authHeader != null && authHeader.startsWith("Bearer ")) {
-                token = authHeader.substring("Bearer ".length());
-            } else if (xAuthToken != null) {
-                token = xAuthToken;
-            }
-            
-            if (token == null) {
-                logInfo("No valid Authorization header or X-Auth-Token header");
-                return false;
-            }
-            
-            String environment = System.getenv("AUTH_MODE");
-            if ("MOCK".equalsIgnoreCase(environment)) {
-                logInfo("Mock mode: accepting token for local development");
-                return token.startsWith("eyJ") || token.contains("mock") || token.contains("dummy");
-            }
-
-            return validateCognitoToken(token);
-
-        } catch (Exception e) {
-            logError("Authentication error", e);
-            return false;
-        }
-    }
-
-    private boolean validateCognitoToken(String token) {
-        try {
-            String[] parts = token.split("\\.");
-            if (parts.length != 3) {
-                logInfo("Invalid JWT format");
-                return false;
-            }
-
-            logInfo("Token validation passed (simplified)");
-            return true;
-
-        } catch (Exception e) {
-            logError("Token validation failed", e);
-            return false;
-        }
-    }
-
     private Connection getDatabaseConnection() throws Exception {
         String dbUrl = System.getenv("DB_URL");
         String dbUser = System.getenv("DB_USER");
@@ -599,9 +723,14 @@ public class MailDestinationParentHandler implements RequestHandler<APIGatewayPr
             dbPassword = "password";
         }
 
-        logInfo("Attempting to connect to database: " + dbUrl);
-        Connection conn = DriverManager.getConnection(dbUrl, dbUser, dbPassword);
-        logInfo("Successfully connected to database");
+        Connection conn;
+        try (StartupProfile.Phase phase = StartupProfile.phase("db-connect");
+             RouteMetrics.Timer db = RouteMetrics.db()) {
+            conn = InstrumentedConnection.wrap(DriverManager.getConnection(dbUrl, dbUser, dbPassword));
+        }
+        if (LOG.isDebugEnabled()) {
+            LOG.debug("Connected to database " + dbUrl + " as " + dbUser);
+        }
         return conn;
     }
 
@@ -611,7 +740,7 @@ public class MailDestinationParentHandler implements RequestHandler<APIGatewayPr
         
         Map<String, String> headers = new HashMap<>();
         headers.put("Access-Control-Allow-Origin", "*");
-        headers.put("Access-Control-Allow-Headers", "Content-Type,X-Amz-Date,Authorization,X-Api-Key,X-Amz-Security-Token");
+        headers.put("Access-Control-Allow-Headers", "Content-Type,X-Amz-Date,Authorization,X-Api-Key,X-Amz-Security-Token,If-Match,If-None-Match");
         headers.put("Access-Control-Allow-Methods", "GET,POST,PUT,DELETE,OPTIONS");
         headers.put("Content-Type", "application/json");
         response.setHeaders(headers);
@@ -635,113 +764,122 @@ public class MailDestinationParentHandler implements RequestHandler<APIGatewayPr
      * Structured logging methods using AWS Lambda Powertools format
      */
     private void logInfo(String message) {
-        System.out.println(createLogJson("INFO", message, null));
+        LOG.info(message);
     }
 
     private void logError(String message, Exception e) {
-        System.out.println(createLogJson("ERROR", message, e));
+        LOG.error(message, e);
     }
 
-    private String createLogJson(String level, String message, Exception e) {
-        try {
-            Map<String, Object> logData = Map.of(
-                    "timestamp", LocalDateTime.now().toString(),
-                    "level", level,
-                    "message", message,
-                    "service", "mail-destination-parent-api",
-                    "error", e != null ? e.getMessage() : null
-            );
-            return objectMapper.writeValueAsString(logData);
-        } catch (Exception ex) {
-            return "{\"level\":\"" + level + "\",\"message\":\"" + message + "\",\"service\":\"mail-destination-parent-api\",\"error\":\"" + (e != null ? e.getMessage() : "") + "\"}";
-        }
-    }
 
     /**
      * Access control methods based on update_sys_div
      */
-    private String getCurrentUpdateSysDiv(String[] keyParts) {
-        try (Connection conn = getDatabaseConnection()) {
-            String sql = "SELECT update_sys_div FROM mail_destination_parent_mst " +
-                       "WHERE job_id = ? AND office_cd = ? AND customer_cd = ? AND chain_store_cd = ? " +
-                       "AND supplier_cd = ? AND order_branch_cd = ? AND extend_cd = ?";
-            
-            try (PreparedStatement stmt = conn.prepareStatement(sql)) {
-                for (int i = 0; i < keyParts.length; i++) {
-                    stmt.setString(i + 1, keyParts[i]);
-                }
-                
-                try (ResultSet rs = stmt.executeQuery()) {
-                    if (rs.next()) {
-                        return rs.getString("update_sys_div");
-                    }
-                }
-            }
-        } catch (Exception e) {
-            logError("Error getting current update_sys_div", e);
-        }
-        return null;
+
+    /**
+     * Outcome of a guarded single-row UPDATE
+     * found: the key exists; updated: the row passed the update_sys_div / If-Match guards
+     */
+    private static final class GuardedUpdate {
+        boolean found;
+        boolean updated;
+        String updateSysDiv;
+        Timestamp updatedAt;
     }
 
     /**
-     * Check if the current API request can modify records with the given update_sys_div
-     * 0: 制限なし (No restrictions) - API can modify
-     * 1: 他システム連携のみ (Other system integration only) - API cannot modify
-     * 2: 宛先サービスのみ (Destination service only) - API cannot modify
+     * UPDATE one parent row only if the calling system may modify it and, when an If-Match
+     * value was sent, only if updated_at still matches - in one statement and one round trip.
+     * 更新可否判定をUPDATE文に統合 (読み取り→書き込みの競合を排除)
+     *
+     * The target CTE reads the row as it was before the statement, so a missing update tells
+     * not-found (no row) from forbidden / precondition failed (row returned, nothing changed).
      */
-    private boolean canModifyRecord(String updateSysDiv, String operation) {
-        if (updateSysDiv == null) {
-            logInfo("Unknown update_sys_div, allowing operation: " + operation);
-            return true; // If we can't determine the value, allow the operation
+    private GuardedUpdate executeGuardedUpdate(Connection conn, String setClause, Object[] setParams,
+                                               String[] keyParts, Timestamp expectedUpdatedAt) throws SQLException {
+        String sql = "WITH target AS (" +
+                   "SELECT update_sys_div, updated_at FROM mail_destination_parent_mst WHERE " + KEY_WHERE +
+                   "), changed AS (" +
+                   "UPDATE mail_destination_parent_mst SET " + setClause + " WHERE " + KEY_WHERE +
+                   " AND (update_sys_div IS NULL OR update_sys_div = ANY(?))" +
+                   " AND (?::timestamp IS NULL OR date_trunc('milliseconds', updated_at) = ?::timestamp)" +
+                   " RETURNING updated_at" +
+                   ") SELECT t.update_sys_div, t.updated_at, c.updated_at AS new_updated_at " +
+                   "FROM target t LEFT JOIN changed c ON true";
+
+        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+            int index = 1;
+            for (String keyPart : keyParts) {
+                stmt.setString(index++, keyPart);
+            }
+            for (Object value : setParams) {
+                stmt.setObject(index++, value);
+            }
+            for (String keyPart : keyParts) {
+                stmt.setString(index++, keyPart);
+            }
+            stmt.setArray(index++, conn.createArrayOf("varchar", AuthContext.currentAllowedUpdateSysDivs()));
+            stmt.setTimestamp(index++, expectedUpdatedAt);
+            stmt.setTimestamp(index, expectedUpdatedAt);
+
+            GuardedUpdate result = new GuardedUpdate();
+            try (ResultSet rs = stmt.executeQuery()) {
+                if (rs.next()) {
+                    result.found = true;
+                    result.updateSysDiv = rs.getString(1);
+                    Timestamp newUpdatedAt = rs.getTimestamp(3);
+                    result.updated = newUpdatedAt != null;
+                    result.updatedAt = result.updated ? newUpdatedAt : rs.getTimestamp(2);
+                }
+            }
+            return result;
         }
+    }
 
-        // Get the calling system type from environment or headers
-        String callingSystem = getCurrentCallingSystem();
-        
-        switch (updateSysDiv) {
-            case "0": // 制限なし (No restrictions)
-                logInfo("No restrictions (update_sys_div=0), allowing " + operation);
-                return true;
-                
-            case "1": // 他システム連携のみ (Other system integration only)
-                boolean isOtherSystem = "OTHER_SYSTEM".equals(callingSystem);
-                logInfo("Other system integration only (update_sys_div=1), " + 
-                       "calling system: " + callingSystem + ", allowing: " + isOtherSystem);
-                return isOtherSystem;
-                
-            case "2": // 宛先サービスのみ (Destination service only)
-                boolean isDestinationService = "DESTINATION_SERVICE".equals(callingSystem);
-                logInfo("Destination service only (update_sys_div=2), " + 
-                       "calling system: " + callingSystem + ", allowing: " + isDestinationService);
-                return isDestinationService;
-                
-            default:
-                logError("Unknown update_sys_div value: " + updateSysDiv + ", denying " + operation, null);
-                return false;
+    private APIGatewayProxyResponseEvent rejectGuardedUpdate(GuardedUpdate result, String compositeKey, String operation) throws Exception {
+        if (!result.found) {
+            return createErrorResponse(404, "Not Found", "Parent record not found with key: " + compositeKey);
+        }
+        if (result.updateSysDiv != null && !Arrays.asList(AuthContext.currentAllowedUpdateSysDivs()).contains(result.updateSysDiv.trim())) {
+            logInfo(operation + " denied for update_sys_div=" + result.updateSysDiv + ", calling system: " + AuthContext.currentCallingSystem());
+            return createErrorResponse(403, "Forbidden",
+                operation + " operation not allowed for update_sys_div: " + result.updateSysDiv +
+                ". This record can only be modified by " + getUpdateSysDivDescription(result.updateSysDiv.trim()));
         }
+
+        logInfo(operation + " rejected by If-Match for key: " + compositeKey);
+        Map<String, Object> response = new HashMap<>();
+        response.put("error", "Precondition Failed");
+        response.put("message", "Record was modified by another request; reload and retry");
+        response.put("updated_at", result.updatedAt != null ? result.updatedAt.getTime() : null);
+        return createCorsResponse(412, RouteMetrics.toJson(objectMapper, response));
     }
 
     /**
-     * Get the current calling system type
-     * This can be determined from:
-     * 1. Environment variables
-     * 2. HTTP headers
-     * 3. JWT token claims
-     * 4. API key identification
+     * If-Match: the record's updated_at (epoch millis, as returned by GET) for optimistic
+     * concurrency; null when absent or "*"
      */
-    private String getCurrentCallingSystem() {
-        // For now, assume this is the main API service
-        // In production, this would be determined by:
-        // - Checking X-Calling-System header
-        // - Analyzing JWT token claims
-        // - Environment configuration
-        String callingSystem = System.getenv("CALLING_SYSTEM");
-        if (callingSystem != null) {
-            return callingSystem;
+    private Timestamp parseIfMatch(APIGatewayProxyRequestEvent input) {
+        Map<String, String> headers = input.getHeaders();
+        String ifMatch = headers != null ? headers.get("If-Match") : null;
+        if (ifMatch == null && headers != null) {
+            ifMatch = headers.get("if-match");
+        }
+        if (ifMatch == null || ifMatch.trim().isEmpty() || "*".equals(ifMatch.trim())) {
+            return null;
+        }
+        String tag = ifMatch.trim();
+        if (tag.startsWith("W/")) {
+            tag = tag.substring(2);
+        }
+        if (tag.length() >= 2 && tag.startsWith("\"") && tag.endsWith("\"")) {
+            tag = tag.substring(1, tag.length() - 1);
+        }
+        try {
+            return new Timestamp(Long.parseLong(tag));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("If-Match must be the record's updated_at in epoch milliseconds");
         }
-        
-        // Default to API service (which should have no restrictions for update_sys_div=0)
-        return "API_SERVICE";
     }
 
     /**
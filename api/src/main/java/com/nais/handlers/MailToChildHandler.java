@@ -4,6 +4,17 @@ import com.amazonaws.services.lambda.runtime.Context;
 import com.amazonaws.services.lambda.runtime.RequestHandler;
 import com.amazonaws.services.lambda.runtime.events.APIGatewayProxyRequestEvent;
 import com.amazonaws.services.lambda.runtime.events.APIGatewayProxyResponseEvent;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.nais.auth.AuthFilter;
+import com.nais.cache.TableVersions;
+import com.nais.lifecycle.Priming;
+import com.nais.lifecycle.StartupProfile;
+import com.nais.http.StreamingResponse;
+import com.nais.jdbc.InstrumentedConnection;
+import com.nais.logging.StructuredLogger;
+import com.nais.metrics.RouteMetrics;
+import com.nais.rows.MailToChildRow;
+import org.crac.Resource;
 import java.sql.Connection;
 import java.sql.DriverManager;
 import java.sql.PreparedStatement;
@@ -17,10 +28,48 @@ import java.util.Map;
  * Mail To Child Master API Handler
  * メール宛先マスター管理システム (NAIS) - メール宛先子マスタAPI
  */
-public class MailToChildHandler implements RequestHandler<APIGatewayProxyRequestEvent, APIGatewayProxyResponseEvent> {
+public class MailToChildHandler implements RequestHandler<APIGatewayProxyRequestEvent, APIGatewayProxyResponseEvent>, Resource {
+
+    private static final StructuredLogger LOG = StructuredLogger.forService("mail-to-child-api");
+
+    private final ObjectMapper objectMapper;
+
+    public MailToChildHandler() {
+        try (StartupProfile.Phase phase = StartupProfile.phase("object-mapper")) {
+            this.objectMapper = new ObjectMapper();
+        }
+        Priming.register(this);
+    }
+
+    /**
+     * SnapStart: warm routing, the 401 path and serialization before the snapshot (no DB access)
+     */
+    @Override
+    public void beforeCheckpoint(org.crac.Context<? extends Resource> context) throws Exception {
+        Priming.loadJdbcDriver();
+        handleRequest(Priming.request("OPTIONS", "/mail-to-child"), Priming.context());
+        handleRequest(Priming.request("GET", "/mail-to-child"), Priming.context());
+        Priming.primeJson(objectMapper, Priming.sampleResponse(
+                "mailing_list_id", "recipient_address", "recipent_note", "status_div", "input_user_cd", "created_by", "updated_by"));
+    }
+
+    @Override
+    public void afterRestore(org.crac.Context<? extends Resource> context) {
+        // Connections are opened per request; nothing is held across the snapshot
+    }
 
     @Override
     public APIGatewayProxyResponseEvent handleRequest(APIGatewayProxyRequestEvent input, Context context) {
+        StartupProfile.beforeInvoke();
+        RouteMetrics.begin(input, context);
+        try {
+            return RouteMetrics.end("mail-to-child-api", dispatch(input, context));
+        } finally {
+            StartupProfile.afterInvoke("mail-to-child-api");
+        }
+    }
+
+    private APIGatewayProxyResponseEvent dispatch(APIGatewayProxyRequestEvent input, Context context) {
         try {
             context.getLogger().log("Processing Mail To Child API request: " + input.getHttpMethod() + " " + input.getPath());
 
@@ -30,7 +79,7 @@ public class MailToChildHandler implements RequestHandler<APIGatewayProxyRequest
             }
 
             // Validate authentication
-            if (!isAuthenticated(input, context)) {
+            if (AuthFilter.authenticate(input, context) == null) {
                 return createCorsResponse(401, "{\"error\":\"Unauthorized\",\"message\":\"Valid authentication token required\"}");
             }
 
@@ -39,10 +88,10 @@ public class MailToChildHandler implements RequestHandler<APIGatewayProxyRequest
 
             // Route requests
             if (path.equals("/mail-to-child") && "GET".equals(method)) {
-                return handleGetAllMailToChild(context);
+                return handleGetAllMailToChild(input, context);
             } else if (path.startsWith("/mail-to-child/") && "GET".equals(method)) {
                 String mailingListId = path.substring("/mail-to-child/".length());
-                return handleGetMailToChildByListId(mailingListId, context);
+                return handleGetMailToChildByListId(mailingListId, input, context);
             } else {
                 return createCorsResponse(404, "{\"error\":\"Not Found\",\"message\":\"Endpoint not found\"}");
             }
@@ -54,104 +103,33 @@ public class MailToChildHandler implements RequestHandler<APIGatewayProxyRequest
         }
     }
 
-    /**
-     * Validate authentication token (same as CustomerHandler)
-     */
-    private boolean isAuthenticated(APIGatewayProxyRequestEvent input, Context context) {
-        try {
-            Map<String, String> headers = input.getHeaders();
-            if (headers == null) {
-                context.getLogger().log("No headers present");
-                return false;
-            }
-
-            String authHeader = headers.get("Authorization");
-            if (authHeader == null) {
-                authHeader = headers.get("authorization"); // case-insensitive
-            }
-            if (authHeader == null) {
-                authHeader = headers.get("X-Auth-Token"); // fallback for API Gateway issues
-            }
-
-            if (authHeader == null || !authHeader.startsWith("Bearer ")) {
-                context.getLogger().log("No valid Authorization header");
-                return false;
-            }
-
-            String token = authHeader.substring("Bearer ".length());
-            
-            // For local development, accept mock tokens
-            String environment = System.getenv("AUTH_MODE");
-            if ("MOCK".equalsIgnoreCase(environment)) {
-                context.getLogger().log("Mock mode: accepting token for local development");
-                return token.startsWith("eyJ") || token.contains("mock") || token.contains("dummy");
-            }
-
-            // For production, validate real Cognito tokens
-            return validateCognitoToken(token, context);
-
-        } catch (Exception e) {
-            context.getLogger().log("Authentication error: " + e.getMessage());
-            return false;
-        }
-    }
-
-    /**
-     * Validate Cognito JWT token (production)
-     */
-    private boolean validateCognitoToken(String token, Context context) {
-        try {
-            // Simple JWT structure validation
-            String[] parts = token.split("\\.");
-            if (parts.length != 3) {
-                context.getLogger().log("Invalid JWT format");
-                return false;
-            }
-
-            // In production, you would:
-            // 1. Verify the token signature against Cognito public keys
-            // 2. Check token expiration
-            // 3. Validate token claims (audience, issuer, etc.)
-            
-            // For now, basic validation that it's a proper JWT
-            context.getLogger().log("Token validation passed (simplified)");
-            return true;
-
-        } catch (Exception e) {
-            context.getLogger().log("Token validation failed: " + e.getMessage());
-            return false;
-        }
-    }
-
     /**
      * Get all mail to child records
      */
-    private APIGatewayProxyResponseEvent handleGetAllMailToChild(Context context) {
+    private APIGatewayProxyResponseEvent handleGetAllMailToChild(APIGatewayProxyRequestEvent input, Context context) {
         try {
             context.getLogger().log("Fetching all mail to child records");
             
-            List<Map<String, Object>> records = new ArrayList<>();
+            List<MailToChildRow> records = new ArrayList<>();
+            
+            String etag;
             
             try (Connection conn = getDatabaseConnection()) {
+                etag = TableVersions.etag(TableVersions.MAIL_TO_CHILD, TableVersions.currentVersion(conn, TableVersions.MAIL_TO_CHILD));
+                if (TableVersions.isNotModified(input, etag)) {
+                    context.getLogger().log("Not modified: " + etag);
+                    return TableVersions.notModified(createCorsResponse(304, null), etag);
+                }
+
                 String sql = "SELECT mailing_list_id, recipient_seq, recipient_address, recipent_note, " +
                            "status_div, input_user_cd, created_by, created_at, updated_by, updated_at " +
                            "FROM mail_to_child_mst ORDER BY mailing_list_id, recipient_seq";
                 try (PreparedStatement stmt = conn.prepareStatement(sql);
                      ResultSet rs = stmt.executeQuery()) {
                     
+                    MailToChildRow.Reader reader = MailToChildRow.reader(rs);
                     while (rs.next()) {
-                        Map<String, Object> record = new HashMap<>();
-                        record.put("mailing_list_id", rs.getString("mailing_list_id"));
-                        record.put("recipient_seq", rs.getInt("recipient_seq"));
-                        record.put("recipient_address", rs.getString("recipient_address"));
-                        record.put("recipent_note", rs.getString("recipent_note"));
-                        record.put("status_div", rs.getString("status_div"));
-                        record.put("input_user_cd", rs.getString("input_user_cd"));
-                        record.put("created_by", rs.getString("created_by"));
-                        record.put("created_at", rs.getTimestamp("created_at"));
-                        record.put("updated_by", rs.getString("updated_by"));
-                        record.put("updated_at", rs.getTimestamp("updated_at"));
-                        records.add(record);
+                        records.add(reader.read(rs));
                     }
                 }
             }
@@ -161,7 +139,7 @@ public class MailToChildHandler implements RequestHandler<APIGatewayProxyRequest
             response.put("data", records);
             response.put("count", records.size());
 
-            return createCorsResponse(200, buildJsonResponse(response));
+            return TableVersions.withCacheHeaders(StreamingResponse.of(createCorsResponse(200, null), out -> objectMapper.writeValue(out, response)), etag);
 
         } catch (Exception e) {
             context.getLogger().log("Error fetching mail to child records: " + e.getMessage());
@@ -180,7 +158,7 @@ public class MailToChildHandler implements RequestHandler<APIGatewayProxyRequest
     /**
      * Get mail to child records by mailing list ID
      */
-    private APIGatewayProxyResponseEvent handleGetMailToChildByListId(String mailingListId, Context context) {
+    private APIGatewayProxyResponseEvent handleGetMailToChildByListId(String mailingListId, APIGatewayProxyRequestEvent input, Context context) {
         try {
             context.getLogger().log("Fetching mail to child records for mailing list: " + mailingListId);
             
@@ -188,9 +166,17 @@ public class MailToChildHandler implements RequestHandler<APIGatewayProxyRequest
                 return createCorsResponse(400, "{\"error\":\"Bad Request\",\"message\":\"Mailing list ID is required\"}");
             }
 
-            List<Map<String, Object>> records = new ArrayList<>();
+            List<MailToChildRow> records = new ArrayList<>();
+            
+            String etag;
             
             try (Connection conn = getDatabaseConnection()) {
+                etag = TableVersions.etag(TableVersions.MAIL_TO_CHILD, TableVersions.currentVersion(conn, TableVersions.MAIL_TO_CHILD));
+                if (TableVersions.isNotModified(input, etag)) {
+                    context.getLogger().log("Not modified: " + etag);
+                    return TableVersions.notModified(createCorsResponse(304, null), etag);
+                }
+
                 String sql = "SELECT mailing_list_id, recipient_seq, recipient_address, recipent_note, " +
                            "status_div, input_user_cd, created_by, created_at, updated_by, updated_at " +
                            "FROM mail_to_child_mst WHERE mailing_list_id = ? ORDER BY recipient_seq";
@@ -198,19 +184,9 @@ public class MailToChildHandler implements RequestHandler<APIGatewayProxyRequest
                     stmt.setString(1, mailingListId);
                     
                     try (ResultSet rs = stmt.executeQuery()) {
+                        MailToChildRow.Reader reader = MailToChildRow.reader(rs);
                         while (rs.next()) {
-                            Map<String, Object> record = new HashMap<>();
-                            record.put("mailing_list_id", rs.getString("mailing_list_id"));
-                            record.put("recipient_seq", rs.getInt("recipient_seq"));
-                            record.put("recipient_address", rs.getString("recipient_address"));
-                            record.put("recipent_note", rs.getString("recipent_note"));
-                            record.put("status_div", rs.getString("status_div"));
-                            record.put("input_user_cd", rs.getString("input_user_cd"));
-                            record.put("created_by", rs.getString("created_by"));
-                            record.put("created_at", rs.getTimestamp("created_at"));
-                            record.put("updated_by", rs.getString("updated_by"));
-                            record.put("updated_at", rs.getTimestamp("updated_at"));
-                            records.add(record);
+                            records.add(reader.read(rs));
                         }
                     }
                 }
@@ -222,7 +198,7 @@ public class MailToChildHandler implements RequestHandler<APIGatewayProxyRequest
             response.put("data", records);
             response.put("count", records.size());
 
-            return createCorsResponse(200, buildJsonResponse(response));
+            return TableVersions.withCacheHeaders(StreamingResponse.of(createCorsResponse(200, null), out -> objectMapper.writeValue(out, response)), etag);
 
         } catch (Exception e) {
             context.getLogger().log("Error fetching mail to child records: " + e.getMessage());
@@ -245,28 +221,27 @@ public class MailToChildHandler implements RequestHandler<APIGatewayProxyRequest
         String dbUrl = System.getenv("DB_URL");
         String dbUser = System.getenv("DB_USER");
         String dbPassword = System.getenv("DB_PASSWORD");
-        
-        // Log environment variables for debugging (mask password)
-        System.out.println("DB_URL from env: " + dbUrl);
-        System.out.println("DB_USER from env: " + dbUser);
-        System.out.println("DB_PASSWORD from env: " + (dbPassword != null ? "***set***" : "null"));
-        
+
         // Default values for local development
         if (dbUrl == null) {
             dbUrl = "jdbc:postgresql://localhost:5432/nais";
-            System.out.println("Using default DB_URL: " + dbUrl);
         }
         if (dbUser == null) {
             dbUser = "postgres";
-            System.out.println("Using default DB_USER: " + dbUser);
         }
         if (dbPassword == null) {
             dbPassword = "password";
-            System.out.println("Using default DB_PASSWORD");
         }
 
-        System.out.println("Attempting to connect to: " + dbUrl + " with user: " + dbUser);
-        return DriverManager.getConnection(dbUrl, dbUser, dbPassword);
+        Connection conn;
+        try (StartupProfile.Phase phase = StartupProfile.phase("db-connect");
+             RouteMetrics.Timer db = RouteMetrics.db()) {
+            conn = InstrumentedConnection.wrap(DriverManager.getConnection(dbUrl, dbUser, dbPassword));
+        }
+        if (LOG.isDebugEnabled()) {
+            LOG.debug("Connected to database " + dbUrl + " as " + dbUser);
+        }
+        return conn;
     }
 
     /**
@@ -0,0 +1,116 @@
+package com.nais.handlers;
+
+import com.amazonaws.services.lambda.runtime.Context;
+import com.amazonaws.services.lambda.runtime.RequestHandler;
+import com.nais.history.HistoryArchiver;
+import com.nais.jdbc.InstrumentedConnection;
+import com.nais.jdbc.SqlStats;
+import com.nais.lifecycle.Priming;
+import com.nais.logging.StructuredLogger;
+import com.nais.outbox.OutboxPublisher;
+import org.crac.Resource;
+import software.amazon.lambda.powertools.logging.Logging;
+import software.amazon.lambda.powertools.tracing.Tracing;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Mail Master Outbox Publisher (scheduled)
+ * 宛先マスタ変更イベント送信 - EventBridge スケジュールで起動
+ *
+ * Archives mail_master_outbox into the change history (MASTER_HISTORY_ENABLED), then drains
+ * it to the sink, until it is empty or the invocation is about to time out. Overlapping
+ * invocations are safe: batches are claimed with SKIP LOCKED.
+ */
+public class OutboxPublisherHandler implements RequestHandler<Map<String, Object>, Map<String, Object>>, Resource {
+
+    private static final StructuredLogger LOG = StructuredLogger.forService(OutboxPublisher.SERVICE);
+    private static final long TIMEOUT_MARGIN_MILLIS = 5000L;
+
+    private final OutboxPublisher publisher;
+    private final HistoryArchiver archiver;
+
+    public OutboxPublisherHandler() {
+        this.publisher = OutboxPublisher.fromEnv();
+        this.archiver = HistoryArchiver.fromEnv();
+        Priming.register(this);
+    }
+
+    /**
+     * SnapStart: load the JDBC driver (no DB access)
+     */
+    @Override
+    public void beforeCheckpoint(org.crac.Context<? extends Resource> context) throws Exception {
+        Priming.loadJdbcDriver();
+    }
+
+    @Override
+    public void afterRestore(org.crac.Context<? extends Resource> context) {
+        // Connections are opened per invocation; nothing is held across the snapshot
+    }
+
+    @Override
+    @Logging
+    @Tracing
+    public Map<String, Object> handleRequest(Map<String, Object> event, Context context) {
+        StructuredLogger.beginInvocation(context != null ? context.getAwsRequestId() : null, null);
+        long deadline = System.currentTimeMillis() +
+                (context != null ? context.getRemainingTimeInMillis() - TIMEOUT_MARGIN_MILLIS : 60_000L);
+
+        try (Connection conn = getDatabaseConnection()) {
+            Map<String, Object> response = new HashMap<>();
+            if (HistoryArchiver.isEnabled()) {
+                HistoryArchiver.Result archived = archiver.drain(conn, deadline);
+                archived.toEmf().emit();
+                logInfo("History archived: " + archived);
+                response.put("archived", archived.archived);
+            }
+
+            OutboxPublisher.Result result = publisher.drain(conn, deadline);
+            result.toEmf().emit();
+            logInfo("Outbox drained: " + result);
+
+            response.put("published", result.published);
+            response.put("batches", result.batches);
+            response.put("held_back", result.heldBack);
+            response.put("failed_batches", result.failedBatches);
+            response.put("backlog", result.backlog);
+            return response;
+
+        } catch (Exception e) {
+            logError("Error draining mail master outbox", e);
+            throw new RuntimeException("Outbox publish failed", e);
+        } finally {
+            SqlStats.flush(OutboxPublisher.SERVICE);
+        }
+    }
+
+    private Connection getDatabaseConnection() throws Exception {
+        String dbUrl = System.getenv("DB_URL");
+        String dbUser = System.getenv("DB_USER");
+        String dbPassword = System.getenv("DB_PASSWORD");
+
+        if (dbUrl == null) {
+            dbUrl = "jdbc:postgresql://localhost:5432/nais";
+        }
+        if (dbUser == null) {
+            dbUser = "postgres";
+        }
+        if (dbPassword == null) {
+            dbPassword = "password";
+        }
+
+        return InstrumentedConnection.wrap(DriverManager.getConnection(dbUrl, dbUser, dbPassword));
+    }
+
+    private void logInfo(String message) {
+        LOG.info(message);
+    }
+
+    private void logError(String message, Exception e) {
+        LOG.error(message, e);
+    }
+}
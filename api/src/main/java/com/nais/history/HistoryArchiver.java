@@ -0,0 +1,410 @@
+package com.nais.history;
+
+import com.nais.metrics.EmfRecord;
+import com.nais.outbox.OutboxEvents;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Copies outbox events into the append-only history table (mail_master_history)
+ * 宛先マスタ変更履歴 - 変更前/変更後イメージを非同期・一括で記録
+ *
+ * The write path already stores each change's after-image in mail_master_outbox inside
+ * its own transaction, so history adds no statement to an API call. This archiver runs
+ * off the request path: it claims unarchived outbox rows in id order (FOR UPDATE SKIP
+ * LOCKED), writes the whole batch with one INSERT ... SELECT FROM unnest(...) and sets
+ * archived_at in the same transaction - every event is recorded exactly once.
+ *
+ * The before-image is the one the outbox captured from the row's old state. When it differs
+ * from the after-image of the previous history entry of the key, a change was made without
+ * an event (direct SQL, OUTBOX_ENABLED=false) and is counted as a gap. Events without a
+ * captured image (written before outbox_setup.sql added the trigger) fall back to the
+ * previous entry and are stored with before_image_inferred = true. Events of one outbox key
+ * are archived in id order with the same hold-back rule as
+ * {@link com.nais.outbox.OutboxPublisher}. Monthly partitions are created on demand.
+ *
+ * History needs every change to write its event, so the archiver is off when this function
+ * runs with OUTBOX_ENABLED=false.
+ */
+public class HistoryArchiver {
+
+    public static final String TABLE = "mail_master_history";
+
+    private static final boolean ENABLED = !"false".equalsIgnoreCase(System.getenv("MASTER_HISTORY_ENABLED"))
+            && OutboxEvents.isEnabled();
+
+    // history_id is assigned in outbox id order, which is commit order per key.
+    // Child history is kept per row (mailing_list_id|destination_seq); outbox orders it per list
+    private static final String CLAIM_SQL =
+            "SELECT id, aggregate_type, aggregate_key, event_type, payload::text AS payload, " +
+            "before_image::text AS before_image, created_at, " +
+            "CASE WHEN aggregate_type = '" + OutboxEvents.CHILD + "' " +
+            "THEN aggregate_key || '|' || (payload->>'destination_seq') ELSE aggregate_key END AS entity_key, " +
+            "payload->>'updated_by' AS changed_by " +
+            "FROM mail_master_outbox WHERE archived_at IS NULL " +
+            "ORDER BY id LIMIT ? FOR UPDATE SKIP LOCKED";
+
+    private static final String BLOCKED_SQL =
+            "SELECT o.aggregate_key, min(o.id) FROM mail_master_outbox o " +
+            "JOIN (SELECT b.aggregate_key, max(b.id) AS last_id " +
+            "      FROM unnest(?::varchar[], ?::bigint[]) AS b(aggregate_key, id) GROUP BY b.aggregate_key) b " +
+            "ON o.aggregate_key = b.aggregate_key " +
+            "WHERE o.archived_at IS NULL AND o.id < b.last_id AND NOT (o.id = ANY(?::bigint[])) " +
+            "GROUP BY o.aggregate_key";
+
+    private static final String LATEST_SQL =
+            "SELECT DISTINCT ON (entity_type, entity_key) entity_type, entity_key, after_image::text " +
+            "FROM mail_master_history WHERE (entity_type, entity_key) IN (" +
+            "SELECT * FROM unnest(?::varchar[], ?::varchar[])) " +
+            "ORDER BY entity_type, entity_key, history_id DESC";
+
+    private static final String INSERT_SQL =
+            "INSERT INTO mail_master_history " +
+            "(outbox_id, entity_type, entity_key, event_type, before_image, before_image_inferred, after_image, changed_at, changed_by) " +
+            "SELECT h.outbox_id, h.entity_type, h.entity_key, h.event_type, h.before_image::jsonb, h.before_image_inferred, " +
+            "h.after_image::jsonb, h.changed_at, h.changed_by " +
+            "FROM unnest(?::bigint[], ?::varchar[], ?::varchar[], ?::varchar[], ?::text[], ?::boolean[], ?::text[], ?::timestamp[], ?::varchar[]) " +
+            "WITH ORDINALITY AS h(outbox_id, entity_type, entity_key, event_type, before_image, before_image_inferred, " +
+            "after_image, changed_at, changed_by, ord) " +
+            "ORDER BY h.ord";
+
+    private static final String MARK_ARCHIVED_SQL =
+            "UPDATE mail_master_outbox SET archived_at = CURRENT_TIMESTAMP WHERE id = ANY(?::bigint[])";
+
+    private final int batchSize;
+
+    public HistoryArchiver(int batchSize) {
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Archiver configured from MASTER_HISTORY_BATCH_SIZE (default 1000)
+     */
+    public static HistoryArchiver fromEnv() {
+        int batchSize = 1000;
+        String value = System.getenv("MASTER_HISTORY_BATCH_SIZE");
+        if (value != null) {
+            try {
+                batchSize = Math.max(1, Integer.parseInt(value.trim()));
+            } catch (NumberFormatException e) {
+                // keep default
+            }
+        }
+        return new HistoryArchiver(batchSize);
+    }
+
+    /**
+     * Whether outbox events are archived into history (MASTER_HISTORY_ENABLED, default true,
+     * and OUTBOX_ENABLED); the outbox purge keeps unarchived rows while enabled
+     */
+    public static boolean isEnabled() {
+        return ENABLED;
+    }
+
+    /**
+     * Archive batches until nothing is left, everything left is held back, or the deadline
+     * (epoch millis) passes. One transaction per batch.
+     */
+    public Result drain(Connection conn, long deadlineMillis) throws SQLException {
+        conn.setAutoCommit(false);
+        Result result = new Result();
+        long start = System.nanoTime();
+
+        while (System.currentTimeMillis() < deadlineMillis) {
+            List<Entry> claimed = claim(conn);
+            if (claimed.isEmpty()) {
+                conn.commit();
+                break;
+            }
+            List<Entry> batch = releasable(conn, claimed);
+            result.heldBack += claimed.size() - batch.size();
+            if (batch.isEmpty()) {
+                conn.commit();
+                break;
+            }
+
+            result.gaps += chainBeforeImages(conn, batch);
+            ensurePartitions(conn, batch);
+            insert(conn, batch);
+            markArchived(conn, batch);
+            conn.commit();
+
+            result.batches++;
+            result.archived += batch.size();
+            for (Entry entry : batch) {
+                if (entry.beforeInferred) {
+                    result.inferred++;
+                }
+            }
+            if (claimed.size() < batchSize) {
+                break;
+            }
+        }
+
+        result.elapsedNanos = System.nanoTime() - start;
+        return result;
+    }
+
+    private List<Entry> claim(Connection conn) throws SQLException {
+        List<Entry> entries = new ArrayList<>(batchSize);
+        try (PreparedStatement stmt = conn.prepareStatement(CLAIM_SQL)) {
+            stmt.setInt(1, batchSize);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    Entry entry = new Entry();
+                    entry.outboxId = rs.getLong("id");
+                    entry.entityType = rs.getString("aggregate_type");
+                    entry.aggregateKey = rs.getString("aggregate_key");
+                    entry.entityKey = rs.getString("entity_key");
+                    entry.eventType = rs.getString("event_type");
+                    entry.afterImage = rs.getString("payload");
+                    entry.capturedBefore = rs.getString("before_image");
+                    entry.changedAt = rs.getTimestamp("created_at");
+                    entry.changedBy = rs.getString("changed_by");
+                    entries.add(entry);
+                }
+            }
+        }
+        return entries;
+    }
+
+    private List<Entry> releasable(Connection conn, List<Entry> claimed) throws SQLException {
+        String[] keys = new String[claimed.size()];
+        Long[] ids = new Long[claimed.size()];
+        for (int i = 0; i < claimed.size(); i++) {
+            keys[i] = claimed.get(i).aggregateKey;
+            ids[i] = claimed.get(i).outboxId;
+        }
+
+        Map<String, Long> blockedFrom = new HashMap<>();
+        try (PreparedStatement stmt = conn.prepareStatement(BLOCKED_SQL)) {
+            stmt.setArray(1, conn.createArrayOf("varchar", keys));
+            stmt.setArray(2, conn.createArrayOf("bigint", ids));
+            stmt.setArray(3, conn.createArrayOf("bigint", ids));
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    blockedFrom.put(rs.getString(1), rs.getLong(2));
+                }
+            }
+        }
+        if (blockedFrom.isEmpty()) {
+            return claimed;
+        }
+
+        List<Entry> releasable = new ArrayList<>(claimed.size());
+        for (Entry entry : claimed) {
+            Long gap = blockedFrom.get(entry.aggregateKey);
+            if (gap == null || entry.outboxId < gap) {
+                releasable.add(entry);
+            }
+        }
+        return releasable;
+    }
+
+    /**
+     * before-image = the captured one, else (inferred) the after-image of the previous entry
+     * of the same key: earlier in the batch, else the latest history row (one lookup for all
+     * keys of the batch)
+     *
+     * @return number of captured before-images that do not match the previous entry (gaps)
+     */
+    private int chainBeforeImages(Connection conn, List<Entry> batch) throws SQLException {
+        Map<String, String> latest = new HashMap<>();
+        Set<String> lookup = new LinkedHashSet<>();
+        for (Entry entry : batch) {
+            lookup.add(entry.entityType + "\u0000" + entry.entityKey);
+        }
+
+        String[] types = new String[lookup.size()];
+        String[] keys = new String[lookup.size()];
+        int i = 0;
+        for (String typeAndKey : lookup) {
+            int separator = typeAndKey.indexOf('\u0000');
+            types[i] = typeAndKey.substring(0, separator);
+            keys[i++] = typeAndKey.substring(separator + 1);
+        }
+        try (PreparedStatement stmt = conn.prepareStatement(LATEST_SQL)) {
+            stmt.setArray(1, conn.createArrayOf("varchar", types));
+            stmt.setArray(2, conn.createArrayOf("varchar", keys));
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    latest.put(rs.getString(1) + "\u0000" + rs.getString(2), rs.getString(3));
+                }
+            }
+        }
+
+        int gaps = 0;
+        for (Entry entry : batch) {
+            String typeAndKey = entry.entityType + "\u0000" + entry.entityKey;
+            String previous = latest.get(typeAndKey);
+            if (OutboxEvents.CREATED.equals(entry.eventType)) {
+                entry.beforeImage = null;
+            } else if (entry.capturedBefore != null) {
+                // jsonb::text is canonical, so equal images compare equal as text
+                entry.beforeImage = entry.capturedBefore;
+                if (previous != null && !previous.equals(entry.capturedBefore)) {
+                    gaps++;
+                }
+            } else {
+                entry.beforeImage = previous;
+                entry.beforeInferred = true;
+            }
+            latest.put(typeAndKey, entry.afterImage);
+        }
+        return gaps;
+    }
+
+    /**
+     * Create the monthly partitions the batch needs (serialized so concurrent archivers
+     * do not race on CREATE TABLE)
+     */
+    private void ensurePartitions(Connection conn, List<Entry> batch) throws SQLException {
+        Set<LocalDate> months = new LinkedHashSet<>();
+        for (Entry entry : batch) {
+            months.add(entry.changedAt.toLocalDateTime().toLocalDate().withDayOfMonth(1));
+        }
+        for (LocalDate month : months) {
+            String partition = partitionName(month);
+            if (partitionExists(conn, partition)) {
+                continue;
+            }
+            try (Statement stmt = conn.createStatement()) {
+                stmt.execute("SELECT pg_advisory_xact_lock(hashtext('" + TABLE + "'))");
+                stmt.execute("CREATE TABLE IF NOT EXISTS " + partition + " PARTITION OF " + TABLE +
+                        " FOR VALUES FROM ('" + month + "') TO ('" + month.plusMonths(1) + "')");
+            }
+        }
+    }
+
+    private boolean partitionExists(Connection conn, String partition) throws SQLException {
+        try (PreparedStatement stmt = conn.prepareStatement("SELECT to_regclass(?) IS NOT NULL")) {
+            stmt.setString(1, partition);
+            try (ResultSet rs = stmt.executeQuery()) {
+                return rs.next() && rs.getBoolean(1);
+            }
+        }
+    }
+
+    static String partitionName(LocalDate month) {
+        return String.format("%s_y%04dm%02d", TABLE, month.getYear(), month.getMonthValue());
+    }
+
+    private void insert(Connection conn, List<Entry> batch) throws SQLException {
+        int n = batch.size();
+        Long[] outboxIds = new Long[n];
+        String[] types = new String[n];
+        String[] keys = new String[n];
+        String[] events = new String[n];
+        String[] befores = new String[n];
+        Boolean[] inferred = new Boolean[n];
+        String[] afters = new String[n];
+        Timestamp[] changedAt = new Timestamp[n];
+        String[] changedBy = new String[n];
+        for (int i = 0; i < n; i++) {
+            Entry entry = batch.get(i);
+            outboxIds[i] = entry.outboxId;
+            types[i] = entry.entityType;
+            keys[i] = entry.entityKey;
+            events[i] = entry.eventType;
+            befores[i] = entry.beforeImage;
+            inferred[i] = entry.beforeInferred;
+            afters[i] = entry.afterImage;
+            changedAt[i] = entry.changedAt;
+            changedBy[i] = entry.changedBy;
+        }
+
+        try (PreparedStatement stmt = conn.prepareStatement(INSERT_SQL)) {
+            stmt.setArray(1, conn.createArrayOf("bigint", outboxIds));
+            stmt.setArray(2, conn.createArrayOf("varchar", types));
+            stmt.setArray(3, conn.createArrayOf("varchar", keys));
+            stmt.setArray(4, conn.createArrayOf("varchar", events));
+            stmt.setArray(5, conn.createArrayOf("text", befores));
+            stmt.setArray(6, conn.createArrayOf("boolean", inferred));
+            stmt.setArray(7, conn.createArrayOf("text", afters));
+            stmt.setArray(8, conn.createArrayOf("timestamp", changedAt));
+            stmt.setArray(9, conn.createArrayOf("varchar", changedBy));
+            stmt.executeUpdate();
+        }
+    }
+
+    private void markArchived(Connection conn, List<Entry> batch) throws SQLException {
+        Long[] ids = new Long[batch.size()];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = batch.get(i).outboxId;
+        }
+        try (PreparedStatement stmt = conn.prepareStatement(MARK_ARCHIVED_SQL)) {
+            stmt.setArray(1, conn.createArrayOf("bigint", ids));
+            stmt.executeUpdate();
+        }
+    }
+
+    private static final class Entry {
+        long outboxId;
+        String entityType;
+        String aggregateKey;
+        String entityKey;
+        String eventType;
+        String capturedBefore;
+        String beforeImage;
+        boolean beforeInferred;
+        String afterImage;
+        Timestamp changedAt;
+        String changedBy;
+    }
+
+    /**
+     * Outcome of one drain, emitted as EMF metrics
+     */
+    public static final class Result {
+        public int archived;
+        public int batches;
+        public int heldBack;
+        /** Captured before-images that differ from the previous history entry */
+        public int gaps;
+        /** Entries stored with before_image_inferred (no captured before-image) */
+        public int inferred;
+        public long elapsedNanos;
+
+        public EmfRecord toEmf() {
+            return new EmfRecord(EmfRecord.DEFAULT_NAMESPACE)
+                    .dimension("Service", "master-history")
+                    .metric("HistoryArchived", archived, "Count")
+                    .metric("HistoryBatches", batches, "Count")
+                    .metric("HistoryHeldBack", heldBack, "Count")
+                    .metric("HistoryGaps", gaps, "Count")
+                    .metric("HistoryInferred", inferred, "Count")
+                    .metric("HistoryDrainMs", elapsedNanos / 1_000_000d, "Milliseconds");
+        }
+
+        @Override
+        public String toString() {
+            return "archived=" + archived + " batches=" + batches + " heldBack=" + heldBack +
+                   " gaps=" + gaps + " inferred=" + inferred + " elapsedMs=" + elapsedNanos / 1_000_000;
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        String dbUrl = System.getenv().getOrDefault("DB_URL", "jdbc:postgresql://localhost:5432/nais");
+        String dbUser = System.getenv().getOrDefault("DB_USER", "postgres");
+        String dbPassword = System.getenv().getOrDefault("DB_PASSWORD", "password");
+        try (Connection conn = DriverManager.getConnection(dbUrl, dbUser, dbPassword)) {
+            Result result = fromEnv().drain(conn, System.currentTimeMillis() + 60_000L);
+            result.toEmf().emit();
+            System.out.println("History archived at " + LocalDateTime.now() + ": " + result);
+        }
+    }
+}
@@ -0,0 +1,276 @@
+package com.nais.http;
+
+import com.amazonaws.services.lambda.runtime.events.APIGatewayProxyRequestEvent;
+import com.amazonaws.services.lambda.runtime.events.APIGatewayProxyResponseEvent;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Minimal API Gateway proxy event codec for {@link StreamingApiHandler}
+ * API Gateway イベントの軽量パーサ / 応答エンベロープの直接出力
+ *
+ * readRequest() walks the event with a streaming parser and keeps only what the handlers
+ * read: httpMethod, path, resource, headers, query string (single and multi value), path
+ * parameters, body and isBase64Encoded. requestContext, multiValueHeaders, stageVariables
+ * etc. are skipped without being materialized. A base64 body is decoded here, so delegates
+ * always see the JSON text.
+ *
+ * writeResponse() writes the proxy response envelope straight to the output stream. String
+ * bodies are escaped in place; a {@link StreamingResponse} body is written (and compressed)
+ * while its writer runs, so it never exists as a String.
+ */
+public final class ApiGatewayStreamCodec {
+
+    private static final JsonFactory JSON = new JsonFactory();
+
+    private ApiGatewayStreamCodec() {
+    }
+
+    public static APIGatewayProxyRequestEvent readRequest(InputStream in) throws IOException {
+        APIGatewayProxyRequestEvent event = new APIGatewayProxyRequestEvent();
+        try (JsonParser parser = JSON.createParser(in)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new IOException("API Gateway proxy event must be a JSON object");
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.getCurrentName();
+                JsonToken value = parser.nextToken();
+                switch (field) {
+                    case "httpMethod":
+                        event.setHttpMethod(text(parser, value));
+                        break;
+                    case "path":
+                        event.setPath(text(parser, value));
+                        break;
+                    case "resource":
+                        event.setResource(text(parser, value));
+                        break;
+                    case "body":
+                        event.setBody(text(parser, value));
+                        break;
+                    case "isBase64Encoded":
+                        event.setIsBase64Encoded(value == JsonToken.VALUE_TRUE);
+                        break;
+                    case "headers":
+                        event.setHeaders(stringMap(parser, value));
+                        break;
+                    case "queryStringParameters":
+                        event.setQueryStringParameters(stringMap(parser, value));
+                        break;
+                    case "pathParameters":
+                        event.setPathParameters(stringMap(parser, value));
+                        break;
+                    case "multiValueQueryStringParameters":
+                        event.setMultiValueQueryStringParameters(listMap(parser, value));
+                        break;
+                    default:
+                        parser.skipChildren();
+                }
+            }
+        }
+        // BinaryMediaTypes makes API Gateway base64 encode request bodies too
+        ResponseCompression.decodeRequestBody(event);
+        return event;
+    }
+
+    public static void writeResponse(APIGatewayProxyResponseEvent response, OutputStream out) throws IOException {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), 8192);
+        boolean base64 = Boolean.TRUE.equals(response.getIsBase64Encoded());
+
+        writer.write("{\"statusCode\":");
+        writer.write(String.valueOf(response.getStatusCode()));
+
+        // Body first: a streamed body decides Content-Encoding / isBase64Encoded as it goes
+        writer.write(",\"body\":");
+        if (response instanceof StreamingResponse && ((StreamingResponse) response).isDeferred()) {
+            writer.write('"');
+            if (writeStreamedBody((StreamingResponse) response, writer)) {
+                base64 = true;
+            }
+            writer.write('"');
+        } else {
+            writeString(writer, response.getBody());
+        }
+
+        writer.write(",\"headers\":");
+        writeStringMap(writer, response.getHeaders());
+        if (response.getMultiValueHeaders() != null) {
+            writer.write(",\"multiValueHeaders\":{");
+            boolean first = true;
+            for (Map.Entry<String, List<String>> header : response.getMultiValueHeaders().entrySet()) {
+                if (!first) {
+                    writer.write(',');
+                }
+                first = false;
+                writeString(writer, header.getKey());
+                writer.write(":[");
+                for (int i = 0; i < header.getValue().size(); i++) {
+                    if (i > 0) {
+                        writer.write(',');
+                    }
+                    writeString(writer, header.getValue().get(i));
+                }
+                writer.write(']');
+            }
+            writer.write('}');
+        }
+        writer.write(",\"isBase64Encoded\":");
+        writer.write(base64 ? "true" : "false");
+        writer.write('}');
+        writer.flush();
+    }
+
+    /**
+     * Returns true if the body was compressed (headers updated, body written as base64)
+     */
+    private static boolean writeStreamedBody(StreamingResponse response, Writer writer) throws IOException {
+        String encoding = response.encoding();
+        if (encoding == null) {
+            response.writeBody(new JsonStringWriter(writer));
+            return false;
+        }
+
+        // Base64 output is plain ASCII and needs no JSON escaping
+        OutputStream ascii = new OutputStream() {
+            @Override
+            public void write(int b) throws IOException {
+                writer.write(b);
+            }
+
+            @Override
+            public void write(byte[] buffer, int offset, int length) throws IOException {
+                char[] chars = new char[length];
+                for (int i = 0; i < length; i++) {
+                    chars[i] = (char) buffer[offset + i];
+                }
+                writer.write(chars, 0, length);
+            }
+        };
+        ResponseCompression.StreamEncoder encoder = ResponseCompression.streamEncoder(encoding, response.service(), ascii);
+        Writer utf8 = new OutputStreamWriter(encoder, StandardCharsets.UTF_8);
+        response.writeBody(new Writer() {
+            @Override
+            public void write(char[] buffer, int offset, int length) throws IOException {
+                utf8.write(buffer, offset, length);
+            }
+
+            @Override
+            public void write(String text, int offset, int length) throws IOException {
+                utf8.write(text, offset, length);
+            }
+
+            @Override
+            public void flush() throws IOException {
+                utf8.flush();
+            }
+
+            @Override
+            public void close() throws IOException {
+                utf8.flush();
+            }
+        });
+        utf8.flush();
+
+        if (!encoder.finish()) {
+            // Below RESPONSE_COMPRESSION_MIN_BYTES: identity
+            new JsonStringWriter(writer).write(new String(encoder.pendingBytes(), StandardCharsets.UTF_8));
+            return false;
+        }
+        Map<String, String> headers = response.getHeaders();
+        if (headers == null) {
+            headers = new HashMap<>();
+            response.setHeaders(headers);
+        }
+        ResponseCompression.markEncoded(headers, encoding);
+        return true;
+    }
+
+    private static void writeString(Writer writer, String value) throws IOException {
+        if (value == null) {
+            writer.write("null");
+            return;
+        }
+        writer.write('"');
+        new JsonStringWriter(writer).write(value);
+        writer.write('"');
+    }
+
+    private static void writeStringMap(Writer writer, Map<String, String> map) throws IOException {
+        if (map == null) {
+            writer.write("null");
+            return;
+        }
+        writer.write('{');
+        boolean first = true;
+        for (Map.Entry<String, String> entry : map.entrySet()) {
+            if (!first) {
+                writer.write(',');
+            }
+            first = false;
+            writeString(writer, entry.getKey());
+            writer.write(':');
+            writeString(writer, entry.getValue());
+        }
+        writer.write('}');
+    }
+
+    private static String text(JsonParser parser, JsonToken value) throws IOException {
+        if (value == JsonToken.VALUE_NULL) {
+            return null;
+        }
+        if (value == JsonToken.START_OBJECT || value == JsonToken.START_ARRAY) {
+            parser.skipChildren();
+            return null;
+        }
+        return parser.getText();
+    }
+
+    private static Map<String, String> stringMap(JsonParser parser, JsonToken value) throws IOException {
+        if (value != JsonToken.START_OBJECT) {
+            parser.skipChildren();
+            return null;
+        }
+        Map<String, String> map = new HashMap<>();
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String key = parser.getCurrentName();
+            map.put(key, text(parser, parser.nextToken()));
+        }
+        return map;
+    }
+
+    private static Map<String, List<String>> listMap(JsonParser parser, JsonToken value) throws IOException {
+        if (value != JsonToken.START_OBJECT) {
+            parser.skipChildren();
+            return null;
+        }
+        Map<String, List<String>> map = new HashMap<>();
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String key = parser.getCurrentName();
+            JsonToken token = parser.nextToken();
+            if (token != JsonToken.START_ARRAY) {
+                parser.skipChildren();
+                map.put(key, null);
+                continue;
+            }
+            List<String> values = new ArrayList<>(2);
+            while ((token = parser.nextToken()) != JsonToken.END_ARRAY) {
+                values.add(text(parser, token));
+            }
+            map.put(key, values);
+        }
+        return map;
+    }
+}
@@ -0,0 +1,96 @@
+package com.nais.http;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Writes text as the contents of a JSON string literal (no surrounding quotes)
+ * JSON文字列エスケープ出力
+ *
+ * close() does not close the underlying writer, so serializers that close their target
+ * (ObjectMapper.writeValue) can be pointed at it directly.
+ */
+final class JsonStringWriter extends Writer {
+
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private final Writer out;
+
+    JsonStringWriter(Writer out) {
+        this.out = out;
+    }
+
+    @Override
+    public void write(int c) throws IOException {
+        char ch = (char) c;
+        if (ch >= 0x20 && ch != '"' && ch != '\\') {
+            out.write(ch);
+        } else {
+            escape(ch);
+        }
+    }
+
+    @Override
+    public void write(char[] buffer, int offset, int length) throws IOException {
+        int end = offset + length;
+        int start = offset;
+        for (int i = offset; i < end; i++) {
+            char ch = buffer[i];
+            if (ch < 0x20 || ch == '"' || ch == '\\') {
+                if (i > start) {
+                    out.write(buffer, start, i - start);
+                }
+                escape(ch);
+                start = i + 1;
+            }
+        }
+        if (end > start) {
+            out.write(buffer, start, end - start);
+        }
+    }
+
+    @Override
+    public void write(String text, int offset, int length) throws IOException {
+        int end = offset + length;
+        int start = offset;
+        for (int i = offset; i < end; i++) {
+            char ch = text.charAt(i);
+            if (ch < 0x20 || ch == '"' || ch == '\\') {
+                if (i > start) {
+                    out.write(text, start, i - start);
+                }
+                escape(ch);
+                start = i + 1;
+            }
+        }
+        if (end > start) {
+            out.write(text, start, end - start);
+        }
+    }
+
+    private void escape(char ch) throws IOException {
+        switch (ch) {
+            case '"': out.write("\\\""); break;
+            case '\\': out.write("\\\\"); break;
+            case '\n': out.write("\\n"); break;
+            case '\r': out.write("\\r"); break;
+            case '\t': out.write("\\t"); break;
+            case '\b': out.write("\\b"); break;
+            case '\f': out.write("\\f"); break;
+            default:
+                out.write("\\u00");
+                out.write(HEX[ch >> 4]);
+                out.write(HEX[ch & 0xF]);
+        }
+    }
+
+    @Override
+    public void flush() throws IOException {
+        out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        flush();
+    }
+}
@@ -0,0 +1,130 @@
+package com.nais.http;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Path-template trie used by the front controller
+ * パステンプレートのトライ木ルーター
+ *
+ * Templates use the API Gateway syntax: literal segments and {name} for one segment.
+ * Literal segments win over
+ * parameters, so /customer/search is matched before /customer/{code}. Matching walks
+ * the path once without regular expressions or per-route string comparisons.
+ *
+ * Usage: router.add("/customer/{code}", customerHandler); router.match("/customer/0001-0002")
+ */
+public final class PathRouter<T> {
+
+    private final Node<T> root = new Node<>();
+
+    /**
+     * Register a target for a path template. Re-registering a template replaces its target.
+     */
+    public PathRouter<T> add(String template, T target) {
+        Node<T> node = root;
+        for (String segment : split(template)) {
+            if (segment.startsWith("{") && segment.endsWith("}")) {
+                String name = segment.substring(1, segment.length() - 1);
+                if (node.param == null) {
+                    node.param = new Node<>();
+                    node.paramName = name;
+                } else if (!node.paramName.equals(name)) {
+                    throw new IllegalArgumentException("Conflicting parameter {" + name + "} vs {" + node.paramName + "} in " + template);
+                }
+                node = node.param;
+            } else {
+                node = node.literals.computeIfAbsent(segment, s -> new Node<>());
+            }
+        }
+        node.target = target;
+        node.template = template;
+        return this;
+    }
+
+    /**
+     * Resolve a request path, or null when no template matches
+     */
+    public Match<T> match(String path) {
+        if (path == null) {
+            return null;
+        }
+        String[] segments = split(path);
+        Map<String, String> params = new LinkedHashMap<>();
+        Node<T> node = match(root, segments, 0, params);
+        if (node == null) {
+            return null;
+        }
+        return new Match<>(node.target, node.template, params);
+    }
+
+    private static <T> Node<T> match(Node<T> node, String[] segments, int index, Map<String, String> params) {
+        if (index == segments.length) {
+            return node.target != null ? node : null;
+        }
+        String segment = segments[index];
+
+        Node<T> literal = node.literals.get(segment);
+        if (literal != null) {
+            Node<T> found = match(literal, segments, index + 1, params);
+            if (found != null) {
+                return found;
+            }
+        }
+        if (node.param != null && !segment.isEmpty()) {
+            params.put(node.paramName, segment);
+            Node<T> found = match(node.param, segments, index + 1, params);
+            if (found != null) {
+                return found;
+            }
+            params.remove(node.paramName);
+        }
+        return null;
+    }
+
+    private static String[] split(String path) {
+        int start = path.startsWith("/") ? 1 : 0;
+        int end = path.endsWith("/") && path.length() > start ? path.length() - 1 : path.length();
+        if (end <= start) {
+            return new String[0];
+        }
+        return path.substring(start, end).split("/", -1);
+    }
+
+    private static final class Node<T> {
+        private final Map<String, Node<T>> literals = new HashMap<>();
+        private Node<T> param;
+        private String paramName;
+        private T target;
+        private String template;
+    }
+
+    /**
+     * Matched target, its template (API Gateway "resource") and extracted path parameters
+     */
+    public static final class Match<T> {
+        private final T target;
+        private final String template;
+        private final Map<String, String> pathParameters;
+
+        Match(T target, String template, Map<String, String> pathParameters) {
+            this.target = target;
+            this.template = template;
+            this.pathParameters = Collections.unmodifiableMap(pathParameters);
+        }
+
+        public T getTarget() {
+            return target;
+        }
+
+        public String getTemplate() {
+            return template;
+        }
+
+        public Map<String, String> getPathParameters() {
+            return pathParameters;
+        }
+    }
+}
@@ -0,0 +1,417 @@
+package com.nais.http;
+
+import com.amazonaws.services.lambda.runtime.events.APIGatewayProxyRequestEvent;
+import com.amazonaws.services.lambda.runtime.events.APIGatewayProxyResponseEvent;
+import com.nais.metrics.EmfRecord;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Locale;
+import java.util.Map;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Accept-Encoding negotiated response compression for API Gateway proxy responses
+ *
+ * Bodies at or above RESPONSE_COMPRESSION_MIN_BYTES (default 1024) are gzip/deflate
+ * compressed at RESPONSE_COMPRESSION_LEVEL (1-9, default 6) and returned base64 encoded
+ * with isBase64Encoded=true, which API Gateway decodes back to binary for the client.
+ * Requires BinaryMediaTypes on the REST API (see template.yaml), which in turn means
+ * request bodies may arrive base64 encoded - {@link ApiGatewayStreamCodec} decodes them, and
+ * handlers that read a body call {@link #decodeRequestBody} (after authentication).
+ *
+ * Every negotiated response carries Vary: Accept-Encoding. A compressed body gets its own
+ * strong ETag ("...-gzip" / "...-deflate"); {@link #identityEtag} maps it back for
+ * If-None-Match, and a 304 repeats the tag the client sent.
+ */
+public final class ResponseCompression {
+
+    public static final String GZIP = "gzip";
+    public static final String DEFLATE = "deflate";
+    private static final String[] ENCODINGS = {GZIP, DEFLATE};
+
+    private static final int MIN_BYTES = intEnv("RESPONSE_COMPRESSION_MIN_BYTES", 1024, 0, Integer.MAX_VALUE);
+    private static final int LEVEL = intEnv("RESPONSE_COMPRESSION_LEVEL", 6, 1, 9);
+    private static final boolean ENABLED = !"false".equalsIgnoreCase(System.getenv("RESPONSE_COMPRESSION_ENABLED"));
+
+    private ResponseCompression() {
+    }
+
+    /**
+     * Compress the response body if the client accepts it and the body is large enough
+     */
+    public static APIGatewayProxyResponseEvent apply(APIGatewayProxyRequestEvent input,
+                                                     APIGatewayProxyResponseEvent response,
+                                                     String service) {
+        if (!ENABLED || response == null) {
+            return response;
+        }
+        // The representation depends on Accept-Encoding whether or not this one is compressed
+        addVary(response);
+        String encoding = negotiate(getHeader(input.getHeaders(), "Accept-Encoding"));
+
+        if (response instanceof StreamingResponse && ((StreamingResponse) response).isDeferred()) {
+            // Written by ApiGatewayStreamCodec: compressed while streaming, see streamEncoder
+            ((StreamingResponse) response).compressWith(encoding, service);
+            return response;
+        }
+        if (response.getStatusCode() != null && response.getStatusCode() == 304) {
+            echoCachedEtag(input, response);
+            return response;
+        }
+        if (response.getBody() == null || Boolean.TRUE.equals(response.getIsBase64Encoded())) {
+            return response;
+        }
+
+        byte[] raw = response.getBody().getBytes(StandardCharsets.UTF_8);
+        if (encoding == null || raw.length < MIN_BYTES) {
+            return response;
+        }
+
+        long start = System.nanoTime();
+        byte[] compressed;
+        try {
+            compressed = compress(raw, encoding, LEVEL);
+        } catch (IOException e) {
+            System.err.println("Response compression failed, sending identity: " + e.getMessage());
+            return response;
+        }
+        double elapsedMs = (System.nanoTime() - start) / 1_000_000.0;
+
+        if (compressed.length >= raw.length) {
+            return response;
+        }
+
+        response.setBody(Base64.getEncoder().encodeToString(compressed));
+        response.setIsBase64Encoded(true);
+        markEncoded(response.getHeaders(), encoding);
+
+        emit(service, encoding, raw.length, compressed.length, elapsedMs);
+
+        return response;
+    }
+
+    /**
+     * Encoder for a streamed body: bytes are held until RESPONSE_COMPRESSION_MIN_BYTES, then
+     * compressed and base64 encoded into {@code base64Sink} as they arrive. A body that ends
+     * below the threshold is not compressed; {@link StreamEncoder#finish()} then returns false
+     * and the caller writes {@link StreamEncoder#pendingBytes()} as identity text.
+     */
+    static StreamEncoder streamEncoder(String encoding, String service, OutputStream base64Sink) {
+        return new StreamEncoder(encoding, service, base64Sink);
+    }
+
+    static final class StreamEncoder extends OutputStream {
+        private final String encoding;
+        private final String service;
+        private final OutputStream base64Sink;
+        private ByteArrayOutputStream pending = new ByteArrayOutputStream(Math.min(MIN_BYTES, 64 * 1024) + 1);
+        private OutputStream compressor;
+        private Deflater deflater;
+        private long rawBytes;
+        private long compressedBytes;
+
+        private StreamEncoder(String encoding, String service, OutputStream base64Sink) {
+            this.encoding = encoding;
+            this.service = service;
+            this.base64Sink = base64Sink;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[] {(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] buffer, int offset, int length) throws IOException {
+            rawBytes += length;
+            if (compressor != null) {
+                compressor.write(buffer, offset, length);
+                return;
+            }
+            pending.write(buffer, offset, length);
+            if (pending.size() >= MIN_BYTES) {
+                startCompression();
+            }
+        }
+
+        private void startCompression() throws IOException {
+            OutputStream base64 = Base64.getEncoder().wrap(new FilterOutputStream(base64Sink) {
+                @Override
+                public void write(byte[] buffer, int offset, int length) throws IOException {
+                    out.write(buffer, offset, length);
+                }
+
+                @Override
+                public void close() throws IOException {
+                    // Base64 padding has been written; the sink stays open for the rest of the envelope
+                    out.flush();
+                }
+            });
+            // Count compressed bytes on their way into the base64 encoder
+            OutputStream counted = new FilterOutputStream(base64) {
+                @Override
+                public void write(int b) throws IOException {
+                    compressedBytes++;
+                    out.write(b);
+                }
+
+                @Override
+                public void write(byte[] buffer, int offset, int length) throws IOException {
+                    compressedBytes += length;
+                    out.write(buffer, offset, length);
+                }
+            };
+            if (GZIP.equals(encoding)) {
+                compressor = new GZIPOutputStream(counted, 8192) {
+                    {
+                        def.setLevel(LEVEL);
+                    }
+                };
+            } else {
+                deflater = new Deflater(LEVEL);
+                compressor = new DeflaterOutputStream(counted, deflater, 8192);
+            }
+            pending.writeTo(compressor);
+            pending = null;
+        }
+
+        /**
+         * Complete the stream; true if the body was compressed (base64 already written)
+         */
+        boolean finish() throws IOException {
+            if (compressor == null) {
+                return false;
+            }
+            try {
+                compressor.close();
+            } finally {
+                if (deflater != null) {
+                    deflater.end();
+                }
+            }
+            emit(service, encoding, rawBytes, compressedBytes, -1);
+            return true;
+        }
+
+        byte[] pendingBytes() {
+            return pending.toByteArray();
+        }
+    }
+
+    private static void emit(String service, String encoding, long rawBytes, long compressedBytes, double elapsedMs) {
+        EmfRecord record = new EmfRecord(EmfRecord.DEFAULT_NAMESPACE)
+                .dimension("Service", service)
+                .dimension("Encoding", encoding)
+                .metric("ResponseBytes", rawBytes, "Bytes")
+                .metric("CompressedBytes", compressedBytes, "Bytes")
+                .metric("CompressionRatio", (double) rawBytes / Math.max(1, compressedBytes), "None")
+                .property("CompressionLevel", LEVEL);
+        if (elapsedMs >= 0) {
+            record.metric("CompressionTime", elapsedMs, "Milliseconds");
+        } else {
+            // Streamed: compression is interleaved with serialization, so no separate timing
+            record.property("Streamed", true);
+        }
+        record.emit();
+    }
+
+    /**
+     * Content-Encoding and the per-encoding ETag of a compressed body
+     */
+    static void markEncoded(Map<String, String> headers, String encoding) {
+        if (headers == null) {
+            return;
+        }
+        headers.put("Content-Encoding", encoding);
+        String etag = headers.get("ETag");
+        if (etag != null) {
+            headers.put("ETag", encodedEtag(etag, encoding));
+        }
+    }
+
+    /**
+     * A strong ETag names one representation: "tag" becomes "tag-gzip" / "tag-deflate"
+     */
+    static String encodedEtag(String etag, String encoding) {
+        if (etag.length() < 2 || !etag.endsWith("\"")) {
+            return etag;
+        }
+        return etag.substring(0, etag.length() - 1) + "-" + encoding + "\"";
+    }
+
+    /**
+     * The ETag of the identity representation for an If-None-Match entry that may carry an
+     * encoding suffix (W/ already removed)
+     */
+    public static String identityEtag(String tag) {
+        for (String encoding : ENCODINGS) {
+            int suffix = tag.length() - encoding.length() - 2;
+            if (suffix > 0 && tag.endsWith("\"") && tag.charAt(suffix) == '-'
+                    && tag.regionMatches(suffix + 1, encoding, 0, encoding.length())) {
+                return tag.substring(0, suffix) + "\"";
+            }
+        }
+        return tag;
+    }
+
+    private static void addVary(APIGatewayProxyResponseEvent response) {
+        Map<String, String> headers = response.getHeaders();
+        if (headers == null) {
+            return;
+        }
+        String vary = headers.get("Vary");
+        if (vary == null || vary.isEmpty()) {
+            headers.put("Vary", "Accept-Encoding");
+        } else if (!vary.toLowerCase(Locale.ROOT).contains("accept-encoding")) {
+            headers.put("Vary", vary + ", Accept-Encoding");
+        }
+    }
+
+    /**
+     * A 304 carries the ETag of the representation the client holds, which may be the gzip one
+     */
+    private static void echoCachedEtag(APIGatewayProxyRequestEvent input, APIGatewayProxyResponseEvent response) {
+        String etag = response.getHeaders() != null ? response.getHeaders().get("ETag") : null;
+        String ifNoneMatch = getHeader(input.getHeaders(), "If-None-Match");
+        if (etag == null || ifNoneMatch == null) {
+            return;
+        }
+        for (String candidate : ifNoneMatch.split(",")) {
+            String tag = candidate.trim();
+            if (tag.startsWith("W/")) {
+                tag = tag.substring(2);
+            }
+            if (!tag.equals(etag) && etag.equals(identityEtag(tag))) {
+                response.getHeaders().put("ETag", tag);
+                return;
+            }
+        }
+    }
+
+    /**
+     * Decode a base64 request body in place. With BinaryMediaTypes enabled API Gateway
+     * may base64 encode incoming JSON bodies as well.
+     */
+    public static void decodeRequestBody(APIGatewayProxyRequestEvent input) {
+        if (input != null && Boolean.TRUE.equals(input.getIsBase64Encoded()) && input.getBody() != null) {
+            input.setBody(new String(Base64.getDecoder().decode(input.getBody()), StandardCharsets.UTF_8));
+            input.setIsBase64Encoded(false);
+        }
+    }
+
+    /**
+     * Exercise negotiation and both encoders without emitting metrics (SnapStart priming)
+     */
+    public static void warmUp(byte[] sample) throws IOException {
+        negotiate("gzip;q=1.0, deflate;q=0.5, *;q=0");
+        compress(sample, GZIP, LEVEL);
+        compress(sample, DEFLATE, LEVEL);
+        Base64.getEncoder().encodeToString(sample);
+    }
+
+    /**
+     * Pick the best supported coding from an Accept-Encoding header (gzip preferred)
+     */
+    static String negotiate(String acceptEncoding) {
+        if (acceptEncoding == null || acceptEncoding.isEmpty()) {
+            return null;
+        }
+        double gzipQ = -1;
+        double deflateQ = -1;
+        double wildcardQ = -1;
+
+        for (String part : acceptEncoding.split(",")) {
+            String token = part.trim();
+            double q = 1.0;
+            int semi = token.indexOf(';');
+            if (semi >= 0) {
+                String params = token.substring(semi + 1).trim();
+                token = token.substring(0, semi).trim();
+                if (params.startsWith("q=")) {
+                    try {
+                        q = Double.parseDouble(params.substring(2).trim());
+                    } catch (NumberFormatException e) {
+                        q = 0;
+                    }
+                }
+            }
+            if (GZIP.equalsIgnoreCase(token) || "x-gzip".equalsIgnoreCase(token)) {
+                gzipQ = q;
+            } else if (DEFLATE.equalsIgnoreCase(token)) {
+                deflateQ = q;
+            } else if ("*".equals(token)) {
+                wildcardQ = q;
+            }
+        }
+
+        if (gzipQ < 0) {
+            gzipQ = wildcardQ;
+        }
+        if (deflateQ < 0) {
+            deflateQ = wildcardQ;
+        }
+        if (gzipQ > 0 && gzipQ >= deflateQ) {
+            return GZIP;
+        }
+        if (deflateQ > 0) {
+            return DEFLATE;
+        }
+        return null;
+    }
+
+    static byte[] compress(byte[] raw, String encoding, int level) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(64, raw.length / 4));
+        if (GZIP.equals(encoding)) {
+            try (GZIPOutputStream gzip = new GZIPOutputStream(out, 8192) {
+                {
+                    def.setLevel(level);
+                }
+            }) {
+                gzip.write(raw);
+            }
+        } else {
+            Deflater deflater = new Deflater(level);
+            try (DeflaterOutputStream deflate = new DeflaterOutputStream(out, deflater, 8192)) {
+                deflate.write(raw);
+            } finally {
+                deflater.end();
+            }
+        }
+        return out.toByteArray();
+    }
+
+    private static String getHeader(Map<String, String> headers, String name) {
+        if (headers == null) {
+            return null;
+        }
+        String value = headers.get(name);
+        if (value != null) {
+            return value;
+        }
+        for (Map.Entry<String, String> entry : headers.entrySet()) {
+            if (name.equalsIgnoreCase(entry.getKey())) {
+                return entry.getValue();
+            }
+        }
+        return null;
+    }
+
+    private static int intEnv(String name, int defaultValue, int min, int max) {
+        String value = System.getenv(name);
+        if (value == null || value.trim().isEmpty()) {
+            return defaultValue;
+        }
+        try {
+            return Math.min(max, Math.max(min, Integer.parseInt(value.trim())));
+        } catch (NumberFormatException e) {
+            return defaultValue;
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package com.nais.http;
+
+import com.amazonaws.services.lambda.runtime.Context;
+import com.amazonaws.services.lambda.runtime.RequestHandler;
+import com.amazonaws.services.lambda.runtime.RequestStreamHandler;
+import com.amazonaws.services.lambda.runtime.events.APIGatewayProxyRequestEvent;
+import com.amazonaws.services.lambda.runtime.events.APIGatewayProxyResponseEvent;
+import com.nais.lifecycle.Priming;
+import com.nais.metrics.RouteMetrics;
+import org.crac.Resource;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * RequestStreamHandler adapter for the API Gateway proxy handlers
+ * ストリーム入出力アダプタ - ランタイムのイベント (逆)シリアライズを省略
+ *
+ * The delegate is the handler class named by STREAM_DELEGATE (e.g.
+ * com.nais.handlers.CustomerHandler). Events are decoded and responses written by
+ * {@link ApiGatewayStreamCodec} instead of the runtime's reflective serializer, and
+ * {@link StreamingResponse} bodies go straight to the output stream. Enabled per stack with
+ * the StreamCodec=true parameter of template.yaml.
+ */
+public class StreamingApiHandler implements RequestStreamHandler, Resource {
+
+    private static final byte[] PRIMING_EVENT = ("{\"resource\":\"/\",\"path\":\"/\",\"httpMethod\":\"OPTIONS\","
+            + "\"headers\":{\"Accept-Encoding\":\"gzip\"},\"multiValueHeaders\":{\"Accept-Encoding\":[\"gzip\"]},"
+            + "\"queryStringParameters\":null,\"multiValueQueryStringParameters\":{\"a\":[\"1\",\"2\"]},"
+            + "\"pathParameters\":{\"id\":\"1\"},\"requestContext\":{\"requestId\":\"priming\",\"identity\":{}},"
+            + "\"body\":\"{\\\"a\\\":\\\"\\u3042\\\"}\",\"isBase64Encoded\":false}").getBytes(StandardCharsets.UTF_8);
+
+    private final RequestHandler<APIGatewayProxyRequestEvent, APIGatewayProxyResponseEvent> delegate;
+
+    public StreamingApiHandler() {
+        this(createDelegate(System.getenv("STREAM_DELEGATE")));
+    }
+
+    public StreamingApiHandler(RequestHandler<APIGatewayProxyRequestEvent, APIGatewayProxyResponseEvent> delegate) {
+        this.delegate = delegate;
+        Priming.register(this);
+    }
+
+    /**
+     * SnapStart: load the codec paths (the delegate primes itself)
+     */
+    @Override
+    public void beforeCheckpoint(org.crac.Context<? extends Resource> context) throws Exception {
+        APIGatewayProxyRequestEvent event = ApiGatewayStreamCodec.readRequest(new ByteArrayInputStream(PRIMING_EVENT));
+        APIGatewayProxyResponseEvent response = new APIGatewayProxyResponseEvent()
+                .withStatusCode(200)
+                .withHeaders(event.getHeaders())
+                .withBody(event.getBody());
+        ApiGatewayStreamCodec.writeResponse(response, new ByteArrayOutputStream());
+    }
+
+    @Override
+    public void afterRestore(org.crac.Context<? extends Resource> context) {
+        // Stateless
+    }
+
+    @Override
+    public void handleRequest(InputStream input, OutputStream output, Context context) throws IOException {
+        APIGatewayProxyRequestEvent event = ApiGatewayStreamCodec.readRequest(input);
+        APIGatewayProxyResponseEvent response;
+        StreamingResponse.enterStreamedInvocation();
+        try {
+            response = delegate.handleRequest(event, context);
+        } finally {
+            StreamingResponse.exitStreamedInvocation();
+        }
+        CountingOutputStream counted = new CountingOutputStream(output);
+        ApiGatewayStreamCodec.writeResponse(response, counted);
+        RouteMetrics.endStreamed(counted.count);
+    }
+
+    /**
+     * Bytes of the response envelope, for the route's ResponseBytes metric
+     */
+    private static final class CountingOutputStream extends FilterOutputStream {
+        private long count;
+
+        CountingOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            count++;
+            out.write(b);
+        }
+
+        @Override
+        public void write(byte[] buffer, int offset, int length) throws IOException {
+            count += length;
+            out.write(buffer, offset, length);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static RequestHandler<APIGatewayProxyRequestEvent, APIGatewayProxyResponseEvent> createDelegate(String className) {
+        if (className == null || className.trim().isEmpty()) {
+            throw new IllegalStateException("STREAM_DELEGATE must name the API Gateway handler class");
+        }
+        try {
+            return (RequestHandler<APIGatewayProxyRequestEvent, APIGatewayProxyResponseEvent>)
+                    Class.forName(className.trim()).getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Cannot create STREAM_DELEGATE " + className, e);
+        }
+    }
+}
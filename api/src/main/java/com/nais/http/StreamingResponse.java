@@ -0,0 +1,114 @@
+package com.nais.http;
+
+import com.amazonaws.services.lambda.runtime.events.APIGatewayProxyResponseEvent;
+import com.nais.metrics.RouteMetrics;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+
+/**
+ * Proxy response whose body is produced by a writer instead of held as a String
+ * ストリーミング応答 - 本文を出力ストリームへ直接書き込む
+ *
+ * Under {@link StreamingApiHandler} the body is written straight into the Lambda output
+ * stream, and compressed there if {@link ResponseCompression#apply} negotiated an encoding.
+ * Invoked as a plain RequestHandler, the body is rendered to a String on first
+ * {@link #getBody()} and everything behaves like a regular APIGatewayProxyResponseEvent.
+ */
+public class StreamingResponse extends APIGatewayProxyResponseEvent {
+
+    private static final long serialVersionUID = 1L;
+
+    private static final ThreadLocal<Boolean> STREAMED_INVOCATION = ThreadLocal.withInitial(() -> Boolean.FALSE);
+
+    /**
+     * Writes the body text (e.g. objectMapper.writeValue(out, response)); may close out
+     */
+    @FunctionalInterface
+    public interface BodyWriter {
+        void writeTo(Writer out) throws IOException;
+    }
+
+    private final transient BodyWriter bodyWriter;
+    private final boolean streamed;
+    private transient String encoding;
+    private transient String service;
+    private boolean rendered;
+
+    private StreamingResponse(BodyWriter bodyWriter) {
+        this.bodyWriter = bodyWriter;
+        this.streamed = STREAMED_INVOCATION.get();
+    }
+
+    /**
+     * Status and headers from a handler's CORS response, body from the writer
+     */
+    public static StreamingResponse of(APIGatewayProxyResponseEvent corsResponse, BodyWriter bodyWriter) {
+        StreamingResponse response = new StreamingResponse(bodyWriter);
+        response.setStatusCode(corsResponse.getStatusCode());
+        response.setHeaders(corsResponse.getHeaders());
+        response.setMultiValueHeaders(corsResponse.getMultiValueHeaders());
+        return response;
+    }
+
+    @Override
+    public String getBody() {
+        if (!rendered) {
+            render();
+        }
+        return super.getBody();
+    }
+
+    @Override
+    public void setBody(String body) {
+        rendered = true;
+        super.setBody(body);
+    }
+
+    /**
+     * True while the body is still pending and will be written by the stream codec
+     */
+    public boolean isDeferred() {
+        return streamed && !rendered;
+    }
+
+    void compressWith(String encoding, String service) {
+        this.encoding = encoding;
+        this.service = service;
+    }
+
+    String encoding() {
+        return encoding;
+    }
+
+    String service() {
+        return service;
+    }
+
+    void writeBody(Writer out) throws IOException {
+        rendered = true;
+        try (RouteMetrics.Timer timer = RouteMetrics.serialization()) {
+            bodyWriter.writeTo(out);
+        }
+    }
+
+    private void render() {
+        StringWriter body = new StringWriter(8192);
+        try (RouteMetrics.Timer timer = RouteMetrics.serialization()) {
+            bodyWriter.writeTo(body);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to render response body", e);
+        }
+        setBody(body.toString());
+    }
+
+    static void enterStreamedInvocation() {
+        STREAMED_INVOCATION.set(Boolean.TRUE);
+    }
+
+    static void exitStreamedInvocation() {
+        STREAMED_INVOCATION.set(Boolean.FALSE);
+    }
+}
@@ -0,0 +1,234 @@
+package com.nais.jdbc;
+
+import com.nais.metrics.RouteMetrics;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * JDBC connection wrapper that times every statement and reports it per SQL fingerprint
+ * DB処理計測 - Connection / Statement をプロキシで、ResultSet を委譲クラスで包み、実行時間・行数を記録
+ *
+ * Each execution is timed in three parts: prepare (prepareStatement), execute and fetch
+ * (ResultSet.next, in {@link InstrumentedResultSet}), with the rows fetched or updated, and reported to {@link SqlStats}
+ * under its {@link SqlFingerprint} when the result set is exhausted or closed. Bind
+ * parameters are remembered only for the slow-query log, which redacts them. The time is
+ * also added to the current route's DB time ({@link RouteMetrics}), together with
+ * transaction control (commit, rollback, savepoints). Everything else, including unwrap,
+ * is passed straight through, so driver-specific APIs keep working.
+ */
+public final class InstrumentedConnection {
+
+    private static final Set<String> TIMED_CONNECTION_METHODS = new HashSet<>(Arrays.asList(
+            "commit", "rollback", "setAutoCommit", "setSavepoint", "releaseSavepoint", "close", "isValid"));
+
+    private static final Object[] NO_PARAMS = new Object[0];
+
+    private InstrumentedConnection() {
+    }
+
+    /**
+     * Wrap a freshly opened connection (returned as-is when SQL_METRICS_ENABLED=false and
+     * no request is being timed)
+     */
+    public static Connection wrap(Connection conn) {
+        RouteMetrics.Request request = RouteMetrics.current();
+        if (conn == null || (!SqlStats.isEnabled() && request == null)) {
+            return conn;
+        }
+        return proxy(Connection.class, new ConnectionHandler(conn, request));
+    }
+
+    private static <T> T proxy(Class<T> type, InvocationHandler handler) {
+        return type.cast(Proxy.newProxyInstance(InstrumentedConnection.class.getClassLoader(), new Class<?>[] {type}, handler));
+    }
+
+    private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    private static void addDbNanos(RouteMetrics.Request request, long nanos) {
+        if (request != null) {
+            request.addDbNanos(nanos);
+        }
+    }
+
+    private static final class ConnectionHandler implements InvocationHandler {
+        private final Connection target;
+        private final RouteMetrics.Request request;
+        private final String route;
+
+        ConnectionHandler(Connection target, RouteMetrics.Request request) {
+            this.target = target;
+            this.request = request;
+            this.route = request != null ? request.getRoute() : "background";
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            if (TIMED_CONNECTION_METHODS.contains(name)) {
+                long start = System.nanoTime();
+                try {
+                    return InstrumentedConnection.invoke(target, method, args);
+                } finally {
+                    addDbNanos(request, System.nanoTime() - start);
+                }
+            }
+            if (name.startsWith("prepare")) {
+                long start = System.nanoTime();
+                Object statement = InstrumentedConnection.invoke(target, method, args);
+                long prepareNanos = System.nanoTime() - start;
+                addDbNanos(request, prepareNanos);
+                return wrapStatement(method, statement, SqlFingerprint.of((String) args[0]), prepareNanos);
+            }
+            if ("createStatement".equals(name)) {
+                return wrapStatement(method, InstrumentedConnection.invoke(target, method, args), null, 0L);
+            }
+            return InstrumentedConnection.invoke(target, method, args);
+        }
+
+        @SuppressWarnings("unchecked")
+        private Object wrapStatement(Method method, Object statement, SqlFingerprint fingerprint, long prepareNanos) {
+            Class<? extends Statement> type = (Class<? extends Statement>) method.getReturnType();
+            return proxy(type, new StatementHandler((Statement) statement, request, route, fingerprint, prepareNanos));
+        }
+    }
+
+    private static final class StatementHandler implements InvocationHandler {
+        private final Statement target;
+        private final RouteMetrics.Request request;
+        private final String route;
+        private final SqlFingerprint fingerprint;
+        private long pendingPrepareNanos;
+        private Object[] params = NO_PARAMS;
+        private int batchSize;
+        private SqlStats.Execution current;
+
+        StatementHandler(Statement target, RouteMetrics.Request request, String route,
+                         SqlFingerprint fingerprint, long prepareNanos) {
+            this.target = target;
+            this.request = request;
+            this.route = route;
+            this.fingerprint = fingerprint;
+            this.pendingPrepareNanos = prepareNanos;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            if (name.startsWith("execute")) {
+                return execute(method, args);
+            }
+            if (name.startsWith("set") && args != null && args.length >= 2 && args[0] instanceof Integer) {
+                setParam((Integer) args[0], name.equals("setNull") ? null : args[1]);
+            } else if ("clearParameters".equals(name)) {
+                params = NO_PARAMS;
+            } else if ("addBatch".equals(name)) {
+                batchSize++;
+            } else if ("getResultSet".equals(name)) {
+                Object resultSet = InstrumentedConnection.invoke(target, method, args);
+                return resultSet != null ? wrapResultSet((ResultSet) resultSet, current) : null;
+            } else if ("getMoreResults".equals(name)) {
+                finishCurrent();
+                long start = System.nanoTime();
+                try {
+                    return InstrumentedConnection.invoke(target, method, args);
+                } finally {
+                    addDbNanos(request, System.nanoTime() - start);
+                }
+            } else if ("close".equals(name)) {
+                finishCurrent();
+            }
+            Object result = InstrumentedConnection.invoke(target, method, args);
+            return result instanceof ResultSet && method.getReturnType() == ResultSet.class
+                    ? wrapResultSet((ResultSet) result, null) : result;
+        }
+
+        private Object execute(Method method, Object[] args) throws Throwable {
+            finishCurrent();
+            SqlFingerprint executed = fingerprint;
+            if (executed == null) {
+                executed = SqlFingerprint.of(args != null && args.length > 0 && args[0] instanceof String ? (String) args[0] : null);
+            }
+            SqlStats.Execution execution = new SqlStats.Execution(executed, route, pendingPrepareNanos,
+                    params.length > 0 ? params.clone() : NO_PARAMS, batchSize);
+            pendingPrepareNanos = 0L;
+            if (method.getName().startsWith("executeBatch") || method.getName().startsWith("executeLargeBatch")) {
+                batchSize = 0;
+            }
+
+            Object result;
+            long start = System.nanoTime();
+            try {
+                result = InstrumentedConnection.invoke(target, method, args);
+            } catch (Throwable e) {
+                execution.executeNanos = System.nanoTime() - start;
+                execution.error = true;
+                addDbNanos(request, execution.executeNanos);
+                execution.finish();
+                throw e;
+            }
+            execution.executeNanos = System.nanoTime() - start;
+            addDbNanos(request, execution.executeNanos);
+
+            if (result instanceof ResultSet) {
+                current = execution;
+                return wrapResultSet((ResultSet) result, execution);
+            }
+            if (result instanceof Boolean) {
+                if ((Boolean) result) {
+                    // Rows are counted when the caller fetches them through getResultSet
+                    current = execution;
+                    return result;
+                }
+                execution.rows = Math.max(0, target.getUpdateCount());
+            } else if (result instanceof Number) {
+                execution.rows = ((Number) result).longValue();
+            } else if (result instanceof int[]) {
+                for (int count : (int[]) result) {
+                    execution.rows += Math.max(0, count);
+                }
+            } else if (result instanceof long[]) {
+                for (long count : (long[]) result) {
+                    execution.rows += Math.max(0L, count);
+                }
+            }
+            execution.finish();
+            return result;
+        }
+
+        private void setParam(int index, Object value) {
+            if (index < 1 || index > 10_000) {
+                return;
+            }
+            if (index > params.length) {
+                params = Arrays.copyOf(params, Math.max(index, params.length * 2));
+            }
+            params[index - 1] = value;
+        }
+
+        private void finishCurrent() {
+            if (current != null) {
+                current.finish();
+                current = null;
+            }
+        }
+
+        private ResultSet wrapResultSet(ResultSet resultSet, SqlStats.Execution execution) {
+            return new InstrumentedResultSet(resultSet, request, execution);
+        }
+    }
+}
@@ -0,0 +1,156 @@
+package com.nais.jdbc;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Normalized SQL text and its short hash, used to group executions of the same statement
+ * SQL正規化 - リテラルを ? に置換し空白を詰めたSQLとそのハッシュ
+ *
+ * String and numeric literals become ?, runs of whitespace a single space, and lists of
+ * placeholders "?, ?, ?" collapse to "?, ..." so IN lists of any length share one
+ * fingerprint. Identifiers, casts (::bigint[]) and $n parameters are kept. The id is the
+ * 64-bit FNV-1a hash of the normalized text in hex. Results are cached per SQL string
+ * (handlers reuse constant SQL), up to CACHE_LIMIT distinct strings.
+ */
+public final class SqlFingerprint {
+
+    private static final int CACHE_LIMIT = 2000;
+    private static final Map<String, SqlFingerprint> CACHE = new ConcurrentHashMap<>();
+
+    private final String id;
+    private final String normalized;
+
+    private SqlFingerprint(String id, String normalized) {
+        this.id = id;
+        this.normalized = normalized;
+    }
+
+    public static SqlFingerprint of(String sql) {
+        if (sql == null) {
+            sql = "";
+        }
+        SqlFingerprint fingerprint = CACHE.get(sql);
+        if (fingerprint == null) {
+            String normalized = normalize(sql);
+            fingerprint = new SqlFingerprint(hash(normalized), normalized);
+            if (CACHE.size() < CACHE_LIMIT) {
+                CACHE.put(sql, fingerprint);
+            }
+        }
+        return fingerprint;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public String getNormalized() {
+        return normalized;
+    }
+
+    static String normalize(String sql) {
+        StringBuilder out = new StringBuilder(sql.length());
+        int length = sql.length();
+        int i = 0;
+        while (i < length) {
+            char c = sql.charAt(i);
+            if (Character.isWhitespace(c)) {
+                while (i < length && Character.isWhitespace(sql.charAt(i))) {
+                    i++;
+                }
+                if (out.length() > 0) {
+                    out.append(' ');
+                }
+            } else if (c == '\'') {
+                // String literal, '' is an escaped quote
+                i++;
+                while (i < length) {
+                    if (sql.charAt(i) == '\'') {
+                        if (i + 1 < length && sql.charAt(i + 1) == '\'') {
+                            i += 2;
+                            continue;
+                        }
+                        i++;
+                        break;
+                    }
+                    i++;
+                }
+                appendPlaceholder(out);
+            } else if (c == '"') {
+                // Quoted identifier, kept as is
+                int end = sql.indexOf('"', i + 1);
+                end = end < 0 ? length : end + 1;
+                out.append(sql, i, end);
+                i = end;
+            } else if (Character.isDigit(c) && !partOfWord(out)) {
+                while (i < length && (Character.isDigit(sql.charAt(i)) || sql.charAt(i) == '.')) {
+                    i++;
+                }
+                appendPlaceholder(out);
+            } else if (c == '?') {
+                i++;
+                appendPlaceholder(out);
+            } else {
+                out.append(c);
+                i++;
+            }
+        }
+        int end = out.length();
+        while (end > 0 && out.charAt(end - 1) == ' ') {
+            end--;
+        }
+        out.setLength(end);
+        return out.toString();
+    }
+
+    /**
+     * Append ?, or extend a preceding "?, " into "?, ..." (one marker for any list length)
+     */
+    private static void appendPlaceholder(StringBuilder out) {
+        int length = out.length();
+        if (endsWith(out, "?, ..., ") || endsWith(out, "?, ...,")) {
+            out.setLength(out.charAt(length - 1) == ' ' ? length - 2 : length - 1);
+            return;
+        }
+        if (endsWith(out, "?, ") || endsWith(out, "?,")) {
+            out.setLength(out.charAt(length - 1) == ' ' ? length - 3 : length - 2);
+            out.append("?, ...");
+            return;
+        }
+        out.append('?');
+    }
+
+    private static boolean endsWith(StringBuilder out, String suffix) {
+        int start = out.length() - suffix.length();
+        if (start < 0) {
+            return false;
+        }
+        for (int i = 0; i < suffix.length(); i++) {
+            if (out.charAt(start + i) != suffix.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * A digit continues an identifier (t1, col_2) or a $n parameter
+     */
+    private static boolean partOfWord(StringBuilder out) {
+        if (out.length() == 0) {
+            return false;
+        }
+        char previous = out.charAt(out.length() - 1);
+        return Character.isLetterOrDigit(previous) || previous == '_' || previous == '$';
+    }
+
+    private static String hash(String text) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < text.length(); i++) {
+            hash ^= text.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        return String.format("%016x", hash);
+    }
+}
@@ -0,0 +1,222 @@
+package com.nais.jdbc;
+
+import com.nais.metrics.EmfRecord;
+
+import java.sql.Array;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Per-fingerprint SQL counters and the slow-query log
+ * SQL実行統計 - 正規化SQLごとの実行回数・時間・行数と、スロークエリのログ出力
+ *
+ * {@link InstrumentedConnection} reports every finished execution here. At the end of an
+ * invocation {@link #flush(String)} writes one EMF record per statement fingerprint used,
+ * with dimensions Service and SqlFingerprint:
+ *   SqlCalls / SqlMs / SqlRows / SqlErrors  this invocation (prepare + execute + fetch)
+ * plus the normalized SQL and this container's running totals (containerCalls,
+ * containerMs, containerMaxMs, containerRows) as properties. An execution taking
+ * SQL_SLOW_QUERY_MILLIS (default 200) or longer is logged at once as a WARN record with the
+ * SlowQueryMs metric, its phase timings and the bind parameters reduced to their types
+ * and lengths (values are never logged). SQL_METRICS_ENABLED=false turns both off.
+ */
+public final class SqlStats {
+
+    private static final boolean ENABLED = !"false".equalsIgnoreCase(System.getenv("SQL_METRICS_ENABLED"));
+    private static final long SLOW_NANOS = slowQueryMillis() * 1_000_000L;
+    private static final int MAX_SQL_LENGTH = 1000;
+
+    private static final Map<String, Totals> CONTAINER = new ConcurrentHashMap<>();
+    private static final ThreadLocal<Map<String, Counter>> INVOCATION = ThreadLocal.withInitial(LinkedHashMap::new);
+
+    private SqlStats() {
+    }
+
+    public static boolean isEnabled() {
+        return ENABLED;
+    }
+
+    /**
+     * Emit this invocation's per-fingerprint records and start over
+     */
+    public static void flush(String service) {
+        Map<String, Counter> counters = INVOCATION.get();
+        if (counters.isEmpty()) {
+            return;
+        }
+        for (Counter counter : counters.values()) {
+            Totals totals = CONTAINER.get(counter.fingerprint.getId());
+            EmfRecord record = new EmfRecord(EmfRecord.DEFAULT_NAMESPACE)
+                    .dimension("Service", service)
+                    .dimension("SqlFingerprint", counter.fingerprint.getId())
+                    .metric("SqlCalls", counter.calls, "Count")
+                    .metric("SqlMs", counter.nanos / 1_000_000d, "Milliseconds")
+                    .metric("SqlRows", counter.rows, "Count")
+                    .metric("SqlErrors", counter.errors, "Count")
+                    .property("sql", truncate(counter.fingerprint.getNormalized()));
+            if (totals != null) {
+                totals.addTo(record);
+            }
+            record.emit();
+        }
+        counters.clear();
+    }
+
+    /**
+     * Drop counters of executions outside a timed invocation (e.g. priming)
+     */
+    public static void discard() {
+        INVOCATION.get().clear();
+    }
+
+    static void record(Execution execution) {
+        long nanos = execution.totalNanos();
+        String id = execution.fingerprint.getId();
+
+        Counter counter = INVOCATION.get().computeIfAbsent(id, k -> new Counter(execution.fingerprint));
+        counter.calls++;
+        counter.nanos += nanos;
+        counter.rows += execution.rows;
+        counter.errors += execution.error ? 1 : 0;
+
+        CONTAINER.computeIfAbsent(id, k -> new Totals()).add(nanos, execution.rows);
+
+        if (nanos >= SLOW_NANOS) {
+            logSlowQuery(execution, nanos);
+        }
+    }
+
+    private static void logSlowQuery(Execution execution, long nanos) {
+        new EmfRecord(EmfRecord.DEFAULT_NAMESPACE)
+                .metric("SlowQueryMs", nanos / 1_000_000d, "Milliseconds")
+                .property("timestamp", LocalDateTime.now().toString())
+                .property("level", "WARN")
+                .property("message", "Slow query")
+                .property("route", execution.route)
+                .property("fingerprint", execution.fingerprint.getId())
+                .property("sql", truncate(execution.fingerprint.getNormalized()))
+                .property("prepareMs", execution.prepareNanos / 1_000_000d)
+                .property("executeMs", execution.executeNanos / 1_000_000d)
+                .property("fetchMs", execution.fetchNanos / 1_000_000d)
+                .property("rows", execution.rows)
+                .property("batchSize", execution.batchSize)
+                .property("error", execution.error)
+                .property("params", redact(execution.params))
+                .emit();
+    }
+
+    /**
+     * Type (and length for text / arrays) of each bind parameter, never the value
+     */
+    static List<String> redact(Object[] params) {
+        List<String> redacted = new ArrayList<>();
+        if (params == null) {
+            return redacted;
+        }
+        for (Object param : params) {
+            if (param == null) {
+                redacted.add("null");
+            } else if (param instanceof CharSequence) {
+                redacted.add("text(" + ((CharSequence) param).length() + ")");
+            } else if (param instanceof Timestamp) {
+                redacted.add("timestamp");
+            } else if (param instanceof Array) {
+                redacted.add("array");
+            } else if (param instanceof Object[]) {
+                redacted.add("array(" + ((Object[]) param).length + ")");
+            } else {
+                redacted.add(param.getClass().getSimpleName().toLowerCase());
+            }
+        }
+        return redacted;
+    }
+
+    private static String truncate(String sql) {
+        return sql.length() > MAX_SQL_LENGTH ? sql.substring(0, MAX_SQL_LENGTH) + "..." : sql;
+    }
+
+    private static long slowQueryMillis() {
+        String value = System.getenv("SQL_SLOW_QUERY_MILLIS");
+        if (value != null) {
+            try {
+                return Math.max(0L, Long.parseLong(value.trim()));
+            } catch (NumberFormatException e) {
+                // fall through to default
+            }
+        }
+        return 200L;
+    }
+
+    /**
+     * One statement execution, reported when its result set is done or its update count is known
+     */
+    static final class Execution {
+        final SqlFingerprint fingerprint;
+        final String route;
+        final long prepareNanos;
+        final Object[] params;
+        final int batchSize;
+        long executeNanos;
+        long fetchNanos;
+        long rows;
+        boolean error;
+        private boolean finished;
+
+        Execution(SqlFingerprint fingerprint, String route, long prepareNanos, Object[] params, int batchSize) {
+            this.fingerprint = fingerprint;
+            this.route = route;
+            this.prepareNanos = prepareNanos;
+            this.params = params;
+            this.batchSize = batchSize;
+        }
+
+        long totalNanos() {
+            return prepareNanos + executeNanos + fetchNanos;
+        }
+
+        void finish() {
+            if (!finished) {
+                finished = true;
+                record(this);
+            }
+        }
+    }
+
+    private static final class Counter {
+        private final SqlFingerprint fingerprint;
+        private long calls;
+        private long nanos;
+        private long rows;
+        private long errors;
+
+        Counter(SqlFingerprint fingerprint) {
+            this.fingerprint = fingerprint;
+        }
+    }
+
+    private static final class Totals {
+        private long calls;
+        private long nanos;
+        private long maxNanos;
+        private long rows;
+
+        synchronized void add(long executionNanos, long executionRows) {
+            calls++;
+            nanos += executionNanos;
+            maxNanos = Math.max(maxNanos, executionNanos);
+            rows += executionRows;
+        }
+
+        synchronized void addTo(EmfRecord record) {
+            record.property("containerCalls", calls)
+                  .property("containerMs", nanos / 1_000_000d)
+                  .property("containerMaxMs", maxNanos / 1_000_000d)
+                  .property("containerRows", rows);
+        }
+    }
+}
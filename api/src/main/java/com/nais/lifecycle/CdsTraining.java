@@ -0,0 +1,167 @@
+package com.nais.lifecycle;
+
+import com.amazonaws.services.lambda.runtime.RequestHandler;
+import com.amazonaws.services.lambda.runtime.events.APIGatewayProxyRequestEvent;
+import com.amazonaws.services.lambda.runtime.events.APIGatewayProxyResponseEvent;
+import com.amazonaws.services.lambda.runtime.events.S3Event;
+import com.amazonaws.services.lambda.runtime.events.models.s3.S3EventNotification;
+import com.nais.search.NameSearchKeys;
+import com.sun.net.httpserver.HttpServer;
+import software.amazon.awssdk.auth.credentials.AwsBasicCredentials;
+import software.amazon.awssdk.auth.credentials.StaticCredentialsProvider;
+import software.amazon.awssdk.core.ResponseInputStream;
+import software.amazon.awssdk.http.urlconnection.UrlConnectionHttpClient;
+import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.GetObjectRequest;
+import software.amazon.awssdk.services.s3.model.GetObjectResponse;
+
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+
+/**
+ * AppCDS training workload (see appcds.sh)
+ * AppCDS アーカイブ作成用のトレーニング実行 - 全ハンドラに代表的なリクエストを流す
+ *
+ * Sends CORS, unauthenticated and mock-authenticated API Gateway requests for every route to
+ * every handler, runs the SnapStart priming hooks (Jackson, compression) and reads a CSV
+ * through the S3 client, so the classes a cold start needs are loaded and end up in the
+ * archive. Stand-ins only: S3 is a local HTTP server, and DB_URL must be
+ * {@link #STAND_IN_DB_URL} (a closed port) so no database is ever written - the handlers'
+ * connection-failure paths still load the PgJDBC classes.
+ * Requires AUTH_MODE=MOCK.
+ */
+public final class CdsTraining {
+
+    /** Closed port: every handler's DB access fails at connect, nothing is read or written */
+    public static final String STAND_IN_DB_URL = "jdbc:postgresql://127.0.0.1:1/cds_training";
+
+    private static final String TOKEN = "Bearer mock-cds-training";
+
+    private static final String[][] REQUESTS = {
+        {"com.nais.handlers.AuthHandler", "GET", "/auth/health", null},
+        {"com.nais.handlers.AuthHandler", "GET", "/auth/google/login", null},
+        {"com.nais.handlers.AuthHandler", "GET", "/auth/workspace/domains", null},
+        {"com.nais.handlers.CustomerHandler", "GET", "/customer", null},
+        {"com.nais.handlers.CustomerHandler", "GET", "/customer/search", null},
+        {"com.nais.handlers.CustomerHandler", "GET", "/customer/0001-0002", null},
+        {"com.nais.handlers.CustomerHandler", "POST", "/customer/batch-get", "{\"keys\":[\"0001-0002\",{\"office_cd\":\"0001\",\"customer_cd\":\"0003\"}]}"},
+        {"com.nais.handlers.MailToChildHandler", "GET", "/mail-to-child", null},
+        {"com.nais.handlers.MailToChildHandler", "GET", "/mail-to-child/ML0001", null},
+        {"com.nais.handlers.MailApiConfigHandler", "GET", "/mail-api-config", null},
+        {"com.nais.handlers.MailApiConfigHandler", "GET", "/mail-api-config/JOB001", null},
+        {"com.nais.handlers.MailDestinationParentHandler", "GET", "/mail-destination-parent", null},
+        {"com.nais.handlers.MailDestinationParentHandler", "POST", "/mail-destination-parent", "{\"job_id\":\"JOB001\",\"office_cd\":\"0001\"}"},
+        {"com.nais.handlers.MailDestinationChildHandler", "GET", "/mail-destination-child", null},
+        {"com.nais.handlers.MailDestinationChildHandler", "POST", "/mail-destination-child", "{\"mailing_list_id\":\"ML0001\",\"destination_address\":\"user@example.com\"}"},
+        {"com.nais.handlers.JobRecipientsHandler", "GET", "/jobs/JOB001/recipients", null},
+        {"com.nais.handlers.ChangeFeedHandler", "GET", "/changes", null},
+        {"com.nais.handlers.HistoryHandler", "GET", "/history", null},
+    };
+
+    private CdsTraining() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (!"MOCK".equalsIgnoreCase(System.getenv("AUTH_MODE"))) {
+            System.err.println("AUTH_MODE=MOCK is required for the training run");
+            System.exit(2);
+        }
+        if (!STAND_IN_DB_URL.equals(System.getenv("DB_URL"))) {
+            System.err.println("DB_URL must be " + STAND_IN_DB_URL + " (the training run sends writes)");
+            System.exit(2);
+        }
+
+        int requests = 0;
+        for (String[] request : REQUESTS) {
+            RequestHandler<APIGatewayProxyRequestEvent, APIGatewayProxyResponseEvent> handler = handler(request[0]);
+            for (String method : new String[] {"OPTIONS", request[1]}) {
+                handler.handleRequest(Priming.request(method, request[2]), Priming.context());
+                handler.handleRequest(authenticated(method, request[2], request[3]), Priming.context());
+                requests += 2;
+            }
+        }
+
+        // Priming hooks of every handler created above: serialization and compression paths
+        Priming.simulateCheckpointRestore();
+
+        trainS3AndCsv();
+        trainS3EventHandler();
+
+        System.out.println("CDS training: " + requests + " API requests, "
+                + ManagementFactory.getClassLoadingMXBean().getTotalLoadedClassCount() + " classes loaded");
+    }
+
+    @SuppressWarnings("unchecked")
+    private static RequestHandler<APIGatewayProxyRequestEvent, APIGatewayProxyResponseEvent> handler(String className) throws Exception {
+        return (RequestHandler<APIGatewayProxyRequestEvent, APIGatewayProxyResponseEvent>)
+                Class.forName(className).getDeclaredConstructor().newInstance();
+    }
+
+    private static APIGatewayProxyRequestEvent authenticated(String method, String path, String body) {
+        APIGatewayProxyRequestEvent input = Priming.request(method, path);
+        input.getHeaders().put("Authorization", TOKEN);
+        input.getQueryStringParameters().put("name", "サンプル");
+        input.setBody(body);
+        return input;
+    }
+
+    /**
+     * S3 GetObject + CSV read against a local stand-in (the classes CustomerMasterReplacementHandler uses)
+     */
+    private static void trainS3AndCsv() throws Exception {
+        byte[] csv = ("office_cd,customer_cd,normal_name_kanji\n"
+                + "0001,0002,ｶﾌﾞｼｷｶﾞｲｼｬ サンプル商事\n").getBytes(StandardCharsets.UTF_8);
+        HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/", exchange -> {
+            exchange.getResponseHeaders().add("Content-Type", "text/csv");
+            exchange.sendResponseHeaders(200, csv.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(csv);
+            }
+        });
+        server.start();
+        try (S3Client s3 = S3Client.builder()
+                .httpClient(UrlConnectionHttpClient.builder().build())
+                .region(Region.AP_NORTHEAST_1)
+                .credentialsProvider(StaticCredentialsProvider.create(AwsBasicCredentials.create("training", "training")))
+                .endpointOverride(URI.create("http://127.0.0.1:" + server.getAddress().getPort()))
+                .forcePathStyle(true)
+                .build();
+             ResponseInputStream<GetObjectResponse> object = s3.getObject(GetObjectRequest.builder().bucket("training").key("customer.csv").build());
+             BufferedReader reader = new BufferedReader(new InputStreamReader(object, StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                NameSearchKeys.bigrams(NameSearchKeys.normalize(line));
+            }
+        } finally {
+            server.stop(0);
+        }
+    }
+
+    /**
+     * S3 event deserialization path; the handler fails on the unreachable DB before touching S3
+     */
+    private static void trainS3EventHandler() {
+        S3EventNotification.S3EventNotificationRecord record = new S3EventNotification.S3EventNotificationRecord(
+                "ap-northeast-1", "ObjectCreated:Put", "aws:s3", "1970-01-01T00:00:00.000Z", "2.1",
+                new S3EventNotification.RequestParametersEntity("127.0.0.1"),
+                new S3EventNotification.ResponseElementsEntity("training", "training"),
+                new S3EventNotification.S3Entity("training", new S3EventNotification.S3BucketEntity("training",
+                        new S3EventNotification.UserIdentityEntity("training"), "arn:aws:s3:::training"),
+                        new S3EventNotification.S3ObjectEntity("customer.csv", 0L, "", "", ""), "1.0"),
+                new S3EventNotification.UserIdentityEntity("training"));
+        try {
+            new com.nais.handlers.CustomerMasterReplacementHandler()
+                    .handleRequest(new S3Event(Collections.singletonList(record)), Priming.context());
+        } catch (RuntimeException expected) {
+            System.out.println("CDS training: S3 event handler stopped as expected (" + expected.getMessage() + ")");
+        }
+    }
+}
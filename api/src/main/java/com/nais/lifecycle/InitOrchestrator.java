@@ -0,0 +1,148 @@
+package com.nais.lifecycle;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Concurrent / deferred construction of SDK clients and secrets during init
+ * 初期化オーケストレーター - SDKクライアントとシークレット取得を並列・遅延実行
+ *
+ * {@link #start} begins building a component on a small daemon pool right away, so
+ * independent clients (Secrets Manager, Cognito, S3) and secret fetches overlap with each
+ * other and with the class loading the main thread is still doing. {@link #lazy} defers a
+ * rarely used client until its first {@link Deferred#get()}. Build time of each component
+ * is recorded as a {@link StartupProfile} phase; time a request spent blocked waiting for
+ * an unfinished component is recorded as NAME-wait.
+ *
+ * Lambda gives the init phase full CPU, so work started from a handler constructor runs
+ * while the runtime finishes initializing; anything still running continues during the
+ * first invocation.
+ */
+public final class InitOrchestrator {
+
+    private static final int THREADS = Integer.parseInt(System.getenv().getOrDefault("INIT_THREADS", "4"));
+
+    private static final ExecutorService EXECUTOR = Executors.newFixedThreadPool(THREADS, new DaemonThreadFactory());
+
+    private InitOrchestrator() {
+    }
+
+    /**
+     * Start building a component now, in the background
+     */
+    public static <T> Deferred<T> start(String name, Callable<T> task) {
+        Deferred<T> deferred = new Deferred<>(name, task);
+        deferred.future = CompletableFuture.supplyAsync(deferred::build, EXECUTOR);
+        return deferred;
+    }
+
+    /**
+     * Build a component on first use (on the calling thread)
+     */
+    public static <T> Deferred<T> lazy(String name, Callable<T> task) {
+        return new Deferred<>(name, task);
+    }
+
+    /**
+     * A component that is being, or will be, constructed
+     */
+    public static final class Deferred<T> {
+        private final String name;
+        private final Callable<T> task;
+        private volatile CompletableFuture<T> future;
+
+        private Deferred(String name, Callable<T> task) {
+            this.name = name;
+            this.task = task;
+        }
+
+        /**
+         * The component, waiting for a background build or building it now if lazy.
+         * A failed build is rethrown (unchecked) on every call.
+         */
+        public T get() {
+            CompletableFuture<T> current = future;
+            if (current == null) {
+                synchronized (this) {
+                    current = future;
+                    if (current == null) {
+                        current = new CompletableFuture<>();
+                        try {
+                            current.complete(build());
+                        } catch (RuntimeException e) {
+                            current.completeExceptionally(e);
+                        }
+                        future = current;
+                    }
+                }
+            }
+            if (!current.isDone()) {
+                try (StartupProfile.Phase phase = StartupProfile.phase(name + "-wait")) {
+                    return join(current);
+                }
+            }
+            return join(current);
+        }
+
+        /**
+         * Apply an action (e.g. close) only if the component was actually created
+         */
+        public void ifCreated(Consumer<T> action) {
+            CompletableFuture<T> current = future;
+            if (current == null) {
+                return;
+            }
+            T value;
+            try {
+                value = join(current);
+            } catch (RuntimeException e) {
+                return;
+            }
+            if (value != null) {
+                action.accept(value);
+            }
+        }
+
+        private T build() {
+            try (StartupProfile.Phase phase = StartupProfile.phase(name)) {
+                return task.call();
+            } catch (RuntimeException e) {
+                throw e;
+            } catch (Exception e) {
+                throw new IllegalStateException("Initialization of " + name + " failed", e);
+            }
+        }
+
+        private T join(CompletableFuture<T> current) {
+            try {
+                return current.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while waiting for " + name, e);
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof RuntimeException) {
+                    throw (RuntimeException) cause;
+                }
+                throw new IllegalStateException("Initialization of " + name + " failed", cause);
+            }
+        }
+    }
+
+    private static final class DaemonThreadFactory implements ThreadFactory {
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "nais-init-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package com.nais.lifecycle;
+
+import com.amazonaws.services.lambda.runtime.RequestHandler;
+import com.amazonaws.services.lambda.runtime.events.APIGatewayProxyRequestEvent;
+import com.amazonaws.services.lambda.runtime.events.APIGatewayProxyResponseEvent;
+import org.crac.CheckpointException;
+import org.crac.Core;
+
+/**
+ * Local restore-to-first-response measurement
+ * リストアから最初のレスポンスまでの時間をローカルで計測
+ *
+ * Creates a handler, checkpoints and restores the JVM, then times the first request.
+ * On a CRaC JDK started with -XX:CRaCCheckpointTo=DIR the process really checkpoints and
+ * exits; restore it with java -XX:CRaCRestoreFrom=DIR and the measurement is printed by the
+ * restored process. On other JVMs the hooks run in-process (beforeCheckpoint, then
+ * afterRestore), which shows the priming and re-initialization cost without the snapshot.
+ *
+ * Usage: java -cp target/amplify-auth-lambda.jar com.nais.lifecycle.RestoreHarness \
+ *            com.nais.handlers.CustomerHandler GET /customer
+ */
+public final class RestoreHarness {
+
+    private RestoreHarness() {
+    }
+
+    @SuppressWarnings("unchecked")
+    public static void main(String[] args) throws Exception {
+        if (args.length < 1) {
+            System.err.println("Usage: " + RestoreHarness.class.getName() + " <handler class> [method] [path]");
+            System.exit(2);
+        }
+        String method = args.length > 1 ? args[1] : "GET";
+        String path = args.length > 2 ? args[2] : "/";
+
+        long initStart = System.nanoTime();
+        RequestHandler<APIGatewayProxyRequestEvent, APIGatewayProxyResponseEvent> handler =
+                (RequestHandler<APIGatewayProxyRequestEvent, APIGatewayProxyResponseEvent>)
+                        Class.forName(args[0]).getDeclaredConstructor().newInstance();
+        System.out.printf("init: %.1f ms%n", (System.nanoTime() - initStart) / 1_000_000.0);
+
+        String mode;
+        try {
+            Core.checkpointRestore();
+            mode = "crac";
+        } catch (UnsupportedOperationException | CheckpointException e) {
+            System.out.println("CRaC checkpoint unavailable (" + e + "), running hooks in-process");
+            Priming.simulateCheckpointRestore();
+            mode = "simulated";
+        }
+
+        APIGatewayProxyResponseEvent response = handler.handleRequest(Priming.request(method, path), Priming.context());
+        long firstResponse = System.nanoTime();
+
+        System.out.printf("restore (%s) to first response: %.1f ms (status %d)%n",
+                mode, (firstResponse - Priming.restoredAtNanos()) / 1_000_000.0, response.getStatusCode());
+    }
+}
@@ -0,0 +1,182 @@
+package com.nais.lifecycle;
+
+import com.amazonaws.services.lambda.runtime.RequestHandler;
+import com.amazonaws.services.lambda.runtime.events.APIGatewayProxyRequestEvent;
+import com.amazonaws.services.lambda.runtime.events.APIGatewayProxyResponseEvent;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.InputStreamReader;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Handler startup benchmark - every run is a fresh JVM
+ * ハンドラ起動ベンチマーク (毎回新しいJVMで初期化・初回呼び出し・定常状態を計測)
+ *
+ * For each handler the runner starts `runs` child JVMs on the current classpath. A child
+ * instantiates the handler, sends the sample event once (first invoke) and then
+ * `iterations` more times (steady state), and prints one RESULT line. The runner reports
+ * the median over runs:
+ *   jvm     JVM start until the probe's main() runs (runtime bootstrap)
+ *   init    handler construction (static init + constructor)
+ *   first   first handleRequest (lazy init, JIT cold)
+ *   p50/p99 steady-state handleRequest latency
+ *
+ * Without an event file the synthetic unauthenticated request from {@link Priming#request}
+ * is used, so the 401 path is measured and no database is needed. Pass
+ * -Dbench.event=event.json (an API Gateway proxy event, e.g. from `sam local generate-event`)
+ * to measure a real route; DB_URL etc. are inherited by the child JVMs.
+ *
+ * Usage: java [-Dbench.runs=5] [-Dbench.iterations=200] [-Dbench.jvmArgs="-XX:TieredStopAtLevel=1"]
+ *            -cp target/amplify-auth-lambda.jar com.nais.lifecycle.StartupBenchmark [handler class ...]
+ */
+public final class StartupBenchmark {
+
+    private static final Map<String, String[]> DEFAULT_HANDLERS = new LinkedHashMap<>();
+
+    static {
+        DEFAULT_HANDLERS.put("com.nais.handlers.AuthHandler", new String[] {"GET", "/auth/health"});
+        DEFAULT_HANDLERS.put("com.nais.handlers.CustomerHandler", new String[] {"GET", "/customer"});
+        DEFAULT_HANDLERS.put("com.nais.handlers.MailToChildHandler", new String[] {"GET", "/mail-to-child"});
+        DEFAULT_HANDLERS.put("com.nais.handlers.MailApiConfigHandler", new String[] {"GET", "/mail-api-config"});
+        DEFAULT_HANDLERS.put("com.nais.handlers.MailDestinationParentHandler", new String[] {"GET", "/mail-destination-parent"});
+        DEFAULT_HANDLERS.put("com.nais.handlers.MailDestinationChildHandler", new String[] {"GET", "/mail-destination-child"});
+        DEFAULT_HANDLERS.put("com.nais.handlers.JobRecipientsHandler", new String[] {"GET", "/jobs/JOB001/recipients"});
+        DEFAULT_HANDLERS.put("com.nais.handlers.ChangeFeedHandler", new String[] {"GET", "/changes"});
+        DEFAULT_HANDLERS.put("com.nais.handlers.HistoryHandler", new String[] {"GET", "/history"});
+    }
+
+    private StartupBenchmark() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        int runs = Integer.getInteger("bench.runs", 5);
+        int iterations = Integer.getInteger("bench.iterations", 200);
+        String event = System.getProperty("bench.event", "");
+        String jvmArgs = System.getProperty("bench.jvmArgs", "");
+
+        List<String> handlers = args.length > 0 ? Arrays.asList(args) : new ArrayList<>(DEFAULT_HANDLERS.keySet());
+
+        System.out.printf("%-46s %8s %8s %8s %8s %8s %8s%n", "handler", "jvm ms", "init ms", "first ms", "p50 ms", "p99 ms", "classes");
+        for (String handler : handlers) {
+            List<double[]> results = new ArrayList<>();
+            for (int run = 0; run < runs; run++) {
+                double[] result = runChild(handler, iterations, event, jvmArgs);
+                if (result != null) {
+                    results.add(result);
+                }
+            }
+            if (results.isEmpty()) {
+                System.out.printf("%-46s failed (see stderr)%n", handler);
+                continue;
+            }
+            System.out.printf("%-46s %8.1f %8.1f %8.1f %8.3f %8.3f %8.0f%n", shortName(handler),
+                    median(results, 0), median(results, 1), median(results, 2),
+                    median(results, 3), median(results, 4), median(results, 5));
+        }
+    }
+
+    private static double[] runChild(String handler, int iterations, String event, String jvmArgs) throws Exception {
+        List<String> command = new ArrayList<>();
+        command.add(System.getProperty("java.home") + File.separator + "bin" + File.separator + "java");
+        if (!jvmArgs.isEmpty()) {
+            command.addAll(Arrays.asList(jvmArgs.trim().split("\\s+")));
+        }
+        command.add("-cp");
+        command.add(System.getProperty("java.class.path"));
+        command.add(Probe.class.getName());
+        command.add(handler);
+        command.add(String.valueOf(iterations));
+        command.add(event);
+
+        Process process = new ProcessBuilder(command).redirectError(ProcessBuilder.Redirect.INHERIT).start();
+        double[] result = null;
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                // Handler logs go to stdout as well; only the RESULT line is ours
+                if (line.startsWith("RESULT ")) {
+                    String[] fields = line.substring(7).split(" ");
+                    result = new double[fields.length];
+                    for (int i = 0; i < fields.length; i++) {
+                        result[i] = Double.parseDouble(fields[i]);
+                    }
+                }
+            }
+        }
+        process.waitFor();
+        return result;
+    }
+
+    private static double median(List<double[]> results, int column) {
+        List<Double> values = new ArrayList<>();
+        for (double[] result : results) {
+            values.add(result[column]);
+        }
+        Collections.sort(values);
+        return values.get(values.size() / 2);
+    }
+
+    private static String shortName(String handler) {
+        return handler.substring(handler.lastIndexOf('.') + 1);
+    }
+
+    /**
+     * Child JVM entry point: one cold start, one first invoke, then the steady-state loop
+     */
+    public static final class Probe {
+
+        private Probe() {
+        }
+
+        @SuppressWarnings("unchecked")
+        public static void main(String[] args) throws Exception {
+            double jvmMs = ManagementFactory.getRuntimeMXBean().getUptime();
+            String handlerClass = args[0];
+            int iterations = Integer.parseInt(args[1]);
+            String eventFile = args.length > 2 ? args[2] : "";
+
+            long start = System.nanoTime();
+            RequestHandler<APIGatewayProxyRequestEvent, APIGatewayProxyResponseEvent> handler =
+                    (RequestHandler<APIGatewayProxyRequestEvent, APIGatewayProxyResponseEvent>)
+                            Class.forName(handlerClass).getDeclaredConstructor().newInstance();
+            double initMs = (System.nanoTime() - start) / 1_000_000.0;
+
+            start = System.nanoTime();
+            handler.handleRequest(event(handlerClass, eventFile), Priming.context());
+            double firstMs = (System.nanoTime() - start) / 1_000_000.0;
+
+            double[] latencies = new double[iterations];
+            for (int i = 0; i < iterations; i++) {
+                APIGatewayProxyRequestEvent input = event(handlerClass, eventFile);
+                start = System.nanoTime();
+                handler.handleRequest(input, Priming.context());
+                latencies[i] = (System.nanoTime() - start) / 1_000_000.0;
+            }
+            Arrays.sort(latencies);
+            double p50 = iterations > 0 ? latencies[iterations / 2] : 0;
+            double p99 = iterations > 0 ? latencies[Math.min(iterations - 1, (int) Math.ceil(iterations * 0.99) - 1)] : 0;
+            long classes = ManagementFactory.getClassLoadingMXBean().getTotalLoadedClassCount();
+
+            System.out.println("RESULT " + jvmMs + " " + initMs + " " + firstMs + " " + p50 + " " + p99 + " " + classes);
+        }
+
+        private static APIGatewayProxyRequestEvent event(String handlerClass, String eventFile) throws Exception {
+            if (!eventFile.isEmpty()) {
+                ObjectMapper objectMapper = new ObjectMapper().configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+                return objectMapper.readValue(new File(eventFile), APIGatewayProxyRequestEvent.class);
+            }
+            String[] route = DEFAULT_HANDLERS.getOrDefault(handlerClass, new String[] {"GET", "/"});
+            return Priming.request(route[0], route[1]);
+        }
+    }
+}
@@ -0,0 +1,162 @@
+package com.nais.lifecycle;
+
+import com.nais.metrics.EmfRecord;
+import org.crac.Core;
+import org.crac.Resource;
+
+import java.lang.management.ClassLoadingMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Cold-start phase profiler
+ * コールドスタート計測 - 初期化フェーズごとの所要時間とクラスロード数を1レコードで出力
+ *
+ * Handlers wrap expensive init steps in {@code try (StartupProfile.Phase p = StartupProfile.phase("auth-client")) {...}}
+ * and bracket handleRequest with {@link #beforeInvoke()} / {@link #afterInvoke(String)}. At the
+ * end of the first invocation one EMF record is written with:
+ *   StartupJvmMs        JVM start until this class was initialized (runtime bootstrap, handler class loading)
+ *   StartupInitMs       JVM start (or SnapStart restore) until the first invocation started
+ *   StartupFirstInvokeMs  duration of the first invocation (lazy init inside handleRequest included)
+ *   StartupClassesLoaded  classes loaded when the first invocation completed
+ * plus phase.NAME.ms / phase.NAME.classes properties for each recorded phase, in order.
+ * Phases recorded while a SnapStart snapshot is created are reported with the snapshot's
+ * own record; after a restore the profile starts over and the restore gets its own record.
+ */
+public final class StartupProfile {
+
+    private static final ClassLoadingMXBean CLASS_LOADING = ManagementFactory.getClassLoadingMXBean();
+    private static final long JVM_UPTIME_AT_LOAD_MS = ManagementFactory.getRuntimeMXBean().getUptime();
+    private static final Phase NO_OP = new Phase(null);
+    private static final Resource RESTORE_HOOK = new RestoreHook();
+
+    private static final List<String> names = new ArrayList<>();
+    private static final List<Double> durations = new ArrayList<>();
+    private static final List<Long> classCounts = new ArrayList<>();
+
+    private static long baselineNanos = System.nanoTime() - JVM_UPTIME_AT_LOAD_MS * 1_000_000L;
+    private static long invokeStartNanos;
+    private static boolean emitted;
+    private static String initializationType = initializationTypeFromEnv();
+
+    static {
+        Core.getGlobalContext().register(RESTORE_HOOK);
+    }
+
+    private StartupProfile() {
+    }
+
+    /**
+     * Start timing an init phase; close it to record duration and classes loaded meanwhile.
+     * Returns a no-op once the cold-start record has been written.
+     */
+    public static synchronized Phase phase(String name) {
+        if (emitted) {
+            return NO_OP;
+        }
+        return new Phase(name);
+    }
+
+    /**
+     * Called first in handleRequest; only the first call after a cold start counts
+     */
+    public static synchronized void beforeInvoke() {
+        if (!emitted && invokeStartNanos == 0) {
+            invokeStartNanos = System.nanoTime();
+        }
+    }
+
+    /**
+     * Called when handleRequest returns; writes the cold-start record once
+     */
+    public static void afterInvoke(String service) {
+        EmfRecord record;
+        synchronized (StartupProfile.class) {
+            if (emitted || invokeStartNanos == 0) {
+                return;
+            }
+            emitted = true;
+            record = buildRecord(service, System.nanoTime());
+        }
+        record.emit();
+    }
+
+    private static EmfRecord buildRecord(String service, long now) {
+        EmfRecord record = new EmfRecord(EmfRecord.DEFAULT_NAMESPACE)
+                .dimension("Service", service)
+                .dimension("InitializationType", initializationType)
+                .metric("StartupInitMs", millis(invokeStartNanos - baselineNanos), "Milliseconds")
+                .metric("StartupFirstInvokeMs", millis(now - invokeStartNanos), "Milliseconds")
+                .metric("StartupClassesLoaded", CLASS_LOADING.getTotalLoadedClassCount(), "Count");
+        if (!"snap-start-restore".equals(initializationType)) {
+            record.metric("StartupJvmMs", JVM_UPTIME_AT_LOAD_MS, "Milliseconds");
+        }
+        for (int i = 0; i < names.size(); i++) {
+            record.property("phase." + names.get(i) + ".ms", durations.get(i))
+                  .property("phase." + names.get(i) + ".classes", classCounts.get(i));
+        }
+        return record;
+    }
+
+    private static synchronized void record(String name, double ms, long classes) {
+        if (!emitted) {
+            names.add(name);
+            durations.add(ms);
+            classCounts.add(classes);
+        }
+    }
+
+    private static double millis(long nanos) {
+        return Math.round(nanos / 10_000.0) / 100.0;
+    }
+
+    private static String initializationTypeFromEnv() {
+        String type = System.getenv("AWS_LAMBDA_INITIALIZATION_TYPE");
+        return type != null ? type : "on-demand";
+    }
+
+    /**
+     * One timed init phase (try-with-resources)
+     */
+    public static final class Phase implements AutoCloseable {
+        private final String name;
+        private final long startNanos;
+        private final long startClasses;
+
+        private Phase(String name) {
+            this.name = name;
+            this.startNanos = System.nanoTime();
+            this.startClasses = name != null ? CLASS_LOADING.getTotalLoadedClassCount() : 0;
+        }
+
+        @Override
+        public void close() {
+            if (name != null) {
+                record(name, millis(System.nanoTime() - startNanos), CLASS_LOADING.getTotalLoadedClassCount() - startClasses);
+            }
+        }
+    }
+
+    /**
+     * A restored snapshot is a new cold start: clear the phases and measure from the restore
+     */
+    private static final class RestoreHook implements Resource {
+        @Override
+        public void beforeCheckpoint(org.crac.Context<? extends Resource> context) {
+        }
+
+        @Override
+        public void afterRestore(org.crac.Context<? extends Resource> context) {
+            synchronized (StartupProfile.class) {
+                names.clear();
+                durations.clear();
+                classCounts.clear();
+                baselineNanos = System.nanoTime();
+                invokeStartNanos = 0;
+                emitted = false;
+                initializationType = "snap-start-restore";
+            }
+        }
+    }
+}
@@ -0,0 +1,268 @@
+package com.nais.logging;
+
+import java.io.PrintStream;
+import java.time.LocalDate;
+import java.util.Locale;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Shared JSON line logger for all handlers
+ * 構造化ログ - レベル判定・再利用バッファへのJSON出力・DEBUGサンプリング
+ *
+ * Each line is one JSON object: timestamp (UTC, ISO-8601), level, service, message, and
+ * requestId / route of the current invocation when known, plus error / errorType for
+ * logError. Lines below LOG_LEVEL (or POWERTOOLS_LOG_LEVEL, default INFO) return before
+ * any formatting. With POWERTOOLS_LOGGER_SAMPLE_RATE (0.0-1.0), that share of invocations
+ * also logs DEBUG lines. Lines are encoded by hand into a per-thread buffer and written to
+ * System.out as one UTF-8 write, so a log call allocates no maps, mappers or exceptions.
+ *
+ * Usage: private static final StructuredLogger LOG = StructuredLogger.forService("customer-api");
+ *        LOG.info("..."); LOG.error("...", e); if (LOG.isDebugEnabled()) { LOG.debug("..." + x); }
+ * RouteMetrics.begin binds the request ID and route for API handlers; scheduled and S3
+ * handlers call {@link #beginInvocation} themselves.
+ */
+public final class StructuredLogger {
+
+    public enum Level { DEBUG, INFO, WARN, ERROR }
+
+    private static final Level MIN_LEVEL = minLevel();
+    private static final double SAMPLE_RATE = sampleRate();
+    private static final int MAX_RETAINED_CHARS = 16 * 1024;
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private static final ThreadLocal<Invocation> INVOCATION = ThreadLocal.withInitial(Invocation::new);
+    private static final ThreadLocal<Buffer> BUFFER = ThreadLocal.withInitial(Buffer::new);
+
+    private final String service;
+
+    private StructuredLogger(String service) {
+        this.service = service;
+    }
+
+    public static StructuredLogger forService(String service) {
+        return new StructuredLogger(service);
+    }
+
+    /**
+     * Bind the request ID and route to this thread's log lines and draw the DEBUG sample
+     */
+    public static void beginInvocation(String requestId, String route) {
+        Invocation invocation = INVOCATION.get();
+        invocation.requestId = requestId;
+        invocation.route = route;
+        invocation.debugSampled = SAMPLE_RATE > 0 && ThreadLocalRandom.current().nextDouble() < SAMPLE_RATE;
+    }
+
+    public boolean isDebugEnabled() {
+        return MIN_LEVEL == Level.DEBUG || INVOCATION.get().debugSampled;
+    }
+
+    public void debug(String message) {
+        if (isDebugEnabled()) {
+            write(Level.DEBUG, message, null);
+        }
+    }
+
+    public void info(String message) {
+        if (MIN_LEVEL.compareTo(Level.INFO) <= 0) {
+            write(Level.INFO, message, null);
+        }
+    }
+
+    public void warn(String message) {
+        if (MIN_LEVEL.compareTo(Level.WARN) <= 0) {
+            write(Level.WARN, message, null);
+        }
+    }
+
+    public void error(String message, Throwable e) {
+        write(Level.ERROR, message, e);
+    }
+
+    private void write(Level level, String message, Throwable e) {
+        Buffer buffer = BUFFER.get();
+        Invocation invocation = INVOCATION.get();
+        StringBuilder line = buffer.line;
+        line.setLength(0);
+
+        line.append("{\"timestamp\":\"");
+        buffer.appendTimestamp(System.currentTimeMillis());
+        line.append("\",\"level\":\"").append(level.name());
+        line.append("\",\"service\":");
+        appendString(line, service);
+        line.append(",\"message\":");
+        appendString(line, message);
+        if (invocation.requestId != null) {
+            line.append(",\"requestId\":");
+            appendString(line, invocation.requestId);
+        }
+        if (invocation.route != null) {
+            line.append(",\"route\":");
+            appendString(line, invocation.route);
+        }
+        if (e != null) {
+            line.append(",\"error\":");
+            appendString(line, e.getMessage());
+            line.append(",\"errorType\":");
+            appendString(line, e.getClass().getName());
+        }
+        line.append("}\n");
+
+        buffer.writeTo(System.out);
+    }
+
+    /**
+     * JSON string (or null) with the escapes RFC 8259 requires
+     */
+    static void appendString(StringBuilder out, String value) {
+        if (value == null) {
+            out.append("null");
+            return;
+        }
+        out.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"':
+                    out.append("\\\"");
+                    break;
+                case '\\':
+                    out.append("\\\\");
+                    break;
+                case '\n':
+                    out.append("\\n");
+                    break;
+                case '\r':
+                    out.append("\\r");
+                    break;
+                case '\t':
+                    out.append("\\t");
+                    break;
+                default:
+                    if (c < 0x20) {
+                        out.append("\\u00").append(HEX[c >> 4]).append(HEX[c & 0xF]);
+                    } else {
+                        out.append(c);
+                    }
+            }
+        }
+        out.append('"');
+    }
+
+    private static Level minLevel() {
+        String value = System.getenv("LOG_LEVEL");
+        if (value == null || value.isEmpty()) {
+            value = System.getenv("POWERTOOLS_LOG_LEVEL");
+        }
+        if (value != null) {
+            String name = value.trim().toUpperCase(Locale.ROOT);
+            if ("WARNING".equals(name)) {
+                return Level.WARN;
+            }
+            for (Level level : Level.values()) {
+                if (level.name().equals(name)) {
+                    return level;
+                }
+            }
+        }
+        return Level.INFO;
+    }
+
+    private static double sampleRate() {
+        String value = System.getenv("POWERTOOLS_LOGGER_SAMPLE_RATE");
+        if (value != null) {
+            try {
+                return Math.max(0d, Math.min(1d, Double.parseDouble(value.trim())));
+            } catch (NumberFormatException e) {
+                // fall through to no sampling
+            }
+        }
+        return 0d;
+    }
+
+    private static final class Invocation {
+        private String requestId;
+        private String route;
+        private boolean debugSampled;
+    }
+
+    /**
+     * Per-thread line buffer, UTF-8 bytes and the formatted current day
+     */
+    private static final class Buffer {
+        private final StringBuilder line = new StringBuilder(512);
+        private byte[] bytes = new byte[1024];
+        private long day = Long.MIN_VALUE;
+        private String dayPrefix;
+
+        void appendTimestamp(long millis) {
+            long currentDay = Math.floorDiv(millis, 86_400_000L);
+            if (currentDay != day) {
+                day = currentDay;
+                dayPrefix = LocalDate.ofEpochDay(currentDay) + "T";
+            }
+            int ofDay = (int) (millis - currentDay * 86_400_000L);
+            line.append(dayPrefix);
+            appendDigits(ofDay / 3_600_000, 2);
+            line.append(':');
+            appendDigits(ofDay / 60_000 % 60, 2);
+            line.append(':');
+            appendDigits(ofDay / 1000 % 60, 2);
+            line.append('.');
+            appendDigits(ofDay % 1000, 3);
+            line.append('Z');
+        }
+
+        private void appendDigits(int value, int width) {
+            if (width == 3 && value < 100) {
+                line.append('0');
+            }
+            if (value < 10) {
+                line.append('0');
+            }
+            line.append(value);
+        }
+
+        void writeTo(PrintStream out) {
+            int length = encode();
+            // One write per line so concurrent lines never interleave
+            out.write(bytes, 0, length);
+            out.flush();
+            if (line.capacity() > MAX_RETAINED_CHARS) {
+                line.setLength(0);
+                line.trimToSize();
+                bytes = new byte[1024];
+            }
+        }
+
+        private int encode() {
+            int length = line.length();
+            if (bytes.length < length * 3) {
+                bytes = new byte[length * 3];
+            }
+            int n = 0;
+            for (int i = 0; i < length; i++) {
+                char c = line.charAt(i);
+                if (c < 0x80) {
+                    bytes[n++] = (byte) c;
+                } else if (c < 0x800) {
+                    bytes[n++] = (byte) (0xC0 | (c >> 6));
+                    bytes[n++] = (byte) (0x80 | (c & 0x3F));
+                } else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(line.charAt(i + 1))) {
+                    int codePoint = Character.toCodePoint(c, line.charAt(++i));
+                    bytes[n++] = (byte) (0xF0 | (codePoint >> 18));
+                    bytes[n++] = (byte) (0x80 | ((codePoint >> 12) & 0x3F));
+                    bytes[n++] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+                    bytes[n++] = (byte) (0x80 | (codePoint & 0x3F));
+                } else if (Character.isSurrogate(c)) {
+                    bytes[n++] = (byte) '?';
+                } else {
+                    bytes[n++] = (byte) (0xE0 | (c >> 12));
+                    bytes[n++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                    bytes[n++] = (byte) (0x80 | (c & 0x3F));
+                }
+            }
+            return n;
+        }
+    }
+}
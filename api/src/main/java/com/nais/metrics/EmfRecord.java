@@ -0,0 +1,165 @@
+package com.nais.metrics;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * CloudWatch Embedded Metric Format (EMF) record written to stdout
+ * Lambda ships stdout to CloudWatch Logs, which extracts the metrics without any SDK call.
+ *
+ * Usage: new EmfRecord("Nais/Api").dimension("Service", "customer-api").metric("ResponseBytes", 1234, "Bytes").emit();
+ */
+public class EmfRecord {
+
+    public static final String DEFAULT_NAMESPACE = "Nais/Api";
+
+    private final String namespace;
+    private final Map<String, String> dimensions = new LinkedHashMap<>();
+    private final Map<String, Object> values = new LinkedHashMap<>();
+    private final Map<String, String> units = new LinkedHashMap<>();
+    private final Map<String, Object> properties = new LinkedHashMap<>();
+
+    public EmfRecord(String namespace) {
+        this.namespace = namespace;
+    }
+
+    public EmfRecord dimension(String name, String value) {
+        dimensions.put(name, value != null ? value : "unknown");
+        return this;
+    }
+
+    public EmfRecord metric(String name, double value, String unit) {
+        values.put(name, value);
+        units.put(name, unit);
+        return this;
+    }
+
+    /**
+     * Metric with multiple observations (EMF value array), e.g. per-request latencies
+     */
+    public EmfRecord metric(String name, List<? extends Number> observations, String unit) {
+        values.put(name, new ArrayList<>(observations));
+        units.put(name, unit);
+        return this;
+    }
+
+    /**
+     * Non-metric property, searchable in Logs Insights but not published as a metric
+     */
+    public EmfRecord property(String name, Object value) {
+        properties.put(name, value);
+        return this;
+    }
+
+    public boolean isEmpty() {
+        return values.isEmpty();
+    }
+
+    public String toJson() {
+        StringBuilder json = new StringBuilder(256);
+        json.append("{\"_aws\":{\"Timestamp\":").append(System.currentTimeMillis())
+            .append(",\"CloudWatchMetrics\":[{\"Namespace\":");
+        appendString(json, namespace);
+        json.append(",\"Dimensions\":[[");
+        boolean first = true;
+        for (String name : dimensions.keySet()) {
+            if (!first) {
+                json.append(',');
+            }
+            first = false;
+            appendString(json, name);
+        }
+        json.append("]],\"Metrics\":[");
+        first = true;
+        for (Map.Entry<String, String> unit : units.entrySet()) {
+            if (!first) {
+                json.append(',');
+            }
+            first = false;
+            json.append("{\"Name\":");
+            appendString(json, unit.getKey());
+            json.append(",\"Unit\":");
+            appendString(json, unit.getValue());
+            json.append('}');
+        }
+        json.append("]}]}");
+
+        for (Map.Entry<String, String> dimension : dimensions.entrySet()) {
+            json.append(',');
+            appendString(json, dimension.getKey());
+            json.append(':');
+            appendString(json, dimension.getValue());
+        }
+        for (Map.Entry<String, Object> value : values.entrySet()) {
+            json.append(',');
+            appendString(json, value.getKey());
+            json.append(':');
+            appendValue(json, value.getValue());
+        }
+        for (Map.Entry<String, Object> property : properties.entrySet()) {
+            json.append(',');
+            appendString(json, property.getKey());
+            json.append(':');
+            appendValue(json, property.getValue());
+        }
+        json.append('}');
+        return json.toString();
+    }
+
+    public void emit() {
+        if (!isEmpty()) {
+            System.out.println(toJson());
+        }
+    }
+
+    private static void appendValue(StringBuilder json, Object value) {
+        if (value == null) {
+            json.append("null");
+        } else if (value instanceof Double) {
+            double d = (Double) value;
+            if (d == Math.rint(d) && !Double.isInfinite(d)) {
+                json.append((long) d);
+            } else {
+                json.append(d);
+            }
+        } else if (value instanceof Number || value instanceof Boolean) {
+            json.append(value);
+        } else if (value instanceof List) {
+            json.append('[');
+            boolean first = true;
+            for (Object item : (List<?>) value) {
+                if (!first) {
+                    json.append(',');
+                }
+                first = false;
+                appendValue(json, item);
+            }
+            json.append(']');
+        } else {
+            appendString(json, value.toString());
+        }
+    }
+
+    static void appendString(StringBuilder json, String value) {
+        json.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"': json.append("\\\""); break;
+                case '\\': json.append("\\\\"); break;
+                case '\n': json.append("\\n"); break;
+                case '\r': json.append("\\r"); break;
+                case '\t': json.append("\\t"); break;
+                default:
+                    if (c < 0x20) {
+                        json.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        json.append(c);
+                    }
+            }
+        }
+        json.append('"');
+    }
+}
@@ -0,0 +1,108 @@
+package com.nais.metrics;
+
+import java.util.Arrays;
+
+/**
+ * Fixed-size log-linear latency histogram (HdrHistogram layout, microsecond resolution)
+ * 応答時間ヒストグラム - 固定メモリでパーセンタイルを近似
+ *
+ * Values below 64µs get one bucket each; above that every power of two is split into 32
+ * equal buckets, so any recorded value is reported within 1/32 (about 3%) of its true
+ * value. Memory is fixed (864 counters, up to about 35 minutes) regardless of the number
+ * of samples, and recording is an index computation plus one increment. Not thread-safe:
+ * callers synchronize (Lambda serves one request per container at a time).
+ */
+public final class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 6;
+    private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;        // 64 exact buckets
+    private static final int SUB_BUCKET_HALF = SUB_BUCKET_COUNT >> 1;         // 32 per octave above
+    private static final int MAX_MAGNITUDE = 30;                              // 2^31 µs
+    private static final long MAX_VALUE = (1L << (MAX_MAGNITUDE + 1)) - 1;
+
+    private final long[] counts = new long[SUB_BUCKET_COUNT + (MAX_MAGNITUDE - SUB_BUCKET_BITS + 1) * SUB_BUCKET_HALF];
+    private long totalCount;
+    private long sum;
+    private long min = Long.MAX_VALUE;
+    private long max;
+
+    /**
+     * Record one value in microseconds (negative values count as 0, huge ones are capped)
+     */
+    public void record(long micros) {
+        long value = Math.max(0L, Math.min(MAX_VALUE, micros));
+        counts[indexOf(value)]++;
+        totalCount++;
+        sum += value;
+        min = Math.min(min, value);
+        max = Math.max(max, value);
+    }
+
+    public void recordNanos(long nanos) {
+        record(nanos / 1_000L);
+    }
+
+    /**
+     * Value at the given percentile (0-100) in microseconds: the upper bound of the bucket
+     * holding that rank, capped at the largest recorded value; 0 when empty
+     */
+    public long percentile(double percentile) {
+        if (totalCount == 0) {
+            return 0L;
+        }
+        long rank = Math.max(1L, (long) Math.ceil(percentile / 100.0 * totalCount));
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return Math.min(max, highestEquivalent(i));
+            }
+        }
+        return max;
+    }
+
+    public long getCount() {
+        return totalCount;
+    }
+
+    public long getMax() {
+        return totalCount > 0 ? max : 0L;
+    }
+
+    public long getMin() {
+        return totalCount > 0 ? min : 0L;
+    }
+
+    public double getMean() {
+        return totalCount > 0 ? (double) sum / totalCount : 0d;
+    }
+
+    public void reset() {
+        Arrays.fill(counts, 0L);
+        totalCount = 0;
+        sum = 0;
+        min = Long.MAX_VALUE;
+        max = 0;
+    }
+
+    static int indexOf(long value) {
+        if (value < SUB_BUCKET_COUNT) {
+            return (int) value;
+        }
+        int magnitude = 63 - Long.numberOfLeadingZeros(value);
+        int shift = magnitude - (SUB_BUCKET_BITS - 1);
+        int subBucket = (int) (value >>> shift);                       // 32..63
+        return SUB_BUCKET_COUNT + (magnitude - SUB_BUCKET_BITS) * SUB_BUCKET_HALF + (subBucket - SUB_BUCKET_HALF);
+    }
+
+    static long highestEquivalent(int index) {
+        if (index < SUB_BUCKET_COUNT) {
+            return index;
+        }
+        int offset = index - SUB_BUCKET_COUNT;
+        int magnitude = SUB_BUCKET_BITS + offset / SUB_BUCKET_HALF;
+        int shift = magnitude - (SUB_BUCKET_BITS - 1);
+        long subBucket = SUB_BUCKET_HALF + offset % SUB_BUCKET_HALF;
+        return ((subBucket + 1) << shift) - 1;
+    }
+}
@@ -0,0 +1,288 @@
+package com.nais.metrics;
+
+import com.amazonaws.services.lambda.runtime.Context;
+import com.amazonaws.services.lambda.runtime.events.APIGatewayProxyRequestEvent;
+import com.amazonaws.services.lambda.runtime.events.APIGatewayProxyResponseEvent;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.nais.http.StreamingResponse;
+import com.nais.jdbc.SqlStats;
+import com.nais.logging.StructuredLogger;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Per-route latency, status and size metrics
+ * ルート別レイテンシ計測 - DB / シリアライズ / 合計時間をヒストグラムに記録しEMF出力
+ *
+ * Handlers bracket handleRequest with {@link #begin} / {@link #end}; DB time is added by
+ * {@link com.nais.jdbc.InstrumentedConnection} and {@link #db()}, serialization time by
+ * {@link #toJson} and {@link StreamingResponse}. Each request writes one EMF
+ * record with dimensions Service and Route (method + resource template, e.g.
+ * "GET /customer/{code}"):
+ *   LatencyMs / DbMs / SerializationMs  this request (alarm on their p99 statistic)
+ *   ResponseBytes                       body size; for streamed bodies the bytes written
+ *   Status2xx / Status4xx / Status5xx   1 for the class of this response, else 0
+ *   Latency|Db|Serialization P50/P90/P99Ms  from this container's histogram of the route
+ *                                       over the last ROUTE_METRICS_WINDOW_SECONDS (300)
+ *   AuthRejected                        1 when {@link com.nais.auth.AuthFilter} refused the
+ *                                       request (property authOutcome), absent without auth
+ * Streamed bodies are written after handleRequest returns, so those requests complete
+ * in {@link #endStreamed}. Completing a request also flushes its per-statement
+ * {@link SqlStats}. OPTIONS preflights and priming requests are not recorded.
+ * ROUTE_METRICS_ENABLED=false turns everything into no-ops.
+ */
+public final class RouteMetrics {
+
+    private static final boolean ENABLED = !"false".equalsIgnoreCase(System.getenv("ROUTE_METRICS_ENABLED"));
+    private static final long WINDOW_NANOS = windowSeconds() * 1_000_000_000L;
+    private static final int MAX_ROUTES = 200;
+    private static final String OTHER_ROUTE = "other";
+
+    private static final ThreadLocal<Request> CURRENT = new ThreadLocal<>();
+    private static final Map<String, RouteStats> ROUTES = new ConcurrentHashMap<>();
+    private static final Timer NO_OP = new Timer(null, false);
+
+    private RouteMetrics() {
+    }
+
+    /**
+     * Start timing a request (first statement of handleRequest); also binds the request ID
+     * and route to {@link StructuredLogger} lines
+     */
+    public static void begin(APIGatewayProxyRequestEvent input, Context context) {
+        SqlStats.discard();
+        String route = null;
+        if (input != null) {
+            String resource = input.getResource() != null ? input.getResource() : input.getPath();
+            route = input.getHttpMethod() + " " + resource;
+        }
+        StructuredLogger.beginInvocation(context != null ? context.getAwsRequestId() : null, route);
+        if (!ENABLED || input == null || "OPTIONS".equals(input.getHttpMethod())
+                || (context != null && "priming".equals(context.getAwsRequestId()))) {
+            CURRENT.remove();
+            return;
+        }
+        CURRENT.set(new Request(route, System.nanoTime()));
+    }
+
+    /**
+     * Finish the request with the handler's response and emit its record. A streamed body
+     * still to be written keeps the request open until {@link #endStreamed}.
+     */
+    public static APIGatewayProxyResponseEvent end(String service, APIGatewayProxyResponseEvent response) {
+        Request request = CURRENT.get();
+        if (request == null) {
+            return response;
+        }
+        request.service = service;
+        request.statusCode = response != null && response.getStatusCode() != null ? response.getStatusCode() : 500;
+        if (response instanceof StreamingResponse && ((StreamingResponse) response).isDeferred()) {
+            return response;
+        }
+        // A StreamingResponse outside the stream codec renders (timed as serialization) here
+        String body = response != null ? response.getBody() : null;
+        CURRENT.remove();
+        request.complete(body != null ? utf8Length(body) : 0L);
+        return response;
+    }
+
+    /**
+     * Finish a request whose body was streamed to the Lambda output (bytes written)
+     */
+    public static void endStreamed(long bytes) {
+        Request request = CURRENT.get();
+        if (request == null || request.service == null) {
+            return;
+        }
+        CURRENT.remove();
+        request.complete(bytes);
+    }
+
+    /**
+     * The request being timed on this thread, or null
+     */
+    public static Request current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * Time a DB step that does not go through an instrumented connection (e.g. connect)
+     */
+    public static Timer db() {
+        Request request = CURRENT.get();
+        return request != null ? new Timer(request, true) : NO_OP;
+    }
+
+    public static Timer serialization() {
+        Request request = CURRENT.get();
+        return request != null ? new Timer(request, false) : NO_OP;
+    }
+
+    /**
+     * objectMapper.writeValueAsString(value), timed as serialization
+     */
+    public static String toJson(ObjectMapper objectMapper, Object value) throws JsonProcessingException {
+        try (Timer timer = serialization()) {
+            return objectMapper.writeValueAsString(value);
+        }
+    }
+
+    private static long utf8Length(String text) {
+        long bytes = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c < 0x80) {
+                bytes++;
+            } else if (c < 0x800) {
+                bytes += 2;
+            } else if (Character.isHighSurrogate(c)) {
+                bytes += 4;
+                i++;
+            } else {
+                bytes += 3;
+            }
+        }
+        return bytes;
+    }
+
+    /**
+     * Routes come from resource templates; raw paths (direct invocations) are capped
+     */
+    private static String routeKey(String route) {
+        return ROUTES.containsKey(route) || ROUTES.size() < MAX_ROUTES ? route : OTHER_ROUTE;
+    }
+
+    private static long windowSeconds() {
+        String value = System.getenv("ROUTE_METRICS_WINDOW_SECONDS");
+        if (value != null) {
+            try {
+                return Math.max(1L, Long.parseLong(value.trim()));
+            } catch (NumberFormatException e) {
+                // fall through to default
+            }
+        }
+        return 300L;
+    }
+
+    private static double millis(long micros) {
+        return Math.round(micros / 10.0) / 100.0;
+    }
+
+    /**
+     * Timings of one request
+     */
+    public static final class Request {
+        private final String route;
+        private final long startNanos;
+        private long dbNanos;
+        private long serializationNanos;
+        private String service;
+        private int statusCode;
+        private String authOutcome;
+        private boolean authAccepted;
+
+        private Request(String route, long startNanos) {
+            this.route = route;
+            this.startNanos = startNanos;
+        }
+
+        public String getRoute() {
+            return route;
+        }
+
+        public void addDbNanos(long nanos) {
+            dbNanos += nanos;
+        }
+
+        public void setAuthOutcome(String outcome, boolean accepted) {
+            this.authOutcome = outcome;
+            this.authAccepted = accepted;
+        }
+
+        private void complete(long responseBytes) {
+            long totalNanos = System.nanoTime() - startNanos;
+            String key = routeKey(route);
+            RouteStats stats = ROUTES.computeIfAbsent(key, k -> new RouteStats());
+            EmfRecord record = new EmfRecord(EmfRecord.DEFAULT_NAMESPACE)
+                    .dimension("Service", service)
+                    .dimension("Route", key)
+                    .metric("LatencyMs", totalNanos / 1_000_000d, "Milliseconds")
+                    .metric("DbMs", dbNanos / 1_000_000d, "Milliseconds")
+                    .metric("SerializationMs", serializationNanos / 1_000_000d, "Milliseconds")
+                    .metric("ResponseBytes", responseBytes, "Bytes")
+                    .metric("Status2xx", statusCode < 400 ? 1 : 0, "Count")
+                    .metric("Status4xx", statusCode >= 400 && statusCode < 500 ? 1 : 0, "Count")
+                    .metric("Status5xx", statusCode >= 500 ? 1 : 0, "Count");
+            if (authOutcome != null) {
+                record.metric("AuthRejected", authAccepted ? 0 : 1, "Count").property("authOutcome", authOutcome);
+            }
+            stats.record(totalNanos, dbNanos, serializationNanos, record);
+            record.property("statusCode", statusCode).emit();
+            SqlStats.flush(service);
+        }
+    }
+
+    /**
+     * One timed DB or serialization step (try-with-resources)
+     */
+    public static final class Timer implements AutoCloseable {
+        private final Request request;
+        private final boolean db;
+        private final long startNanos;
+
+        private Timer(Request request, boolean db) {
+            this.request = request;
+            this.db = db;
+            this.startNanos = request != null ? System.nanoTime() : 0L;
+        }
+
+        @Override
+        public void close() {
+            if (request == null) {
+                return;
+            }
+            long elapsed = System.nanoTime() - startNanos;
+            if (db) {
+                request.dbNanos += elapsed;
+            } else {
+                request.serializationNanos += elapsed;
+            }
+        }
+    }
+
+    /**
+     * Histograms of one route in this container, restarted every window
+     */
+    private static final class RouteStats {
+        private final LatencyHistogram total = new LatencyHistogram();
+        private final LatencyHistogram db = new LatencyHistogram();
+        private final LatencyHistogram serialization = new LatencyHistogram();
+        private long windowStartNanos = System.nanoTime();
+
+        synchronized void record(long totalNanos, long dbNanos, long serializationNanos, EmfRecord record) {
+            long now = System.nanoTime();
+            if (now - windowStartNanos > WINDOW_NANOS) {
+                total.reset();
+                db.reset();
+                serialization.reset();
+                windowStartNanos = now;
+            }
+            total.recordNanos(totalNanos);
+            db.recordNanos(dbNanos);
+            serialization.recordNanos(serializationNanos);
+
+            addPercentiles(record, "Latency", total);
+            addPercentiles(record, "Db", db);
+            addPercentiles(record, "Serialization", serialization);
+            record.property("windowCount", total.getCount());
+        }
+
+        private static void addPercentiles(EmfRecord record, String name, LatencyHistogram histogram) {
+            record.metric(name + "P50Ms", millis(histogram.percentile(50)), "Milliseconds")
+                  .metric(name + "P90Ms", millis(histogram.percentile(90)), "Milliseconds")
+                  .metric(name + "P99Ms", millis(histogram.percentile(99)), "Milliseconds");
+        }
+    }
+}
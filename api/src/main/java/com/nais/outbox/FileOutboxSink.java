@@ -0,0 +1,49 @@
+package com.nais.outbox;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+/**
+ * Appends events as JSON lines to a local file (local development / replay)
+ * The batch is written and fsynced before publish returns.
+ */
+public class FileOutboxSink implements OutboxSink {
+
+    private final Path path;
+
+    public FileOutboxSink(Path path) {
+        this.path = path;
+    }
+
+    @Override
+    public void publish(List<OutboxEvent> batch) throws IOException {
+        StringBuilder lines = new StringBuilder(batch.size() * 256);
+        for (OutboxEvent event : batch) {
+            lines.append(event.toJson()).append('\n');
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(lines.toString().getBytes(StandardCharsets.UTF_8));
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(false);
+        }
+    }
+
+    public Path getPath() {
+        return path;
+    }
+
+    /**
+     * Lines written so far (tests)
+     */
+    public List<String> readLines() throws IOException {
+        return Files.readAllLines(path, StandardCharsets.UTF_8);
+    }
+}
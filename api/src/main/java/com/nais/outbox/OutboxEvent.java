@@ -0,0 +1,70 @@
+package com.nais.outbox;
+
+import java.sql.Timestamp;
+
+/**
+ * One outbox row as handed to an {@link OutboxSink}
+ * Delivery is at-least-once: consumers de-duplicate on id.
+ */
+public final class OutboxEvent {
+
+    private final long id;
+    private final String aggregateType;
+    private final String aggregateKey;
+    private final String eventType;
+    private final String payload;
+    private final Timestamp createdAt;
+    private final int attempts;
+
+    public OutboxEvent(long id, String aggregateType, String aggregateKey, String eventType,
+                       String payload, Timestamp createdAt, int attempts) {
+        this.id = id;
+        this.aggregateType = aggregateType;
+        this.aggregateKey = aggregateKey;
+        this.eventType = eventType;
+        this.payload = payload;
+        this.createdAt = createdAt;
+        this.attempts = attempts;
+    }
+
+    public long getId() { return id; }
+    public String getAggregateType() { return aggregateType; }
+    public String getAggregateKey() { return aggregateKey; }
+    public String getEventType() { return eventType; }
+    /** Row image after the change, as JSON text */
+    public String getPayload() { return payload; }
+    public Timestamp getCreatedAt() { return createdAt; }
+    /** Earlier failed deliveries of this event */
+    public int getAttempts() { return attempts; }
+
+    /**
+     * Envelope written by the file and stdout sinks: {"id":..,"aggregate_type":..,"aggregate_key":..,"event_type":..,"created_at":..,"payload":{..}}
+     */
+    public String toJson() {
+        StringBuilder json = new StringBuilder(payload.length() + 160);
+        json.append("{\"id\":").append(id).append(",\"aggregate_type\":");
+        appendString(json, aggregateType);
+        json.append(",\"aggregate_key\":");
+        appendString(json, aggregateKey);
+        json.append(",\"event_type\":");
+        appendString(json, eventType);
+        json.append(",\"created_at\":").append(createdAt != null ? createdAt.getTime() : 0L);
+        json.append(",\"payload\":").append(payload).append('}');
+        return json.toString();
+    }
+
+    private static void appendString(StringBuilder json, String value) {
+        json.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                json.append('\\').append(c);
+            } else if (c < 0x20) {
+                json.append(String.format("\\u%04x", (int) c));
+            } else {
+                json.append(c);
+            }
+        }
+        json.append('"');
+    }
+}
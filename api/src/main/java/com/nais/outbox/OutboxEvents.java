@@ -0,0 +1,126 @@
+package com.nais.outbox;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+
+/**
+ * Transactional outbox for mail destination master changes (mail_master_outbox)
+ * 宛先マスタ変更イベント - データ更新と同一トランザクションで記録
+ *
+ * Parent and child writers append one event per changed row inside their own transaction,
+ * so an event exists exactly when the change committed. The payload is the row image
+ * after the change, copied with INSERT ... SELECT to_jsonb(row) in the same round trip;
+ * before_image is the row image before the change, kept by the BEFORE UPDATE trigger of
+ * outbox_setup.sql and taken with mail_master_take_before_image - in set-based writers too,
+ * since the trigger has run for a row before the UPDATE CTE returns it. It is null when the
+ * row was not updated in this transaction since its previous event: inserted rows (created)
+ * and databases without the trigger.
+ * Events of one aggregate key (parent composite key / mailing list) are published in id
+ * order by {@link OutboxPublisher}. Ids are drawn at insert time, not at commit, so before
+ * inserting the writer takes a transaction-scoped advisory lock per key (in key order):
+ * a second transaction on the same key draws its ids only after the first one ended, and
+ * per key, id order is commit order.
+ */
+public final class OutboxEvents {
+
+    public static final String TABLE = "mail_master_outbox";
+
+    public static final String PARENT = "mail_destination_parent";
+    public static final String CHILD = "mail_destination_child";
+
+    public static final String CREATED = "created";
+    public static final String UPDATED = "updated";
+    public static final String DELETED = "deleted";
+    public static final String STATUS_CHANGED = "status_changed";
+
+    private static final boolean ENABLED = !"false".equalsIgnoreCase(System.getenv("OUTBOX_ENABLED"));
+
+    /** Parent events are ordered per composite key, in the API's job_id|...|extend_cd form */
+    private static final String PARENT_KEY_SQL =
+            "job_id || '|' || office_cd || '|' || customer_cd || '|' || chain_store_cd || '|' || " +
+            "supplier_cd || '|' || order_branch_cd || '|' || extend_cd";
+
+    /** Child events are ordered per mailing list so bulk and single-row changes stay in sequence */
+    private static final String CHILD_KEY_SQL = "mailing_list_id";
+
+    /** Child before-images are kept per row, like the history */
+    private static final String CHILD_ROW_KEY_SQL = "mailing_list_id || '|' || destination_seq";
+
+    private OutboxEvents() {
+    }
+
+    /**
+     * Whether writers record outbox events (OUTBOX_ENABLED, default true)
+     */
+    public static boolean isEnabled() {
+        return ENABLED;
+    }
+
+    /**
+     * Append one event per row of the aggregate's table matching where. Must run inside the
+     * writer's transaction, after the row change.
+     *
+     * @return number of events appended
+     */
+    public static int append(Connection conn, String aggregateType, String eventType, String where, Object... params) throws SQLException {
+        if (!ENABLED) {
+            return 0;
+        }
+        String sql = insertSelect(aggregateType, eventType, tableOf(aggregateType), where);
+        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+            // where appears in the key lock subquery and in the insert
+            for (int i = 0; i < params.length; i++) {
+                stmt.setObject(i + 1, params[i]);
+                stmt.setObject(params.length + i + 1, params[i]);
+            }
+            return stmt.executeUpdate();
+        }
+    }
+
+    /**
+     * Data-modifying CTE that appends one event per row of a preceding CTE returning whole
+     * rows (UPDATE ... RETURNING *), for set-based writers. Empty when the outbox is disabled.
+     * Usage: "WITH changed AS (UPDATE ... RETURNING *)" + OutboxEvents.cte(PARENT, DELETED, "changed") + " SELECT ..."
+     */
+    public static String cte(String aggregateType, String eventType, String source) {
+        if (!ENABLED) {
+            return "";
+        }
+        return ", outbox AS (" + insertSelect(aggregateType, eventType, source, null) + ")";
+    }
+
+    /**
+     * INSERT ... SELECT of the source rows, joined to a one-row aggregate that first locks
+     * every key of those rows: the join yields no row, and no id is drawn, before all
+     * locks are held
+     */
+    private static String insertSelect(String aggregateType, String eventType, String source, String where) {
+        // Type names are constants of this class, never request input
+        String keySql = keySqlOf(aggregateType);
+        String filter = where != null ? " WHERE " + where : "";
+        String rowKeySql = PARENT.equals(aggregateType) ? PARENT_KEY_SQL : CHILD_ROW_KEY_SQL;
+        return "INSERT INTO " + TABLE + " (aggregate_type, aggregate_key, event_type, payload, before_image) " +
+               "SELECT '" + aggregateType + "', " + keySql + ", '" + eventType + "', to_jsonb(r), " +
+               "mail_master_take_before_image('" + aggregateType + "', " + rowKeySql + ") " +
+               "FROM (SELECT count(pg_advisory_xact_lock(hashtext('" + TABLE + "'), hashtext('" + aggregateType + ":' || k))) AS locked " +
+               "FROM (SELECT DISTINCT " + keySql + " AS k FROM " + source + " r" + filter + " ORDER BY 1) keys) l " +
+               "CROSS JOIN " + source + " r" +
+               (where != null ? filter + " AND l.locked >= 0" : " WHERE l.locked >= 0");
+    }
+
+    private static String tableOf(String aggregateType) {
+        if (PARENT.equals(aggregateType)) {
+            return "mail_destination_parent_mst";
+        }
+        if (CHILD.equals(aggregateType)) {
+            return "mail_destination_child_mst";
+        }
+        throw new IllegalArgumentException("Unknown aggregate type: " + aggregateType);
+    }
+
+    private static String keySqlOf(String aggregateType) {
+        tableOf(aggregateType);
+        return PARENT.equals(aggregateType) ? PARENT_KEY_SQL : CHILD_KEY_SQL;
+    }
+}
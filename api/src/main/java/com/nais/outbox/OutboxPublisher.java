@@ -0,0 +1,306 @@
+package com.nais.outbox;
+
+import com.nais.history.HistoryArchiver;
+import com.nais.metrics.EmfRecord;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Drains mail_master_outbox into an {@link OutboxSink} in batches
+ * 送信待ちイベントを一括取得して送信 (FOR UPDATE SKIP LOCKED)
+ *
+ * Each batch is claimed with FOR UPDATE SKIP LOCKED, so several publishers can run at once
+ * without waiting on each other, and is marked published only after the sink accepted it
+ * (at-least-once; a crash between the two redelivers the batch). SKIP LOCKED alone can hand
+ * a later event of a key to one publisher while another holds an earlier one, so events
+ * are held back when an unpublished event of the same key with a lower id exists outside
+ * the batch; they go out on a later run after the earlier one. The check only sees committed
+ * rows; it is complete because writers commit the events of one key in id order (the key
+ * lock in {@link OutboxEvents}).
+ *
+ * Local run: java -cp target/amplify-auth-lambda.jar com.nais.outbox.OutboxPublisher
+ */
+public class OutboxPublisher {
+
+    public static final String SERVICE = "outbox-publisher";
+
+    private static final String CLAIM_SQL =
+            "SELECT id, aggregate_type, aggregate_key, event_type, payload::text AS payload, created_at, attempts " +
+            "FROM mail_master_outbox WHERE published_at IS NULL " +
+            "ORDER BY id LIMIT ? FOR UPDATE SKIP LOCKED";
+
+    // Per key in the batch: the lowest unpublished id below the batch's last event of that
+    // key that this publisher does not hold
+    private static final String BLOCKED_SQL =
+            "SELECT o.aggregate_key, min(o.id) FROM mail_master_outbox o " +
+            "JOIN (SELECT b.aggregate_key, max(b.id) AS last_id " +
+            "      FROM unnest(?::varchar[], ?::bigint[]) AS b(aggregate_key, id) GROUP BY b.aggregate_key) b " +
+            "ON o.aggregate_key = b.aggregate_key " +
+            "WHERE o.published_at IS NULL AND o.id < b.last_id AND NOT (o.id = ANY(?::bigint[])) " +
+            "GROUP BY o.aggregate_key";
+
+    private static final String MARK_PUBLISHED_SQL =
+            "UPDATE mail_master_outbox SET published_at = CURRENT_TIMESTAMP, last_error = NULL WHERE id = ANY(?::bigint[])";
+
+    private static final String MARK_FAILED_SQL =
+            "UPDATE mail_master_outbox SET attempts = attempts + 1, last_error = ? WHERE id = ANY(?::bigint[])";
+
+    // Rows still waiting for the history archiver are kept
+    private static final String PURGE_SQL =
+            "DELETE FROM mail_master_outbox WHERE id IN (" +
+            "SELECT id FROM mail_master_outbox WHERE published_at < ?" +
+            (HistoryArchiver.isEnabled() ? " AND archived_at IS NOT NULL" : "") +
+            " ORDER BY published_at LIMIT ?)";
+
+    private static final String BACKLOG_SQL =
+            "SELECT count(*) FROM mail_master_outbox WHERE published_at IS NULL";
+
+    private static final int PURGE_LIMIT = 10000;
+
+    private final OutboxSink sink;
+    private final int batchSize;
+    private final long retentionMillis;
+
+    public OutboxPublisher(OutboxSink sink, int batchSize, long retentionMillis) {
+        this.sink = sink;
+        this.batchSize = batchSize;
+        this.retentionMillis = retentionMillis;
+    }
+
+    /**
+     * Publisher configured from OUTBOX_SINK, OUTBOX_BATCH_SIZE (default 500) and
+     * OUTBOX_RETENTION_HOURS (published rows kept, default 72)
+     */
+    public static OutboxPublisher fromEnv() {
+        return new OutboxPublisher(OutboxSink.fromEnv(),
+                intEnv("OUTBOX_BATCH_SIZE", 500),
+                intEnv("OUTBOX_RETENTION_HOURS", 72) * 3_600_000L);
+    }
+
+    /**
+     * Publish batches until the outbox is empty, a batch fails, everything left is held
+     * back for ordering, or the deadline (epoch millis) passes. The connection is used in
+     * manual-commit mode, one transaction per batch.
+     */
+    public Result drain(Connection conn, long deadlineMillis) throws SQLException {
+        conn.setAutoCommit(false);
+        Result result = new Result();
+        long start = System.nanoTime();
+
+        while (System.currentTimeMillis() < deadlineMillis) {
+            List<OutboxEvent> claimed = claim(conn);
+            if (claimed.isEmpty()) {
+                conn.commit();
+                break;
+            }
+
+            List<OutboxEvent> batch = releasable(conn, claimed);
+            result.heldBack += claimed.size() - batch.size();
+            if (batch.isEmpty()) {
+                // Every key in the batch waits for a batch held by another publisher
+                conn.commit();
+                break;
+            }
+
+            long publishStart = System.nanoTime();
+            try {
+                sink.publish(batch);
+            } catch (Exception e) {
+                conn.rollback();
+                markFailed(conn, batch, e);
+                result.failedBatches++;
+                result.lastError = e.getMessage();
+                break;
+            }
+            result.publishNanos += System.nanoTime() - publishStart;
+
+            markPublished(conn, batch);
+            conn.commit();
+
+            result.batches++;
+            result.published += batch.size();
+            long now = System.currentTimeMillis();
+            for (OutboxEvent event : batch) {
+                if (event.getCreatedAt() != null) {
+                    result.maxLagMillis = Math.max(result.maxLagMillis, now - event.getCreatedAt().getTime());
+                }
+            }
+
+            if (claimed.size() < batchSize) {
+                break;
+            }
+        }
+
+        result.purged = purgePublished(conn);
+        result.backlog = backlog(conn);
+        conn.commit();
+        result.elapsedNanos = System.nanoTime() - start;
+        return result;
+    }
+
+    private List<OutboxEvent> claim(Connection conn) throws SQLException {
+        List<OutboxEvent> events = new ArrayList<>(batchSize);
+        try (PreparedStatement stmt = conn.prepareStatement(CLAIM_SQL)) {
+            stmt.setInt(1, batchSize);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    events.add(new OutboxEvent(rs.getLong("id"), rs.getString("aggregate_type"), rs.getString("aggregate_key"),
+                            rs.getString("event_type"), rs.getString("payload"), rs.getTimestamp("created_at"), rs.getInt("attempts")));
+                }
+            }
+        }
+        return events;
+    }
+
+    /**
+     * Drop the events of a key from the first id another publisher (or an earlier failed
+     * batch) still holds; everything before that gap keeps its order
+     */
+    private List<OutboxEvent> releasable(Connection conn, List<OutboxEvent> claimed) throws SQLException {
+        String[] keys = new String[claimed.size()];
+        Long[] ids = new Long[claimed.size()];
+        for (int i = 0; i < claimed.size(); i++) {
+            keys[i] = claimed.get(i).getAggregateKey();
+            ids[i] = claimed.get(i).getId();
+        }
+
+        Map<String, Long> blockedFrom = new HashMap<>();
+        try (PreparedStatement stmt = conn.prepareStatement(BLOCKED_SQL)) {
+            stmt.setArray(1, conn.createArrayOf("varchar", keys));
+            stmt.setArray(2, conn.createArrayOf("bigint", ids));
+            stmt.setArray(3, conn.createArrayOf("bigint", ids));
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    blockedFrom.put(rs.getString(1), rs.getLong(2));
+                }
+            }
+        }
+        if (blockedFrom.isEmpty()) {
+            return claimed;
+        }
+
+        List<OutboxEvent> releasable = new ArrayList<>(claimed.size());
+        for (OutboxEvent event : claimed) {
+            Long gap = blockedFrom.get(event.getAggregateKey());
+            if (gap == null || event.getId() < gap) {
+                releasable.add(event);
+            }
+        }
+        return releasable;
+    }
+
+    private void markPublished(Connection conn, List<OutboxEvent> batch) throws SQLException {
+        try (PreparedStatement stmt = conn.prepareStatement(MARK_PUBLISHED_SQL)) {
+            stmt.setArray(1, conn.createArrayOf("bigint", idsOf(batch)));
+            stmt.executeUpdate();
+        }
+    }
+
+    private void markFailed(Connection conn, List<OutboxEvent> batch, Exception error) throws SQLException {
+        String message = String.valueOf(error.getMessage());
+        try (PreparedStatement stmt = conn.prepareStatement(MARK_FAILED_SQL)) {
+            stmt.setString(1, message.length() > 1000 ? message.substring(0, 1000) : message);
+            stmt.setArray(2, conn.createArrayOf("bigint", idsOf(batch)));
+            stmt.executeUpdate();
+        }
+        conn.commit();
+    }
+
+    private int purgePublished(Connection conn) throws SQLException {
+        try (PreparedStatement stmt = conn.prepareStatement(PURGE_SQL)) {
+            stmt.setTimestamp(1, new Timestamp(System.currentTimeMillis() - retentionMillis));
+            stmt.setInt(2, PURGE_LIMIT);
+            return stmt.executeUpdate();
+        }
+    }
+
+    private long backlog(Connection conn) throws SQLException {
+        try (PreparedStatement stmt = conn.prepareStatement(BACKLOG_SQL);
+             ResultSet rs = stmt.executeQuery()) {
+            return rs.next() ? rs.getLong(1) : 0L;
+        }
+    }
+
+    private static Long[] idsOf(List<OutboxEvent> batch) {
+        Long[] ids = new Long[batch.size()];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = batch.get(i).getId();
+        }
+        return ids;
+    }
+
+    private static int intEnv(String name, int defaultValue) {
+        String value = System.getenv(name);
+        if (value != null) {
+            try {
+                return Math.max(1, Integer.parseInt(value.trim()));
+            } catch (NumberFormatException e) {
+                // fall through to default
+            }
+        }
+        return defaultValue;
+    }
+
+    /**
+     * Outcome of one drain, emitted as EMF metrics
+     */
+    public static final class Result {
+        public int published;
+        public int batches;
+        public int heldBack;
+        public int failedBatches;
+        public int purged;
+        public long backlog;
+        public long maxLagMillis;
+        public long publishNanos;
+        public long elapsedNanos;
+        public String lastError;
+
+        public double eventsPerSecond() {
+            return elapsedNanos > 0 ? published * 1_000_000_000d / elapsedNanos : 0d;
+        }
+
+        public EmfRecord toEmf() {
+            return new EmfRecord(EmfRecord.DEFAULT_NAMESPACE)
+                    .dimension("Service", SERVICE)
+                    .metric("OutboxPublished", published, "Count")
+                    .metric("OutboxBatches", batches, "Count")
+                    .metric("OutboxHeldBack", heldBack, "Count")
+                    .metric("OutboxFailedBatches", failedBatches, "Count")
+                    .metric("OutboxBacklog", backlog, "Count")
+                    .metric("OutboxMaxLagMs", maxLagMillis, "Milliseconds")
+                    .metric("OutboxSinkMs", publishNanos / 1_000_000d, "Milliseconds")
+                    .metric("OutboxDrainMs", elapsedNanos / 1_000_000d, "Milliseconds")
+                    .metric("OutboxEventsPerSecond", eventsPerSecond(), "Count/Second")
+                    .property("purged", purged)
+                    .property("lastError", lastError);
+        }
+
+        @Override
+        public String toString() {
+            return "published=" + published + " batches=" + batches + " heldBack=" + heldBack +
+                   " failedBatches=" + failedBatches + " backlog=" + backlog + " purged=" + purged +
+                   " maxLagMs=" + maxLagMillis + " eventsPerSecond=" + Math.round(eventsPerSecond());
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        String dbUrl = System.getenv().getOrDefault("DB_URL", "jdbc:postgresql://localhost:5432/nais");
+        String dbUser = System.getenv().getOrDefault("DB_USER", "postgres");
+        String dbPassword = System.getenv().getOrDefault("DB_PASSWORD", "password");
+        try (Connection conn = DriverManager.getConnection(dbUrl, dbUser, dbPassword)) {
+            Result result = fromEnv().drain(conn, System.currentTimeMillis() + 60_000L);
+            result.toEmf().emit();
+            System.out.println("Outbox drained: " + result);
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package com.nais.outbox;
+
+import java.util.List;
+
+/**
+ * Destination of published outbox events
+ * 送信先 - OUTBOX_SINK で切替 (file:&lt;path&gt; / queue / stdout)
+ *
+ * publish returns only after the whole batch is durable at the destination; any exception
+ * leaves every event of the batch pending and it is delivered again on the next run.
+ * Events arrive in id order, which is the commit order per aggregate key.
+ */
+public interface OutboxSink {
+
+    void publish(List<OutboxEvent> batch) throws Exception;
+
+    /**
+     * Sink named by OUTBOX_SINK: "file:/path/events.jsonl", "queue" (in-memory, tests) or "stdout" (default)
+     */
+    static OutboxSink fromEnv() {
+        String spec = System.getenv("OUTBOX_SINK");
+        if (spec == null || spec.trim().isEmpty() || "stdout".equalsIgnoreCase(spec.trim())) {
+            return batch -> {
+                for (OutboxEvent event : batch) {
+                    System.out.println(event.toJson());
+                }
+            };
+        }
+        if (spec.startsWith("file:")) {
+            return new FileOutboxSink(java.nio.file.Paths.get(spec.substring("file:".length())));
+        }
+        if ("queue".equalsIgnoreCase(spec.trim())) {
+            return new QueueOutboxSink();
+        }
+        throw new IllegalArgumentException("Unknown OUTBOX_SINK: " + spec);
+    }
+}
@@ -0,0 +1,32 @@
+package com.nais.outbox;
+
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+
+/**
+ * In-memory queue stand-in for a message broker (tests / local runs)
+ * failNext makes the next publish throw, to exercise redelivery.
+ */
+public class QueueOutboxSink implements OutboxSink {
+
+    private final BlockingQueue<OutboxEvent> queue = new LinkedBlockingQueue<>();
+    private volatile int failures;
+
+    @Override
+    public void publish(List<OutboxEvent> batch) {
+        if (failures > 0) {
+            failures--;
+            throw new IllegalStateException("Simulated sink failure");
+        }
+        queue.addAll(batch);
+    }
+
+    public void failNext(int count) {
+        this.failures = count;
+    }
+
+    public BlockingQueue<OutboxEvent> getQueue() {
+        return queue;
+    }
+}
@@ -0,0 +1,101 @@
+package com.nais.rows;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+
+import java.io.IOException;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+
+/**
+ * customer_mst row (得意先マスタ)
+ */
+@JsonSerialize(using = CustomerRow.Serializer.class)
+public final class CustomerRow {
+
+    private static final String[] COLUMNS = {
+        "office_cd", "customer_cd", "normal_name_kanji", "chain_store_cd", "chain_store_subcd",
+        "created_by", "created_at", "updated_by", "updated_at"
+    };
+    private static final SerializedString[] NAMES = RowJson.names(COLUMNS);
+
+    private final String officeCd;
+    private final String customerCd;
+    private final String normalNameKanji;
+    private final String chainStoreCd;
+    private final String chainStoreSubcd;
+    private final String createdBy;
+    private final Timestamp createdAt;
+    private final String updatedBy;
+    private final Timestamp updatedAt;
+
+    public CustomerRow(String officeCd, String customerCd, String normalNameKanji, String chainStoreCd,
+                       String chainStoreSubcd, String createdBy, Timestamp createdAt, String updatedBy,
+                       Timestamp updatedAt) {
+        this.officeCd = officeCd;
+        this.customerCd = customerCd;
+        this.normalNameKanji = normalNameKanji;
+        this.chainStoreCd = chainStoreCd;
+        this.chainStoreSubcd = chainStoreSubcd;
+        this.createdBy = createdBy;
+        this.createdAt = createdAt;
+        this.updatedBy = updatedBy;
+        this.updatedAt = updatedAt;
+    }
+
+    public String getOfficeCd() { return officeCd; }
+    public String getCustomerCd() { return customerCd; }
+    public String getNormalNameKanji() { return normalNameKanji; }
+    public String getChainStoreCd() { return chainStoreCd; }
+    public String getChainStoreSubcd() { return chainStoreSubcd; }
+    public String getCreatedBy() { return createdBy; }
+    public Timestamp getCreatedAt() { return createdAt; }
+    public String getUpdatedBy() { return updatedBy; }
+    public Timestamp getUpdatedAt() { return updatedAt; }
+
+    /**
+     * Column indexes of the current query, resolved once before the row loop
+     */
+    public static Reader reader(ResultSet rs) throws SQLException {
+        return new Reader(RowJson.columns(rs, COLUMNS));
+    }
+
+    public static final class Reader {
+        private final int[] c;
+
+        private Reader(int[] columns) {
+            this.c = columns;
+        }
+
+        public CustomerRow read(ResultSet rs) throws SQLException {
+            return new CustomerRow(rs.getString(c[0]), rs.getString(c[1]), rs.getString(c[2]),
+                    rs.getString(c[3]), rs.getString(c[4]), rs.getString(c[5]), rs.getTimestamp(c[6]),
+                    rs.getString(c[7]), rs.getTimestamp(c[8]));
+        }
+    }
+
+    public static final class Serializer extends StdSerializer<CustomerRow> {
+        public Serializer() {
+            super(CustomerRow.class);
+        }
+
+        @Override
+        public void serialize(CustomerRow row, JsonGenerator json, SerializerProvider provider) throws IOException {
+            json.writeStartObject();
+            RowJson.writeString(json, NAMES[0], row.officeCd);
+            RowJson.writeString(json, NAMES[1], row.customerCd);
+            RowJson.writeString(json, NAMES[2], row.normalNameKanji);
+            RowJson.writeString(json, NAMES[3], row.chainStoreCd);
+            RowJson.writeString(json, NAMES[4], row.chainStoreSubcd);
+            RowJson.writeString(json, NAMES[5], row.createdBy);
+            RowJson.writeTimestampText(json, NAMES[6], row.createdAt);
+            RowJson.writeString(json, NAMES[7], row.updatedBy);
+            RowJson.writeTimestampText(json, NAMES[8], row.updatedAt);
+            json.writeEndObject();
+        }
+    }
+}
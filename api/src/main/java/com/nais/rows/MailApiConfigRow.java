@@ -0,0 +1,114 @@
+package com.nais.rows;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+
+import java.io.IOException;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+
+/**
+ * mail_api_config_mst row (メールAPI設定マスタ)
+ */
+@JsonSerialize(using = MailApiConfigRow.Serializer.class)
+public final class MailApiConfigRow {
+
+    private static final String[] COLUMNS = {
+        "job_id", "job_name", "send_mode", "search_directory", "send_directory", "subject",
+        "body_file_path", "update_sys_div", "created_by", "created_at", "updated_by", "updated_at"
+    };
+    private static final SerializedString[] NAMES = RowJson.names(COLUMNS);
+
+    private final String jobId;
+    private final String jobName;
+    private final String sendMode;
+    private final String searchDirectory;
+    private final String sendDirectory;
+    private final String subject;
+    private final String bodyFilePath;
+    private final String updateSysDiv;
+    private final String createdBy;
+    private final Timestamp createdAt;
+    private final String updatedBy;
+    private final Timestamp updatedAt;
+
+    public MailApiConfigRow(String jobId, String jobName, String sendMode, String searchDirectory,
+                            String sendDirectory, String subject, String bodyFilePath, String updateSysDiv,
+                            String createdBy, Timestamp createdAt, String updatedBy, Timestamp updatedAt) {
+        this.jobId = jobId;
+        this.jobName = jobName;
+        this.sendMode = sendMode;
+        this.searchDirectory = searchDirectory;
+        this.sendDirectory = sendDirectory;
+        this.subject = subject;
+        this.bodyFilePath = bodyFilePath;
+        this.updateSysDiv = updateSysDiv;
+        this.createdBy = createdBy;
+        this.createdAt = createdAt;
+        this.updatedBy = updatedBy;
+        this.updatedAt = updatedAt;
+    }
+
+    public String getJobId() { return jobId; }
+    public String getJobName() { return jobName; }
+    public String getSendMode() { return sendMode; }
+    public String getSearchDirectory() { return searchDirectory; }
+    public String getSendDirectory() { return sendDirectory; }
+    public String getSubject() { return subject; }
+    public String getBodyFilePath() { return bodyFilePath; }
+    public String getUpdateSysDiv() { return updateSysDiv; }
+    public String getCreatedBy() { return createdBy; }
+    public Timestamp getCreatedAt() { return createdAt; }
+    public String getUpdatedBy() { return updatedBy; }
+    public Timestamp getUpdatedAt() { return updatedAt; }
+
+    /**
+     * Column indexes of the current query, resolved once before the row loop
+     */
+    public static Reader reader(ResultSet rs) throws SQLException {
+        return new Reader(RowJson.columns(rs, COLUMNS));
+    }
+
+    public static final class Reader {
+        private final int[] c;
+
+        private Reader(int[] columns) {
+            this.c = columns;
+        }
+
+        public MailApiConfigRow read(ResultSet rs) throws SQLException {
+            return new MailApiConfigRow(rs.getString(c[0]), rs.getString(c[1]), rs.getString(c[2]),
+                    rs.getString(c[3]), rs.getString(c[4]), rs.getString(c[5]), rs.getString(c[6]),
+                    rs.getString(c[7]), rs.getString(c[8]), rs.getTimestamp(c[9]), rs.getString(c[10]),
+                    rs.getTimestamp(c[11]));
+        }
+    }
+
+    public static final class Serializer extends StdSerializer<MailApiConfigRow> {
+        public Serializer() {
+            super(MailApiConfigRow.class);
+        }
+
+        @Override
+        public void serialize(MailApiConfigRow row, JsonGenerator json, SerializerProvider provider) throws IOException {
+            json.writeStartObject();
+            RowJson.writeString(json, NAMES[0], row.jobId);
+            RowJson.writeString(json, NAMES[1], row.jobName);
+            RowJson.writeString(json, NAMES[2], row.sendMode);
+            RowJson.writeString(json, NAMES[3], row.searchDirectory);
+            RowJson.writeString(json, NAMES[4], row.sendDirectory);
+            RowJson.writeString(json, NAMES[5], row.subject);
+            RowJson.writeString(json, NAMES[6], row.bodyFilePath);
+            RowJson.writeString(json, NAMES[7], row.updateSysDiv);
+            RowJson.writeString(json, NAMES[8], row.createdBy);
+            RowJson.writeTimestampText(json, NAMES[9], row.createdAt);
+            RowJson.writeString(json, NAMES[10], row.updatedBy);
+            RowJson.writeTimestampText(json, NAMES[11], row.updatedAt);
+            json.writeEndObject();
+        }
+    }
+}
@@ -0,0 +1,124 @@
+package com.nais.rows;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+
+import java.io.IOException;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+
+/**
+ * mail_destination_child_mst row (メール宛先子マスタ)
+ */
+@JsonSerialize(using = MailDestinationChildRow.Serializer.class)
+public final class MailDestinationChildRow {
+
+    private static final String[] COLUMNS = {
+        "mailing_list_id", "destination_seq", "destination_address", "destination_note", "status_div",
+        "importer_cd", "created_by", "created_at", "updated_by", "updated_at"
+    };
+    private static final SerializedString[] NAMES = RowJson.names(COLUMNS);
+
+    private static final SerializedString STATUS_DESCRIPTION = new SerializedString("status_description");
+
+    private final String mailingListId;
+    private final int destinationSeq;
+    private final String destinationAddress;
+    private final String destinationNote;
+    private final String statusDiv;
+    private final String importerCd;
+    private final String createdBy;
+    private final Timestamp createdAt;
+    private final String updatedBy;
+    private final Timestamp updatedAt;
+
+    public MailDestinationChildRow(String mailingListId, int destinationSeq, String destinationAddress,
+                                   String destinationNote, String statusDiv, String importerCd,
+                                   String createdBy, Timestamp createdAt, String updatedBy,
+                                   Timestamp updatedAt) {
+        this.mailingListId = mailingListId;
+        this.destinationSeq = destinationSeq;
+        this.destinationAddress = destinationAddress;
+        this.destinationNote = destinationNote;
+        this.statusDiv = statusDiv;
+        this.importerCd = importerCd;
+        this.createdBy = createdBy;
+        this.createdAt = createdAt;
+        this.updatedBy = updatedBy;
+        this.updatedAt = updatedAt;
+    }
+
+    public String getMailingListId() { return mailingListId; }
+    public int getDestinationSeq() { return destinationSeq; }
+    public String getDestinationAddress() { return destinationAddress; }
+    public String getDestinationNote() { return destinationNote; }
+    public String getStatusDiv() { return statusDiv; }
+    public String getImporterCd() { return importerCd; }
+    public String getCreatedBy() { return createdBy; }
+    public Timestamp getCreatedAt() { return createdAt; }
+    public String getUpdatedBy() { return updatedBy; }
+    public Timestamp getUpdatedAt() { return updatedAt; }
+
+    /**
+     * Display name of status_div (written as status_description)
+     */
+    public static String statusDescription(String statusDiv) {
+        if (statusDiv == null) {
+            return "不明";
+        }
+        switch (statusDiv) {
+            case "0": return "有効";
+            case "1": return "無効(テスト運用)";
+            case "2": return "無効(削除)";
+            default: return "不明";
+        }
+    }
+
+    /**
+     * Column indexes of the current query, resolved once before the row loop
+     */
+    public static Reader reader(ResultSet rs) throws SQLException {
+        return new Reader(RowJson.columns(rs, COLUMNS));
+    }
+
+    public static final class Reader {
+        private final int[] c;
+
+        private Reader(int[] columns) {
+            this.c = columns;
+        }
+
+        public MailDestinationChildRow read(ResultSet rs) throws SQLException {
+            return new MailDestinationChildRow(rs.getString(c[0]), rs.getInt(c[1]), rs.getString(c[2]),
+                    rs.getString(c[3]), rs.getString(c[4]), rs.getString(c[5]), rs.getString(c[6]),
+                    rs.getTimestamp(c[7]), rs.getString(c[8]), rs.getTimestamp(c[9]));
+        }
+    }
+
+    public static final class Serializer extends StdSerializer<MailDestinationChildRow> {
+        public Serializer() {
+            super(MailDestinationChildRow.class);
+        }
+
+        @Override
+        public void serialize(MailDestinationChildRow row, JsonGenerator json, SerializerProvider provider) throws IOException {
+            json.writeStartObject();
+            RowJson.writeString(json, NAMES[0], row.mailingListId);
+            RowJson.writeNumber(json, NAMES[1], row.destinationSeq);
+            RowJson.writeString(json, NAMES[2], row.destinationAddress);
+            RowJson.writeString(json, NAMES[3], row.destinationNote);
+            RowJson.writeString(json, NAMES[4], row.statusDiv);
+            RowJson.writeString(json, STATUS_DESCRIPTION, statusDescription(row.statusDiv));
+            RowJson.writeString(json, NAMES[5], row.importerCd);
+            RowJson.writeString(json, NAMES[6], row.createdBy);
+            RowJson.writeTimestamp(json, NAMES[7], row.createdAt);
+            RowJson.writeString(json, NAMES[8], row.updatedBy);
+            RowJson.writeTimestamp(json, NAMES[9], row.updatedAt);
+            json.writeEndObject();
+        }
+    }
+}
@@ -0,0 +1,167 @@
+package com.nais.rows;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+
+import java.io.IOException;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+
+/**
+ * mail_destination_parent_mst row (メール宛先親マスタ)
+ */
+@JsonSerialize(using = MailDestinationParentRow.Serializer.class)
+public final class MailDestinationParentRow {
+
+    private static final String[] COLUMNS = {
+        "job_id", "office_cd", "customer_cd", "chain_store_cd", "supplier_cd", "order_branch_cd",
+        "extend_cd", "destination_name", "send_mode", "search_file", "search_directory", "send_directory",
+        "subject", "body_file_path", "attachment_file_path", "mailing_list_id", "update_sys_div",
+        "importer_cd", "delete_flag", "created_by", "created_at", "updated_by", "updated_at"
+    };
+    private static final SerializedString[] NAMES = RowJson.names(COLUMNS);
+
+    private final String jobId;
+    private final String officeCd;
+    private final String customerCd;
+    private final String chainStoreCd;
+    private final String supplierCd;
+    private final String orderBranchCd;
+    private final String extendCd;
+    private final String destinationName;
+    private final String sendMode;
+    private final String searchFile;
+    private final String searchDirectory;
+    private final String sendDirectory;
+    private final String subject;
+    private final String bodyFilePath;
+    private final String attachmentFilePath;
+    private final String mailingListId;
+    private final String updateSysDiv;
+    private final String importerCd;
+    private final String deleteFlag;
+    private final String createdBy;
+    private final Timestamp createdAt;
+    private final String updatedBy;
+    private final Timestamp updatedAt;
+
+    public MailDestinationParentRow(String jobId, String officeCd, String customerCd, String chainStoreCd,
+                                    String supplierCd, String orderBranchCd, String extendCd,
+                                    String destinationName, String sendMode, String searchFile,
+                                    String searchDirectory, String sendDirectory, String subject,
+                                    String bodyFilePath, String attachmentFilePath, String mailingListId,
+                                    String updateSysDiv, String importerCd, String deleteFlag,
+                                    String createdBy, Timestamp createdAt, String updatedBy,
+                                    Timestamp updatedAt) {
+        this.jobId = jobId;
+        this.officeCd = officeCd;
+        this.customerCd = customerCd;
+        this.chainStoreCd = chainStoreCd;
+        this.supplierCd = supplierCd;
+        this.orderBranchCd = orderBranchCd;
+        this.extendCd = extendCd;
+        this.destinationName = destinationName;
+        this.sendMode = sendMode;
+        this.searchFile = searchFile;
+        this.searchDirectory = searchDirectory;
+        this.sendDirectory = sendDirectory;
+        this.subject = subject;
+        this.bodyFilePath = bodyFilePath;
+        this.attachmentFilePath = attachmentFilePath;
+        this.mailingListId = mailingListId;
+        this.updateSysDiv = updateSysDiv;
+        this.importerCd = importerCd;
+        this.deleteFlag = deleteFlag;
+        this.createdBy = createdBy;
+        this.createdAt = createdAt;
+        this.updatedBy = updatedBy;
+        this.updatedAt = updatedAt;
+    }
+
+    public String getJobId() { return jobId; }
+    public String getOfficeCd() { return officeCd; }
+    public String getCustomerCd() { return customerCd; }
+    public String getChainStoreCd() { return chainStoreCd; }
+    public String getSupplierCd() { return supplierCd; }
+    public String getOrderBranchCd() { return orderBranchCd; }
+    public String getExtendCd() { return extendCd; }
+    public String getDestinationName() { return destinationName; }
+    public String getSendMode() { return sendMode; }
+    public String getSearchFile() { return searchFile; }
+    public String getSearchDirectory() { return searchDirectory; }
+    public String getSendDirectory() { return sendDirectory; }
+    public String getSubject() { return subject; }
+    public String getBodyFilePath() { return bodyFilePath; }
+    public String getAttachmentFilePath() { return attachmentFilePath; }
+    public String getMailingListId() { return mailingListId; }
+    public String getUpdateSysDiv() { return updateSysDiv; }
+    public String getImporterCd() { return importerCd; }
+    public String getDeleteFlag() { return deleteFlag; }
+    public String getCreatedBy() { return createdBy; }
+    public Timestamp getCreatedAt() { return createdAt; }
+    public String getUpdatedBy() { return updatedBy; }
+    public Timestamp getUpdatedAt() { return updatedAt; }
+
+    /**
+     * Column indexes of the current query, resolved once before the row loop
+     */
+    public static Reader reader(ResultSet rs) throws SQLException {
+        return new Reader(RowJson.columns(rs, COLUMNS));
+    }
+
+    public static final class Reader {
+        private final int[] c;
+
+        private Reader(int[] columns) {
+            this.c = columns;
+        }
+
+        public MailDestinationParentRow read(ResultSet rs) throws SQLException {
+            return new MailDestinationParentRow(rs.getString(c[0]), rs.getString(c[1]), rs.getString(c[2]),
+                    rs.getString(c[3]), rs.getString(c[4]), rs.getString(c[5]), rs.getString(c[6]),
+                    rs.getString(c[7]), rs.getString(c[8]), rs.getString(c[9]), rs.getString(c[10]),
+                    rs.getString(c[11]), rs.getString(c[12]), rs.getString(c[13]), rs.getString(c[14]),
+                    rs.getString(c[15]), rs.getString(c[16]), rs.getString(c[17]), rs.getString(c[18]),
+                    rs.getString(c[19]), rs.getTimestamp(c[20]), rs.getString(c[21]), rs.getTimestamp(c[22]));
+        }
+    }
+
+    public static final class Serializer extends StdSerializer<MailDestinationParentRow> {
+        public Serializer() {
+            super(MailDestinationParentRow.class);
+        }
+
+        @Override
+        public void serialize(MailDestinationParentRow row, JsonGenerator json, SerializerProvider provider) throws IOException {
+            json.writeStartObject();
+            RowJson.writeString(json, NAMES[0], row.jobId);
+            RowJson.writeString(json, NAMES[1], row.officeCd);
+            RowJson.writeString(json, NAMES[2], row.customerCd);
+            RowJson.writeString(json, NAMES[3], row.chainStoreCd);
+            RowJson.writeString(json, NAMES[4], row.supplierCd);
+            RowJson.writeString(json, NAMES[5], row.orderBranchCd);
+            RowJson.writeString(json, NAMES[6], row.extendCd);
+            RowJson.writeString(json, NAMES[7], row.destinationName);
+            RowJson.writeString(json, NAMES[8], row.sendMode);
+            RowJson.writeString(json, NAMES[9], row.searchFile);
+            RowJson.writeString(json, NAMES[10], row.searchDirectory);
+            RowJson.writeString(json, NAMES[11], row.sendDirectory);
+            RowJson.writeString(json, NAMES[12], row.subject);
+            RowJson.writeString(json, NAMES[13], row.bodyFilePath);
+            RowJson.writeString(json, NAMES[14], row.attachmentFilePath);
+            RowJson.writeString(json, NAMES[15], row.mailingListId);
+            RowJson.writeString(json, NAMES[16], row.updateSysDiv);
+            RowJson.writeString(json, NAMES[17], row.importerCd);
+            RowJson.writeString(json, NAMES[18], row.deleteFlag);
+            RowJson.writeString(json, NAMES[19], row.createdBy);
+            RowJson.writeTimestamp(json, NAMES[20], row.createdAt);
+            RowJson.writeString(json, NAMES[21], row.updatedBy);
+            RowJson.writeTimestamp(json, NAMES[22], row.updatedAt);
+            json.writeEndObject();
+        }
+    }
+}
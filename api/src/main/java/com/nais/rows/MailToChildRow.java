@@ -0,0 +1,105 @@
+package com.nais.rows;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+
+import java.io.IOException;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+
+/**
+ * mail_to_child_mst row (メール宛先子マスタ)
+ */
+@JsonSerialize(using = MailToChildRow.Serializer.class)
+public final class MailToChildRow {
+
+    private static final String[] COLUMNS = {
+        "mailing_list_id", "recipient_seq", "recipient_address", "recipent_note", "status_div",
+        "input_user_cd", "created_by", "created_at", "updated_by", "updated_at"
+    };
+    private static final SerializedString[] NAMES = RowJson.names(COLUMNS);
+
+    private final String mailingListId;
+    private final int recipientSeq;
+    private final String recipientAddress;
+    private final String recipentNote;
+    private final String statusDiv;
+    private final String inputUserCd;
+    private final String createdBy;
+    private final Timestamp createdAt;
+    private final String updatedBy;
+    private final Timestamp updatedAt;
+
+    public MailToChildRow(String mailingListId, int recipientSeq, String recipientAddress, String recipentNote,
+                          String statusDiv, String inputUserCd, String createdBy, Timestamp createdAt,
+                          String updatedBy, Timestamp updatedAt) {
+        this.mailingListId = mailingListId;
+        this.recipientSeq = recipientSeq;
+        this.recipientAddress = recipientAddress;
+        this.recipentNote = recipentNote;
+        this.statusDiv = statusDiv;
+        this.inputUserCd = inputUserCd;
+        this.createdBy = createdBy;
+        this.createdAt = createdAt;
+        this.updatedBy = updatedBy;
+        this.updatedAt = updatedAt;
+    }
+
+    public String getMailingListId() { return mailingListId; }
+    public int getRecipientSeq() { return recipientSeq; }
+    public String getRecipientAddress() { return recipientAddress; }
+    public String getRecipentNote() { return recipentNote; }
+    public String getStatusDiv() { return statusDiv; }
+    public String getInputUserCd() { return inputUserCd; }
+    public String getCreatedBy() { return createdBy; }
+    public Timestamp getCreatedAt() { return createdAt; }
+    public String getUpdatedBy() { return updatedBy; }
+    public Timestamp getUpdatedAt() { return updatedAt; }
+
+    /**
+     * Column indexes of the current query, resolved once before the row loop
+     */
+    public static Reader reader(ResultSet rs) throws SQLException {
+        return new Reader(RowJson.columns(rs, COLUMNS));
+    }
+
+    public static final class Reader {
+        private final int[] c;
+
+        private Reader(int[] columns) {
+            this.c = columns;
+        }
+
+        public MailToChildRow read(ResultSet rs) throws SQLException {
+            return new MailToChildRow(rs.getString(c[0]), rs.getInt(c[1]), rs.getString(c[2]),
+                    rs.getString(c[3]), rs.getString(c[4]), rs.getString(c[5]), rs.getString(c[6]),
+                    rs.getTimestamp(c[7]), rs.getString(c[8]), rs.getTimestamp(c[9]));
+        }
+    }
+
+    public static final class Serializer extends StdSerializer<MailToChildRow> {
+        public Serializer() {
+            super(MailToChildRow.class);
+        }
+
+        @Override
+        public void serialize(MailToChildRow row, JsonGenerator json, SerializerProvider provider) throws IOException {
+            json.writeStartObject();
+            RowJson.writeString(json, NAMES[0], row.mailingListId);
+            RowJson.writeNumber(json, NAMES[1], row.recipientSeq);
+            RowJson.writeString(json, NAMES[2], row.recipientAddress);
+            RowJson.writeString(json, NAMES[3], row.recipentNote);
+            RowJson.writeString(json, NAMES[4], row.statusDiv);
+            RowJson.writeString(json, NAMES[5], row.inputUserCd);
+            RowJson.writeString(json, NAMES[6], row.createdBy);
+            RowJson.writeTimestampText(json, NAMES[7], row.createdAt);
+            RowJson.writeString(json, NAMES[8], row.updatedBy);
+            RowJson.writeTimestampText(json, NAMES[9], row.updatedAt);
+            json.writeEndObject();
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package com.nais.rows;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.SerializableString;
+import com.fasterxml.jackson.core.io.SerializedString;
+
+import java.io.IOException;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+
+/**
+ * Shared pieces of the row types: column index resolution and field writing
+ * 行型共通処理 (列番号解決・JSON出力)
+ */
+final class RowJson {
+
+    private RowJson() {
+    }
+
+    /**
+     * Resolve column labels to 1-based indexes once per query (labels as in the SELECT list)
+     */
+    static int[] columns(ResultSet rs, String... labels) throws SQLException {
+        int[] indexes = new int[labels.length];
+        for (int i = 0; i < labels.length; i++) {
+            indexes[i] = rs.findColumn(labels[i]);
+        }
+        return indexes;
+    }
+
+    /**
+     * Field names pre-encoded once, so each row only copies bytes/chars
+     */
+    static SerializedString[] names(String... labels) {
+        SerializedString[] names = new SerializedString[labels.length];
+        for (int i = 0; i < labels.length; i++) {
+            names[i] = new SerializedString(labels[i]);
+        }
+        return names;
+    }
+
+    static void writeString(JsonGenerator json, SerializableString name, String value) throws IOException {
+        json.writeFieldName(name);
+        json.writeString(value);
+    }
+
+    static void writeNumber(JsonGenerator json, SerializableString name, int value) throws IOException {
+        json.writeFieldName(name);
+        json.writeNumber(value);
+    }
+
+    /**
+     * Epoch milliseconds, as ObjectMapper writes java.sql.Timestamp by default
+     */
+    static void writeTimestamp(JsonGenerator json, SerializableString name, Timestamp value) throws IOException {
+        json.writeFieldName(name);
+        if (value != null) {
+            json.writeNumber(value.getTime());
+        } else {
+            json.writeNull();
+        }
+    }
+
+    /**
+     * Timestamp.toString() text ("yyyy-mm-dd hh:mm:ss.fffffffff"), the format the hand-built
+     * JSON of CustomerHandler / MailToChildHandler / MailApiConfigHandler has always returned
+     */
+    static void writeTimestampText(JsonGenerator json, SerializableString name, Timestamp value) throws IOException {
+        json.writeFieldName(name);
+        if (value != null) {
+            json.writeString(value.toString());
+        } else {
+            json.writeNull();
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package com.nais.search;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Backfill of customer_mst.search_name / search_bigrams for rows loaded before
+ * customer_search_setup.sql
+ * 得意先名検索キー初期投入 - 未設定行のみ NameSearchKeys で計算して更新
+ *
+ * The keys are computed in Java ({@link NameSearchKeys}), the same way the CSV ingest does,
+ * so they cannot drift from what GET /customer/search normalizes at read time. Rows are
+ * read in key order in batches, one transaction per batch; a row without a name gets an
+ * empty key and is not read again. Safe to re-run.
+ *
+ * Usage: java -cp amplify-auth-lambda.jar com.nais.search.CustomerSearchKeys backfill
+ */
+public final class CustomerSearchKeys {
+
+    private static final int BATCH_SIZE = 1000;
+
+    private static final String PENDING_SQL =
+            "SELECT office_cd, customer_cd, normal_name_kanji FROM customer_mst " +
+            "WHERE search_name IS NULL ORDER BY office_cd, customer_cd LIMIT ?";
+
+    private static final String UPDATE_SQL =
+            "UPDATE customer_mst SET search_name = ?, search_bigrams = ? WHERE office_cd IS NOT DISTINCT FROM ? AND customer_cd = ?";
+
+    private CustomerSearchKeys() {
+    }
+
+    /**
+     * Fill the search keys of every row that has none
+     *
+     * @return number of rows updated
+     */
+    public static int backfill(Connection conn) throws SQLException {
+        conn.setAutoCommit(false);
+        int total = 0;
+        while (true) {
+            List<String[]> rows = new ArrayList<>(BATCH_SIZE);
+            try (PreparedStatement stmt = conn.prepareStatement(PENDING_SQL)) {
+                stmt.setInt(1, BATCH_SIZE);
+                try (ResultSet rs = stmt.executeQuery()) {
+                    while (rs.next()) {
+                        rows.add(new String[] {rs.getString(1), rs.getString(2), rs.getString(3)});
+                    }
+                }
+            }
+            if (rows.isEmpty()) {
+                conn.commit();
+                return total;
+            }
+
+            try (PreparedStatement stmt = conn.prepareStatement(UPDATE_SQL)) {
+                for (String[] row : rows) {
+                    String searchName = NameSearchKeys.normalize(row[2]);
+                    stmt.setString(1, searchName);
+                    stmt.setArray(2, conn.createArrayOf("text", NameSearchKeys.bigrams(searchName)));
+                    stmt.setString(3, row[0]);
+                    stmt.setString(4, row[1]);
+                    stmt.addBatch();
+                }
+                stmt.executeBatch();
+            }
+            conn.commit();
+            total += rows.size();
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length != 1 || !"backfill".equals(args[0])) {
+            System.err.println("Usage: java -cp amplify-auth-lambda.jar " + CustomerSearchKeys.class.getName() + " backfill");
+            System.exit(2);
+        }
+        String dbUrl = System.getenv("DB_URL") != null ? System.getenv("DB_URL") : "jdbc:postgresql://localhost:5432/nais";
+        String dbUser = System.getenv("DB_USER") != null ? System.getenv("DB_USER") : "postgres";
+        String dbPassword = System.getenv("DB_PASSWORD") != null ? System.getenv("DB_PASSWORD") : "password";
+
+        long start = System.currentTimeMillis();
+        try (Connection conn = DriverManager.getConnection(dbUrl, dbUser, dbPassword)) {
+            int rows = backfill(conn);
+            System.out.println("Backfilled customer_mst search keys: " + rows + " rows in " +
+                    (System.currentTimeMillis() - start) + " ms");
+        }
+    }
+}
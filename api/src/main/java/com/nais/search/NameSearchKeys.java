@@ -0,0 +1,80 @@
+package com.nais.search;
+
+import java.text.Normalizer;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * Japanese-aware search key normalization for customer names
+ * 得意先名検索キー生成 (正規化 + バイグラム)
+ *
+ * normalize(): NFKC (full-width alphanumerics / half-width kana folded), katakana to
+ * hiragana, lower case, whitespace and middle dots removed.
+ * bigrams(): distinct 2-character grams of a normalized key, stored in a GIN-indexed
+ * TEXT[] column so that substring queries of two or more characters use the index.
+ *
+ * Keys are computed once at ingest (CustomerMasterReplacementHandler); at read time
+ * only the query string is normalized.
+ */
+public final class NameSearchKeys {
+
+    private NameSearchKeys() {
+    }
+
+    public static String normalize(String value) {
+        if (value == null || value.isEmpty()) {
+            return "";
+        }
+        String nfkc = Normalizer.normalize(value, Normalizer.Form.NFKC);
+        StringBuilder key = new StringBuilder(nfkc.length());
+        for (int i = 0; i < nfkc.length(); i++) {
+            char c = nfkc.charAt(i);
+            if (c >= 'ァ' && c <= 'ヶ') {
+                // ァ..ヶ -> ぁ..ゖ
+                c = (char) (c - 0x60);
+            } else if (c == 'ヽ' || c == 'ヾ') {
+                // ヽヾ -> ゝゞ
+                c = (char) (c - 0x60);
+            }
+            if (Character.isWhitespace(c) || Character.isSpaceChar(c) || c == '・') {
+                continue;
+            }
+            key.append(Character.toLowerCase(c));
+        }
+        return key.toString();
+    }
+
+    /**
+     * Distinct bigrams of an already normalized key. Keys shorter than two characters
+     * yield the key itself so single-character names remain matchable.
+     */
+    public static String[] bigrams(String normalizedKey) {
+        if (normalizedKey == null || normalizedKey.isEmpty()) {
+            return new String[0];
+        }
+        int[] codePoints = normalizedKey.codePoints().toArray();
+        if (codePoints.length < 2) {
+            return new String[] { normalizedKey };
+        }
+        Set<String> grams = new LinkedHashSet<>();
+        for (int i = 0; i + 1 < codePoints.length; i++) {
+            grams.add(new String(codePoints, i, 2));
+        }
+        return grams.toArray(new String[0]);
+    }
+
+    /**
+     * Escape LIKE wildcards in a normalized key (PostgreSQL default escape character)
+     */
+    public static String escapeLike(String normalizedKey) {
+        StringBuilder escaped = new StringBuilder(normalizedKey.length() + 4);
+        for (int i = 0; i < normalizedKey.length(); i++) {
+            char c = normalizedKey.charAt(i);
+            if (c == '\\' || c == '%' || c == '_') {
+                escaped.append('\\');
+            }
+            escaped.append(c);
+        }
+        return escaped.toString();
+    }
+}
@@ -0,0 +1,158 @@
+package com.nais.auth.jwt;
+
+import com.auth0.jwk.UrlJwkProvider;
+import com.auth0.jwt.algorithms.Algorithm;
+import com.auth0.jwt.exceptions.JWTVerificationException;
+import com.auth0.jwt.exceptions.SignatureVerificationException;
+import com.auth0.jwt.exceptions.TokenExpiredException;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.interfaces.RSAPrivateKey;
+import java.security.interfaces.RSAPublicKey;
+import java.util.Arrays;
+import java.util.Base64;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * CognitoJwtVerifier / JwksKeyCache against the {@link LocalJwksServer} JWKS stand-in
+ * Cognito JWT 検証テスト - ローカル JWKS サーバで署名・期限・クライアント・kid 再取得を確認
+ */
+class CognitoJwtVerifierTest {
+
+    private static final long HOUR_MILLIS = 3_600_000L;
+
+    private static LocalJwksServer jwks;
+
+    @BeforeAll
+    static void startJwks() throws Exception {
+        jwks = LocalJwksServer.start(0);
+    }
+
+    @AfterAll
+    static void stopJwks() {
+        jwks.stop();
+    }
+
+    @Test
+    void acceptsIdAndAccessTokens() throws Exception {
+        CognitoJwtVerifier verifier = verifier(HOUR_MILLIS);
+
+        VerifiedToken id = verifier.verify(jwks.sign("dev@example.com", new String[] {"admin"}, 3600L, "id"));
+        assertEquals("id", id.getTokenUse());
+        assertEquals("dev@example.com", id.getEmail());
+        assertEquals(Arrays.asList("admin"), id.getGroups());
+        assertEquals(LocalJwksServer.CLIENT_ID, id.getClientId());
+
+        VerifiedToken access = verifier.verify(jwks.sign("dev@example.com", new String[0], 3600L, "access"));
+        assertEquals("access", access.getTokenUse());
+        assertEquals(LocalJwksServer.CLIENT_ID, access.getClientId());
+    }
+
+    @Test
+    void rejectsTamperedPayload() throws Exception {
+        String[] parts = jwks.sign("dev@example.com", new String[0], 3600L, "id").split("\\.");
+        String payload = new String(Base64.getUrlDecoder().decode(parts[1]), StandardCharsets.UTF_8)
+                .replace("dev@example.com", "admin@example.com");
+        String tampered = parts[0] + "." +
+                Base64.getUrlEncoder().withoutPadding().encodeToString(payload.getBytes(StandardCharsets.UTF_8)) +
+                "." + parts[2];
+
+        assertThrows(SignatureVerificationException.class, () -> verifier(HOUR_MILLIS).verify(tampered));
+    }
+
+    @Test
+    void rejectsForeignKeys() throws Exception {
+        Algorithm foreign = foreignAlgorithm();
+        CognitoJwtVerifier verifier = verifier(HOUR_MILLIS);
+
+        // Unknown kid, and a foreign key presented under the pool's kid
+        String unknownKid = jwks.claims("dev@example.com", new String[0], 3600L, "id").withKeyId("foreign-1").sign(foreign);
+        String poolKid = jwks.claims("dev@example.com", new String[0], 3600L, "id").sign(foreign);
+
+        assertThrows(SignatureVerificationException.class, () -> verifier.verify(unknownKid));
+        assertThrows(SignatureVerificationException.class, () -> verifier.verify(poolKid));
+    }
+
+    @Test
+    void rejectsExpiredToken() throws Exception {
+        String expired = jwks.sign("dev@example.com", new String[0], -60L, "id");
+
+        assertThrows(TokenExpiredException.class, () -> verifier(HOUR_MILLIS).verify(expired));
+    }
+
+    @Test
+    void rejectsOtherAppClient() throws Exception {
+        CognitoJwtVerifier verifier = verifier(HOUR_MILLIS);
+        String otherAudience = jwks.sign(jwks.claims("dev@example.com", new String[0], 3600L, "id")
+                .withAudience("other-client"));
+        String otherClientId = jwks.sign(jwks.claims("dev@example.com", new String[0], 3600L, "access")
+                .withClaim("client_id", "other-client"));
+        String otherTokenUse = jwks.sign(jwks.claims("dev@example.com", new String[0], 3600L, "refresh"));
+
+        assertThrows(JWTVerificationException.class, () -> verifier.verify(otherAudience));
+        assertThrows(JWTVerificationException.class, () -> verifier.verify(otherClientId));
+        assertThrows(JWTVerificationException.class, () -> verifier.verify(otherTokenUse));
+    }
+
+    @Test
+    void reloadsJwksForUnknownKidAtMostOncePerInterval() throws Exception {
+        Algorithm foreign = foreignAlgorithm();
+        CognitoJwtVerifier verifier = verifier(HOUR_MILLIS);
+        int before = jwks.getJwksRequests();
+
+        verifier.verify(jwks.sign("dev@example.com", new String[0], 3600L, "id"));
+        assertEquals(before + 1, jwks.getJwksRequests());
+
+        for (int i = 0; i < 3; i++) {
+            String rotated = jwks.claims("dev@example.com", new String[0], 3600L, "id")
+                    .withKeyId("rotated-" + i).sign(foreign);
+            assertThrows(SignatureVerificationException.class, () -> verifier.verify(rotated));
+        }
+        assertEquals(before + 1, jwks.getJwksRequests());
+
+        // Without the interval every unknown kid reloads
+        CognitoJwtVerifier eager = verifier(0L);
+        String rotated = jwks.claims("dev@example.com", new String[0], 3600L, "id").withKeyId("rotated").sign(foreign);
+        assertThrows(SignatureVerificationException.class, () -> eager.verify(rotated));
+        assertThrows(SignatureVerificationException.class, () -> eager.verify(rotated));
+        assertEquals(before + 3, jwks.getJwksRequests());
+    }
+
+    @Test
+    void servesVerifiedTokenFromCacheUntilExp() throws Exception {
+        CognitoJwtVerifier verifier = verifier(HOUR_MILLIS);
+        String token = jwks.sign("dev@example.com", new String[0], 2L, "id");
+
+        VerifiedToken first = verifier.verify(token);
+        assertNotNull(first);
+        assertSame(first, verifier.verify(token));
+        assertEquals(1, verifier.cachedTokenCount());
+
+        Thread.sleep(Math.max(0L, first.getExpiresAtMillis() - System.currentTimeMillis()) + 100L);
+        assertThrows(TokenExpiredException.class, () -> verifier.verify(token));
+        assertEquals(0, verifier.cachedTokenCount());
+    }
+
+    private static CognitoJwtVerifier verifier(long kidMissIntervalMillis) throws Exception {
+        UrlJwkProvider provider = new UrlJwkProvider(new URL(jwks.getIssuer() + "/.well-known/jwks.json"), 2000, 2000);
+        JwksKeyCache keys = new JwksKeyCache(provider, HOUR_MILLIS, kidMissIntervalMillis);
+        return new CognitoJwtVerifier(jwks.getIssuer(), LocalJwksServer.CLIENT_ID, keys, 16);
+    }
+
+    private static Algorithm foreignAlgorithm() throws Exception {
+        KeyPairGenerator generator = KeyPairGenerator.getInstance("RSA");
+        generator.initialize(2048);
+        KeyPair keyPair = generator.generateKeyPair();
+        return Algorithm.RSA256((RSAPublicKey) keyPair.getPublic(), (RSAPrivateKey) keyPair.getPrivate());
+    }
+}
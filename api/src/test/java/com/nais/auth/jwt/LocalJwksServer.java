@@ -0,0 +1,181 @@
+package com.nais.auth.jwt;
+
+import com.auth0.jwt.JWT;
+import com.auth0.jwt.JWTCreator;
+import com.auth0.jwt.algorithms.Algorithm;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigInteger;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.interfaces.RSAPrivateKey;
+import java.security.interfaces.RSAPublicKey;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Local stand-in for a Cognito user pool's JWKS endpoint and token signing
+ * ローカル開発用 JWKS サーバ - RSA鍵を生成し JWKS 公開とテスト用トークン発行を行う
+ *
+ * Generates an RSA key pair and serves, under the issuer http://127.0.0.1:{port}/local-pool:
+ *   GET /local-pool/.well-known/jwks.json   the public key (kid "local-1")
+ *   GET /local-pool/token?email=&groups=a,b&ttl=3600&use=id|access   a signed token
+ * {@link CognitoJwtVerifierTest} verifies against it; run by hand, start the API with
+ * COGNITO_ISSUER set to the printed issuer, CLIENT_ID=local-client and AUTH_MODE=OAUTH to
+ * exercise {@link CognitoJwtVerifier} without Cognito.
+ *
+ * Usage: mvn test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=com.nais.auth.jwt.LocalJwksServer [-Dexec.args=port]
+ */
+public final class LocalJwksServer {
+
+    public static final String KEY_ID = "local-1";
+    public static final String CLIENT_ID = "local-client";
+    private static final String POOL_PATH = "/local-pool";
+
+    private final HttpServer server;
+    private final RSAPublicKey publicKey;
+    private final Algorithm algorithm;
+    private final String issuer;
+    private final AtomicInteger jwksRequests = new AtomicInteger();
+
+    private LocalJwksServer(int port) throws Exception {
+        KeyPairGenerator generator = KeyPairGenerator.getInstance("RSA");
+        generator.initialize(2048);
+        KeyPair keyPair = generator.generateKeyPair();
+        this.publicKey = (RSAPublicKey) keyPair.getPublic();
+        this.algorithm = Algorithm.RSA256(publicKey, (RSAPrivateKey) keyPair.getPrivate());
+
+        this.server = HttpServer.create(new InetSocketAddress("127.0.0.1", port), 0);
+        this.issuer = "http://127.0.0.1:" + server.getAddress().getPort() + POOL_PATH;
+        server.createContext(POOL_PATH + "/.well-known/jwks.json", exchange -> {
+            jwksRequests.incrementAndGet();
+            respond(exchange, "application/json", jwks());
+        });
+        server.createContext(POOL_PATH + "/token", exchange -> respond(exchange, "text/plain", token(query(exchange))));
+    }
+
+    /**
+     * Start on the port (0 picks a free one)
+     */
+    public static LocalJwksServer start(int port) throws Exception {
+        LocalJwksServer jwks = new LocalJwksServer(port);
+        jwks.server.start();
+        return jwks;
+    }
+
+    public static void main(String[] args) throws Exception {
+        LocalJwksServer jwks = start(args.length > 0 ? Integer.parseInt(args[0]) : 9229);
+        System.out.println("JWKS stand-in running. Start the API with:");
+        System.out.println("  AUTH_MODE=OAUTH COGNITO_ISSUER=" + jwks.getIssuer() + " CLIENT_ID=" + CLIENT_ID);
+        System.out.println("New token: curl '" + jwks.getIssuer() + "/token?email=dev@example.com&groups=admin'");
+        System.out.println("Sample ID token (1 hour):");
+        System.out.println(jwks.sign("dev@example.com", new String[] {"admin"}, 3600L, "id"));
+    }
+
+    public String getIssuer() {
+        return issuer;
+    }
+
+    public void stop() {
+        server.stop(0);
+    }
+
+    /**
+     * Number of JWKS downloads served so far
+     */
+    public int getJwksRequests() {
+        return jwksRequests.get();
+    }
+
+    /**
+     * Signed ID or access token for this pool
+     */
+    public String sign(String email, String[] groups, long ttlSeconds, String tokenUse) {
+        return sign(claims(email, groups, ttlSeconds, tokenUse));
+    }
+
+    /**
+     * Sign claims with this pool's key
+     */
+    public String sign(JWTCreator.Builder claims) {
+        return claims.sign(algorithm);
+    }
+
+    /**
+     * Unsigned claims of an ID or access token for this pool (kid, iss, sub, exp, token_use,
+     * groups, and aud + email or client_id + username), to be changed before signing
+     */
+    public JWTCreator.Builder claims(String email, String[] groups, long ttlSeconds, String tokenUse) {
+        long now = System.currentTimeMillis();
+        String subject = UUID.nameUUIDFromBytes(email.getBytes(StandardCharsets.UTF_8)).toString();
+        JWTCreator.Builder builder = JWT.create()
+                .withKeyId(KEY_ID)
+                .withIssuer(issuer)
+                .withSubject(subject)
+                .withIssuedAt(new Date(now))
+                .withExpiresAt(new Date(now + ttlSeconds * 1000L))
+                .withClaim("token_use", tokenUse)
+                .withArrayClaim("cognito:groups", groups);
+        if ("access".equals(tokenUse)) {
+            builder.withClaim("client_id", CLIENT_ID).withClaim("username", email);
+        } else {
+            builder.withAudience(CLIENT_ID).withClaim("email", email).withClaim("cognito:username", email);
+        }
+        return builder;
+    }
+
+    private String jwks() {
+        return "{\"keys\":[{\"kty\":\"RSA\",\"kid\":\"" + KEY_ID + "\",\"use\":\"sig\",\"alg\":\"RS256\","
+                + "\"n\":\"" + base64Url(publicKey.getModulus()) + "\",\"e\":\"" + base64Url(publicKey.getPublicExponent()) + "\"}]}";
+    }
+
+    private String token(Map<String, String> query) {
+        String email = query.getOrDefault("email", "dev@example.com");
+        String groups = query.getOrDefault("groups", "");
+        long ttl = Long.parseLong(query.getOrDefault("ttl", "3600"));
+        return sign(email, groups.isEmpty() ? new String[0] : groups.split(","), ttl, query.getOrDefault("use", "id"));
+    }
+
+    private static String base64Url(BigInteger value) {
+        byte[] bytes = value.toByteArray();
+        if (bytes.length > 1 && bytes[0] == 0) {
+            bytes = Arrays.copyOfRange(bytes, 1, bytes.length);
+        }
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+    }
+
+    private static Map<String, String> query(HttpExchange exchange) {
+        Map<String, String> params = new HashMap<>();
+        String raw = exchange.getRequestURI().getRawQuery();
+        if (raw != null) {
+            for (String pair : raw.split("&")) {
+                int eq = pair.indexOf('=');
+                if (eq > 0) {
+                    params.put(URLDecoder.decode(pair.substring(0, eq), StandardCharsets.UTF_8),
+                            URLDecoder.decode(pair.substring(eq + 1), StandardCharsets.UTF_8));
+                }
+            }
+        }
+        return params;
+    }
+
+    private static void respond(HttpExchange exchange, String contentType, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", contentType);
+        exchange.sendResponseHeaders(200, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+}